@@ -0,0 +1,16 @@
+package com.example.fuelQuotaManagementSystem.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+@Configuration
+public class ClockConfig {
+
+    // Replace this bean with a fixed or offset clock to test period rollover
+    @Bean
+    public Clock clock() {
+        return Clock.systemDefaultZone();
+    }
+}
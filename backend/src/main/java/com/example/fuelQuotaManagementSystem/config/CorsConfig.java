@@ -3,6 +3,7 @@
 
 package com.example.fuelQuotaManagementSystem.config;
 
+import com.example.fuelQuotaManagementSystem.controller.FuelQuotaController;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.cors.CorsConfiguration;
@@ -23,6 +24,7 @@ public class CorsConfig implements WebMvcConfigurer {
                 .allowedOrigins("http://localhost:3000") // Specific origin instead of "*"
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                .exposedHeaders(FuelQuotaController.NEXT_CURSOR_HEADER)
                 .allowCredentials(true)
                 .maxAge(3600);
     }
@@ -43,6 +45,9 @@ public class CorsConfig implements WebMvcConfigurer {
         // Allow specific headers
         configuration.setAllowedHeaders(Arrays.asList("*"));
 
+        // Let the browser read the history page cursor
+        configuration.setExposedHeaders(List.of(FuelQuotaController.NEXT_CURSOR_HEADER));
+
         // Allow credentials
         configuration.setAllowCredentials(true);
 
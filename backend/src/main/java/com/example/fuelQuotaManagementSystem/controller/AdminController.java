@@ -1,22 +1,33 @@
 package com.example.fuelQuotaManagementSystem.controller;
 
 import com.example.fuelQuotaManagementSystem.dto.admin.AdminDashboardResponse;
+import com.example.fuelQuotaManagementSystem.dto.admin.RevokeTokenRequest;
 import com.example.fuelQuotaManagementSystem.dto.MessageResponse;
 import com.example.fuelQuotaManagementSystem.dto.admin.UserManagementResponse;
 import com.example.fuelQuotaManagementSystem.entity.Role;
 import com.example.fuelQuotaManagementSystem.entity.User;
 import com.example.fuelQuotaManagementSystem.repository.UserRepository;
+import com.example.fuelQuotaManagementSystem.security.JwtTokenProvider;
+import com.example.fuelQuotaManagementSystem.security.RefreshTokenService;
+import com.example.fuelQuotaManagementSystem.security.TokenRevocationStore;
 import com.example.fuelQuotaManagementSystem.service.AdminService;
+import com.example.fuelQuotaManagementSystem.service.AdmissionControlService;
+import com.example.fuelQuotaManagementSystem.service.QRCodeService;
+import com.example.fuelQuotaManagementSystem.service.QrResignService;
+import com.example.fuelQuotaManagementSystem.service.TransactionStreamService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 
@@ -31,6 +42,27 @@ public class AdminController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    @Autowired
+    private TransactionStreamService transactionStreamService;
+
+    @Autowired
+    private QRCodeService qrCodeService;
+
+    @Autowired
+    private QrResignService qrResignService;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private TokenRevocationStore tokenRevocationStore;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
 
     //Get admin dashboard with system overview
 
@@ -46,6 +78,14 @@ public class AdminController {
     }
 
 
+     //Get pump and scan admission control load, rejections and queue times
+
+    @GetMapping("/admission-stats")
+    public ResponseEntity<?> getAdmissionStats() {
+        return ResponseEntity.ok(admissionControlService.getStats());
+    }
+
+
      //Get all users in the system
 
     @GetMapping("/users")
@@ -222,6 +262,66 @@ public class AdminController {
     }
 
 
+     //Re-issue every vehicle's QR code under a signing key (the active one by default) in the background
+
+    @PostMapping("/qr/resign")
+    public ResponseEntity<?> startQrResign(@RequestParam(required = false) Integer keyId) {
+        try {
+            int signingKeyId = keyId != null ? keyId : qrCodeService.getActiveKeyId();
+            return ResponseEntity.accepted().body(qrResignService.start(signingKeyId));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error starting QR re-signing: " + e.getMessage()));
+        }
+    }
+
+
+     //Get progress of the current or last QR re-signing job
+
+    @GetMapping("/qr/resign")
+    public ResponseEntity<?> getQrResignProgress() {
+        QrResignService.ResignJob job = qrResignService.getCurrentJob();
+        if (job == null) {
+            return ResponseEntity.ok(new MessageResponse("No QR re-signing job has been started."));
+        }
+        return ResponseEntity.ok(job);
+    }
+
+
+     //Revoke a token before its expiry, given the token itself or just its id (jti), or every token of a user
+
+    @PostMapping("/tokens/revoke")
+    public ResponseEntity<?> revokeToken(@RequestBody RevokeTokenRequest request) {
+        try {
+            if (request.getToken() != null && !request.getToken().isBlank()) {
+                JwtTokenProvider.TokenClaims claims = jwtTokenProvider.parseToken(request.getToken());
+                if (claims.getTokenId() == null) {
+                    return ResponseEntity.badRequest()
+                            .body(new MessageResponse("Token has no id and cannot be revoked; it expires on its own."));
+                }
+                tokenRevocationStore.revoke(claims.getTokenId(), claims.getUsername(), claims.getExpiresAt());
+            } else if (request.getJti() != null && !request.getJti().isBlank()) {
+                // Expiry unknown: keep the entry for the longest a token can live
+                tokenRevocationStore.revoke(request.getJti(), request.getUsername(),
+                        System.currentTimeMillis() + jwtTokenProvider.getExpirationMillis());
+            } else if (request.getUsername() != null && !request.getUsername().isBlank()) {
+                // Access tokens issued until now, and the refresh tokens that would mint new ones
+                if (!tokenRevocationStore.revokeAllFor(request.getUsername())) {
+                    return ResponseEntity.badRequest().body(new MessageResponse("User not found!"));
+                }
+                refreshTokenService.revokeAll(request.getUsername());
+                return ResponseEntity.ok(new MessageResponse("All tokens of " + request.getUsername() + " revoked successfully"));
+            } else {
+                return ResponseEntity.badRequest().body(new MessageResponse("Either token, jti or username is required."));
+            }
+            return ResponseEntity.ok(new MessageResponse("Token revoked successfully"));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error revoking token: " + e.getMessage()));
+        }
+    }
+
+
      //Get system health status
 
     @GetMapping("/system/health")
@@ -250,23 +350,39 @@ public class AdminController {
     }
 
 
-     //Export system data (CSV format)
+     //Export system data (CSV, or NDJSON with format=NDJSON), streamed row by row
 
     @GetMapping("/export/transactions")
     public ResponseEntity<?> exportTransactionData(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
                                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
                                                    @RequestParam(required = false) String format) {
+        String exportFormat = format != null ? format : "CSV";
+        String filename = "fuel_transactions_" + startDate + "_to_" + endDate;
+
         try {
-            String exportData = adminService.exportTransactionData(startDate, endDate, format != null ? format : "CSV");
+            if ("CSV".equalsIgnoreCase(exportFormat)) {
+                StreamingResponseBody body = transactionStreamService.transactionsBetweenAsCsv(startDate, endDate);
+                return ResponseEntity.ok()
+                        .header("Content-Type", "text/csv")
+                        .header("Content-Disposition", "attachment; filename=" + filename + ".csv")
+                        .body(body);
+            }
 
-            return ResponseEntity.ok()
-                    .header("Content-Type", "text/csv")
-                    .header("Content-Disposition", "attachment; filename=fuel_transactions_" + startDate + "_to_" + endDate + ".csv")
-                    .body(exportData);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest()
-                    .body(new MessageResponse("Error exporting data: " + e.getMessage()));
+            if ("NDJSON".equalsIgnoreCase(exportFormat)) {
+                StreamingResponseBody body = transactionStreamService.transactionsBetween(startDate, endDate);
+                return ResponseEntity.ok()
+                        .header("Content-Type", TransactionStreamService.NDJSON_MEDIA_TYPE)
+                        .header("Content-Disposition", "attachment; filename=" + filename + ".ndjson")
+                        .body(body);
+            }
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", String.valueOf(transactionStreamService.getRetryAfterSeconds()))
+                    .body(new MessageResponse("Too many exports in progress. Please retry shortly."));
         }
+
+        return ResponseEntity.badRequest()
+                .body(new MessageResponse("Export format not supported"));
     }
 
 
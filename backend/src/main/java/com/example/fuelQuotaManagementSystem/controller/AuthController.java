@@ -3,25 +3,35 @@ package com.example.fuelQuotaManagementSystem.controller;
 import com.example.fuelQuotaManagementSystem.dto.JwtResponse;
 import com.example.fuelQuotaManagementSystem.dto.LoginRequest;
 import com.example.fuelQuotaManagementSystem.dto.MessageResponse;
+import com.example.fuelQuotaManagementSystem.dto.RefreshTokenRequest;
 import com.example.fuelQuotaManagementSystem.dto.SignupRequest;
 import com.example.fuelQuotaManagementSystem.entity.Role;
 import com.example.fuelQuotaManagementSystem.entity.User;
 import com.example.fuelQuotaManagementSystem.repository.UserRepository;
 import com.example.fuelQuotaManagementSystem.security.JwtTokenProvider;
+import com.example.fuelQuotaManagementSystem.security.PasswordCheckExecutor;
+import com.example.fuelQuotaManagementSystem.security.RefreshTokenService;
+import com.example.fuelQuotaManagementSystem.security.TokenRevocationStore;
+import com.example.fuelQuotaManagementSystem.security.UserDetailsCache;
 import com.example.fuelQuotaManagementSystem.security.UserDetailsImpl;
+import com.example.fuelQuotaManagementSystem.security.UserDetailsServiceImpl;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 
@@ -40,25 +50,97 @@ public class AuthController {
     @Autowired
     JwtTokenProvider jwtTokenProvider;
 
+    @Autowired
+    TokenRevocationStore tokenRevocationStore;
+
+    @Autowired
+    RefreshTokenService refreshTokenService;
+
+    @Autowired
+    PasswordCheckExecutor passwordCheckExecutor;
+
+    @Autowired
+    UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    UserDetailsCache userDetailsCache;
+
     @PostMapping("/signin")
     public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
 
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
+        Authentication authentication;
+        try {
+            // BCrypt runs on its own bounded pool, not on the request thread
+            authentication = passwordCheckExecutor.run(() -> authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword())));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", String.valueOf(passwordCheckExecutor.getRetryAfterSeconds()))
+                    .body(new MessageResponse("Sign-in is busy. Please retry shortly."));
+        }
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = jwtTokenProvider.generateToken(authentication);
-
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+        return ResponseEntity.ok(buildJwtResponse(userDetails, refreshTokenService.issue(userDetails.getUsername())));
+    }
+
+    // Exchange a refresh token for a new access token and refresh token, without a password check
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(@Valid @RequestBody RefreshTokenRequest request) {
+        try {
+            RefreshTokenService.Rotation rotation = refreshTokenService.rotate(request.getRefreshToken());
+            // Current roles, not the ones at sign-in
+            UserDetailsImpl userDetails = userDetailsCache.get(rotation.getUsername(),
+                    name -> (UserDetailsImpl) userDetailsService.loadUserByUsername(name));
+            return ResponseEntity.ok(buildJwtResponse(userDetails, rotation.getRefreshToken()));
+        } catch (AuthenticationException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new MessageResponse("Error: " + e.getMessage()));
+        }
+    }
+
+    private JwtResponse buildJwtResponse(UserDetailsImpl userDetails, String refreshToken) {
+        String jwt = jwtTokenProvider.generateToken(userDetails);
         List<String> roles = userDetails.getAuthorities().stream()
                 .map(item -> item.getAuthority())
                 .collect(Collectors.toList());
 
-        return ResponseEntity.ok(new JwtResponse(jwt,
+        JwtResponse response = new JwtResponse(jwt,
                 userDetails.getId(),
                 userDetails.getUsername(),
                 userDetails.getEmail(),
-                roles));
+                roles);
+        response.setRefreshToken(refreshToken);
+        return response;
+    }
+
+    // Revoke the caller's token, and the refresh token if given, so they stop working before their expiry
+    @PostMapping("/signout")
+    public ResponseEntity<?> signOutUser(@RequestHeader(value = "Authorization", required = false) String authorization,
+                                         @RequestBody(required = false) RefreshTokenRequest refreshRequest) {
+        boolean hasRefreshToken = refreshRequest != null && StringUtils.hasText(refreshRequest.getRefreshToken());
+        if (hasRefreshToken) {
+            refreshTokenService.revoke(refreshRequest.getRefreshToken());
+        }
+
+        if (!StringUtils.hasText(authorization) || !authorization.startsWith("Bearer ")) {
+            if (hasRefreshToken) {
+                return ResponseEntity.ok(new MessageResponse("Signed out successfully!"));
+            }
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: No token to sign out!"));
+        }
+
+        try {
+            JwtTokenProvider.TokenClaims claims = jwtTokenProvider.parseToken(authorization.substring(7));
+            if (claims.getTokenId() != null) {
+                tokenRevocationStore.revoke(claims.getTokenId(), claims.getUsername(), claims.getExpiresAt());
+            }
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: Invalid token!"));
+        }
+
+        SecurityContextHolder.clearContext();
+        return ResponseEntity.ok(new MessageResponse("Signed out successfully!"));
     }
 
     @PostMapping("/signup")
@@ -1,10 +1,13 @@
 package com.example.fuelQuotaManagementSystem.controller;
 
+import com.example.fuelQuotaManagementSystem.dto.FuelPumpBatchRequest;
 import com.example.fuelQuotaManagementSystem.dto.FuelPumpRequest;
 import com.example.fuelQuotaManagementSystem.dto.FuelQuotaResponse;
+import com.example.fuelQuotaManagementSystem.dto.FuelTransactionHistoryItem;
 import com.example.fuelQuotaManagementSystem.dto.MessageResponse;
+import com.example.fuelQuotaManagementSystem.dto.QuotaReservationRequest;
+import com.example.fuelQuotaManagementSystem.dto.QuotaReservationResponse;
 import com.example.fuelQuotaManagementSystem.entity.FuelStation;
-import com.example.fuelQuotaManagementSystem.entity.FuelTransaction;
 import com.example.fuelQuotaManagementSystem.entity.User;
 import com.example.fuelQuotaManagementSystem.entity.Vehicle;
 import com.example.fuelQuotaManagementSystem.repository.FuelStationRepository;
@@ -12,27 +15,40 @@ import com.example.fuelQuotaManagementSystem.repository.FuelTransactionRepositor
 import com.example.fuelQuotaManagementSystem.repository.UserRepository;
 import com.example.fuelQuotaManagementSystem.repository.VehicleRepository;
 import com.example.fuelQuotaManagementSystem.security.UserDetailsImpl;
+import com.example.fuelQuotaManagementSystem.service.FuelPumpService;
 import com.example.fuelQuotaManagementSystem.service.FuelQuotaService;
-import com.example.fuelQuotaManagementSystem.service.NotificationService;
+import com.example.fuelQuotaManagementSystem.service.FuelUnits;
 import com.example.fuelQuotaManagementSystem.service.QRCodeService;
+import com.example.fuelQuotaManagementSystem.service.QuotaReservationService;
+import com.example.fuelQuotaManagementSystem.service.TransactionStreamService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.RejectedExecutionException;
 
 
 @RestController
 @RequestMapping("/api/fuel")
 public class FuelQuotaController {
 
+    // Response header with the cursor of the next history page, absent on the last page
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final int DEFAULT_HISTORY_PAGE_SIZE = 50;
+    private static final int MAX_HISTORY_PAGE_SIZE = 200;
+
     @Autowired
     private VehicleRepository vehicleRepository;
 
@@ -52,7 +68,13 @@ public class FuelQuotaController {
     private QRCodeService qrCodeService;
 
     @Autowired
-    private NotificationService notificationService;
+    private FuelPumpService fuelPumpService;
+
+    @Autowired
+    private QuotaReservationService reservationService;
+
+    @Autowired
+    private TransactionStreamService transactionStreamService;
 
 
      //Check fuel quota for a vehicle by QR code scan (Mobile App - Station Operators)
@@ -62,11 +84,14 @@ public class FuelQuotaController {
     public ResponseEntity<?> checkQuotaByQR(@PathVariable String qrData) {
         try {
             String registrationNumber;
+            Long vehicleId = null;
 
             // Try to decode as QR code first, if that fails, treat as plain registration number
             try {
-                // Attempt to decode as QR code
-                registrationNumber = qrCodeService.decodeQRCode(qrData);
+                // Attempt to decode as QR code (recently verified codes come from the cache)
+                QRCodeService.VerifiedQR verified = qrCodeService.verifyQRCode(qrData);
+                registrationNumber = verified.getRegistrationNumber();
+                vehicleId = verified.getVehicleId();
             } catch (Exception qrException) {
                 // If QR decoding fails, treat input as plain registration number
                 registrationNumber = qrData.toUpperCase().trim();
@@ -78,8 +103,10 @@ public class FuelQuotaController {
                 }
             }
 
-            // Find vehicle by registration number
-            Optional<Vehicle> vehicleOptional = vehicleRepository.findByRegistrationNumber(registrationNumber);
+            // Find vehicle by id when the QR code resolved it, otherwise by registration number
+            Optional<Vehicle> vehicleOptional = vehicleId != null
+                    ? vehicleRepository.findById(vehicleId)
+                    : vehicleRepository.findByRegistrationNumber(registrationNumber);
             if (!vehicleOptional.isPresent()) {
                 return ResponseEntity.badRequest()
                         .body(new MessageResponse("Vehicle not found! Registration: " + registrationNumber +
@@ -117,6 +144,40 @@ public class FuelQuotaController {
     }
 
 
+     //Hold litres of a scanned vehicle's quota at the caller's station until the pump that follows commits
+
+    @PostMapping("/quota/reserve")
+    @PreAuthorize("hasRole('STATION_OWNER') or hasRole('ADMIN')")
+    public ResponseEntity<?> reserveQuota(@Valid @RequestBody QuotaReservationRequest request,
+                                          Authentication authentication) {
+        try {
+            MessageResponse accessError = checkStationAccess(request.getStationId(), authentication);
+            if (accessError != null) {
+                return ResponseEntity.badRequest().body(accessError);
+            }
+
+            Optional<Vehicle> vehicle = vehicleRepository.findById(request.getVehicleId());
+            Optional<FuelStation> station = fuelStationRepository.findById(request.getStationId());
+            if (!vehicle.isPresent() || !station.isPresent()) {
+                return ResponseEntity.badRequest()
+                        .body(new MessageResponse(!vehicle.isPresent() ? "Vehicle not found!" : "Fuel station not found!"));
+            }
+
+            QuotaReservationService.Reservation hold = reservationService.reserve(vehicle.get(), station.get(),
+                    FuelUnits.toMillilitres(request.getAmount()));
+            return ResponseEntity.ok(new QuotaReservationResponse(hold.getId(), hold.getStationId(),
+                    FuelUnits.toLitres(hold.getAmountMl()), hold.getExpiresAt()));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error reserving quota: " + e.getMessage()));
+        }
+    }
+
+
      //Check fuel quota by vehicle ID (Web Portal - Vehicle Owners)
 
     @GetMapping("/quota/vehicle/{vehicleId}")
@@ -184,138 +245,60 @@ public class FuelQuotaController {
                         .body(new MessageResponse("User not found!"));
             }
 
-            // Find vehicle
-            Optional<Vehicle> vehicleOptional = vehicleRepository.findById(request.getVehicleId());
-            if (!vehicleOptional.isPresent()) {
-                return ResponseEntity.badRequest()
-                        .body(new MessageResponse("Vehicle not found!"));
-            }
-
-            Vehicle vehicle = vehicleOptional.get();
-
-            // Find fuel station
-            Optional<FuelStation> stationOptional = fuelStationRepository.findById(request.getStationId());
-            if (!stationOptional.isPresent()) {
-                return ResponseEntity.badRequest()
-                        .body(new MessageResponse("Fuel station not found!"));
-            }
-
-            FuelStation station = stationOptional.get();
-
-            // Validate fuel type matches vehicle
-            if (!vehicle.getFuelType().equalsIgnoreCase(request.getFuelType())) {
-                return ResponseEntity.badRequest()
-                        .body(new MessageResponse("Fuel type mismatch! Vehicle uses " + vehicle.getFuelType()));
-            }
-
-            // Validate pump amount
-            if (request.getAmount() <= 0) {
-                return ResponseEntity.badRequest()
-                        .body(new MessageResponse("Invalid fuel amount!"));
-            }
+            // Deduct quota and record the transaction (replayed if the idempotency key was seen before)
+            FuelPumpService.PumpResult result = fuelPumpService.recordPump(request);
 
-            if (request.getAmount() > 100) { // Maximum 100L per transaction
-                return ResponseEntity.badRequest()
-                        .body(new MessageResponse("Maximum 100 liters allowed per transaction!"));
-            }
+            return ResponseEntity.ok()
+                    .header("Idempotent-Replayed", String.valueOf(result.isReplayed()))
+                    .body(new MessageResponse(
+                            String.format("Fuel pumped successfully! %.1fL %s dispensed. Remaining quota: %.1fL",
+                                    result.getAmount(), result.getFuelType(), result.getQuotaAfter())
+                    ));
 
-            // Check if vehicle has sufficient quota
-            if (!fuelQuotaService.hasSufficientQuota(vehicle, request.getFuelType(), request.getAmount())) {
-                double remainingQuota = fuelQuotaService.getRemainingQuota(vehicle, request.getFuelType());
-                return ResponseEntity.badRequest()
-                        .body(new MessageResponse("Insufficient quota! Remaining: " + remainingQuota + "L"));
-            }
-
-            // Get quota before transaction
-            double quotaBefore = fuelQuotaService.getRemainingQuota(vehicle, request.getFuelType());
-
-            // Deduct fuel from quota
-            boolean success = fuelQuotaService.deductFuel(vehicle, request.getFuelType(), request.getAmount());
-            if (!success) {
-                return ResponseEntity.badRequest()
-                        .body(new MessageResponse("Failed to deduct fuel quota!"));
-            }
-
-            // Get quota after transaction
-            double quotaAfter = fuelQuotaService.getRemainingQuota(vehicle, request.getFuelType());
-
-            // Create transaction record
-            FuelTransaction transaction = new FuelTransaction();
-            transaction.setVehicle(vehicle);
-            transaction.setStation(station);
-            transaction.setFuelType(request.getFuelType());
-            transaction.setAmount(request.getAmount());
-            transaction.setQuotaBeforeTransaction(quotaBefore);
-            transaction.setQuotaAfterTransaction(quotaAfter);
-            transaction.setNotificationSent(false);
-
-            FuelTransaction savedTransaction = fuelTransactionRepository.save(transaction);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Error recording fuel pump: " + e.getMessage()));
+        }
+    }
 
-            // Send notification to vehicle owner
-            try {
-                boolean notificationSent = notificationService.sendFuelTransactionNotification(
-                        vehicle.getOwner().getPhoneNumber(),
-                        vehicle.getOwner().getEmail(),
-                        vehicle.getRegistrationNumber(),
-                        request.getFuelType(),
-                        request.getAmount(),
-                        station.getName(),
-                        quotaAfter,
-                        savedTransaction.getId()
-                );
-
-                // Update notification status
-                savedTransaction.setNotificationSent(notificationSent);
-                fuelTransactionRepository.save(savedTransaction);
-
-            } catch (Exception e) {
-                // Log notification error but don't fail the transaction
-                System.err.println("Failed to send notification: " + e.getMessage());
-                savedTransaction.setNotificationSent(false);
-                fuelTransactionRepository.save(savedTransaction);
-            }
 
-            return ResponseEntity.ok(new MessageResponse(
-                    String.format("Fuel pumped successfully! %.1fL %s dispensed. Remaining quota: %.1fL",
-                            request.getAmount(), request.getFuelType(), quotaAfter)
-            ));
+     //Record a batch of pumps queued offline by the mobile app
 
+    @PostMapping("/pump/batch")
+    @PreAuthorize("hasRole('STATION_OWNER') or hasRole('ADMIN')")
+    public ResponseEntity<?> recordFuelPumpBatch(@Valid @RequestBody FuelPumpBatchRequest request) {
+        try {
+            return ResponseEntity.ok(fuelPumpService.recordPumpBatch(request.getPumps()));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
-                    .body(new MessageResponse("Error recording fuel pump: " + e.getMessage()));
+                    .body(new MessageResponse("Error recording fuel pump batch: " + e.getMessage()));
         }
     }
 
 
-     //Get fuel transaction history for a vehicle (Vehicle Owner)
+     //Get fuel transaction history for a vehicle (Vehicle Owner), newest first, one page at a time
 
     @GetMapping("/transactions/vehicle/{vehicleId}")
     @PreAuthorize("hasRole('VEHICLE_OWNER') or hasRole('ADMIN')")
-    public ResponseEntity<?> getVehicleTransactions(@PathVariable Long vehicleId, Authentication authentication) {
+    public ResponseEntity<?> getVehicleTransactions(@PathVariable Long vehicleId,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(required = false) Integer limit,
+                                                    Authentication authentication) {
         try {
-            Optional<Vehicle> vehicleOptional = vehicleRepository.findById(vehicleId);
-            if (!vehicleOptional.isPresent()) {
-                return ResponseEntity.badRequest()
-                        .body(new MessageResponse("Vehicle not found!"));
-            }
-
-            Vehicle vehicle = vehicleOptional.get();
-
-            // Check ownership (unless admin)
-            UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
-            boolean isAdmin = userDetails.getAuthorities().stream()
-                    .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
-
-            if (!isAdmin && !vehicle.getOwner().getId().equals(userDetails.getId())) {
-                return ResponseEntity.badRequest()
-                        .body(new MessageResponse("Access denied: You don't own this vehicle!"));
+            MessageResponse accessError = checkVehicleHistoryAccess(vehicleId, authentication);
+            if (accessError != null) {
+                return ResponseEntity.badRequest().body(accessError);
             }
 
-            List<FuelTransaction> transactions = fuelTransactionRepository.findByVehicleIdOrderByTimestampDesc(vehicleId);
+            long[] after = parseHistoryCursor(cursor);
+            int pageSize = historyPageSize(limit);
+            List<FuelTransactionHistoryItem> transactions = fuelTransactionRepository.findHistoryPageByVehicleId(
+                    vehicleId, after[0], after[1], PageRequest.of(0, pageSize));
 
-            return ResponseEntity.ok(transactions.stream()
-                    .map(this::convertToTransactionResponse)
-                    .collect(Collectors.toList()));
+            return historyPage(transactions, pageSize);
 
         } catch (Exception e) {
             return ResponseEntity.badRequest()
@@ -324,34 +307,48 @@ public class FuelQuotaController {
     }
 
 
-     //Get all transactions for a fuel station (Station Owner)
+     //Stream a vehicle's whole transaction history as NDJSON (Accept: application/x-ndjson)
 
-    @GetMapping("/transactions/station/{stationId}")
-    @PreAuthorize("hasRole('STATION_OWNER') or hasRole('ADMIN')")
-    public ResponseEntity<?> getStationTransactions(@PathVariable Long stationId, Authentication authentication) {
+    @GetMapping(value = "/transactions/vehicle/{vehicleId}", produces = TransactionStreamService.NDJSON_MEDIA_TYPE)
+    @PreAuthorize("hasRole('VEHICLE_OWNER') or hasRole('ADMIN')")
+    public ResponseEntity<?> streamVehicleTransactions(@PathVariable Long vehicleId, Authentication authentication) {
+        MessageResponse accessError = checkVehicleHistoryAccess(vehicleId, authentication);
+        if (accessError != null) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(accessError);
+        }
+
+        StreamingResponseBody body;
         try {
-            Optional<FuelStation> stationOptional = fuelStationRepository.findById(stationId);
-            if (!stationOptional.isPresent()) {
-                return ResponseEntity.badRequest()
-                        .body(new MessageResponse("Fuel station not found!"));
-            }
+            body = transactionStreamService.vehicleHistory(vehicleId);
+        } catch (RejectedExecutionException e) {
+            return historyStreamBusy();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(TransactionStreamService.NDJSON_MEDIA_TYPE))
+                .body(body);
+    }
 
-            // Check station ownership (unless admin)
-            UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
-            boolean isAdmin = userDetails.getAuthorities().stream()
-                    .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
 
-            FuelStation station = stationOptional.get();
-            if (!isAdmin && !station.getOwner().getId().equals(userDetails.getId())) {
-                return ResponseEntity.badRequest()
-                        .body(new MessageResponse("Access denied: You don't own this fuel station!"));
+     //Get transactions for a fuel station (Station Owner), newest first, one page at a time
+
+    @GetMapping("/transactions/station/{stationId}")
+    @PreAuthorize("hasRole('STATION_OWNER') or hasRole('ADMIN')")
+    public ResponseEntity<?> getStationTransactions(@PathVariable Long stationId,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(required = false) Integer limit,
+                                                    Authentication authentication) {
+        try {
+            MessageResponse accessError = checkStationAccess(stationId, authentication);
+            if (accessError != null) {
+                return ResponseEntity.badRequest().body(accessError);
             }
 
-            List<FuelTransaction> transactions = fuelTransactionRepository.findByStationIdOrderByTimestampDesc(stationId);
+            long[] after = parseHistoryCursor(cursor);
+            int pageSize = historyPageSize(limit);
+            List<FuelTransactionHistoryItem> transactions = fuelTransactionRepository.findHistoryPageByStationId(
+                    stationId, after[0], after[1], PageRequest.of(0, pageSize));
 
-            return ResponseEntity.ok(transactions.stream()
-                    .map(this::convertToTransactionResponse)
-                    .collect(Collectors.toList()));
+            return historyPage(transactions, pageSize);
 
         } catch (Exception e) {
             return ResponseEntity.badRequest()
@@ -360,6 +357,28 @@ public class FuelQuotaController {
     }
 
 
+     //Stream a station's whole transaction history as NDJSON (Accept: application/x-ndjson)
+
+    @GetMapping(value = "/transactions/station/{stationId}", produces = TransactionStreamService.NDJSON_MEDIA_TYPE)
+    @PreAuthorize("hasRole('STATION_OWNER') or hasRole('ADMIN')")
+    public ResponseEntity<?> streamStationTransactions(@PathVariable Long stationId, Authentication authentication) {
+        MessageResponse accessError = checkStationAccess(stationId, authentication);
+        if (accessError != null) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(accessError);
+        }
+
+        StreamingResponseBody body;
+        try {
+            body = transactionStreamService.stationHistory(stationId);
+        } catch (RejectedExecutionException e) {
+            return historyStreamBusy();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(TransactionStreamService.NDJSON_MEDIA_TYPE))
+                .body(body);
+    }
+
+
      //Reset vehicle quota (Admin only - for testing)
 
     @PostMapping("/quota/reset/{vehicleId}")
@@ -383,20 +402,85 @@ public class FuelQuotaController {
     }
 
 
-     //Helper method to convert FuelTransaction to response DTO
-
-    private Object convertToTransactionResponse(FuelTransaction transaction) {
-        return new Object() {
-            public final Long id = transaction.getId();
-            public final String vehicleRegNo = transaction.getVehicle().getRegistrationNumber();
-            public final String stationName = transaction.getStation().getName();
-            public final String fuelType = transaction.getFuelType();
-            public final Double amount = transaction.getAmount();
-            public final Double quotaBefore = transaction.getQuotaBeforeTransaction();
-            public final Double quotaAfter = transaction.getQuotaAfterTransaction();
-            public final Boolean notificationSent = transaction.isNotificationSent(); // Fixed: using isNotificationSent()
-            public final String timestamp = formatTimestamp(transaction.getTimestamp());
-        };
+     //Helper method to check that the vehicle exists and belongs to the caller (unless admin); null if allowed
+
+    private MessageResponse checkVehicleHistoryAccess(Long vehicleId, Authentication authentication) {
+        Optional<Long> ownerId = vehicleRepository.findOwnerIdById(vehicleId);
+        if (!ownerId.isPresent()) {
+            return new MessageResponse("Vehicle not found!");
+        }
+        if (!isAdmin(authentication) && !ownerId.get().equals(currentUserId(authentication))) {
+            return new MessageResponse("Access denied: You don't own this vehicle!");
+        }
+        return null;
+    }
+
+
+     //Helper method to check that the station exists and belongs to the caller (unless admin); null if allowed
+
+    private MessageResponse checkStationAccess(Long stationId, Authentication authentication) {
+        Optional<Long> ownerId = fuelStationRepository.findOwnerIdById(stationId);
+        if (!ownerId.isPresent()) {
+            return new MessageResponse("Fuel station not found!");
+        }
+        if (!isAdmin(authentication) && !ownerId.get().equals(currentUserId(authentication))) {
+            return new MessageResponse("Access denied: You don't own this fuel station!");
+        }
+        return null;
+    }
+
+    private boolean isAdmin(Authentication authentication) {
+        return authentication.getAuthorities().stream()
+                .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
+    }
+
+    private Long currentUserId(Authentication authentication) {
+        return ((UserDetailsImpl) authentication.getPrincipal()).getId();
+    }
+
+
+     //Helper method to return a history page; a full page carries the cursor of its last row for the next request
+
+    private ResponseEntity<List<FuelTransactionHistoryItem>> historyPage(List<FuelTransactionHistoryItem> page, int pageSize) {
+        if (page.size() < pageSize) {
+            return ResponseEntity.ok(page);
+        }
+        FuelTransactionHistoryItem last = page.get(page.size() - 1);
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, last.getTimestampMillis() + ":" + last.getId())
+                .body(page);
+    }
+
+
+     //Helper method to read a "timestamp:id" history cursor; no cursor starts from the newest transaction
+
+    private long[] parseHistoryCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return new long[]{Long.MAX_VALUE, Long.MAX_VALUE};
+        }
+        String[] parts = cursor.split(":");
+        try {
+            if (parts.length == 2) {
+                return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+            }
+        } catch (NumberFormatException ignored) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid cursor!");
+    }
+
+    private ResponseEntity<?> historyStreamBusy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Retry-After", String.valueOf(transactionStreamService.getRetryAfterSeconds()))
+                .body(new MessageResponse("Too many history downloads in progress. Please retry shortly."));
+    }
+
+    private int historyPageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_HISTORY_PAGE_SIZE;
+        }
+        return Math.max(1, Math.min(limit, MAX_HISTORY_PAGE_SIZE));
     }
 
 
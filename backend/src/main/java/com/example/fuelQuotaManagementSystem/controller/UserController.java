@@ -4,6 +4,8 @@ import com.example.fuelQuotaManagementSystem.dto.*;
 import com.example.fuelQuotaManagementSystem.entity.User;
 import com.example.fuelQuotaManagementSystem.entity.Role;
 import com.example.fuelQuotaManagementSystem.repository.UserRepository;
+import com.example.fuelQuotaManagementSystem.security.RefreshTokenService;
+import com.example.fuelQuotaManagementSystem.security.UserDetailsCache;
 import com.example.fuelQuotaManagementSystem.security.UserDetailsImpl;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -27,6 +29,12 @@ public class UserController {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
 
      //Get current user profile
 
@@ -98,6 +106,7 @@ public class UserController {
             user.setPhoneNumber(request.getPhoneNumber());
 
             userRepository.save(user);
+            userDetailsCache.invalidate(user.getUsername());
 
             return ResponseEntity.ok(new MessageResponse("Profile updated successfully!"));
         } catch (Exception e) {
@@ -133,6 +142,9 @@ public class UserController {
             // Update password
             user.setPassword(passwordEncoder.encode(request.getNewPassword()));
             userRepository.save(user);
+            userDetailsCache.invalidate(user.getUsername());
+            // Other sessions have to sign in again with the new password
+            refreshTokenService.revokeAll(user.getUsername());
 
             return ResponseEntity.ok(new MessageResponse("Password changed successfully!"));
         } catch (Exception e) {
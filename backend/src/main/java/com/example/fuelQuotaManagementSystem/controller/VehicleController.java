@@ -13,6 +13,10 @@ import com.example.fuelQuotaManagementSystem.service.MotorTrafficService;
 import com.example.fuelQuotaManagementSystem.service.QRCodeService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -92,12 +96,8 @@ public class VehicleController {
             vehicle.setEngineCapacity(vehicleInfo.getEngineCapacity());
             vehicle.setOwner(currentUser);
 
-            // Generate QR code
-            String qrCodeData = qrCodeService.generateQRCode(vehicle);
-            vehicle.setQrCode(qrCodeData);
-
-            // Save vehicle
-            Vehicle savedVehicle = vehicleRepository.save(vehicle);
+            // Save vehicle and its QR code together
+            Vehicle savedVehicle = qrCodeService.registerVehicle(vehicle);
 
             return ResponseEntity.ok(new VehicleResponse(
                     savedVehicle.getId(),
@@ -145,10 +145,13 @@ public class VehicleController {
     @PreAuthorize("hasRole('STATION_OWNER') or hasRole('ADMIN')")
     public ResponseEntity<?> scanVehicleQR(@PathVariable String qrData) {
         try {
-            // Decode QR and extract registration number
-            String registrationNumber = qrCodeService.decodeQRCode(qrData);
+            // Verify the QR code (recently verified codes come from the cache) and resolve its vehicle
+            QRCodeService.VerifiedQR verified = qrCodeService.verifyQRCode(qrData);
+            String registrationNumber = verified.getRegistrationNumber();
 
-            Optional<Vehicle> vehicleOptional = vehicleRepository.findByRegistrationNumber(registrationNumber);
+            Optional<Vehicle> vehicleOptional = verified.getVehicleId() != null
+                    ? vehicleRepository.findById(verified.getVehicleId())
+                    : Optional.empty();
 
             if (!vehicleOptional.isPresent()) {
                 return ResponseEntity.badRequest()
@@ -175,6 +178,57 @@ public class VehicleController {
     }
 
 
+     //QR code of a vehicle as a PNG (its owner or an admin); answers 304 while the client's ETag is current
+
+    @GetMapping("/{vehicleId}/qr-code")
+    @PreAuthorize("hasRole('VEHICLE_OWNER') or hasRole('ADMIN')")
+    public ResponseEntity<?> getVehicleQRCodeImage(@PathVariable Long vehicleId,
+                                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                   Authentication authentication) {
+        try {
+            Optional<Vehicle> vehicleOptional = vehicleRepository.findById(vehicleId);
+
+            if (!vehicleOptional.isPresent()) {
+                return ResponseEntity.badRequest()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(new MessageResponse("Vehicle not found!"));
+            }
+
+            Vehicle vehicle = vehicleOptional.get();
+            UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+            boolean isAdmin = userDetails.getAuthorities().stream()
+                    .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
+
+            if (!isAdmin && !vehicle.getOwner().getId().equals(userDetails.getId())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(new MessageResponse("Access denied!"));
+            }
+
+            // Private, but revalidated on every use so a regenerated QR code is picked up at once
+            CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+            String etag = qrCodeService.vehicleImageETag(vehicle);
+            if (etag.equals(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .cacheControl(cacheControl)
+                        .build();
+            }
+
+            QRCodeService.QRImage image = qrCodeService.getVehicleQRImage(vehicle);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_PNG)
+                    .eTag(image.getEtag())
+                    .cacheControl(cacheControl)
+                    .body(image.getPng());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(new MessageResponse("Error generating QR code image: " + e.getMessage()));
+        }
+    }
+
+
      //Get vehicle details by ID (Admin only)
 
     @GetMapping("/{vehicleId}")
@@ -0,0 +1,17 @@
+package com.example.fuelQuotaManagementSystem.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FuelPumpBatchItemResult {
+    private Integer index; // Position of the pump in the request
+    private Boolean success;
+    private Long transactionId;
+    private Double remainingQuota;
+    private Boolean replayed;
+    private String message;
+}
@@ -0,0 +1,21 @@
+package com.example.fuelQuotaManagementSystem.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Pumps queued by the mobile app while offline, replayed in the order they happened
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FuelPumpBatchRequest {
+
+    // Items are validated one by one so a bad item only fails its own result
+    @NotEmpty(message = "At least one pump is required")
+    @Size(max = 500, message = "At most 500 pumps allowed per batch")
+    private List<FuelPumpRequest> pumps;
+}
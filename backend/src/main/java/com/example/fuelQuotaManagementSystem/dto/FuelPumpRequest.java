@@ -3,6 +3,7 @@ package com.example.fuelQuotaManagementSystem.dto;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -25,4 +26,15 @@ public class FuelPumpRequest {
     @NotNull(message = "Amount is required")
     @Min(value = 1, message = "Amount must be at least 1 liter")
     private Double amount; // Amount in liters
+
+    // Optional client-generated key; retries with the same key return the original result
+    @Size(max = 64, message = "Idempotency key must be at most 64 characters")
+    private String idempotencyKey;
+
+    // Optional hold returned by the QR scan; commits the pump against the reserved litres
+    @Size(max = 36, message = "Reservation ID must be at most 36 characters")
+    private String reservationId;
+
+    // Optional time the pump happened on the device (epoch millis), for pumps queued offline
+    private Long pumpedAt;
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.example.fuelQuotaManagementSystem.dto;
+
+import com.example.fuelQuotaManagementSystem.service.FuelUnits;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+// One row of a vehicle or station transaction history, selected directly by a JPQL constructor expression
+@Data
+@NoArgsConstructor
+public class FuelTransactionHistoryItem {
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private Long id;
+    private String vehicleRegNo;
+    private String stationName;
+    private String fuelType;
+    private Double amount;
+    private Double quotaBefore;
+    private Double quotaAfter;
+    private Boolean notificationSent;
+    private String timestamp;
+
+    @JsonIgnore
+    private Long timestampMillis; // Raw timestamp, used to build the next page cursor
+
+    public FuelTransactionHistoryItem(Long id, String vehicleRegNo, String stationName, String fuelType,
+                                      long amountMl, long quotaBeforeMl, long quotaAfterMl,
+                                      boolean notificationSent, Long timestamp) {
+        this.id = id;
+        this.vehicleRegNo = vehicleRegNo;
+        this.stationName = stationName;
+        this.fuelType = fuelType;
+        this.amount = FuelUnits.toLitres(amountMl);
+        this.quotaBefore = FuelUnits.toLitres(quotaBeforeMl);
+        this.quotaAfter = FuelUnits.toLitres(quotaAfterMl);
+        this.notificationSent = notificationSent;
+        this.timestampMillis = timestamp;
+        this.timestamp = timestamp == null ? null
+                : LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()).format(TIMESTAMP_FORMAT);
+    }
+}
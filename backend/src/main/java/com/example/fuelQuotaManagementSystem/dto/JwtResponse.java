@@ -8,6 +8,8 @@ import java.util.List;
 public class JwtResponse {
     private String token;
     private String type = "Bearer";
+    // Single use: exchange at /api/auth/refresh for a new access token and refresh token
+    private String refreshToken;
     private Long id;
     private String username;
     private String email;
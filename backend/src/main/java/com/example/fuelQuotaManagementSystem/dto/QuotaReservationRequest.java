@@ -0,0 +1,24 @@
+package com.example.fuelQuotaManagementSystem.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Hold requested by a station operator after scanning a vehicle's QR code
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuotaReservationRequest {
+
+    @NotNull(message = "Vehicle ID is required")
+    private Long vehicleId;
+
+    @NotNull(message = "Station ID is required")
+    private Long stationId;
+
+    @NotNull(message = "Amount is required")
+    @Min(value = 1, message = "Amount must be at least 1 liter")
+    private Double amount; // Amount in liters
+}
@@ -0,0 +1,16 @@
+package com.example.fuelQuotaManagementSystem.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Hold placed on a vehicle's quota at scan time; send reservationId with the pump to commit it
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuotaReservationResponse {
+    private String reservationId;
+    private Long stationId;
+    private Double reservedAmount;
+    private Long expiresAt;
+}
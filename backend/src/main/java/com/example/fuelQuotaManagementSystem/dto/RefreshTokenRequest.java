@@ -0,0 +1,10 @@
+package com.example.fuelQuotaManagementSystem.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+@Data
+public class RefreshTokenRequest {
+    @NotBlank
+    private String refreshToken;
+}
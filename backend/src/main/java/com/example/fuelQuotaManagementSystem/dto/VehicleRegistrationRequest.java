@@ -1,6 +1,8 @@
 package com.example.fuelQuotaManagementSystem.dto;
 
+import com.example.fuelQuotaManagementSystem.qr.QrPayloadFormat;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -10,9 +12,17 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class VehicleRegistrationRequest {
 
+    // Normalised on the way in, so the check below matches what the QR code can encode
     @NotBlank(message = "Registration number is required")
+    @Pattern(regexp = QrPayloadFormat.REG_NO_PATTERN,
+            message = "Registration number can have at most 16 letters, digits, hyphens and spaces")
     private String registrationNumber;
 
     @NotBlank(message = "Chassis number is required")
     private String chassisNumber;
-}
\ No newline at end of file
+
+    public void setRegistrationNumber(String registrationNumber) {
+        this.registrationNumber = registrationNumber == null ? null
+                : QrPayloadFormat.normaliseRegistrationNumber(registrationNumber);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.fuelQuotaManagementSystem.dto.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevokeTokenRequest {
+    // Either the token itself, or its jti (optionally with the username it was issued to), or only
+    // a username to revoke every token of that user
+    private String token;
+    private String jti;
+    private String username;
+}
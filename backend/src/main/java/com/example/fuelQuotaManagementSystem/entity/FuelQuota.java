@@ -4,7 +4,11 @@ import jakarta.persistence.*;
 import lombok.Data;
 
 @Entity
-@Table(name = "fuel_quotas")
+@Table(name = "fuel_quotas", uniqueConstraints = {
+        @UniqueConstraint(name = "UK_fuel_quotas_period", columnNames = {"vehicle_id", "fuel_type", "period_key"})
+}, indexes = {
+        @Index(name = "IDX_fuel_quotas_period_key", columnList = "period_key")
+})
 @Data
 public class FuelQuota {
 
@@ -19,15 +23,20 @@ public class FuelQuota {
     @Column(nullable = false)
     private String fuelType;
 
-    @Column(nullable = false)
-    private Double allocatedQuota;
+    // Quantities in millilitres
+    @Column(name = "allocated_quota_ml", nullable = false)
+    private long allocatedQuotaMl;
 
-    @Column(nullable = false)
-    private Double remainingQuota;
+    @Column(name = "remaining_quota_ml", nullable = false)
+    private long remainingQuotaMl;
 
     // Weekly or monthly allocation period
     private String allocationPeriod;
 
+    // Allocation month as yyyymm; one quota per vehicle, fuel type and month
+    @Column(name = "period_key")
+    private Integer periodKey;
+
     // Start and end date for this quota period
     private Long startDate;
     private Long endDate;
@@ -6,7 +6,15 @@ import jakarta.persistence.*;
 import lombok.Data;
 
 @Entity
-@Table(name = "fuel_transactions")
+@Table(name = "fuel_transactions", uniqueConstraints = {
+        // Idempotency keys are generated by each station's devices, so they are unique per station
+        @UniqueConstraint(name = "UK_fuel_transactions_station_idempotency_key", columnNames = {"station_id", "idempotency_key"})
+}, indexes = {
+        @Index(name = "IDX_fuel_transactions_station_history", columnList = "station_id, timestamp, id"),
+        @Index(name = "IDX_fuel_transactions_vehicle_history", columnList = "vehicle_id, timestamp, id"),
+        // Covers the admin dashboard's per-day and all-time fuel totals
+        @Index(name = "IDX_fuel_transactions_timestamp", columnList = "timestamp, fuel_type, amount_ml, notification_sent")
+})
 @Data
 public class FuelTransaction {
 
@@ -25,18 +33,23 @@ public class FuelTransaction {
     @Column(nullable = false)
     private String fuelType;
 
-    @Column(nullable = false)
-    private Double amount;
+    // Quantities in millilitres
+    @Column(name = "amount_ml", nullable = false)
+    private long amountMl;
 
-    @Column(nullable = false)
-    private Double quotaBeforeTransaction;
+    @Column(name = "quota_before_ml", nullable = false)
+    private long quotaBeforeMl;
 
-    @Column(nullable = false)
-    private Double quotaAfterTransaction;
+    @Column(name = "quota_after_ml", nullable = false)
+    private long quotaAfterMl;
 
     // Notification status
     private boolean notificationSent;
 
+    // Client-generated key that makes pump retries safe, unique per station
+    @Column(length = 64)
+    private String idempotencyKey;
+
     // Timestamps
     private Long timestamp;
 
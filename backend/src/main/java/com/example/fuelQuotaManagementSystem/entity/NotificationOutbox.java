@@ -0,0 +1,49 @@
+package com.example.fuelQuotaManagementSystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+@Entity
+@Table(name = "notification_outbox", indexes = {
+        @Index(name = "IDX_notification_outbox_due", columnList = "status, next_attempt_at")
+})
+@Data
+public class NotificationOutbox {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_SENDING = "SENDING";
+    public static final String STATUS_SENT = "SENT";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Fuel transaction this notification reports, if any
+    private Long transactionId;
+
+    // Sized like users.phone_number, which it is copied from
+    @Column(nullable = false)
+    private String phoneNumber;
+
+    // Station names and registration numbers are up to 255 characters each
+    @Column(nullable = false, columnDefinition = "text")
+    private String message;
+
+    // PENDING, SENDING, SENT or FAILED
+    @Column(nullable = false, length = 10)
+    private String status;
+
+    private int attempts;
+
+    // Earliest time the dispatcher may (re)try this message; the lease expiry while SENDING
+    @Column(nullable = false)
+    private Long nextAttemptAt;
+
+    @Column(length = 500)
+    private String lastError;
+
+    // Timestamps
+    private Long createdAt;
+    private Long sentAt;
+}
@@ -0,0 +1,37 @@
+package com.example.fuelQuotaManagementSystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+// Single-use refresh token, stored as a SHA-256 hash; every rotation adds a row to the same family
+@Entity
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "IDX_refresh_tokens_family_id", columnList = "family_id"),
+        @Index(name = "IDX_refresh_tokens_username", columnList = "username")
+})
+@Data
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Hex SHA-256 of the token handed to the client
+    @Column(nullable = false, unique = true, length = 64)
+    private String tokenHash;
+
+    @Column(nullable = false)
+    private String username;
+
+    // Shared by all tokens descended from one sign-in
+    @Column(nullable = false, length = 36)
+    private String familyId;
+
+    @Column(nullable = false)
+    private Long expiresAt;
+
+    // Set once the token has been exchanged or revoked; a second use revokes the family
+    private Long usedAt;
+
+    private Long createdAt;
+}
@@ -0,0 +1,28 @@
+package com.example.fuelQuotaManagementSystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+// JWT revoked before its expiry, identified by its jti claim; rows can be deleted once expiresAt has passed
+@Entity
+@Table(name = "revoked_tokens", indexes = {
+        @Index(name = "IDX_revoked_tokens_expires_at", columnList = "expires_at")
+})
+@Data
+public class RevokedToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 64)
+    private String jti;
+
+    private String username;
+
+    // Expiry of the revoked token
+    @Column(nullable = false)
+    private Long expiresAt;
+
+    private Long revokedAt;
+}
@@ -35,6 +35,12 @@ public class User {
     private Long createdAt;
     private Long updatedAt;
 
+    // When the roles last changed; access tokens issued before then are not trusted for their role claims
+    private Long rolesChangedAt;
+
+    // Access tokens issued before this time are rejected, set when an admin revokes all of the user's tokens
+    private Long tokensNotBefore;
+
     @PrePersist
     protected void onCreate() {
         this.createdAt = System.currentTimeMillis();
@@ -26,10 +26,6 @@ public class Vehicle {
 
     private Double engineCapacity;
 
-    // QR code as a Base64 String
-    @Column(columnDefinition = "TEXT")
-    private String qrCode;
-
     @ManyToOne
     @JoinColumn(name = "owner_id", nullable = false)
     private User owner;
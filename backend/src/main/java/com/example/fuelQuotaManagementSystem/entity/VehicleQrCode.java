@@ -0,0 +1,20 @@
+package com.example.fuelQuotaManagementSystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+// QR payload of a vehicle, kept out of the vehicles row so vehicle reads and joins never load it
+@Entity
+@Table(name = "vehicle_qr_codes")
+@Data
+public class VehicleQrCode {
+
+    // Same as the id of the vehicle it was issued for
+    @Id
+    private Long vehicleId;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    private Long issuedAt;
+}
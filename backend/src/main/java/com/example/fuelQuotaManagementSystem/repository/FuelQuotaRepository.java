@@ -1,10 +1,76 @@
 package com.example.fuelQuotaManagementSystem.repository;
 
 import com.example.fuelQuotaManagementSystem.entity.FuelQuota;
-import com.example.fuelQuotaManagementSystem.entity.Vehicle;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import java.util.Optional;
 
 public interface FuelQuotaRepository extends JpaRepository<FuelQuota, Long> {
-    Optional<FuelQuota> findByVehicleAndFuelTypeAndEndDateGreaterThanEqual(Vehicle vehicle, String fuelType, Long currentDate);
-}
\ No newline at end of file
+    @Query("SELECT COALESCE(SUM(q.allocatedQuotaMl), 0) FROM FuelQuota q WHERE q.periodKey = :periodKey")
+    long sumAllocatedMlByPeriod(@Param("periodKey") int periodKey);
+
+    @Query("SELECT COALESCE(SUM(q.remainingQuotaMl), 0) FROM FuelQuota q WHERE q.periodKey = :periodKey")
+    long sumRemainingMlByPeriod(@Param("periodKey") int periodKey);
+
+    // Single probe on the (vehicle_id, fuel_type, period_key) unique index
+    @Query("SELECT q FROM FuelQuota q WHERE q.vehicle.id = :vehicleId AND q.fuelType = :fuelType " +
+            "AND q.periodKey = :periodKey")
+    Optional<FuelQuota> findByPeriod(@Param("vehicleId") Long vehicleId,
+                                     @Param("fuelType") String fuelType,
+                                     @Param("periodKey") int periodKey);
+
+    // Same probe as a locking read, which sees a row committed by a concurrent transaction after this one's snapshot
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT q FROM FuelQuota q WHERE q.vehicle.id = :vehicleId AND q.fuelType = :fuelType " +
+            "AND q.periodKey = :periodKey")
+    Optional<FuelQuota> findByPeriodForUpdate(@Param("vehicleId") Long vehicleId,
+                                              @Param("fuelType") String fuelType,
+                                              @Param("periodKey") int periodKey);
+
+    // Creates the period's quota unless another request already did; never fails on the unique index
+    @Modifying
+    @Query(value = "INSERT INTO fuel_quotas (vehicle_id, fuel_type, period_key, allocation_period, allocated_quota_ml, " +
+            "remaining_quota_ml, start_date, end_date, created_at, updated_at) " +
+            "VALUES (:vehicleId, :fuelType, :periodKey, 'MONTHLY', :allocated, :allocated, :startDate, :endDate, :now, :now) " +
+            "ON DUPLICATE KEY UPDATE id = id", nativeQuery = true)
+    int insertIfAbsent(@Param("vehicleId") Long vehicleId,
+                       @Param("fuelType") String fuelType,
+                       @Param("periodKey") int periodKey,
+                       @Param("allocated") long allocatedQuotaMl,
+                       @Param("startDate") long startDate,
+                       @Param("endDate") long endDate,
+                       @Param("now") long now);
+
+    // Creates the period's quota, or restores the full allocation if it already exists
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO fuel_quotas (vehicle_id, fuel_type, period_key, allocation_period, allocated_quota_ml, " +
+            "remaining_quota_ml, start_date, end_date, created_at, updated_at) " +
+            "VALUES (:vehicleId, :fuelType, :periodKey, 'MONTHLY', :allocated, :allocated, :startDate, :endDate, :now, :now) " +
+            "ON DUPLICATE KEY UPDATE allocated_quota_ml = VALUES(allocated_quota_ml), remaining_quota_ml = VALUES(remaining_quota_ml), " +
+            "created_at = VALUES(created_at), updated_at = VALUES(updated_at)", nativeQuery = true)
+    int upsertAllocation(@Param("vehicleId") Long vehicleId,
+                         @Param("fuelType") String fuelType,
+                         @Param("periodKey") int periodKey,
+                         @Param("allocated") long allocatedQuotaMl,
+                         @Param("startDate") long startDate,
+                         @Param("endDate") long endDate,
+                         @Param("now") long now);
+
+    // Balance check and deduction in a single statement, so two concurrent pumps cannot both pass.
+    // Litres held by other stations' reservations are not available to this pump.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE FuelQuota q SET q.remainingQuotaMl = q.remainingQuotaMl - :amount, q.updatedAt = :now " +
+            "WHERE q.vehicle.id = :vehicleId AND q.fuelType = :fuelType " +
+            "AND q.periodKey = :periodKey AND q.remainingQuotaMl - :held >= :amount")
+    int deductIfSufficient(@Param("vehicleId") Long vehicleId,
+                           @Param("fuelType") String fuelType,
+                           @Param("periodKey") int periodKey,
+                           @Param("amount") long amountMl,
+                           @Param("held") long heldMl,
+                           @Param("now") long now);
+}
@@ -2,10 +2,18 @@ package com.example.fuelQuotaManagementSystem.repository;
 
 import com.example.fuelQuotaManagementSystem.entity.FuelStation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import java.util.List;
 import java.util.Optional;
 
 public interface FuelStationRepository extends JpaRepository<FuelStation, Long> {
     List<FuelStation> findByOwnerId(Long ownerId);
+    long countByIsActiveTrue();
     Optional<FuelStation> findByRegistrationNumber(String registrationNumber);
+
+    // Owner id alone, for access checks that do not need the whole station
+    @Query("SELECT f.owner.id FROM FuelStation f WHERE f.id = :stationId")
+    Optional<Long> findOwnerIdById(@Param("stationId") Long stationId);
 }
\ No newline at end of file
@@ -1,13 +1,81 @@
 package com.example.fuelQuotaManagementSystem.repository;
 
+import com.example.fuelQuotaManagementSystem.dto.FuelTransactionHistoryItem;
 import com.example.fuelQuotaManagementSystem.entity.FuelTransaction;
 import com.example.fuelQuotaManagementSystem.entity.Vehicle;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface FuelTransactionRepository extends JpaRepository<FuelTransaction, Long> {
+
     List<FuelTransaction> findByVehicleOrderByTimestampDesc(Vehicle vehicle);
     List<FuelTransaction> findByVehicleIdOrderByTimestampDesc(Long vehicleId);
 
     List<FuelTransaction> findByStationIdOrderByTimestampDesc(Long stationId);
+
+    // One page of history rows, newest first, strictly after the (timestamp, id) cursor of the previous page.
+    // Only the displayed columns are selected, with vehicle and station joined in the same query.
+    @Query("SELECT new com.example.fuelQuotaManagementSystem.dto.FuelTransactionHistoryItem(" +
+            "t.id, v.registrationNumber, s.name, t.fuelType, t.amountMl, t.quotaBeforeMl, t.quotaAfterMl, " +
+            "t.notificationSent, t.timestamp) " +
+            "FROM FuelTransaction t JOIN t.vehicle v JOIN t.station s " +
+            "WHERE t.vehicle.id = :vehicleId " +
+            "AND (t.timestamp < :beforeTimestamp OR (t.timestamp = :beforeTimestamp AND t.id < :beforeId)) " +
+            "ORDER BY t.timestamp DESC, t.id DESC")
+    List<FuelTransactionHistoryItem> findHistoryPageByVehicleId(@Param("vehicleId") Long vehicleId,
+                                                               @Param("beforeTimestamp") long beforeTimestamp,
+                                                               @Param("beforeId") long beforeId,
+                                                               Pageable pageable);
+
+    @Query("SELECT new com.example.fuelQuotaManagementSystem.dto.FuelTransactionHistoryItem(" +
+            "t.id, v.registrationNumber, s.name, t.fuelType, t.amountMl, t.quotaBeforeMl, t.quotaAfterMl, " +
+            "t.notificationSent, t.timestamp) " +
+            "FROM FuelTransaction t JOIN t.vehicle v JOIN t.station s " +
+            "WHERE t.station.id = :stationId " +
+            "AND (t.timestamp < :beforeTimestamp OR (t.timestamp = :beforeTimestamp AND t.id < :beforeId)) " +
+            "ORDER BY t.timestamp DESC, t.id DESC")
+    List<FuelTransactionHistoryItem> findHistoryPageByStationId(@Param("stationId") Long stationId,
+                                                               @Param("beforeTimestamp") long beforeTimestamp,
+                                                               @Param("beforeId") long beforeId,
+                                                               Pageable pageable);
+
+    // Transactions in a time range, oldest first, strictly after the (timestamp, id) cursor; read chunk by chunk for exports
+    @Query("SELECT new com.example.fuelQuotaManagementSystem.dto.FuelTransactionHistoryItem(" +
+            "t.id, v.registrationNumber, s.name, t.fuelType, t.amountMl, t.quotaBeforeMl, t.quotaAfterMl, " +
+            "t.notificationSent, t.timestamp) " +
+            "FROM FuelTransaction t JOIN t.vehicle v JOIN t.station s " +
+            "WHERE t.timestamp >= :from AND t.timestamp <= :until " +
+            "AND (t.timestamp > :afterTimestamp OR (t.timestamp = :afterTimestamp AND t.id > :afterId)) " +
+            "ORDER BY t.timestamp, t.id")
+    List<FuelTransactionHistoryItem> findHistoryPageBetween(@Param("from") long from,
+                                                           @Param("until") long until,
+                                                           @Param("afterTimestamp") long afterTimestamp,
+                                                           @Param("afterId") long afterId,
+                                                           Pageable pageable);
+
+    // Per fuel type: [fuelType, count, sum of amountMl, count without notification]; a range scan on the timestamp index
+    @Query("SELECT t.fuelType, COUNT(t), SUM(t.amountMl), SUM(CASE WHEN t.notificationSent = false THEN 1 ELSE 0 END) " +
+            "FROM FuelTransaction t WHERE t.timestamp >= :from AND t.timestamp <= :until GROUP BY t.fuelType")
+    List<Object[]> sumByFuelTypeBetween(@Param("from") long from, @Param("until") long until);
+
+    // Per fuel type: [fuelType, count, sum of amountMl]; scans the narrower timestamp index rather than the table
+    @Query("SELECT t.fuelType, COUNT(t), SUM(t.amountMl) FROM FuelTransaction t GROUP BY t.fuelType")
+    List<Object[]> sumByFuelType();
+
+    // Probes of the (station_id, idempotency_key) unique index
+    Optional<FuelTransaction> findByStationIdAndIdempotencyKey(Long stationId, String idempotencyKey);
+    List<FuelTransaction> findByStationIdAndIdempotencyKeyIn(Long stationId, Collection<String> idempotencyKeys);
+
+    @Query("SELECT MIN(t.quotaAfterMl) FROM FuelTransaction t WHERE t.vehicle.id = :vehicleId " +
+            "AND t.fuelType = :fuelType AND t.timestamp >= :since AND t.timestamp <= :until")
+    Long findLowestQuotaAfterMl(@Param("vehicleId") Long vehicleId,
+                                @Param("fuelType") String fuelType,
+                                @Param("since") long since,
+                                @Param("until") long until);
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.example.fuelQuotaManagementSystem.repository;
+
+import com.example.fuelQuotaManagementSystem.entity.NotificationOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+    long countByStatus(String status);
+}
@@ -0,0 +1,39 @@
+package com.example.fuelQuotaManagementSystem.repository;
+
+import com.example.fuelQuotaManagementSystem.entity.RefreshToken;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    // Locking read: sees rows committed after the transaction's snapshot was taken
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM RefreshToken r WHERE r.tokenHash = :tokenHash")
+    Optional<RefreshToken> findByTokenHashForUpdate(@Param("tokenHash") String tokenHash);
+
+    // Returns 0 if another request already used the token
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.usedAt = :now WHERE r.id = :id AND r.usedAt IS NULL")
+    int markUsed(@Param("id") Long id, @Param("now") Long now);
+
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.usedAt = :now WHERE r.familyId = :familyId AND r.usedAt IS NULL")
+    int revokeFamily(@Param("familyId") String familyId, @Param("now") Long now);
+
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.usedAt = :now WHERE r.username = :username AND r.usedAt IS NULL")
+    int revokeAllForUser(@Param("username") String username, @Param("now") Long now);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RefreshToken r WHERE r.expiresAt <= :now")
+    int deleteExpired(@Param("now") Long now);
+}
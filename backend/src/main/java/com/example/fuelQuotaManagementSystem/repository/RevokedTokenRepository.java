@@ -0,0 +1,33 @@
+package com.example.fuelQuotaManagementSystem.repository;
+
+import com.example.fuelQuotaManagementSystem.entity.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, Long> {
+    // Records the revocation unless the jti already is; never fails on the unique index when two revocations race
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO revoked_tokens (jti, username, expires_at, revoked_at) " +
+            "VALUES (:jti, :username, :expiresAt, :revokedAt) " +
+            "ON DUPLICATE KEY UPDATE id = id", nativeQuery = true)
+    int insertIfAbsent(@Param("jti") String jti,
+                       @Param("username") String username,
+                       @Param("expiresAt") long expiresAt,
+                       @Param("revokedAt") long revokedAt);
+
+    // Revocations added since the last sync, in id order
+    List<RevokedToken> findTop1000ByIdGreaterThanOrderByIdAsc(Long id);
+
+    List<RevokedToken> findByExpiresAtGreaterThan(Long now);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RevokedToken r WHERE r.expiresAt <= :now")
+    int deleteExpired(@Param("now") Long now);
+}
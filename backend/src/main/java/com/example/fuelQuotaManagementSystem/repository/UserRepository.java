@@ -2,6 +2,12 @@ package com.example.fuelQuotaManagementSystem.repository;
 
 import com.example.fuelQuotaManagementSystem.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -9,4 +15,17 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+
+    // [role, number of users] straight from user_roles, without loading users
+    @Query(value = "SELECT roles, COUNT(DISTINCT user_id) FROM user_roles GROUP BY roles", nativeQuery = true)
+    List<Object[]> countUsersByRole();
+
+    // [roles_changed_at, tokens_not_before] alone, for the JWT filter's per-request checks; empty if no such user
+    @Query("SELECT u.rolesChangedAt, u.tokensNotBefore FROM User u WHERE u.username = :username")
+    List<Object[]> findTokenCutoffsByUsername(@Param("username") String username);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.tokensNotBefore = :notBefore WHERE u.username = :username")
+    int updateTokensNotBefore(@Param("username") String username, @Param("notBefore") Long notBefore);
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.example.fuelQuotaManagementSystem.repository;
+
+import com.example.fuelQuotaManagementSystem.entity.VehicleQrCode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface VehicleQrCodeRepository extends JpaRepository<VehicleQrCode, Long> {
+
+    @Query("SELECT q.payload FROM VehicleQrCode q WHERE q.vehicleId = :vehicleId")
+    Optional<String> findPayloadByVehicleId(@Param("vehicleId") Long vehicleId);
+}
@@ -2,11 +2,31 @@ package com.example.fuelQuotaManagementSystem.repository;
 
 import com.example.fuelQuotaManagementSystem.entity.Vehicle;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import java.util.List;
 import java.util.Optional;
 
 public interface VehicleRepository extends JpaRepository<Vehicle, Long> {
     Optional<Vehicle> findByRegistrationNumber(String registrationNumber);
+
+    @Query("SELECT v.id FROM Vehicle v WHERE v.registrationNumber = :registrationNumber")
+    Optional<Long> findIdByRegistrationNumber(@Param("registrationNumber") String registrationNumber);
     List<Vehicle> findByOwnerId(Long ownerId);
     boolean existsByRegistrationNumber(String registrationNumber);
+
+    // [vehicleType, number of vehicles]
+    @Query("SELECT v.vehicleType, COUNT(v) FROM Vehicle v GROUP BY v.vehicleType")
+    List<Object[]> countByVehicleType();
+
+    // Owner id alone, for access checks that do not need the whole vehicle
+    @Query("SELECT v.owner.id FROM Vehicle v WHERE v.id = :vehicleId")
+    Optional<Long> findOwnerIdById(@Param("vehicleId") Long vehicleId);
+
+    // Marks the vehicle changed without loading it, e.g. after its QR code was reissued
+    @Modifying
+    @Query("UPDATE Vehicle v SET v.updatedAt = :now WHERE v.id = :vehicleId")
+    int touchUpdatedAt(@Param("vehicleId") Long vehicleId, @Param("now") Long now);
 }
\ No newline at end of file
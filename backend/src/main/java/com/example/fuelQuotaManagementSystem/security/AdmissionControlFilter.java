@@ -0,0 +1,89 @@
+package com.example.fuelQuotaManagementSystem.security;
+
+import com.example.fuelQuotaManagementSystem.service.AdmissionControlService;
+import com.example.fuelQuotaManagementSystem.service.AdmissionControlService.EndpointClass;
+import com.example.fuelQuotaManagementSystem.service.AdmissionControlService.Outcome;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// Runs after JWT authentication so queued requests can be grouped by station operator
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        EndpointClass endpointClass = classify(request);
+        if (endpointClass == null || !admissionControlService.isEnabled()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Outcome outcome = admissionControlService.admit(endpointClass, stationKey(request));
+
+        if (outcome == Outcome.REJECTED_FAIR_SHARE) {
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, "Too many requests from this station. Please retry shortly.");
+            return;
+        }
+        if (outcome == Outcome.REJECTED_OVERLOADED) {
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, "System is busy. Please retry shortly.");
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            admissionControlService.release(endpointClass);
+        }
+    }
+
+    private EndpointClass classify(HttpServletRequest request) {
+        String path = request.getServletPath();
+        if ("POST".equals(request.getMethod()) && path.startsWith("/api/fuel/pump")) {
+            return EndpointClass.PUMP;
+        }
+        if ("GET".equals(request.getMethod()) && path.startsWith("/api/fuel/quota/scan/")) {
+            return EndpointClass.SCAN;
+        }
+        // The hold placed right after a scan belongs to the same step at the pump
+        if ("POST".equals(request.getMethod()) && path.equals("/api/fuel/quota/reserve")) {
+            return EndpointClass.SCAN;
+        }
+        return null;
+    }
+
+    private String stationKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserDetailsImpl userDetails) {
+            return "user:" + userDetails.getId();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setHeader("Retry-After", String.valueOf(admissionControlService.getRetryAfterSeconds()));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+        final Map<String, Object> body = new HashMap<>();
+        body.put("message", message);
+        mapper.writeValue(response.getOutputStream(), body);
+    }
+}
@@ -24,17 +24,37 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @Autowired
+    private TokenRevocationStore tokenRevocationStore;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
             if (jwt != null) {
-                String username = tokenProvider.getUsernameFromToken(jwt);
+                // Verifies signature and expiry; throws for invalid tokens
+                JwtTokenProvider.TokenClaims claims = tokenProvider.parseToken(jwt);
+                String username = claims.getUsername();
 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                if ((claims.getTokenId() != null && tokenRevocationStore.isRevoked(claims.getTokenId()))
+                        || userDetailsCache.revokedAfter(username, claims.getIssuedAt())) {
+                    // Revoked before its expiry, alone or with all of the user's tokens: the request carries on unauthenticated
+                    logger.debug("Rejected revoked token of " + username);
+                } else {
+                    UserDetails userDetails;
+                    if (claims.carriesPrincipal() && !userDetailsCache.changedSince(username, claims.getIssuedAt())) {
+                        // Id and roles come from the token itself
+                        userDetails = UserDetailsImpl.build(claims);
+                    } else {
+                        // Older token, or the user changed after it was issued: use the current user, cached
+                        userDetails = userDetailsCache.get(username,
+                                name -> (UserDetailsImpl) userDetailsService.loadUserByUsername(name));
+                    }
 
-                if (tokenProvider.validateToken(jwt, userDetails)) {
                     UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                             userDetails, null, userDetails.getAuthorities());
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
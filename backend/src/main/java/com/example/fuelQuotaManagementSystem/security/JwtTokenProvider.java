@@ -3,37 +3,78 @@ package com.example.fuelQuotaManagementSystem.security;
 import com.example.fuelQuotaManagementSystem.security.UserDetailsImpl;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.UUID;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtTokenProvider {
 
+    // Tokens carry the user id and role names, so requests can be authenticated from the token alone
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLES_CLAIM = "roles";
+
     @Value("${jwt.secret}")
     private String jwtSecret;
 
     @Value("${jwt.expiration}")
     private Long jwtExpirationInMs;
 
+    private Key signingKey;
+
+    // Immutable and thread-safe once built, so one parser serves every request
+    private JwtParser parser;
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
+
     // Generate token
     public String generateToken(Authentication authentication) {
-        UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+        return generateToken((UserDetailsImpl) authentication.getPrincipal());
+    }
+
+    public String generateToken(UserDetailsImpl userPrincipal) {
+        List<String> roles = userPrincipal.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toList());
 
         return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(userPrincipal.getUsername())
+                .claim(USER_ID_CLAIM, userPrincipal.getId())
+                .claim(ROLES_CLAIM, roles)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationInMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    public long getExpirationMillis() {
+        return jwtExpirationInMs;
+    }
+
+    // Verify signature and expiry once; throws JwtException (e.g. ExpiredJwtException) for invalid tokens
+    public TokenClaims parseToken(String token) {
+        return new TokenClaims(parser.parseClaimsJws(token).getBody());
+    }
+
     // Get username from token
     public String getUsernameFromToken(String token) {
         return getClaimFromToken(token, Claims::getSubject);
@@ -45,34 +86,52 @@ public class JwtTokenProvider {
     }
 
     public <T> T getClaimFromToken(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = getAllClaimsFromToken(token);
-        return claimsResolver.apply(claims);
+        return claimsResolver.apply(parser.parseClaimsJws(token).getBody());
     }
 
-    // Validate token
+    // Validate token; expired tokens already fail to parse
     public boolean validateToken(String token, UserDetails userDetails) {
-        final String username = getUsernameFromToken(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        try {
+            return parseToken(token).getUsername().equals(userDetails.getUsername());
+        } catch (JwtException | IllegalArgumentException e) {
+            return false;
+        }
     }
 
-    // Check if token is expired
-    private Boolean isTokenExpired(String token) {
-        final Date expiration = getExpirationDateFromToken(token);
-        return expiration.before(new Date());
-    }
+    /**
+     * Read-only view of a verified token. Token id, user id and roles are null for tokens issued
+     * before they were added to the claims.
+     */
+    public static final class TokenClaims {
+        private final String tokenId;
+        private final String username;
+        private final Long userId;
+        private final List<String> roles;
+        private final long issuedAt;
+        private final long expiresAt;
 
-    // Get all claims from token
-    private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
+        private TokenClaims(Claims claims) {
+            this.tokenId = claims.getId();
+            this.username = claims.getSubject();
+            this.userId = claims.get(USER_ID_CLAIM, Long.class);
+            List<?> roleClaim = claims.get(ROLES_CLAIM, List.class);
+            this.roles = roleClaim != null
+                    ? Collections.unmodifiableList(roleClaim.stream().map(String::valueOf).collect(Collectors.toList()))
+                    : null;
+            this.issuedAt = claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() : 0;
+            this.expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+        }
+
+        public boolean carriesPrincipal() {
+            return userId != null && roles != null;
+        }
 
-    // Get signing key
-    private Key getSigningKey() {
-        byte[] keyBytes = jwtSecret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+        // Getters
+        public String getTokenId() { return tokenId; }
+        public String getUsername() { return username; }
+        public Long getUserId() { return userId; }
+        public List<String> getRoles() { return roles; }
+        public long getIssuedAt() { return issuedAt; }
+        public long getExpiresAt() { return expiresAt; }
     }
-}
\ No newline at end of file
+}
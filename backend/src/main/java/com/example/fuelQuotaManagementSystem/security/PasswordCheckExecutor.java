@@ -0,0 +1,86 @@
+package com.example.fuelQuotaManagementSystem.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small dedicated pool for password checks (BCrypt), so a burst of sign-ins, e.g. at a shift change,
+ * uses a bounded share of the CPU instead of competing with pump and scan requests. When the pool and
+ * its queue are full, or a check waits longer than max-wait-ms, callers get a RejectedExecutionException
+ * straight away and should answer 503.
+ */
+@Component
+public class PasswordCheckExecutor {
+
+    @Value("${auth.password-check.threads:2}")
+    private int threads;
+
+    @Value("${auth.password-check.max-queue:50}")
+    private int maxQueue;
+
+    @Value("${auth.password-check.max-wait-ms:3000}")
+    private long maxWaitMillis;
+
+    @Value("${auth.password-check.retry-after-seconds:2}")
+    private int retryAfterSeconds;
+
+    private ThreadPoolExecutor pool;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueue),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-check-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        pool.shutdownNow();
+    }
+
+
+     //Run the check on the pool and wait for it; the check's own runtime exceptions are rethrown as they are
+
+    public <T> T run(Callable<T> check) {
+        // Throws RejectedExecutionException when the pool and its queue are full
+        Future<T> future = pool.submit(check);
+
+        try {
+            return future.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RejectedExecutionException("Password check timed out");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted waiting for password check");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
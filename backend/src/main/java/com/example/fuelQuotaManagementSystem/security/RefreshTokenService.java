@@ -0,0 +1,171 @@
+package com.example.fuelQuotaManagementSystem.security;
+
+import com.example.fuelQuotaManagementSystem.entity.RefreshToken;
+import com.example.fuelQuotaManagementSystem.repository.RefreshTokenRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Rotating refresh tokens, so clients renew short-lived access tokens without sending the password
+ * again (and without a BCrypt check). Each token works once and is replaced by a new one; presenting
+ * an already used token means it was copied, so its whole family is revoked and the user has to sign in.
+ *
+ * Two browser tabs, or a retry after a lost response, can present the same token moments apart. A
+ * successor is derived from its predecessor with an HMAC under jwt.secret, so within
+ * jwt.refresh-reuse-grace-ms of the first use the server can hand out that same successor again
+ * without storing it. Both callers then hold one token, and the chain stays single. After the
+ * window, or once the successor has been used or revoked, the reuse is treated as theft.
+ */
+@Service
+public class RefreshTokenService {
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Value("${jwt.refresh-expiration:1209600000}")
+    private long refreshExpirationMillis;
+
+    @Value("${jwt.refresh-reuse-grace-ms:10000}")
+    private long reuseGraceMillis;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    private final SecureRandom random = new SecureRandom();
+
+
+     //New token family for a sign-in; returns the token to hand to the client
+
+    @Transactional
+    public String issue(String username) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        return create(token, username, UUID.randomUUID().toString(), System.currentTimeMillis());
+    }
+
+
+     //Exchange a refresh token for its successor; throws BadCredentialsException if it is unknown, expired or reused
+
+    @Transactional(noRollbackFor = BadCredentialsException.class)
+    public Rotation rotate(String token) {
+        long now = System.currentTimeMillis();
+        RefreshToken current = refreshTokenRepository.findByTokenHash(hash(token))
+                .orElseThrow(() -> new BadCredentialsException("Invalid refresh token"));
+
+        if (current.getUsedAt() != null || refreshTokenRepository.markUsed(current.getId(), now) == 0) {
+            // Used by a concurrent request if usedAt is still unset here
+            long usedAt = current.getUsedAt() != null ? current.getUsedAt() : now;
+            String successor = successorOf(token);
+            if (now - usedAt <= reuseGraceMillis && isLiveSuccessor(successor, current)) {
+                return new Rotation(current.getUsername(), successor);
+            }
+
+            refreshTokenRepository.revokeFamily(current.getFamilyId(), now);
+            System.err.println("Refresh token reuse for user " + current.getUsername() + ", signed out token family");
+            throw new BadCredentialsException("Refresh token has already been used");
+        }
+        if (current.getExpiresAt() <= now) {
+            throw new BadCredentialsException("Refresh token has expired");
+        }
+
+        return new Rotation(current.getUsername(),
+                create(successorOf(token), current.getUsername(), current.getFamilyId(), now));
+    }
+
+
+     //Revoke the family of a refresh token, e.g. at sign-out; unknown tokens are ignored
+
+    @Transactional
+    public void revoke(String token) {
+        refreshTokenRepository.findByTokenHash(hash(token))
+                .ifPresent(current -> refreshTokenRepository.revokeFamily(current.getFamilyId(), System.currentTimeMillis()));
+    }
+
+
+     //Revoke every refresh token of a user, e.g. after a password change
+
+    @Transactional
+    public void revokeAll(String username) {
+        refreshTokenRepository.revokeAllForUser(username, System.currentTimeMillis());
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.refresh-cleanup-interval-ms:3600000}")
+    public void deleteExpired() {
+        try {
+            refreshTokenRepository.deleteExpired(System.currentTimeMillis());
+        } catch (Exception e) {
+            System.err.println("Failed to delete expired refresh tokens: " + e.getMessage());
+        }
+    }
+
+    private String create(String token, String username, String familyId, long now) {
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.setTokenHash(hash(token));
+        refreshToken.setUsername(username);
+        refreshToken.setFamilyId(familyId);
+        refreshToken.setExpiresAt(now + refreshExpirationMillis);
+        refreshToken.setCreatedAt(now);
+        refreshTokenRepository.save(refreshToken);
+        return token;
+    }
+
+    // A successor that its rotation committed and that nobody has used or revoked since
+    private boolean isLiveSuccessor(String successor, RefreshToken current) {
+        // Locking read, so a rotation that committed while we waited on the row is seen
+        return refreshTokenRepository.findByTokenHashForUpdate(hash(successor))
+                .filter(next -> next.getUsedAt() == null && next.getFamilyId().equals(current.getFamilyId()))
+                .isPresent();
+    }
+
+    // The only token a rotation of this one ever produces; unguessable without jwt.secret
+    private String successorOf(String token) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(jwtSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            mac.update("refresh-token-successor:".getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Tokens are 256 random or HMAC-derived bits, so an unsalted fast hash is enough to keep them out of the database
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class Rotation {
+        private final String username;
+        private final String refreshToken;
+
+        private Rotation(String username, String refreshToken) {
+            this.username = username;
+            this.refreshToken = refreshToken;
+        }
+
+        // Getters
+        public String getUsername() { return username; }
+        public String getRefreshToken() { return refreshToken; }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.fuelQuotaManagementSystem.security;
+
+import com.example.fuelQuotaManagementSystem.entity.RevokedToken;
+import com.example.fuelQuotaManagementSystem.repository.RevokedTokenRepository;
+import com.example.fuelQuotaManagementSystem.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ids (jti) of tokens revoked before their expiry, mirrored from the revoked_tokens table so the
+ * JWT filter can check a token without a query. A Bloom filter answers the common "not revoked"
+ * case; only its positives, real or false, consult the exact set.
+ *
+ * Other backend instances' revocations arrive by an incremental read of new rows. The periodic
+ * cleanup drops expired entries, rebuilds the filter (Bloom filters cannot delete) and re-reads
+ * all live rows, which also picks up rows whose ids committed out of order.
+ *
+ * Revoking every token of a user does not list them: it persists users.tokens_not_before, which
+ * the JWT filter checks through UserDetailsCache, and covers tokens without a jti too.
+ */
+@Component
+public class TokenRevocationStore {
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @Value("${auth.revocation.expected-entries:10000}")
+    private int expectedEntries;
+
+    // jti -> expiry of the revoked token
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter filter;
+
+    // Highest revoked_tokens id already read
+    private volatile long lastSeenId;
+
+    @PostConstruct
+    public void init() {
+        filter = new BloomFilter(expectedEntries);
+        cleanup();
+    }
+
+
+     //True if the token id was revoked; a few nanoseconds for tokens that were not
+
+    public boolean isRevoked(String jti) {
+        return filter.mightContain(jti) && revoked.containsKey(jti);
+    }
+
+
+     //Revoke a token until its expiry, for this and (after their next sync) every other backend instance
+
+    public void revoke(String jti, String username, long expiresAt) {
+        long now = System.currentTimeMillis();
+        if (expiresAt <= now || isRevoked(jti)) {
+            return;
+        }
+
+        revokedTokenRepository.insertIfAbsent(jti, username, expiresAt, now);
+        add(jti, expiresAt);
+    }
+
+
+     //Revoke every access token issued to the user until now; false if there is no such user
+
+    public boolean revokeAllFor(String username) {
+        // Issue times in tokens have second resolution, so start at the next whole second: a token
+        // issued earlier in this second may come from before the revocation
+        long notBefore = (System.currentTimeMillis() / 1000 + 1) * 1000;
+        if (userRepository.updateTokensNotBefore(username, notBefore) == 0) {
+            return false;
+        }
+        userDetailsCache.tokensRevoked(username, notBefore);
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${auth.revocation.sync-interval-ms:5000}")
+    public void sync() {
+        try {
+            List<RevokedToken> rows;
+            do {
+                rows = revokedTokenRepository.findTop1000ByIdGreaterThanOrderByIdAsc(lastSeenId);
+                for (RevokedToken row : rows) {
+                    add(row.getJti(), row.getExpiresAt());
+                    lastSeenId = Math.max(lastSeenId, row.getId());
+                }
+            } while (!rows.isEmpty());
+        } catch (Exception e) {
+            System.err.println("Failed to sync revoked tokens: " + e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${auth.revocation.cleanup-interval-ms:300000}", initialDelayString = "${auth.revocation.cleanup-interval-ms:300000}")
+    public void cleanup() {
+        long now = System.currentTimeMillis();
+        try {
+            revokedTokenRepository.deleteExpired(now);
+            List<RevokedToken> live = revokedTokenRepository.findByExpiresAtGreaterThan(now);
+            rebuild(live, now);
+        } catch (Exception e) {
+            System.err.println("Failed to reload revoked tokens: " + e.getMessage());
+        }
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    // Writers are serialised so a rebuild cannot drop an entry added while it ran; readers never lock
+    private synchronized void add(String jti, long expiresAt) {
+        if (expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        revoked.put(jti, expiresAt);
+        filter.put(jti);
+    }
+
+    private synchronized void rebuild(List<RevokedToken> live, long now) {
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        for (RevokedToken row : live) {
+            revoked.put(row.getJti(), row.getExpiresAt());
+            lastSeenId = Math.max(lastSeenId, row.getId());
+        }
+
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, revoked.size() * 2));
+        for (String jti : revoked.keySet()) {
+            rebuilt.put(jti);
+        }
+        filter = rebuilt;
+    }
+
+    // About 1% false positives at the sized capacity: 10 bits and 7 probes per entry
+    private static final class BloomFilter {
+        private static final int PROBES = 7;
+
+        private final AtomicLongArray bits;
+        private final long bitCount;
+
+        private BloomFilter(int capacity) {
+            int words = Math.max(1, (int) ((capacity * 10L + 63) / 64));
+            this.bits = new AtomicLongArray(words);
+            this.bitCount = words * 64L;
+        }
+
+        void put(String key) {
+            long hash = hash(key);
+            long h1 = mix(hash);
+            long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < PROBES; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                do {
+                    current = bits.get(word);
+                } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        boolean mightContain(String key) {
+            long hash = hash(key);
+            long h1 = mix(hash);
+            long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < PROBES; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // 64-bit FNV-1a over the characters
+        private static long hash(String key) {
+            long h = 0xCBF29CE484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                h ^= key.charAt(i);
+                h *= 0x100000001B3L;
+            }
+            return h;
+        }
+
+        // Murmur3 finaliser
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB93FE1A85EC3L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.fuelQuotaManagementSystem.security;
+
+import com.example.fuelQuotaManagementSystem.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Principals resolved by JwtAuthenticationFilter, keyed by username, so authenticated requests
+ * do not query users and user_roles every time. Bounded (least recently used evicted first) and
+ * time-limited; code that changes a user's roles, password or profile must call invalidate.
+ *
+ * Tokens that carry their roles are only trusted for them if they were issued after the user's
+ * last role change, and no token is accepted if it was issued before the user's tokens were
+ * revoked. Both times are persisted on the users row (roles_changed_at, tokens_not_before) so
+ * every backend instance sees them. They are re-read at most every
+ * auth.user-cache.change-check-seconds per user (0 reads them on every request), which is how long
+ * another instance may still accept the old roles, or a revoked token, after the change; on the
+ * instance that made the change it takes effect at once.
+ *
+ * The TTL bounds how long another backend instance can keep serving a stale cached principal,
+ * since invalidation only reaches the local cache.
+ */
+@Component
+public class UserDetailsCache {
+
+    @Value("${auth.user-cache.size:10000}")
+    private int cacheSize;
+
+    @Value("${auth.user-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${auth.user-cache.change-check-seconds:5}")
+    private long changeCheckSeconds;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Map<String, CachedUser> users;
+    // Username -> its persisted change times, merged with those recorded here, and when to re-read them
+    private Map<String, Cutoffs> cutoffs;
+
+    // Bumped by every invalidation; a load that overlapped one is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        users = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                return size() > cacheSize;
+            }
+        });
+        cutoffs = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cutoffs> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+
+     //Cached principal for the username, or the loader's result, cached unless it raced an invalidation
+
+    public UserDetailsImpl get(String username, Function<String, UserDetailsImpl> loader) {
+        CachedUser cached = users.get(username);
+        long now = System.currentTimeMillis();
+        if (cached != null && cached.expiresAt > now) {
+            return cached.userDetails;
+        }
+
+        long invalidationsBefore = invalidations.get();
+        UserDetailsImpl userDetails = loader.apply(username);
+        if (invalidations.get() == invalidationsBefore) {
+            users.put(username, new CachedUser(userDetails, now + ttlSeconds * 1000));
+        }
+        return userDetails;
+    }
+
+
+    public void invalidate(String username) {
+        invalidations.incrementAndGet();
+        long now = System.currentTimeMillis();
+        cutoffs.merge(username, new Cutoffs(now, 0, now + changeCheckSeconds * 1000), Cutoffs::latest);
+        users.remove(username);
+    }
+
+
+     //Record here that the user's tokens issued before notBefore were revoked, once it has been persisted
+
+    public void tokensRevoked(String username, long notBefore) {
+        long now = System.currentTimeMillis();
+        cutoffs.merge(username, new Cutoffs(0, notBefore, now + changeCheckSeconds * 1000), Cutoffs::latest);
+    }
+
+
+     //True if the user's roles changed, or the user was invalidated here, at or after the given time, e.g. a token's issue time
+
+    public boolean changedSince(String username, long timestamp) {
+        return cutoffs(username).rolesChangedAt >= timestamp;
+    }
+
+
+     //True if the user's tokens were revoked after a token with this issue time was issued
+
+    public boolean revokedAfter(String username, long issuedAt) {
+        return issuedAt < cutoffs(username).tokensNotBefore;
+    }
+
+    private Cutoffs cutoffs(String username) {
+        long now = System.currentTimeMillis();
+        Cutoffs current = cutoffs.get(username);
+        if (current != null && current.recheckAt > now) {
+            return current;
+        }
+
+        long rolesChangedAt = 0;
+        long tokensNotBefore = 0;
+        List<Object[]> rows = userRepository.findTokenCutoffsByUsername(username);
+        if (!rows.isEmpty()) {
+            rolesChangedAt = rows.get(0)[0] != null ? ((Number) rows.get(0)[0]).longValue() : 0;
+            tokensNotBefore = rows.get(0)[1] != null ? ((Number) rows.get(0)[1]).longValue() : 0;
+        }
+        // Merged rather than put, so a change recorded here while this read ran is not lost
+        return cutoffs.merge(username, new Cutoffs(rolesChangedAt, tokensNotBefore, now + changeCheckSeconds * 1000), Cutoffs::latest);
+    }
+
+    private record CachedUser(UserDetailsImpl userDetails, long expiresAt) {
+    }
+
+    private record Cutoffs(long rolesChangedAt, long tokensNotBefore, long recheckAt) {
+
+        // Both times only move forward; the newer read decides when to look again
+        private static Cutoffs latest(Cutoffs current, Cutoffs fresh) {
+            return new Cutoffs(Math.max(current.rolesChangedAt, fresh.rolesChangedAt),
+                    Math.max(current.tokensNotBefore, fresh.tokensNotBefore),
+                    Math.max(current.recheckAt, fresh.recheckAt));
+        }
+    }
+}
@@ -45,6 +45,20 @@ public class UserDetailsImpl implements UserDetails {
                 authorities);
     }
 
+    // Principal taken from a verified token that carries the user id and roles; no email or password
+    public static UserDetailsImpl build(JwtTokenProvider.TokenClaims claims) {
+        List<GrantedAuthority> authorities = claims.getRoles().stream()
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList());
+
+        return new UserDetailsImpl(
+                claims.getUserId(),
+                claims.getUsername(),
+                null,
+                null,
+                authorities);
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
@@ -40,6 +40,11 @@ public class WebSecurityConfig {
         return new JwtAuthenticationFilter();
     }
 
+    @Bean
+    public AdmissionControlFilter admissionControlFilter() {
+        return new AdmissionControlFilter();
+    }
+
     @Bean
     public DaoAuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
@@ -86,6 +91,7 @@ public class WebSecurityConfig {
 
         http.authenticationProvider(authenticationProvider());
         http.addFilterBefore(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
+        http.addFilterAfter(admissionControlFilter(), JwtAuthenticationFilter.class);
 
         return http.build();
     }
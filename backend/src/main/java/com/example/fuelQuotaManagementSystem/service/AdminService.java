@@ -5,12 +5,12 @@ import com.example.fuelQuotaManagementSystem.dto.admin.TopFuelConsumer;
 import com.example.fuelQuotaManagementSystem.dto.admin.UsageTrendsData;
 import com.example.fuelQuotaManagementSystem.entity.*;
 import com.example.fuelQuotaManagementSystem.repository.*;
+import com.example.fuelQuotaManagementSystem.security.UserDetailsCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
+import java.time.YearMonth;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -36,90 +36,117 @@ public class AdminService {
     @Autowired
     private FuelQuotaService fuelQuotaService;
 
+    @Autowired
+    private QuotaPeriodClock periodClock;
+
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
 
      //Generate comprehensive admin dashboard
 
     public AdminDashboardResponse getSystemDashboard() {
-        // Get all data
-        List<User> allUsers = userRepository.findAll();
-        List<Vehicle> allVehicles = vehicleRepository.findAll();
-        List<FuelStation> allStations = fuelStationRepository.findAll();
-        List<FuelTransaction> allTransactions = fuelTransactionRepository.findAll();
+        // Counts and sums are computed by the database; no entities are loaded
 
         // Get today's date range
-        LocalDate today = LocalDate.now();
-        long startOfDay = today.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-        long endOfDay = today.atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        LocalDate today = periodClock.today();
+        long startOfDay = periodClock.startOfDay();
+        long endOfDay = periodClock.endOfDay();
 
         // User statistics
-        long totalVehicleOwners = allUsers.stream().filter(u -> u.getRoles().contains(Role.ROLE_VEHICLE_OWNER)).count();
-        long totalStationOwners = allUsers.stream().filter(u -> u.getRoles().contains(Role.ROLE_STATION_OWNER)).count();
-        long totalAdmins = allUsers.stream().filter(u -> u.getRoles().contains(Role.ROLE_ADMIN)).count();
+        long totalUsers = userRepository.count();
+        long totalVehicleOwners = 0;
+        long totalStationOwners = 0;
+        long totalAdmins = 0;
+        for (Object[] row : userRepository.countUsersByRole()) {
+            long count = ((Number) row[1]).longValue();
+            if (Role.ROLE_VEHICLE_OWNER.name().equals(row[0])) {
+                totalVehicleOwners = count;
+            } else if (Role.ROLE_STATION_OWNER.name().equals(row[0])) {
+                totalStationOwners = count;
+            } else if (Role.ROLE_ADMIN.name().equals(row[0])) {
+                totalAdmins = count;
+            }
+        }
 
         // Vehicle statistics
-        long totalCars = allVehicles.stream().filter(v -> "Car".equalsIgnoreCase(v.getVehicleType())).count();
-        long totalMotorcycles = allVehicles.stream().filter(v -> "Motorcycle".equalsIgnoreCase(v.getVehicleType())).count();
-        long totalThreeWheelers = allVehicles.stream().filter(v -> "Three Wheeler".equalsIgnoreCase(v.getVehicleType())).count();
+        long totalVehicles = 0;
+        long totalCars = 0;
+        long totalMotorcycles = 0;
+        long totalThreeWheelers = 0;
+        for (Object[] row : vehicleRepository.countByVehicleType()) {
+            String vehicleType = (String) row[0];
+            long count = ((Number) row[1]).longValue();
+            totalVehicles += count;
+            if ("Car".equalsIgnoreCase(vehicleType)) {
+                totalCars += count;
+            } else if ("Motorcycle".equalsIgnoreCase(vehicleType)) {
+                totalMotorcycles += count;
+            } else if ("Three Wheeler".equalsIgnoreCase(vehicleType)) {
+                totalThreeWheelers += count;
+            }
+        }
 
         // Station statistics
-        long activeStations = allStations.stream().filter(FuelStation::isActive).count();
-        long inactiveStations = allStations.size() - activeStations;
+        long totalStations = fuelStationRepository.count();
+        long activeStations = fuelStationRepository.countByIsActiveTrue();
+        long inactiveStations = totalStations - activeStations;
 
         // Today's transaction statistics
-        List<FuelTransaction> todayTransactions = allTransactions.stream()
-                .filter(t -> t.getTimestamp() >= startOfDay && t.getTimestamp() <= endOfDay)
-                .collect(Collectors.toList());
-
-        double todayPetrol = todayTransactions.stream()
-                .filter(t -> "Petrol".equalsIgnoreCase(t.getFuelType()))
-                .mapToDouble(FuelTransaction::getAmount)
-                .sum();
-
-        double todayDiesel = todayTransactions.stream()
-                .filter(t -> "Diesel".equalsIgnoreCase(t.getFuelType()))
-                .mapToDouble(FuelTransaction::getAmount)
-                .sum();
+        long todayTransactions = 0;
+        long todayPetrolMl = 0;
+        long todayDieselMl = 0;
+        int failedNotifications = 0;
+        for (Object[] row : fuelTransactionRepository.sumByFuelTypeBetween(startOfDay, endOfDay)) {
+            todayTransactions += ((Number) row[1]).longValue();
+            if ("Petrol".equalsIgnoreCase((String) row[0])) {
+                todayPetrolMl += sumOf(row[2]);
+            } else if ("Diesel".equalsIgnoreCase((String) row[0])) {
+                todayDieselMl += sumOf(row[2]);
+            }
+            failedNotifications += (int) sumOf(row[3]);
+        }
+        double todayPetrol = FuelUnits.toLitres(todayPetrolMl);
+        double todayDiesel = FuelUnits.toLitres(todayDieselMl);
 
         // Total transaction statistics
-        double totalPetrol = allTransactions.stream()
-                .filter(t -> "Petrol".equalsIgnoreCase(t.getFuelType()))
-                .mapToDouble(FuelTransaction::getAmount)
-                .sum();
-
-        double totalDiesel = allTransactions.stream()
-                .filter(t -> "Diesel".equalsIgnoreCase(t.getFuelType()))
-                .mapToDouble(FuelTransaction::getAmount)
-                .sum();
+        long totalTransactions = 0;
+        long totalPetrolMl = 0;
+        long totalDieselMl = 0;
+        for (Object[] row : fuelTransactionRepository.sumByFuelType()) {
+            totalTransactions += ((Number) row[1]).longValue();
+            if ("Petrol".equalsIgnoreCase((String) row[0])) {
+                totalPetrolMl += sumOf(row[2]);
+            } else if ("Diesel".equalsIgnoreCase((String) row[0])) {
+                totalDieselMl += sumOf(row[2]);
+            }
+        }
+        double totalPetrol = FuelUnits.toLitres(totalPetrolMl);
+        double totalDiesel = FuelUnits.toLitres(totalDieselMl);
 
         // Current month quota statistics
-        List<FuelQuota> allQuotas = fuelQuotaRepository.findAll();
-        double currentMonthAllocated = allQuotas.stream().mapToDouble(FuelQuota::getAllocatedQuota).sum();
-        double currentMonthUsed = currentMonthAllocated - allQuotas.stream().mapToDouble(FuelQuota::getRemainingQuota).sum();
+        int periodKey = periodClock.monthPeriodKey();
+        double currentMonthAllocated = FuelUnits.toLitres(fuelQuotaRepository.sumAllocatedMlByPeriod(periodKey));
+        double currentMonthUsed = currentMonthAllocated - FuelUnits.toLitres(fuelQuotaRepository.sumRemainingMlByPeriod(periodKey));
         double utilizationPercentage = currentMonthAllocated > 0 ? (currentMonthUsed / currentMonthAllocated) * 100 : 0;
 
-        // System health
-        int failedNotifications = (int) allTransactions.stream()
-                .filter(t -> t.getTimestamp() >= startOfDay && t.getTimestamp() <= endOfDay)
-                .filter(t -> !t.isNotificationSent())
-                .count();
-
         return new AdminDashboardResponse(
-                (long) allUsers.size(),
+                totalUsers,
                 totalVehicleOwners,
                 totalStationOwners,
                 totalAdmins,
-                (long) allVehicles.size(),
+                totalVehicles,
                 totalCars,
                 totalMotorcycles,
                 totalThreeWheelers,
-                (long) allStations.size(),
+                totalStations,
                 activeStations,
                 inactiveStations,
-                (long) todayTransactions.size(),
+                todayTransactions,
                 todayPetrol,
                 todayDiesel,
                 todayPetrol + todayDiesel,
-                (long) allTransactions.size(),
+                totalTransactions,
                 totalPetrol,
                 totalDiesel,
                 totalPetrol + totalDiesel,
@@ -135,6 +162,12 @@ public class AdminService {
     }
 
 
+    // SUM over a group is null only if every value in it is null
+    private static long sumOf(Object value) {
+        return value != null ? ((Number) value).longValue() : 0;
+    }
+
+
      //Get all users in the system
 
     public List<User> getAllUsers() {
@@ -197,7 +230,10 @@ public class AdminService {
         }
 
         user.setRoles(newRoles);
-        return userRepository.save(user);
+        user.setRolesChangedAt(System.currentTimeMillis());
+        User savedUser = userRepository.save(user);
+        userDetailsCache.invalidate(savedUser.getUsername());
+        return savedUser;
     }
 
 
@@ -206,27 +242,28 @@ public class AdminService {
         // For now, we'll just verify the user exists
         // In a real implementation, you'd update an 'active' field
         System.out.println("User " + user.getUsername() + " status updated to: " + (active ? "Active" : "Inactive"));
+        userDetailsCache.invalidate(user.getUsername());
     }
 
 
     public Object getFuelConsumptionReport(LocalDate startDate, LocalDate endDate, String fuelType) {
-        long startTimestamp = startDate.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-        long endTimestamp = endDate.atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long startTimestamp = periodClock.startOfDay(startDate);
+        long endTimestamp = periodClock.endOfDay(endDate);
 
         List<FuelTransaction> transactions = fuelTransactionRepository.findAll().stream()
                 .filter(t -> t.getTimestamp() >= startTimestamp && t.getTimestamp() <= endTimestamp)
                 .filter(t -> fuelType == null || fuelType.isEmpty() || fuelType.equalsIgnoreCase(t.getFuelType()))
                 .collect(Collectors.toList());
 
-        double totalPetrol = transactions.stream()
+        double totalPetrol = FuelUnits.toLitres(transactions.stream()
                 .filter(t -> "Petrol".equalsIgnoreCase(t.getFuelType()))
-                .mapToDouble(FuelTransaction::getAmount)
-                .sum();
+                .mapToLong(FuelTransaction::getAmountMl)
+                .sum());
 
-        double totalDiesel = transactions.stream()
+        double totalDiesel = FuelUnits.toLitres(transactions.stream()
                 .filter(t -> "Diesel".equalsIgnoreCase(t.getFuelType()))
-                .mapToDouble(FuelTransaction::getAmount)
-                .sum();
+                .mapToLong(FuelTransaction::getAmountMl)
+                .sum());
 
         // Find most active station
         String mostActiveStation = transactions.stream()
@@ -239,8 +276,8 @@ public class AdminService {
         // Find peak consumption day
         String peakDay = transactions.stream()
                 .collect(Collectors.groupingBy(
-                        t -> LocalDate.ofInstant(java.time.Instant.ofEpochMilli(t.getTimestamp()), ZoneId.systemDefault()),
-                        Collectors.summingDouble(FuelTransaction::getAmount)
+                        t -> periodClock.dateOf(t.getTimestamp()),
+                        Collectors.summingLong(FuelTransaction::getAmountMl)
                 ))
                 .entrySet().stream()
                 .max(Map.Entry.comparingByValue())
@@ -268,25 +305,25 @@ public class AdminService {
         if (month != null && !month.isEmpty()) {
             // Filter by specific month if provided
             // This is a simplified filter - in production you'd parse the month parameter properly
-            LocalDate targetMonth = LocalDate.parse(month + "-01");
-            long monthStart = targetMonth.withDayOfMonth(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-            long monthEnd = targetMonth.withDayOfMonth(targetMonth.lengthOfMonth()).atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            YearMonth targetMonth = YearMonth.parse(month);
+            long monthStart = periodClock.startOfMonth(targetMonth);
+            long monthEnd = periodClock.endOfMonth(targetMonth);
 
             quotas = quotas.stream()
                     .filter(q -> q.getStartDate() >= monthStart && q.getEndDate() <= monthEnd)
                     .collect(Collectors.toList());
         }
 
-        double totalAllocated = quotas.stream().mapToDouble(FuelQuota::getAllocatedQuota).sum();
-        double totalUsed = quotas.stream().mapToDouble(q -> q.getAllocatedQuota() - q.getRemainingQuota()).sum();
-        double totalRemaining = quotas.stream().mapToDouble(FuelQuota::getRemainingQuota).sum();
+        double totalAllocated = FuelUnits.toLitres(quotas.stream().mapToLong(FuelQuota::getAllocatedQuotaMl).sum());
+        double totalUsed = FuelUnits.toLitres(quotas.stream().mapToLong(q -> q.getAllocatedQuotaMl() - q.getRemainingQuotaMl()).sum());
+        double totalRemaining = FuelUnits.toLitres(quotas.stream().mapToLong(FuelQuota::getRemainingQuotaMl).sum());
 
-        long fullyUtilized = quotas.stream().filter(q -> q.getRemainingQuota() <= 0).count();
-        long notUsed = quotas.stream().filter(q -> q.getRemainingQuota().equals(q.getAllocatedQuota())).count();
+        long fullyUtilized = quotas.stream().filter(q -> q.getRemainingQuotaMl() <= 0).count();
+        long notUsed = quotas.stream().filter(q -> q.getRemainingQuotaMl() == q.getAllocatedQuotaMl()).count();
 
         List<FuelQuota> finalQuotas = quotas;
         return new Object() {
-            public final String months = month != null ? month : LocalDate.now().getMonth().toString();
+            public final String months = month != null ? month : periodClock.today().getMonth().toString();
             public final Long totalVehicles = (long) finalQuotas.size();
             public final Double totalQuotaAllocated = totalAllocated;
             public final Double totalQuotaUsed = totalUsed;
@@ -300,8 +337,8 @@ public class AdminService {
 
 
     public Object getVehicleRegistrationReport(LocalDate startDate, LocalDate endDate) {
-        long startTimestamp = startDate.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-        long endTimestamp = endDate.atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long startTimestamp = periodClock.startOfDay(startDate);
+        long endTimestamp = periodClock.endOfDay(endDate);
 
         List<Vehicle> vehicles = vehicleRepository.findAll().stream()
                 .filter(v -> v.getCreatedAt() >= startTimestamp && v.getCreatedAt() <= endTimestamp)
@@ -339,8 +376,8 @@ public class AdminService {
 
 
     public Object getStationPerformanceReport(LocalDate startDate, LocalDate endDate) {
-        long startTimestamp = startDate.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-        long endTimestamp = endDate.atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long startTimestamp = periodClock.startOfDay(startDate);
+        long endTimestamp = periodClock.endOfDay(endDate);
 
         List<FuelTransaction> transactions = fuelTransactionRepository.findAll().stream()
                 .filter(t -> t.getTimestamp() >= startTimestamp && t.getTimestamp() <= endTimestamp)
@@ -354,9 +391,9 @@ public class AdminService {
         Map<String, Long> stationTransactionCount = transactions.stream()
                 .collect(Collectors.groupingBy(t -> t.getStation().getName(), Collectors.counting()));
 
-        Map<String, Double> stationFuelDispensed = transactions.stream()
+        Map<String, Long> stationFuelDispensedMl = transactions.stream()
                 .collect(Collectors.groupingBy(t -> t.getStation().getName(),
-                        Collectors.summingDouble(FuelTransaction::getAmount)));
+                        Collectors.summingLong(FuelTransaction::getAmountMl)));
 
         String topStation = stationTransactionCount.entrySet().stream()
                 .max(Map.Entry.comparingByValue())
@@ -368,7 +405,7 @@ public class AdminService {
                 .map(Map.Entry::getKey)
                 .orElse("N/A");
 
-        double totalFuelDispensed = transactions.stream().mapToDouble(FuelTransaction::getAmount).sum();
+        double totalFuelDispensed = FuelUnits.toLitres(transactions.stream().mapToLong(FuelTransaction::getAmountMl).sum());
         double avgTransactionsPerStation = activeStations.size() > 0 ? (double) transactions.size() / activeStations.size() : 0;
         double avgFuelPerStation = activeStations.size() > 0 ? totalFuelDispensed / activeStations.size() : 0;
 
@@ -453,7 +490,7 @@ public class AdminService {
             public final Boolean isnotificationServiceUp = notificationServiceUp;
             public final Integer activeUsers = allUsers.size();
             public final Integer systemLoad = 25; // Mock system load percentage
-            public final String lastSystemRestart = LocalDate.now().minusDays(7).toString();
+            public final String lastSystemRestart = periodClock.today().minusDays(7).toString();
             public final Integer totalErrors24h = failedNotifications;
             public final String diskUsage = "45%"; // Mock disk usage
             public final String memoryUsage = "67%"; // Mock memory usage
@@ -482,44 +519,12 @@ public class AdminService {
     }
 
 
-    public String exportTransactionData(LocalDate startDate, LocalDate endDate, String format) {
-        long startTimestamp = startDate.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-        long endTimestamp = endDate.atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-
-        List<FuelTransaction> transactions = fuelTransactionRepository.findAll().stream()
-                .filter(t -> t.getTimestamp() >= startTimestamp && t.getTimestamp() <= endTimestamp)
-                .collect(Collectors.toList());
-
-        if ("CSV".equalsIgnoreCase(format)) {
-            StringBuilder csv = new StringBuilder();
-            csv.append("Transaction ID,Vehicle Registration,Station Name,Fuel Type,Amount,Date,Time,Notification Sent\n");
-
-            for (FuelTransaction transaction : transactions) {
-                LocalDate date = LocalDate.ofInstant(java.time.Instant.ofEpochMilli(transaction.getTimestamp()), ZoneId.systemDefault());
-                csv.append(String.format("%d,%s,%s,%s,%.2f,%s,%s,%s\n",
-                        transaction.getId(),
-                        transaction.getVehicle().getRegistrationNumber(),
-                        transaction.getStation().getName(),
-                        transaction.getFuelType(),
-                        transaction.getAmount(),
-                        date.toString(),
-                        date.atStartOfDay().format(DateTimeFormatter.ofPattern("HH:mm:ss")),
-                        transaction.isNotificationSent() ? "Yes" : "No"
-                ));
-            }
-            return csv.toString();
-        }
-
-        return "Export format not supported";
-    }
-
-
     public Object getTopFuelConsumers(int limit, String period) {
         List<FuelTransaction> transactions = fuelTransactionRepository.findAll();
 
         // Filter by period if specified
         if (period != null && !period.isEmpty()) {
-            LocalDate cutoffDate = LocalDate.now();
+            LocalDate cutoffDate = periodClock.today();
             switch (period.toLowerCase()) {
                 case "week":
                     cutoffDate = cutoffDate.minusWeeks(1);
@@ -532,7 +537,7 @@ public class AdminService {
                     break;
             }
 
-            long cutoffTimestamp = cutoffDate.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            long cutoffTimestamp = periodClock.startOfDay(cutoffDate);
             transactions = transactions.stream()
                     .filter(t -> t.getTimestamp() >= cutoffTimestamp)
                     .collect(Collectors.toList());
@@ -548,13 +553,13 @@ public class AdminService {
                     List<FuelTransaction> vTransactions = entry.getValue();
                     FuelTransaction firstTransaction = vTransactions.get(0);
 
-                    double totalFuel = vTransactions.stream().mapToDouble(FuelTransaction::getAmount).sum();
+                    double totalFuel = FuelUnits.toLitres(vTransactions.stream().mapToLong(FuelTransaction::getAmountMl).sum());
                     int transactionCount = vTransactions.size();
                     double avgPerTransaction = transactionCount > 0 ? totalFuel / transactionCount : 0;
 
                     String lastTransactionDate = vTransactions.stream()
                             .max(Comparator.comparing(FuelTransaction::getTimestamp))
-                            .map(t -> LocalDate.ofInstant(java.time.Instant.ofEpochMilli(t.getTimestamp()), ZoneId.systemDefault()).toString())
+                            .map(t -> periodClock.dateOf(t.getTimestamp()).toString())
                             .orElse("N/A");
 
                     return new TopFuelConsumer(
@@ -577,8 +582,8 @@ public class AdminService {
 
 
     public Object getSystemUsageTrends(LocalDate startDate, LocalDate endDate, String groupBy) {
-        long startTimestamp = startDate.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-        long endTimestamp = endDate.atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long startTimestamp = periodClock.startOfDay(startDate);
+        long endTimestamp = periodClock.endOfDay(endDate);
 
         List<FuelTransaction> transactions = fuelTransactionRepository.findAll().stream()
                 .filter(t -> t.getTimestamp() >= startTimestamp && t.getTimestamp() <= endTimestamp)
@@ -587,7 +592,7 @@ public class AdminService {
         // Group transactions by date
         Map<LocalDate, List<FuelTransaction>> dailyTransactions = transactions.stream()
                 .collect(Collectors.groupingBy(t ->
-                        LocalDate.ofInstant(java.time.Instant.ofEpochMilli(t.getTimestamp()), ZoneId.systemDefault())
+                        periodClock.dateOf(t.getTimestamp())
                 ));
 
         List<UsageTrendsData> trends = dailyTransactions.entrySet().stream()
@@ -595,7 +600,7 @@ public class AdminService {
                     LocalDate date = entry.getKey();
                     List<FuelTransaction> dayTransactions = entry.getValue();
 
-                    double totalFuel = dayTransactions.stream().mapToDouble(FuelTransaction::getAmount).sum();
+                    double totalFuel = FuelUnits.toLitres(dayTransactions.stream().mapToLong(FuelTransaction::getAmountMl).sum());
                     int uniqueVehicles = (int) dayTransactions.stream()
                             .map(t -> t.getVehicle().getId())
                             .distinct()
@@ -629,9 +634,9 @@ public class AdminService {
             public final Long totalQuotas = (long) fuelQuotaRepository.findAll().size();
             public final String databaseSize = "2.4 GB"; // Mock database size
             public final String oldestRecord = "2024-01-01"; // Mock oldest record
-            public final String newestRecord = LocalDate.now().toString();
+            public final String newestRecord = periodClock.today().toString();
             public final Integer indexCount = 15; // Mock index count
-            public final String lastOptimization = LocalDate.now().minusDays(3).toString();
+            public final String lastOptimization = periodClock.today().minusDays(3).toString();
         };
     }
 
@@ -645,9 +650,8 @@ public class AdminService {
 
 
     private List<FuelTransaction> getTodayTransactions() {
-        LocalDate today = LocalDate.now();
-        long startOfDay = today.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-        long endOfDay = today.atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long startOfDay = periodClock.startOfDay();
+        long endOfDay = periodClock.endOfDay();
 
         return fuelTransactionRepository.findAll().stream()
                 .filter(t -> t.getTimestamp() >= startOfDay && t.getTimestamp() <= endOfDay)
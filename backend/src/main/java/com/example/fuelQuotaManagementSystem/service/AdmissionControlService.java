@@ -0,0 +1,246 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds how many pump and scan requests run at once so a surge cannot exhaust the JDBC pool
+ * and slow down every other page. Requests over the limit wait in a queue that is served
+ * round-robin per station operator, so one busy station cannot starve the others; when the
+ * queue is full or the wait too long the request is shed immediately.
+ *
+ * The pump and scan limits together never exceed the JDBC pool minus the reserved connections:
+ * admitted requests beyond that would only wait inside Hikari, where nothing is fair or bounded.
+ */
+@Service
+public class AdmissionControlService {
+
+    public enum EndpointClass { PUMP, SCAN }
+
+    public enum Outcome { ADMITTED, REJECTED_FAIR_SHARE, REJECTED_OVERLOADED }
+
+    @Value("${admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${admission.pump.max-concurrent:5}")
+    private int pumpMaxConcurrent;
+
+    @Value("${admission.pump.max-queue:200}")
+    private int pumpMaxQueue;
+
+    @Value("${admission.scan.max-concurrent:3}")
+    private int scanMaxConcurrent;
+
+    @Value("${admission.scan.max-queue:300}")
+    private int scanMaxQueue;
+
+    // Queued requests allowed per operator, per endpoint class
+    @Value("${admission.max-queued-per-station:10}")
+    private int maxQueuedPerStation;
+
+    @Value("${admission.max-queue-wait-ms:2000}")
+    private long maxQueueWaitMillis;
+
+    @Value("${admission.retry-after-seconds:2}")
+    private int retryAfterSeconds;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int connectionPoolSize;
+
+    // Connections kept free for admin pages, the outbox dispatcher and other scheduled jobs
+    @Value("${admission.reserved-connections:2}")
+    private int reservedConnections;
+
+    private final Map<EndpointClass, EndpointLimiter> limiters = new EnumMap<>(EndpointClass.class);
+
+    @PostConstruct
+    public void createLimiters() {
+        int pumpLimit = pumpMaxConcurrent;
+        int scanLimit = scanMaxConcurrent;
+
+        // Each admitted request holds a connection, so scale the limits down to what the pool can serve
+        int available = Math.max(2, connectionPoolSize - reservedConnections);
+        if (pumpLimit + scanLimit > available) {
+            pumpLimit = Math.max(1, available * pumpMaxConcurrent / (pumpMaxConcurrent + scanMaxConcurrent));
+            scanLimit = Math.max(1, available - pumpLimit);
+            System.out.println("Admission limits scaled to the connection pool: pump=" + pumpLimit + ", scan=" + scanLimit);
+        }
+
+        limiters.put(EndpointClass.PUMP, new EndpointLimiter(pumpLimit, pumpMaxQueue));
+        limiters.put(EndpointClass.SCAN, new EndpointLimiter(scanLimit, scanMaxQueue));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public int getMaxConcurrent(EndpointClass endpointClass) {
+        return limiters.get(endpointClass).limit;
+    }
+
+
+     //Blocks for at most the configured queue wait; every ADMITTED outcome must be followed by release
+     //An interrupted wait leaves the queue, keeps the interrupt flag set and returns REJECTED_OVERLOADED
+
+    public Outcome admit(EndpointClass endpointClass, String stationKey) {
+        return limiters.get(endpointClass).acquire(stationKey, maxQueuedPerStation, maxQueueWaitMillis);
+    }
+
+    public void release(EndpointClass endpointClass) {
+        limiters.get(endpointClass).release();
+    }
+
+
+     //Current load, rejection counts and queue times per endpoint class
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        for (Map.Entry<EndpointClass, EndpointLimiter> entry : limiters.entrySet()) {
+            stats.put(entry.getKey().name().toLowerCase(), entry.getValue().stats());
+        }
+        return stats;
+    }
+
+    private static class EndpointLimiter {
+        private final int limit;
+        private final int maxQueue;
+
+        // Guarded by this
+        private int inFlight;
+        private int queued;
+        private final LinkedHashMap<String, ArrayDeque<Waiter>> queues = new LinkedHashMap<>();
+
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder admittedAfterQueueing = new LongAdder();
+        private final LongAdder rejectedFairShare = new LongAdder();
+        private final LongAdder rejectedQueueFull = new LongAdder();
+        private final LongAdder rejectedTimeout = new LongAdder();
+        private final LongAdder totalQueueWaitMillis = new LongAdder();
+        private final LongAccumulator maxQueueWaitMillis = new LongAccumulator(Math::max, 0);
+
+        private EndpointLimiter(int limit, int maxQueue) {
+            this.limit = limit;
+            this.maxQueue = maxQueue;
+        }
+
+        private Outcome acquire(String key, int maxQueuedPerKey, long maxWaitMillis) {
+            Waiter waiter;
+            synchronized (this) {
+                if (inFlight < limit && queued == 0) {
+                    inFlight++;
+                    admitted.increment();
+                    return Outcome.ADMITTED;
+                }
+                if (queued >= maxQueue) {
+                    rejectedQueueFull.increment();
+                    return Outcome.REJECTED_OVERLOADED;
+                }
+                ArrayDeque<Waiter> queue = queues.computeIfAbsent(key, k -> new ArrayDeque<>());
+                if (queue.size() >= maxQueuedPerKey) {
+                    rejectedFairShare.increment();
+                    return Outcome.REJECTED_FAIR_SHARE;
+                }
+                waiter = new Waiter();
+                queue.addLast(waiter);
+                queued++;
+            }
+
+            long queuedAt = System.nanoTime();
+            boolean granted;
+            try {
+                granted = waiter.latch.await(maxWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                synchronized (this) {
+                    if (waiter.granted) {
+                        // The slot was handed over as we were interrupted; pass it on rather than leak it
+                        release();
+                    } else {
+                        removeWaiter(key, waiter);
+                    }
+                }
+                Thread.currentThread().interrupt();
+                return Outcome.REJECTED_OVERLOADED;
+            }
+
+            synchronized (this) {
+                if (!granted && !waiter.granted) {
+                    removeWaiter(key, waiter);
+                    rejectedTimeout.increment();
+                    return Outcome.REJECTED_OVERLOADED;
+                }
+            }
+
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queuedAt);
+            totalQueueWaitMillis.add(waitedMillis);
+            maxQueueWaitMillis.accumulate(waitedMillis);
+            admitted.increment();
+            admittedAfterQueueing.increment();
+            return Outcome.ADMITTED;
+        }
+
+        private synchronized void release() {
+            // Hand the slot to the next station in round-robin order instead of freeing it
+            Iterator<Map.Entry<String, ArrayDeque<Waiter>>> stations = queues.entrySet().iterator();
+            while (stations.hasNext()) {
+                Map.Entry<String, ArrayDeque<Waiter>> station = stations.next();
+                Waiter next = station.getValue().pollFirst();
+                stations.remove();
+                if (next == null) {
+                    continue;
+                }
+                if (!station.getValue().isEmpty()) {
+                    // Back of the line for this station's remaining requests
+                    queues.put(station.getKey(), station.getValue());
+                }
+                queued--;
+                next.granted = true;
+                next.latch.countDown();
+                return;
+            }
+            inFlight--;
+        }
+
+        private void removeWaiter(String key, Waiter waiter) {
+            ArrayDeque<Waiter> queue = queues.get(key);
+            if (queue != null && queue.remove(waiter)) {
+                queued--;
+                if (queue.isEmpty()) {
+                    queues.remove(key);
+                }
+            }
+        }
+
+        private synchronized Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("maxConcurrent", limit);
+            stats.put("inFlight", inFlight);
+            stats.put("queued", queued);
+            stats.put("admitted", admitted.sum());
+            stats.put("admittedAfterQueueing", admittedAfterQueueing.sum());
+            stats.put("rejectedFairShare", rejectedFairShare.sum());
+            stats.put("rejectedQueueFull", rejectedQueueFull.sum());
+            stats.put("rejectedQueueTimeout", rejectedTimeout.sum());
+            long queuedAdmissions = admittedAfterQueueing.sum();
+            stats.put("avgQueueWaitMs", queuedAdmissions > 0 ? totalQueueWaitMillis.sum() / queuedAdmissions : 0);
+            stats.put("maxQueueWaitMs", maxQueueWaitMillis.get());
+            return stats;
+        }
+    }
+
+    private static class Waiter {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile boolean granted;
+    }
+}
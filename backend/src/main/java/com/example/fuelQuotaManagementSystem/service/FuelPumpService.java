@@ -0,0 +1,553 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.example.fuelQuotaManagementSystem.dto.FuelPumpBatchItemResult;
+import com.example.fuelQuotaManagementSystem.dto.FuelPumpRequest;
+import com.example.fuelQuotaManagementSystem.entity.FuelStation;
+import com.example.fuelQuotaManagementSystem.entity.FuelTransaction;
+import com.example.fuelQuotaManagementSystem.entity.Vehicle;
+import com.example.fuelQuotaManagementSystem.repository.FuelStationRepository;
+import com.example.fuelQuotaManagementSystem.repository.FuelTransactionRepository;
+import com.example.fuelQuotaManagementSystem.repository.VehicleRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+public class FuelPumpService {
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private FuelStationRepository fuelStationRepository;
+
+    @Autowired
+    private FuelTransactionRepository fuelTransactionRepository;
+
+    @Autowired
+    private FuelQuotaService fuelQuotaService;
+
+    @Autowired
+    private NotificationOutboxService notificationOutboxService;
+
+    @Autowired
+    private QuotaReservationService reservationService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private QuotaPeriodClock periodClock;
+
+    static final long MAX_ML_PER_TRANSACTION = 100_000;
+    private static final int IDEMPOTENCY_CACHE_SIZE = 10_000;
+
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO fuel_transactions (vehicle_id, station_id, fuel_type, amount_ml, quota_before_ml, " +
+            "quota_after_ml, notification_sent, idempotency_key, timestamp) " +
+            "VALUES (:vehicleId, :stationId, :fuelType, :amountMl, :quotaBeforeMl, :quotaAfterMl, :notificationSent, " +
+            ":idempotencyKey, :timestamp)";
+
+    // Recently completed pumps by station and idempotency key, least recently used evicted first
+    private final Map<String, PumpResult> completedPumps = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PumpResult> eldest) {
+                    return size() > IDEMPOTENCY_CACHE_SIZE;
+                }
+            });
+
+
+    /**
+     * Records a fuel pump: quota deduction and transaction insert commit together.
+     * A request carrying an idempotency key that was already recorded for the same station returns
+     * the original result without touching the quota again.
+     */
+    public PumpResult recordPump(FuelPumpRequest request) {
+        String idempotencyKey = request.getIdempotencyKey();
+
+        if (idempotencyKey != null) {
+            Optional<PumpResult> previous = findCompletedPump(request.getStationId(), idempotencyKey);
+            if (previous.isPresent()) {
+                return previous.get();
+            }
+        }
+
+        // A pump that reserved its litres at scan time was validated then; it only has to commit
+        QuotaReservationService.Reservation reservation = null;
+        if (request.getReservationId() != null) {
+            reservation = reservationService.claim(request.getReservationId(),
+                    request.getVehicleId(), request.getStationId(), FuelUnits.toMillilitres(request.getAmount()));
+        }
+
+        FuelTransaction savedTransaction;
+        try {
+            QuotaReservationService.Reservation claimed = reservation;
+            savedTransaction = transactionTemplate.execute(status -> claimed != null
+                    ? commitReservedPump(request, claimed)
+                    : pumpWithinTransaction(request));
+        } catch (DataIntegrityViolationException e) {
+            if (reservation != null) {
+                reservationService.restore(reservation);
+            }
+            // A concurrent retry with the same key committed first; our deduction was rolled back
+            if (idempotencyKey != null) {
+                Optional<PumpResult> previous = findCompletedPump(request.getStationId(), idempotencyKey);
+                if (previous.isPresent()) {
+                    return previous.get();
+                }
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            if (reservation != null) {
+                reservationService.restore(reservation);
+            }
+            throw e;
+        }
+
+        if (reservation != null) {
+            reservationService.complete(reservation);
+        }
+
+        PumpResult result = PumpResult.of(savedTransaction, false);
+        if (idempotencyKey != null) {
+            completedPumps.put(cacheKey(request.getStationId(), idempotencyKey), result);
+        }
+        return result;
+    }
+
+    private FuelTransaction pumpWithinTransaction(FuelPumpRequest request) {
+        // Find vehicle
+        Vehicle vehicle = vehicleRepository.findById(request.getVehicleId())
+                .orElseThrow(() -> new IllegalArgumentException("Vehicle not found!"));
+
+        // Find fuel station
+        FuelStation station = fuelStationRepository.findById(request.getStationId())
+                .orElseThrow(() -> new IllegalArgumentException("Fuel station not found!"));
+
+        String validationError = validatePump(request, vehicle, station);
+        if (validationError != null) {
+            throw new IllegalArgumentException(validationError);
+        }
+
+        // Check and deduct quota in a single conditional update
+        FuelQuotaService.QuotaDeduction deduction = fuelQuotaService.deductFuel(vehicle, request.getFuelType(),
+                FuelUnits.toMillilitres(request.getAmount()), reservationService.heldMl(vehicle.getId()));
+        if (!deduction.isSuccess()) {
+            throw new IllegalArgumentException("Insufficient quota! Remaining: "
+                    + FuelUnits.toLitres(deduction.getQuotaAfterMl()) + "L");
+        }
+
+        return saveTransaction(buildTransaction(request, vehicle, station, deduction));
+    }
+
+    private FuelTransaction commitReservedPump(FuelPumpRequest request, QuotaReservationService.Reservation reservation) {
+        // Vehicle and station were loaded when the hold was placed
+        Vehicle vehicle = reservation.getVehicle();
+        FuelStation station = reservation.getStation();
+
+        // The claimed hold still counts until commit, so exclude it and keep only other stations' holds
+        long otherHeldMl = Math.max(0, reservationService.heldMl(vehicle.getId()) - reservation.getAmountMl());
+        FuelQuotaService.QuotaDeduction deduction = fuelQuotaService.deductFuel(vehicle, reservation.getFuelType(),
+                FuelUnits.toMillilitres(request.getAmount()), otherHeldMl);
+        if (!deduction.isSuccess()) {
+            throw new IllegalArgumentException("Insufficient quota! Remaining: "
+                    + FuelUnits.toLitres(deduction.getQuotaAfterMl()) + "L");
+        }
+
+        FuelTransaction transaction = buildTransaction(request, vehicle, station, deduction);
+        transaction.setFuelType(reservation.getFuelType());
+        return saveTransaction(transaction);
+    }
+
+    private FuelTransaction saveTransaction(FuelTransaction transaction) {
+        // Flush now so a duplicate idempotency key fails here and rolls back the deduction
+        FuelTransaction savedTransaction = fuelTransactionRepository.saveAndFlush(transaction);
+
+        // The SMS goes out from the outbox after commit
+        notificationOutboxService.enqueueTransactionNotifications(List.of(savedTransaction));
+        return savedTransaction;
+    }
+
+
+    /**
+     * Records pumps queued offline by a station. Vehicles and stations are loaded with one bulk
+     * lookup each, deductions are applied in request order per vehicle, and the transactions are
+     * inserted with a single JDBC batch. Every item gets its own result. If one item fails the
+     * shared transaction, the items are recorded again one transaction each, so only that item
+     * fails.
+     */
+    public List<FuelPumpBatchItemResult> recordPumpBatch(List<FuelPumpRequest> requests) {
+        FuelPumpBatchItemResult[] results = new FuelPumpBatchItemResult[requests.size()];
+        long receivedAt = periodClock.millis();
+        long periodStart = periodClock.startOfMonth();
+
+        // Answer keys that were already recorded, and repeats of a key within this batch
+        Map<String, PumpResult> completed = findCompletedPumps(requests);
+        Map<String, Integer> firstIndexByKey = new HashMap<>();
+        Map<Integer, Integer> repeatOf = new HashMap<>();
+        List<Integer> pending = new ArrayList<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            FuelPumpRequest request = requests.get(i);
+            String key = request.getIdempotencyKey() != null
+                    ? cacheKey(request.getStationId(), request.getIdempotencyKey()) : null;
+            if (key != null && completed.containsKey(key)) {
+                results[i] = toItemResult(i, completed.get(key));
+            } else if (key != null && firstIndexByKey.containsKey(key)) {
+                repeatOf.put(i, firstIndexByKey.get(key));
+            } else {
+                if (key != null) {
+                    firstIndexByKey.put(key, i);
+                }
+                pending.add(i);
+            }
+        }
+
+        // One bulk lookup each for vehicles and stations
+        Set<Long> vehicleIds = new HashSet<>();
+        Set<Long> stationIds = new HashSet<>();
+        for (int i : pending) {
+            FuelPumpRequest request = requests.get(i);
+            if (request.getVehicleId() != null) vehicleIds.add(request.getVehicleId());
+            if (request.getStationId() != null) stationIds.add(request.getStationId());
+        }
+
+        Map<Long, Vehicle> vehicles = vehicleRepository.findAllById(vehicleIds).stream()
+                .collect(Collectors.toMap(Vehicle::getId, vehicle -> vehicle));
+        Map<Long, FuelStation> stations = fuelStationRepository.findAllById(stationIds).stream()
+                .collect(Collectors.toMap(FuelStation::getId, station -> station));
+
+        // Queued pumps were recorded offline, so any hold taken at scan time is void by now
+        for (int i : pending) {
+            if (requests.get(i).getReservationId() != null) {
+                reservationService.cancel(requests.get(i).getReservationId());
+            }
+        }
+
+        // Group valid pumps per vehicle, keeping request order; vehicles are locked in id order
+        Map<Long, List<Integer>> pumpsByVehicle = new TreeMap<>();
+        for (int i : pending) {
+            FuelPumpRequest request = requests.get(i);
+            String error = validateBatchItem(request, vehicles.get(request.getVehicleId()),
+                    stations.get(request.getStationId()), periodStart);
+            if (error != null) {
+                results[i] = failedItem(i, error);
+            } else {
+                pumpsByVehicle.computeIfAbsent(request.getVehicleId(), id -> new ArrayList<>()).add(i);
+            }
+        }
+
+        List<FuelTransaction> inserted = new ArrayList<>();
+        List<Integer> insertedIndexes = new ArrayList<>();
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Map.Entry<Long, List<Integer>> entry : pumpsByVehicle.entrySet()) {
+                    Vehicle vehicle = vehicles.get(entry.getKey());
+                    List<Integer> indexes = entry.getValue();
+
+                    List<Long> amountsMl = indexes.stream()
+                            .map(i -> FuelUnits.toMillilitres(requests.get(i).getAmount()))
+                            .collect(Collectors.toList());
+                    List<FuelQuotaService.QuotaDeduction> deductions = fuelQuotaService.deductFuelInOrder(
+                            vehicle, vehicle.getFuelType(), amountsMl, reservationService.heldMl(vehicle.getId()));
+
+                    for (int n = 0; n < indexes.size(); n++) {
+                        int i = indexes.get(n);
+                        FuelQuotaService.QuotaDeduction deduction = deductions.get(n);
+                        if (!deduction.isSuccess()) {
+                            results[i] = insufficientQuota(i, deduction);
+                            continue;
+                        }
+                        FuelPumpRequest request = requests.get(i);
+                        FuelTransaction transaction = buildTransaction(request, vehicle, stations.get(request.getStationId()), deduction);
+                        transaction.setTimestamp(pumpTime(request, receivedAt));
+                        inserted.add(transaction);
+                        insertedIndexes.add(i);
+                    }
+                }
+
+                insertTransactions(inserted);
+                notificationOutboxService.enqueueTransactionNotifications(inserted);
+            });
+        } catch (RuntimeException e) {
+            // Everything was rolled back, e.g. because a concurrent request committed one of our keys first
+            System.err.println("Pump batch failed, recording its items one at a time: " + e.getMessage());
+            inserted.clear();
+            insertedIndexes.clear();
+            for (Map.Entry<Long, List<Integer>> entry : pumpsByVehicle.entrySet()) {
+                for (int i : entry.getValue()) {
+                    FuelPumpRequest request = requests.get(i);
+                    FuelTransaction transaction = recordQueuedPump(request, vehicles.get(entry.getKey()),
+                            stations.get(request.getStationId()), receivedAt, i, results);
+                    if (transaction != null) {
+                        inserted.add(transaction);
+                        insertedIndexes.add(i);
+                    }
+                }
+            }
+        }
+
+        for (int n = 0; n < inserted.size(); n++) {
+            FuelTransaction transaction = inserted.get(n);
+            int i = insertedIndexes.get(n);
+
+            PumpResult result = PumpResult.of(transaction, false);
+            if (transaction.getIdempotencyKey() != null) {
+                completedPumps.put(cacheKey(transaction.getStation().getId(), transaction.getIdempotencyKey()), result);
+            }
+            results[i] = toItemResult(i, result);
+        }
+
+        for (Map.Entry<Integer, Integer> repeat : repeatOf.entrySet()) {
+            FuelPumpBatchItemResult original = results[repeat.getValue()];
+            results[repeat.getKey()] = new FuelPumpBatchItemResult(repeat.getKey(), original.getSuccess(),
+                    original.getTransactionId(), original.getRemainingQuota(), original.getSuccess(), original.getMessage());
+        }
+
+        return Arrays.asList(results);
+    }
+
+    // One queued pump in its own transaction; null once results[index] holds its failure or replay
+    private FuelTransaction recordQueuedPump(FuelPumpRequest request, Vehicle vehicle, FuelStation station,
+                                             long receivedAt, int index, FuelPumpBatchItemResult[] results) {
+        try {
+            return transactionTemplate.execute(status -> {
+                FuelQuotaService.QuotaDeduction deduction = fuelQuotaService.deductFuel(vehicle, vehicle.getFuelType(),
+                        FuelUnits.toMillilitres(request.getAmount()), reservationService.heldMl(vehicle.getId()));
+                if (!deduction.isSuccess()) {
+                    results[index] = insufficientQuota(index, deduction);
+                    return null;
+                }
+
+                FuelTransaction transaction = buildTransaction(request, vehicle, station, deduction);
+                transaction.setTimestamp(pumpTime(request, receivedAt));
+                insertTransactions(List.of(transaction));
+                notificationOutboxService.enqueueTransactionNotifications(List.of(transaction));
+                return transaction;
+            });
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request committed this idempotency key first; it is a replay now
+            Optional<PumpResult> previous = request.getIdempotencyKey() != null
+                    ? findCompletedPump(request.getStationId(), request.getIdempotencyKey()) : Optional.empty();
+            results[index] = previous.map(result -> toItemResult(index, result))
+                    .orElseGet(() -> failedItem(index, "Pump could not be recorded"));
+        } catch (RuntimeException e) {
+            System.err.println("Failed to record queued pump " + index + ": " + e.getMessage());
+            results[index] = failedItem(index, "Pump could not be recorded");
+        }
+        return null;
+    }
+
+    private String validateBatchItem(FuelPumpRequest request, Vehicle vehicle, FuelStation station, long periodStart) {
+        Set<ConstraintViolation<FuelPumpRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return violations.iterator().next().getMessage();
+        }
+        if (vehicle == null) {
+            return "Vehicle not found!";
+        }
+        if (station == null) {
+            return "Fuel station not found!";
+        }
+        // Deductions are charged to the current period, so an earlier period's pump cannot be
+        if (request.getPumpedAt() != null && request.getPumpedAt() < periodStart) {
+            return "Pump was made in a previous quota period and cannot be charged to this one!";
+        }
+        return validatePump(request, vehicle, station);
+    }
+
+    private String validatePump(FuelPumpRequest request, Vehicle vehicle, FuelStation station) {
+        // Validate fuel type matches vehicle
+        if (!vehicle.getFuelType().equalsIgnoreCase(request.getFuelType())) {
+            return "Fuel type mismatch! Vehicle uses " + vehicle.getFuelType();
+        }
+
+        // Validate pump amount, as it will be stored
+        long amountMl = FuelUnits.toMillilitres(request.getAmount());
+        if (amountMl <= 0) {
+            return "Invalid fuel amount!";
+        }
+
+        if (amountMl > MAX_ML_PER_TRANSACTION) {
+            return "Maximum 100 liters allowed per transaction!";
+        }
+
+        return null;
+    }
+
+    private FuelTransaction buildTransaction(FuelPumpRequest request, Vehicle vehicle, FuelStation station,
+                                             FuelQuotaService.QuotaDeduction deduction) {
+        FuelTransaction transaction = new FuelTransaction();
+        transaction.setVehicle(vehicle);
+        transaction.setStation(station);
+        transaction.setFuelType(request.getFuelType());
+        transaction.setAmountMl(FuelUnits.toMillilitres(request.getAmount()));
+        transaction.setQuotaBeforeMl(deduction.getQuotaBeforeMl());
+        transaction.setQuotaAfterMl(deduction.getQuotaAfterMl());
+        transaction.setNotificationSent(false);
+        transaction.setIdempotencyKey(request.getIdempotencyKey());
+        return transaction;
+    }
+
+    /**
+     * When a queued pump happened: the device's time if it sent one, else when the batch arrived.
+     * Never later than the arrival, so a device clock running ahead cannot date pumps in the
+     * future. Pumps from an earlier period were rejected during validation.
+     */
+    private long pumpTime(FuelPumpRequest request, long receivedAt) {
+        if (request.getPumpedAt() == null) {
+            return receivedAt;
+        }
+        return Math.min(request.getPumpedAt(), receivedAt);
+    }
+
+    // IDENTITY ids keep Hibernate from batching inserts, so the batch goes through JDBC directly
+    private void insertTransactions(List<FuelTransaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+
+        SqlParameterSource[] batchArgs = new SqlParameterSource[transactions.size()];
+        for (int i = 0; i < transactions.size(); i++) {
+            FuelTransaction transaction = transactions.get(i);
+            batchArgs[i] = new MapSqlParameterSource()
+                    .addValue("vehicleId", transaction.getVehicle().getId())
+                    .addValue("stationId", transaction.getStation().getId())
+                    .addValue("fuelType", transaction.getFuelType())
+                    .addValue("amountMl", transaction.getAmountMl())
+                    .addValue("quotaBeforeMl", transaction.getQuotaBeforeMl())
+                    .addValue("quotaAfterMl", transaction.getQuotaAfterMl())
+                    .addValue("notificationSent", transaction.isNotificationSent())
+                    .addValue("idempotencyKey", transaction.getIdempotencyKey())
+                    .addValue("timestamp", transaction.getTimestamp());
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        namedParameterJdbcTemplate.batchUpdate(INSERT_TRANSACTION_SQL, batchArgs, keyHolder, new String[]{"id"});
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < transactions.size(); i++) {
+            transactions.get(i).setId(((Number) keys.get(i).values().iterator().next()).longValue());
+        }
+    }
+
+    // Keyed by cacheKey(station, idempotency key); one lookup per station for keys not in the cache
+    private Map<String, PumpResult> findCompletedPumps(List<FuelPumpRequest> requests) {
+        Map<String, PumpResult> found = new HashMap<>();
+        Map<Long, Set<String>> uncachedKeysByStation = new HashMap<>();
+
+        for (FuelPumpRequest request : requests) {
+            if (request.getIdempotencyKey() == null || request.getStationId() == null) continue;
+
+            String key = cacheKey(request.getStationId(), request.getIdempotencyKey());
+            PumpResult cached = completedPumps.get(key);
+            if (cached != null) {
+                found.put(key, cached.asReplay());
+            } else {
+                uncachedKeysByStation.computeIfAbsent(request.getStationId(), id -> new HashSet<>())
+                        .add(request.getIdempotencyKey());
+            }
+        }
+
+        for (Map.Entry<Long, Set<String>> entry : uncachedKeysByStation.entrySet()) {
+            for (FuelTransaction transaction : fuelTransactionRepository.findByStationIdAndIdempotencyKeyIn(
+                    entry.getKey(), entry.getValue())) {
+                String key = cacheKey(entry.getKey(), transaction.getIdempotencyKey());
+                PumpResult result = PumpResult.of(transaction, true);
+                completedPumps.put(key, result);
+                found.put(key, result);
+            }
+        }
+        return found;
+    }
+
+    private FuelPumpBatchItemResult toItemResult(int index, PumpResult result) {
+        return new FuelPumpBatchItemResult(index, true, result.getTransactionId(), result.getQuotaAfter(),
+                result.isReplayed(), String.format("%.1fL %s dispensed. Remaining quota: %.1fL",
+                result.getAmount(), result.getFuelType(), result.getQuotaAfter()));
+    }
+
+    private FuelPumpBatchItemResult insufficientQuota(int index, FuelQuotaService.QuotaDeduction deduction) {
+        return failedItem(index, "Insufficient quota! Remaining: " + FuelUnits.toLitres(deduction.getQuotaAfterMl()) + "L");
+    }
+
+    private FuelPumpBatchItemResult failedItem(int index, String message) {
+        return new FuelPumpBatchItemResult(index, false, null, null, false, message);
+    }
+
+    private Optional<PumpResult> findCompletedPump(Long stationId, String idempotencyKey) {
+        if (stationId == null) {
+            return Optional.empty();
+        }
+
+        String key = cacheKey(stationId, idempotencyKey);
+        PumpResult cached = completedPumps.get(key);
+        if (cached != null) {
+            return Optional.of(cached.asReplay());
+        }
+
+        // Fall back to the database for keys evicted from the cache or recorded before a restart
+        return fuelTransactionRepository.findByStationIdAndIdempotencyKey(stationId, idempotencyKey)
+                .map(transaction -> {
+                    PumpResult result = PumpResult.of(transaction, true);
+                    completedPumps.put(key, result);
+                    return result;
+                });
+    }
+
+    private static String cacheKey(Long stationId, String idempotencyKey) {
+        return stationId + ":" + idempotencyKey;
+    }
+
+    public static class PumpResult {
+        private final Long transactionId;
+        private final String fuelType;
+        private final double amount;
+        private final double quotaAfter;
+        private final boolean replayed;
+
+        private PumpResult(Long transactionId, String fuelType, double amount, double quotaAfter, boolean replayed) {
+            this.transactionId = transactionId;
+            this.fuelType = fuelType;
+            this.amount = amount;
+            this.quotaAfter = quotaAfter;
+            this.replayed = replayed;
+        }
+
+        static PumpResult of(FuelTransaction transaction, boolean replayed) {
+            return new PumpResult(transaction.getId(), transaction.getFuelType(),
+                    FuelUnits.toLitres(transaction.getAmountMl()), FuelUnits.toLitres(transaction.getQuotaAfterMl()), replayed);
+        }
+
+        // A cached result handed to a retry is always a replay
+        PumpResult asReplay() {
+            return replayed ? this : new PumpResult(transactionId, fuelType, amount, quotaAfter, true);
+        }
+
+        // Getters
+        public Long getTransactionId() { return transactionId; }
+        public String getFuelType() { return fuelType; }
+        public double getAmount() { return amount; }
+        public double getQuotaAfter() { return quotaAfter; }
+        public boolean isReplayed() { return replayed; }
+    }
+}
@@ -4,13 +4,16 @@ import com.example.fuelQuotaManagementSystem.entity.FuelQuota;
 import com.example.fuelQuotaManagementSystem.entity.Vehicle;
 import com.example.fuelQuotaManagementSystem.repository.FuelQuotaRepository;
 import com.example.fuelQuotaManagementSystem.repository.VehicleRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
-import java.time.ZoneId;
-import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,12 +29,28 @@ public class FuelQuotaService {
     @Autowired
     private NotificationService notificationService;
 
-    // Default monthly quota allocations (in liters)
-    private static final double PETROL_CAR_QUOTA = 60.0;
-    private static final double PETROL_MOTORCYCLE_QUOTA = 20.0;
-    private static final double PETROL_THREE_WHEELER_QUOTA = 40.0;
-    private static final double DIESEL_CAR_QUOTA = 80.0;
-    private static final double DIESEL_COMMERCIAL_QUOTA = 200.0;
+    @Autowired
+    private NotificationOutboxService notificationOutboxService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private QuotaLedger quotaLedger;
+
+    @Autowired
+    private QuotaPeriodClock periodClock;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Default monthly quota allocations (in millilitres)
+    private static final long PETROL_CAR_QUOTA_ML = 60_000;
+    private static final long PETROL_LARGE_CAR_QUOTA_ML = 80_000;
+    private static final long PETROL_MOTORCYCLE_QUOTA_ML = 20_000;
+    private static final long PETROL_THREE_WHEELER_QUOTA_ML = 40_000;
+    private static final long DIESEL_CAR_QUOTA_ML = 80_000;
+    private static final long DIESEL_COMMERCIAL_QUOTA_ML = 200_000;
 
     // Low quota warning thresholds (percentage)
     private static final double LOW_QUOTA_THRESHOLD_PERCENTAGE = 20.0;
@@ -41,7 +60,7 @@ public class FuelQuotaService {
 //    @Scheduled(cron = "0 * * * * ?") //to run every minute for testing
     @Scheduled(cron = "0 1 0 1 * ?") //to run on 1st of month for production
     public void automaticMonthlyQuotaReset() {
-        LocalDate today = LocalDate.now();
+        LocalDate today = periodClock.today();
 
         // FOR TESTING: Run every minute
         System.out.println("=== TESTING QUOTA RESET - " + java.time.LocalDateTime.now() + " ===");
@@ -90,25 +109,11 @@ public class FuelQuotaService {
      */
     private FuelQuota automaticMonthlyReset(Vehicle vehicle, String fuelType) {
         try {
-            // Get current month boundaries
-            LocalDate now = LocalDate.now();
-            LocalDate startOfMonth = now.with(TemporalAdjusters.firstDayOfMonth());
-            LocalDate endOfMonth = now.with(TemporalAdjusters.lastDayOfMonth());
-
-            long startTimestamp = startOfMonth.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-            long endTimestamp = endOfMonth.atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            LocalDate now = periodClock.today();
 
-            // Find and delete any existing quota
-            Optional<FuelQuota> existingQuota = fuelQuotaRepository
-                    .findByVehicleAndFuelTypeAndEndDateGreaterThanEqual(vehicle, fuelType, System.currentTimeMillis());
-
-            if (existingQuota.isPresent()) {
-                fuelQuotaRepository.delete(existingQuota.get());
-                System.out.println("Deleted old quota for: " + vehicle.getRegistrationNumber());
-            }
-
-            // Create fresh quota for the new month
-            FuelQuota newQuota = createNewMonthlyQuota(vehicle, fuelType, startTimestamp, endTimestamp);
+            // Create the new month's quota, or restore its full allocation if it was already created
+            FuelQuota newQuota = allocateMonthlyQuota(vehicle, fuelType);
+            quotaLedger.evict(vehicle.getId(), fuelType);
 
             // ✅ SEND SMS TO VEHICLE OWNER ONLY (No admin SMS)
             try {
@@ -116,7 +121,7 @@ public class FuelQuotaService {
                         vehicle.getOwner().getPhoneNumber(),
                         vehicle.getOwner().getEmail(),
                         vehicle.getRegistrationNumber(),
-                        newQuota.getAllocatedQuota(),
+                        FuelUnits.toLitres(newQuota.getAllocatedQuotaMl()),
                         now.getMonth().toString() + " " + now.getYear()
                 );
 
@@ -135,184 +140,248 @@ public class FuelQuotaService {
     }
     
 
+    /**
+     * Current month's quota, created on first use. The insert is a no-op when a concurrent request
+     * created the row first, so every caller ends up reading the same single row. The row is read
+     * back with a locking read: under REPEATABLE READ a plain read would use the transaction's
+     * snapshot, which may predate the row the other request committed.
+     */
     public FuelQuota getCurrentQuota(Vehicle vehicle, String fuelType) {
-        LocalDate now = LocalDate.now();
-        LocalDate startOfMonth = now.with(TemporalAdjusters.firstDayOfMonth());
-        LocalDate endOfMonth = now.with(TemporalAdjusters.lastDayOfMonth());
-
-        long startTimestamp = startOfMonth.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-        long endTimestamp = endOfMonth.atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-
-        Optional<FuelQuota> existingQuota = fuelQuotaRepository
-                .findByVehicleAndFuelTypeAndEndDateGreaterThanEqual(vehicle, fuelType, System.currentTimeMillis());
+        int periodKey = periodClock.monthPeriodKey();
 
+        Optional<FuelQuota> existingQuota = fuelQuotaRepository.findByPeriod(vehicle.getId(), fuelType, periodKey);
         if (existingQuota.isPresent()) {
-            FuelQuota quota = existingQuota.get();
-            if (quota.getStartDate() >= startTimestamp && quota.getStartDate() <= endTimestamp) {
-                return quota;
-            }
+            return existingQuota.get();
         }
 
-        return createNewMonthlyQuota(vehicle, fuelType, startTimestamp, endTimestamp);
+        return transactionTemplate.execute(status -> {
+            fuelQuotaRepository.insertIfAbsent(vehicle.getId(), fuelType, periodKey,
+                    calculateQuotaAllocation(vehicle.getVehicleType(), fuelType, vehicle.getEngineCapacity()),
+                    periodClock.startOfMonth(), periodClock.endOfMonth(), periodClock.millis());
+
+            return fuelQuotaRepository.findByPeriodForUpdate(vehicle.getId(), fuelType, periodKey)
+                    .orElseThrow(() -> new IllegalStateException("Quota not created for vehicle: " + vehicle.getRegistrationNumber()));
+        });
     }
 
-    private FuelQuota createNewMonthlyQuota(Vehicle vehicle, String fuelType, long startDate, long endDate) {
-        FuelQuota quota = new FuelQuota();
-        quota.setVehicle(vehicle);
-        quota.setFuelType(fuelType);
-        quota.setAllocationPeriod("MONTHLY");
-        quota.setStartDate(startDate);
-        quota.setEndDate(endDate);
+    private FuelQuota allocateMonthlyQuota(Vehicle vehicle, String fuelType) {
+        int periodKey = periodClock.monthPeriodKey();
 
-        double allocatedQuota = calculateQuotaAllocation(vehicle.getVehicleType(), fuelType, vehicle.getEngineCapacity());
-        quota.setAllocatedQuota(allocatedQuota);
-        quota.setRemainingQuota(allocatedQuota);
+        return transactionTemplate.execute(status -> {
+            fuelQuotaRepository.upsertAllocation(vehicle.getId(), fuelType, periodKey,
+                    calculateQuotaAllocation(vehicle.getVehicleType(), fuelType, vehicle.getEngineCapacity()),
+                    periodClock.startOfMonth(), periodClock.endOfMonth(), periodClock.millis());
 
-        return fuelQuotaRepository.save(quota);
+            return fuelQuotaRepository.findByPeriod(vehicle.getId(), fuelType, periodKey)
+                    .orElseThrow(() -> new IllegalStateException("Quota not created for vehicle: " + vehicle.getRegistrationNumber()));
+        });
     }
 
-    private double calculateQuotaAllocation(String vehicleType, String fuelType, Double engineCapacity) {
+    private long calculateQuotaAllocation(String vehicleType, String fuelType, Double engineCapacity) {
         if ("Petrol".equalsIgnoreCase(fuelType)) {
             switch (vehicleType.toLowerCase()) {
                 case "car":
                     if (engineCapacity != null && engineCapacity > 1800) {
-                        return PETROL_CAR_QUOTA + 20.0;
+                        return PETROL_LARGE_CAR_QUOTA_ML;
                     }
-                    return PETROL_CAR_QUOTA;
+                    return PETROL_CAR_QUOTA_ML;
                 case "motorcycle":
-                    return PETROL_MOTORCYCLE_QUOTA;
+                    return PETROL_MOTORCYCLE_QUOTA_ML;
                 case "three wheeler":
-                    return PETROL_THREE_WHEELER_QUOTA;
+                    return PETROL_THREE_WHEELER_QUOTA_ML;
                 default:
-                    return PETROL_CAR_QUOTA;
+                    return PETROL_CAR_QUOTA_ML;
             }
         } else if ("Diesel".equalsIgnoreCase(fuelType)) {
             switch (vehicleType.toLowerCase()) {
                 case "car":
-                    return DIESEL_CAR_QUOTA;
+                    return DIESEL_CAR_QUOTA_ML;
                 case "bus":
                 case "lorry":
-                    return DIESEL_COMMERCIAL_QUOTA;
+                    return DIESEL_COMMERCIAL_QUOTA_ML;
                 default:
-                    return DIESEL_CAR_QUOTA;
+                    return DIESEL_CAR_QUOTA_ML;
             }
         }
-        return PETROL_CAR_QUOTA;
+        return PETROL_CAR_QUOTA_ML;
     }
 
-    public boolean deductFuel(Vehicle vehicle, String fuelType, double amountLiters) {
-        FuelQuota quota = getCurrentQuota(vehicle, fuelType);
+    /**
+     * Deducts fuel with a conditional UPDATE so the balance check and the write are one statement.
+     * The quota row stays locked until commit, so the value read back afterwards is exact.
+     * Low quota warnings are queued in the notification outbox.
+     * When the quota ledger is enabled the deduction is made in memory instead.
+     * heldMl is the part of the balance reserved for other pumps, which this one may not use.
+     */
+    public QuotaDeduction deductFuel(Vehicle vehicle, String fuelType, long amountMl, long heldMl) {
+        QuotaDeduction deduction;
+        if (quotaLedger.isEnabled()) {
+            deduction = quotaLedger.deduct(vehicle.getId(), fuelType, amountMl, heldMl,
+                    () -> getCurrentQuota(vehicle, fuelType));
+        } else {
+            deduction = transactionTemplate.execute(status ->
+                    deductWithinTransaction(vehicle, fuelType, amountMl, heldMl));
+        }
 
-        if (quota.getRemainingQuota() >= amountLiters) {
-            double quotaBeforeDeduction = quota.getRemainingQuota();
-            quota.setRemainingQuota(quota.getRemainingQuota() - amountLiters);
-            fuelQuotaRepository.save(quota);
+        if (deduction.isSuccess()) {
+            warnOfLowQuota(vehicle, fuelType, deduction);
+        }
+        return deduction;
+    }
+
+    /**
+     * Applies several deductions for one vehicle in the given order, as when replaying pumps
+     * queued offline. The quota row is locked once for the whole sequence and written once.
+     * Each amount is accepted only if the balance left by the earlier ones, minus heldMl,
+     * still covers it.
+     */
+    public List<QuotaDeduction> deductFuelInOrder(Vehicle vehicle, String fuelType, List<Long> amountsMl,
+                                                  long heldMl) {
+        List<QuotaDeduction> deductions = new ArrayList<>(amountsMl.size());
+
+        if (quotaLedger.isEnabled()) {
+            for (long amountMl : amountsMl) {
+                deductions.add(quotaLedger.deduct(vehicle.getId(), fuelType, amountMl, heldMl,
+                        () -> getCurrentQuota(vehicle, fuelType)));
+            }
+        } else {
+            transactionTemplate.executeWithoutResult(status -> {
+                FuelQuota quota = getCurrentQuota(vehicle, fuelType);
+                entityManager.refresh(quota, LockModeType.PESSIMISTIC_WRITE);
+
+                long remaining = quota.getRemainingQuotaMl();
+                for (long amountMl : amountsMl) {
+                    if (remaining - heldMl >= amountMl) {
+                        deductions.add(QuotaDeduction.applied(quota.getAllocatedQuotaMl(), remaining, remaining - amountMl));
+                        remaining -= amountMl;
+                    } else {
+                        deductions.add(QuotaDeduction.rejected(quota.getAllocatedQuotaMl(), Math.max(0, remaining - heldMl)));
+                    }
+                }
+                quota.setRemainingQuotaMl(remaining);
+            });
+        }
 
-            checkAndSendLowQuotaWarning(vehicle, quota, quotaBeforeDeduction);
-            return true;
+        for (QuotaDeduction deduction : deductions) {
+            if (deduction.isSuccess()) {
+                warnOfLowQuota(vehicle, fuelType, deduction);
+            }
         }
-        return false;
+        return deductions;
     }
 
-    private void checkAndSendLowQuotaWarning(Vehicle vehicle, FuelQuota quota, double quotaBeforeDeduction) {
-        double remainingQuota = quota.getRemainingQuota();
-        double allocatedQuota = quota.getAllocatedQuota();
-        double remainingPercentage = (remainingQuota / allocatedQuota) * 100;
-        double previousPercentage = (quotaBeforeDeduction / allocatedQuota) * 100;
+    // Queued in the notification outbox: inside a larger unit of work the row commits or rolls back with the pump
+    private void warnOfLowQuota(Vehicle vehicle, String fuelType, QuotaDeduction deduction) {
+        try {
+            checkAndQueueLowQuotaWarning(vehicle, fuelType, deduction);
+        } catch (Exception e) {
+            System.err.println("Failed to queue low quota warning: " + e.getMessage());
+        }
+    }
+
+    private QuotaDeduction deductWithinTransaction(Vehicle vehicle, String fuelType, long amountMl, long heldMl) {
+        long now = periodClock.millis();
+        int periodKey = periodClock.monthPeriodKey();
+        int updated = fuelQuotaRepository.deductIfSufficient(vehicle.getId(), fuelType, periodKey, amountMl, heldMl, now);
+
+        if (updated == 0) {
+            // Either this month's quota has not been created yet or the balance is too low
+            FuelQuota quota = getCurrentQuota(vehicle, fuelType);
+            if (quota.getRemainingQuotaMl() - heldMl < amountMl) {
+                return QuotaDeduction.rejected(quota.getAllocatedQuotaMl(), Math.max(0, quota.getRemainingQuotaMl() - heldMl));
+            }
+            updated = fuelQuotaRepository.deductIfSufficient(vehicle.getId(), fuelType, periodKey, amountMl, heldMl, now);
+        }
+
+        FuelQuota quota = fuelQuotaRepository.findByPeriod(vehicle.getId(), fuelType, periodKey)
+                .orElseThrow(() -> new IllegalStateException("No active quota for vehicle: " + vehicle.getRegistrationNumber()));
+
+        if (updated == 0) {
+            return QuotaDeduction.rejected(quota.getAllocatedQuotaMl(), Math.max(0, quota.getRemainingQuotaMl() - heldMl));
+        }
+
+        return QuotaDeduction.applied(quota.getAllocatedQuotaMl(),
+                quota.getRemainingQuotaMl() + amountMl, quota.getRemainingQuotaMl());
+    }
+
+    private void checkAndQueueLowQuotaWarning(Vehicle vehicle, String fuelType, QuotaDeduction deduction) {
+        double remainingQuota = FuelUnits.toLitres(deduction.getQuotaAfterMl());
+        long allocatedQuotaMl = deduction.getAllocatedQuotaMl();
+        double remainingPercentage = (deduction.getQuotaAfterMl() * 100.0) / allocatedQuotaMl;
+        double previousPercentage = (deduction.getQuotaBeforeMl() * 100.0) / allocatedQuotaMl;
 
         if (remainingPercentage <= CRITICAL_QUOTA_THRESHOLD_PERCENTAGE &&
                 previousPercentage > CRITICAL_QUOTA_THRESHOLD_PERCENTAGE) {
 
-            sendCriticalQuotaWarning(vehicle, remainingQuota, quota.getFuelType());
+            queueLowQuotaWarning(vehicle, remainingQuota, fuelType, CRITICAL_QUOTA_THRESHOLD_PERCENTAGE);
         }
         else if (remainingPercentage <= LOW_QUOTA_THRESHOLD_PERCENTAGE &&
                 previousPercentage > LOW_QUOTA_THRESHOLD_PERCENTAGE) {
 
-            sendLowQuotaWarning(vehicle, remainingQuota, quota.getFuelType());
+            queueLowQuotaWarning(vehicle, remainingQuota, fuelType, LOW_QUOTA_THRESHOLD_PERCENTAGE);
         }
     }
 
-    private boolean sendLowQuotaWarning(Vehicle vehicle, double remainingQuota, String fuelType) {
-        try {
-            return notificationService.sendLowQuotaWarning(
-                    vehicle.getOwner().getPhoneNumber(),
-                    vehicle.getOwner().getEmail(),
-                    vehicle.getRegistrationNumber(),
-                    remainingQuota,
-                    fuelType,
-                    LOW_QUOTA_THRESHOLD_PERCENTAGE
-            );
-        } catch (Exception e) {
-            System.err.println("Failed to send low quota warning: " + e.getMessage());
-            return false;
-        }
-    }
-
-    private boolean sendCriticalQuotaWarning(Vehicle vehicle, double remainingQuota, String fuelType) {
-        try {
-            return notificationService.sendLowQuotaWarning(
-                    vehicle.getOwner().getPhoneNumber(),
-                    vehicle.getOwner().getEmail(),
-                    vehicle.getRegistrationNumber(),
-                    remainingQuota,
-                    fuelType,
-                    CRITICAL_QUOTA_THRESHOLD_PERCENTAGE
-            );
-        } catch (Exception e) {
-            System.err.println("Failed to send critical quota warning: " + e.getMessage());
-            return false;
-        }
+    private void queueLowQuotaWarning(Vehicle vehicle, double remainingQuota, String fuelType, double threshold) {
+        String message = notificationService.createLowQuotaWarningMessage(
+                vehicle.getRegistrationNumber(), remainingQuota, fuelType, threshold);
+        notificationOutboxService.enqueueMessage(vehicle.getOwner().getPhoneNumber(), message);
     }
 
     public boolean hasSufficientQuota(Vehicle vehicle, String fuelType, double requestedAmount) {
-        FuelQuota quota = getCurrentQuota(vehicle, fuelType);
-        return quota.getRemainingQuota() >= requestedAmount;
+        return getRemainingQuotaMl(vehicle, fuelType) >= FuelUnits.toMillilitres(requestedAmount);
     }
 
-    public double getRemainingQuota(Vehicle vehicle, String fuelType) {
+    public long getRemainingQuotaMl(Vehicle vehicle, String fuelType) {
+        if (quotaLedger.isEnabled()) {
+            return quotaLedger.getBalance(vehicle.getId(), fuelType, () -> getCurrentQuota(vehicle, fuelType))
+                    .getRemainingQuotaMl();
+        }
         FuelQuota quota = getCurrentQuota(vehicle, fuelType);
-        return quota.getRemainingQuota();
+        return quota.getRemainingQuotaMl();
     }
 
     public FuelQuotaInfo getQuotaInfo(Vehicle vehicle, String fuelType) {
+        if (quotaLedger.isEnabled()) {
+            QuotaLedger.Balance balance = quotaLedger.getBalance(vehicle.getId(), fuelType,
+                    () -> getCurrentQuota(vehicle, fuelType));
+            return buildQuotaInfo(balance.getQuotaId(), balance.getAllocatedQuotaMl(), balance.getRemainingQuotaMl(),
+                    balance.getStartDate(), balance.getEndDate());
+        }
+
         FuelQuota quota = getCurrentQuota(vehicle, fuelType);
+        return buildQuotaInfo(quota.getId(), quota.getAllocatedQuotaMl(), quota.getRemainingQuotaMl(),
+                quota.getStartDate(), quota.getEndDate());
+    }
 
+    // Quota info is what the API returns, so it carries litres
+    private FuelQuotaInfo buildQuotaInfo(Long quotaId, long allocatedQuotaMl, long remainingQuotaMl,
+                                         long startDate, long endDate) {
         return new FuelQuotaInfo(
-                quota.getId(),
-                quota.getAllocatedQuota(),
-                quota.getRemainingQuota(),
-                quota.getAllocatedQuota() - quota.getRemainingQuota(),
-                quota.getStartDate(),
-                quota.getEndDate(),
-                isQuotaExpiringSoon(quota),
-                getQuotaUsagePercentage(quota)
+                quotaId,
+                FuelUnits.toLitres(allocatedQuotaMl),
+                FuelUnits.toLitres(remainingQuotaMl),
+                FuelUnits.toLitres(allocatedQuotaMl - remainingQuotaMl),
+                startDate,
+                endDate,
+                isQuotaExpiringSoon(endDate),
+                getQuotaUsagePercentage(allocatedQuotaMl, remainingQuotaMl)
         );
     }
 
     public FuelQuota resetQuota(Vehicle vehicle, String fuelType) {
         try {
-            Optional<FuelQuota> existingQuota = fuelQuotaRepository
-                    .findByVehicleAndFuelTypeAndEndDateGreaterThanEqual(vehicle, fuelType, System.currentTimeMillis());
-
-            if (existingQuota.isPresent()) {
-                fuelQuotaRepository.delete(existingQuota.get());
-            }
-
-            LocalDate now = LocalDate.now();
-            LocalDate startOfMonth = now.with(TemporalAdjusters.firstDayOfMonth());
-            LocalDate endOfMonth = now.with(TemporalAdjusters.lastDayOfMonth());
-
-            long startTimestamp = startOfMonth.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-            long endTimestamp = endOfMonth.atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            LocalDate now = periodClock.today();
 
-            FuelQuota newQuota = createNewMonthlyQuota(vehicle, fuelType, startTimestamp, endTimestamp);
+            FuelQuota newQuota = allocateMonthlyQuota(vehicle, fuelType);
+            quotaLedger.evict(vehicle.getId(), fuelType);
 
             try {
                 notificationService.sendNewQuotaAllocationNotification(
                         vehicle.getOwner().getPhoneNumber(),
                         vehicle.getOwner().getEmail(),
                         vehicle.getRegistrationNumber(),
-                        newQuota.getAllocatedQuota(),
+                        FuelUnits.toLitres(newQuota.getAllocatedQuotaMl()),
                         now.getMonth().toString() + " " + now.getYear()
                 );
             } catch (Exception e) {
@@ -326,16 +395,45 @@ public class FuelQuotaService {
         }
     }
 
-    private boolean isQuotaExpiringSoon(FuelQuota quota) {
+    private boolean isQuotaExpiringSoon(long endDate) {
         long threeDaysInMillis = 3 * 24 * 60 * 60 * 1000L;
-        long currentTime = System.currentTimeMillis();
-        return (quota.getEndDate() - currentTime) <= threeDaysInMillis;
+        long currentTime = periodClock.millis();
+        return (endDate - currentTime) <= threeDaysInMillis;
     }
 
-    private double getQuotaUsagePercentage(FuelQuota quota) {
-        if (quota.getAllocatedQuota() == 0) return 0;
-        double usedQuota = quota.getAllocatedQuota() - quota.getRemainingQuota();
-        return (usedQuota / quota.getAllocatedQuota()) * 100;
+    private double getQuotaUsagePercentage(long allocatedQuotaMl, long remainingQuotaMl) {
+        if (allocatedQuotaMl == 0) return 0;
+        long usedQuotaMl = allocatedQuotaMl - remainingQuotaMl;
+        return (usedQuotaMl * 100.0) / allocatedQuotaMl;
+    }
+
+    // Outcome of a deduction, in millilitres
+    public static class QuotaDeduction {
+        private final boolean success;
+        private final long allocatedQuotaMl;
+        private final long quotaBeforeMl;
+        private final long quotaAfterMl;
+
+        private QuotaDeduction(boolean success, long allocatedQuotaMl, long quotaBeforeMl, long quotaAfterMl) {
+            this.success = success;
+            this.allocatedQuotaMl = allocatedQuotaMl;
+            this.quotaBeforeMl = quotaBeforeMl;
+            this.quotaAfterMl = quotaAfterMl;
+        }
+
+        static QuotaDeduction applied(long allocatedQuotaMl, long quotaBeforeMl, long quotaAfterMl) {
+            return new QuotaDeduction(true, allocatedQuotaMl, quotaBeforeMl, quotaAfterMl);
+        }
+
+        static QuotaDeduction rejected(long allocatedQuotaMl, long remainingQuotaMl) {
+            return new QuotaDeduction(false, allocatedQuotaMl, remainingQuotaMl, remainingQuotaMl);
+        }
+
+        // Getters
+        public boolean isSuccess() { return success; }
+        public long getAllocatedQuotaMl() { return allocatedQuotaMl; }
+        public long getQuotaBeforeMl() { return quotaBeforeMl; }
+        public long getQuotaAfterMl() { return quotaAfterMl; }
     }
 
     public static class FuelQuotaInfo {
@@ -11,7 +11,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.ZoneId;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -25,6 +24,9 @@ public class FuelStationService {
     @Autowired
     private FuelTransactionRepository fuelTransactionRepository;
 
+    @Autowired
+    private QuotaPeriodClock periodClock;
+
 
     public FuelStation registerStation(FuelStationRegistrationRequest request, User owner) {
         // Validate registration number format
@@ -148,9 +150,9 @@ public class FuelStationService {
         FuelStation station = getStationById(stationId, userId, isAdmin);
 
         // Get today's date range
-        LocalDate today = LocalDate.now();
-        long startOfDay = today.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-        long endOfDay = today.atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        LocalDate today = periodClock.today();
+        long startOfDay = periodClock.startOfDay();
+        long endOfDay = periodClock.endOfDay();
 
         // Get all transactions for this station
         List<FuelTransaction> allStationTransactions = fuelTransactionRepository.findAll().stream()
@@ -163,30 +165,30 @@ public class FuelStationService {
                 .collect(Collectors.toList());
 
         // Calculate today's statistics
-        double todayPetrolDispensed = todayTransactions.stream()
+        double todayPetrolDispensed = FuelUnits.toLitres(todayTransactions.stream()
                 .filter(t -> "Petrol".equalsIgnoreCase(t.getFuelType()))
-                .mapToDouble(FuelTransaction::getAmount)
-                .sum();
+                .mapToLong(FuelTransaction::getAmountMl)
+                .sum());
 
-        double todayDieselDispensed = todayTransactions.stream()
+        double todayDieselDispensed = FuelUnits.toLitres(todayTransactions.stream()
                 .filter(t -> "Diesel".equalsIgnoreCase(t.getFuelType()))
-                .mapToDouble(FuelTransaction::getAmount)
-                .sum();
+                .mapToLong(FuelTransaction::getAmountMl)
+                .sum());
 
         // Calculate total statistics
-        double totalFuelDispensed = allStationTransactions.stream()
-                .mapToDouble(FuelTransaction::getAmount)
-                .sum();
+        double totalFuelDispensed = FuelUnits.toLitres(allStationTransactions.stream()
+                .mapToLong(FuelTransaction::getAmountMl)
+                .sum());
 
-        double totalPetrolDispensed = allStationTransactions.stream()
+        double totalPetrolDispensed = FuelUnits.toLitres(allStationTransactions.stream()
                 .filter(t -> "Petrol".equalsIgnoreCase(t.getFuelType()))
-                .mapToDouble(FuelTransaction::getAmount)
-                .sum();
+                .mapToLong(FuelTransaction::getAmountMl)
+                .sum());
 
-        double totalDieselDispensed = allStationTransactions.stream()
+        double totalDieselDispensed = FuelUnits.toLitres(allStationTransactions.stream()
                 .filter(t -> "Diesel".equalsIgnoreCase(t.getFuelType()))
-                .mapToDouble(FuelTransaction::getAmount)
-                .sum();
+                .mapToLong(FuelTransaction::getAmountMl)
+                .sum());
 
         // Create dashboard response
         StationDashboardResponse dashboard = new StationDashboardResponse();
@@ -218,8 +220,8 @@ public class FuelStationService {
     public Object getStationStatistics(Long stationId, LocalDate startDate, LocalDate endDate, Long userId, boolean isAdmin) {
         FuelStation station = getStationById(stationId, userId, isAdmin);
 
-        long startTimestamp = startDate.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-        long endTimestamp = endDate.atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long startTimestamp = periodClock.startOfDay(startDate);
+        long endTimestamp = periodClock.endOfDay(endDate);
 
         List<FuelTransaction> transactions = fuelTransactionRepository.findAll().stream()
                 .filter(t -> t.getStation().getId().equals(stationId) &&
@@ -228,15 +230,15 @@ public class FuelStationService {
                 .collect(Collectors.toList());
 
         // Calculate statistics
-        double totalPetrol = transactions.stream()
+        double totalPetrol = FuelUnits.toLitres(transactions.stream()
                 .filter(t -> "Petrol".equalsIgnoreCase(t.getFuelType()))
-                .mapToDouble(FuelTransaction::getAmount)
-                .sum();
+                .mapToLong(FuelTransaction::getAmountMl)
+                .sum());
 
-        double totalDiesel = transactions.stream()
+        double totalDiesel = FuelUnits.toLitres(transactions.stream()
                 .filter(t -> "Diesel".equalsIgnoreCase(t.getFuelType()))
-                .mapToDouble(FuelTransaction::getAmount)
-                .sum();
+                .mapToLong(FuelTransaction::getAmountMl)
+                .sum());
 
         return new Object() {
             public final String stationName = station.getName();
@@ -0,0 +1,21 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+/**
+ * Fuel quantities are stored and computed as whole millilitres so balance checks and report
+ * totals are exact. Litres only appear at the API edges.
+ */
+public final class FuelUnits {
+
+    public static final long MILLILITRES_PER_LITRE = 1000;
+
+    private FuelUnits() {
+    }
+
+    public static long toMillilitres(double litres) {
+        return Math.round(litres * MILLILITRES_PER_LITRE);
+    }
+
+    public static double toLitres(long millilitres) {
+        return millilitres / (double) MILLILITRES_PER_LITRE;
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.example.fuelQuotaManagementSystem.entity.FuelTransaction;
+import com.example.fuelQuotaManagementSystem.entity.NotificationOutbox;
+import com.example.fuelQuotaManagementSystem.entity.Vehicle;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transactional outbox for pump notifications. Pumps insert an outbox row in the same
+ * transaction as the fuel transaction and return; a scheduled dispatcher claims due rows,
+ * sends them on a worker pool and records the delivery status, so pump latency no longer
+ * depends on the SMS provider.
+ *
+ * The dispatcher polls on its own thread rather than the shared @Scheduled thread, because it
+ * waits for each batch of sends and would otherwise hold up the ledger flush, the reservation
+ * sweep and the token revocation sync for as long as the SMS provider takes.
+ *
+ * Rows are claimed with FOR UPDATE SKIP LOCKED and a lease, so several backend instances can
+ * drain the same table and a row claimed by a crashed instance is picked up again once its
+ * lease expires.
+ *
+ * Enqueueing runs in a savepoint of the pump's transaction: a message that cannot be queued is
+ * logged and dropped, and the pump still commits. Sent and failed rows are purged after
+ * notification.outbox.retention-days.
+ */
+@Service
+public class NotificationOutboxService {
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${notification.outbox.workers:4}")
+    private int workers;
+
+    @Value("${notification.outbox.poll-interval-ms:1000}")
+    private long pollIntervalMillis;
+
+    @Value("${notification.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${notification.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${notification.outbox.lease-ms:60000}")
+    private long leaseMillis;
+
+    @Value("${notification.outbox.retry-backoff-ms:30000}")
+    private long retryBackoffMillis;
+
+    @Value("${notification.outbox.retention-days:30}")
+    private int retentionDays;
+
+    // Same switch Spring Boot uses for Tomcat and @Scheduled; needs Java 21
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private static final int PURGE_CHUNK_SIZE = 1000;
+
+    private Executor workerPool;
+    private ScheduledExecutorService dispatcher;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO notification_outbox (transaction_id, phone_number, message, status, attempts, " +
+            "next_attempt_at, created_at) VALUES (?, ?, ?, ?, 0, ?, ?)";
+
+    private static final String CLAIM_SQL =
+            "SELECT id, transaction_id, phone_number, message, attempts FROM notification_outbox " +
+            "WHERE status IN ('PENDING', 'SENDING') AND next_attempt_at <= ? " +
+            "ORDER BY next_attempt_at LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    @PostConstruct
+    public void startWorkers() {
+        if (virtualThreads) {
+            // One virtual thread per send, still capped so Twilio sees at most `workers` concurrent calls
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("notification-outbox-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(workers);
+            workerPool = executor;
+        } else {
+            workerPool = Executors.newFixedThreadPool(workers);
+        }
+
+        dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-outbox-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.scheduleWithFixedDelay(this::dispatchSafely, pollIntervalMillis, pollIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopWorkers() {
+        dispatcher.shutdownNow();
+        if (workerPool instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+
+     //Queue the pump notification; must run inside the transaction that inserts the fuel transaction
+
+    public void enqueueTransactionNotifications(List<FuelTransaction> transactions) {
+        if (!notificationService.isSmsEnabled()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<Object[]> batch = new ArrayList<>();
+
+        for (FuelTransaction transaction : transactions) {
+            Vehicle vehicle = transaction.getVehicle();
+            String phoneNumber = vehicle.getOwner().getPhoneNumber();
+            if (phoneNumber == null || phoneNumber.trim().isEmpty()) {
+                continue;
+            }
+
+            String message = notificationService.createFuelTransactionSMSMessage(
+                    vehicle.getRegistrationNumber(),
+                    transaction.getFuelType(),
+                    FuelUnits.toLitres(transaction.getAmountMl()),
+                    transaction.getStation().getName(),
+                    FuelUnits.toLitres(transaction.getQuotaAfterMl()),
+                    transaction.getId()
+            );
+            batch.add(new Object[]{transaction.getId(), phoneNumber, message,
+                    NotificationOutbox.STATUS_PENDING, now, now});
+        }
+
+        if (!batch.isEmpty()) {
+            insert(batch);
+        }
+    }
+
+
+     //Queue a standalone SMS, e.g. a low quota warning; joins the caller's transaction if there is one
+
+    public void enqueueMessage(String phoneNumber, String message) {
+        if (!notificationService.isSmsEnabled() || phoneNumber == null || phoneNumber.trim().isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<Object[]> row = new ArrayList<>();
+        row.add(new Object[]{null, phoneNumber, message, NotificationOutbox.STATUS_PENDING, now, now});
+        insert(row);
+    }
+
+    private void insert(List<Object[]> rows) {
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                // Inside a transaction, a failed insert rolls back to here and the caller's work stays
+                Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+                try {
+                    jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+                } catch (RuntimeException e) {
+                    if (savepoint != null) {
+                        connection.rollback(savepoint);
+                    }
+                    throw e;
+                }
+                if (savepoint != null) {
+                    connection.releaseSavepoint(savepoint);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // The fuel is already in the tank; losing the SMS is better than failing the pump
+            System.err.println("Failed to queue " + rows.size() + " notifications: " + e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${notification.outbox.purge-interval-ms:3600000}")
+    public void purgeFinished() {
+        try {
+            purgeFinishedBefore(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays));
+        } catch (Exception e) {
+            System.err.println("Failed to purge notification outbox: " + e.getMessage());
+        }
+    }
+
+
+     //Delete sent and failed messages last attempted before the cutoff, in chunks to keep locks short
+
+    public int purgeFinishedBefore(long cutoff) {
+        int total = 0;
+        int deleted;
+        do {
+            // The last attempt time is next_attempt_at, so the due index covers this
+            deleted = jdbcTemplate.update(
+                    "DELETE FROM notification_outbox WHERE status IN (?, ?) AND next_attempt_at < ? LIMIT ?",
+                    NotificationOutbox.STATUS_SENT, NotificationOutbox.STATUS_FAILED, cutoff, PURGE_CHUNK_SIZE);
+            total += deleted;
+        } while (deleted == PURGE_CHUNK_SIZE);
+        return total;
+    }
+
+    private void dispatchSafely() {
+        try {
+            dispatch();
+        } catch (Exception e) {
+            // An exception would cancel the periodic task; log it and poll again next time
+            System.err.println("Notification outbox dispatch failed: " + e.getMessage());
+        }
+    }
+
+
+     //Claim due messages, send them on the worker pool and record the outcome
+
+    public void dispatch() {
+        List<OutboxMessage> claimed;
+        do {
+            claimed = claimDueMessages();
+            if (claimed.isEmpty()) {
+                return;
+            }
+
+            List<CompletableFuture<Void>> sends = new ArrayList<>();
+            for (OutboxMessage message : claimed) {
+                sends.add(CompletableFuture.runAsync(() -> send(message), workerPool));
+            }
+            CompletableFuture.allOf(sends.toArray(new CompletableFuture[0])).join();
+
+            recordOutcomes(claimed);
+        } while (claimed.size() == batchSize);
+    }
+
+    private List<OutboxMessage> claimDueMessages() {
+        return transactionTemplate.execute(status -> {
+            long now = System.currentTimeMillis();
+            List<OutboxMessage> messages = jdbcTemplate.query(CLAIM_SQL,
+                    (rs, rowNum) -> new OutboxMessage(
+                            rs.getLong("id"),
+                            (Long) rs.getObject("transaction_id"),
+                            rs.getString("phone_number"),
+                            rs.getString("message"),
+                            rs.getInt("attempts")),
+                    now, batchSize);
+
+            if (!messages.isEmpty()) {
+                // The lease keeps other dispatchers off these rows while we send them
+                List<Object[]> leases = new ArrayList<>();
+                for (OutboxMessage message : messages) {
+                    leases.add(new Object[]{NotificationOutbox.STATUS_SENDING, now + leaseMillis, message.id});
+                }
+                jdbcTemplate.batchUpdate(
+                        "UPDATE notification_outbox SET status = ?, attempts = attempts + 1, next_attempt_at = ? WHERE id = ?",
+                        leases);
+            }
+            return messages;
+        });
+    }
+
+    private void send(OutboxMessage message) {
+        try {
+            message.sent = notificationService.sendSMS(message.phoneNumber, message.message);
+            if (!message.sent) {
+                message.error = "SMS provider did not accept the message";
+            }
+        } catch (Exception e) {
+            message.error = e.getMessage();
+        }
+    }
+
+    private void recordOutcomes(List<OutboxMessage> messages) {
+        long now = System.currentTimeMillis();
+        List<Object[]> outcomes = new ArrayList<>();
+        List<Long> notifiedTransactionIds = new ArrayList<>();
+
+        for (OutboxMessage message : messages) {
+            if (message.sent) {
+                outcomes.add(new Object[]{NotificationOutbox.STATUS_SENT, now, null, now, message.id});
+                if (message.transactionId != null) {
+                    notifiedTransactionIds.add(message.transactionId);
+                }
+            } else if (message.attempts + 1 >= maxAttempts) {
+                outcomes.add(new Object[]{NotificationOutbox.STATUS_FAILED, now, truncate(message.error), null, message.id});
+            } else {
+                // Back off linearly with the number of attempts made so far
+                long retryAt = now + retryBackoffMillis * (message.attempts + 1);
+                outcomes.add(new Object[]{NotificationOutbox.STATUS_PENDING, retryAt, truncate(message.error), null, message.id});
+            }
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(
+                        "UPDATE notification_outbox SET status = ?, next_attempt_at = ?, last_error = ?, sent_at = ? WHERE id = ?",
+                        outcomes);
+                if (!notifiedTransactionIds.isEmpty()) {
+                    namedParameterJdbcTemplate.update(
+                            "UPDATE fuel_transactions SET notification_sent = true WHERE id IN (:ids)",
+                            new MapSqlParameterSource("ids", notifiedTransactionIds));
+                }
+            });
+        } catch (Exception e) {
+            // The leases expire and the messages are retried
+            System.err.println("Failed to record notification outcomes: " + e.getMessage());
+        }
+    }
+
+    private String truncate(String error) {
+        if (error == null) return null;
+        return error.length() > 500 ? error.substring(0, 500) : error;
+    }
+
+    private static class OutboxMessage {
+        private final long id;
+        private final Long transactionId;
+        private final String phoneNumber;
+        private final String message;
+        private final int attempts;
+        private volatile boolean sent;
+        private volatile String error;
+
+        private OutboxMessage(long id, Long transactionId, String phoneNumber, String message, int attempts) {
+            this.id = id;
+            this.transactionId = transactionId;
+            this.phoneNumber = phoneNumber;
+            this.message = message;
+            this.attempts = attempts;
+        }
+    }
+}
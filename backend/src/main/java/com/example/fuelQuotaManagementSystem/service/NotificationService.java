@@ -33,6 +33,10 @@ public class NotificationService {
 
     private final RestTemplate restTemplate = new RestTemplate();
 
+    public boolean isSmsEnabled() {
+        return smsEnabled;
+    }
+
 
      //Send SMS notification using Twilio REST API
 
@@ -138,10 +142,7 @@ public class NotificationService {
     public boolean sendLowQuotaWarning(String phoneNumber, String email, String vehicleRegNo,
                                        double remainingQuota, String fuelType, double warningThreshold) {
 
-        String smsMessage = String.format(
-                "Low Fuel Quota Alert: %s has only %.1fL %s remaining (below %.1fL threshold). Please refill soon!",
-                vehicleRegNo, remainingQuota, fuelType, warningThreshold
-        );
+        String smsMessage = createLowQuotaWarningMessage(vehicleRegNo, remainingQuota, fuelType, warningThreshold);
 
         if (phoneNumber != null && !phoneNumber.trim().isEmpty()) {
             return sendSMS(phoneNumber, smsMessage);
@@ -151,6 +152,15 @@ public class NotificationService {
     }
 
 
+    public String createLowQuotaWarningMessage(String vehicleRegNo, double remainingQuota, String fuelType,
+                                               double warningThreshold) {
+        return String.format(
+                "Low Fuel Quota Alert: %s has only %.1fL %s remaining (below %.1fL threshold). Please refill soon!",
+                vehicleRegNo, remainingQuota, fuelType, warningThreshold
+        );
+    }
+
+
     public boolean sendQuotaExpiryWarning(String phoneNumber, String email, String vehicleRegNo,
                                           double remainingQuota, String expiryDate) {
 
@@ -215,7 +225,7 @@ public class NotificationService {
 
      //Create SMS message for fuel transaction
 
-    private String createFuelTransactionSMSMessage(String vehicleRegNo, String fuelType,
+    String createFuelTransactionSMSMessage(String vehicleRegNo, String fuelType,
                                                    double amount, String stationName,
                                                    double remainingQuota, Long transactionId) {
         return String.format(
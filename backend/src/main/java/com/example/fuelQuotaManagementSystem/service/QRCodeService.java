@@ -1,56 +1,374 @@
 package com.example.fuelQuotaManagementSystem.service;
 
 import com.example.fuelQuotaManagementSystem.entity.Vehicle;
+import com.example.fuelQuotaManagementSystem.entity.VehicleQrCode;
+import com.example.fuelQuotaManagementSystem.qr.QrPayloadFormat;
+import com.example.fuelQuotaManagementSystem.qr.QrVerificationException;
+import com.example.fuelQuotaManagementSystem.qr.QrVerifier;
+import com.example.fuelQuotaManagementSystem.qr.VerifiedQrPayload;
+import com.example.fuelQuotaManagementSystem.repository.VehicleQrCodeRepository;
+import com.example.fuelQuotaManagementSystem.repository.VehicleRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
-
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * QR payloads are issued in the compact binary format described in QrPayloadFormat, carrying the
+ * signing key id, base64url-encoded so they are also safe in URL paths. Compact payloads are
+ * verified by QrVerifier from the qr-verifier module, the same code station terminals embed to
+ * check codes offline.
+ *
+ * A key id is either an Ed25519 key pair (qr.signing.private-keys with its public key in
+ * qr.signing.public-keys), which signs version 4 codes, or an HMAC secret (qr.signing.key as id 0,
+ * qr.signing.keys for ids 1-255), which signs version 3 codes. Terminals are only ever given the
+ * public keys: an HMAC secret verifies and signs alike, so HMAC codes are checked on the backend.
+ *
+ * New codes are signed with qr.signing.active-key-id and every configured key verifies, so a key
+ * can be rotated by adding the new one, making it active, re-signing all vehicles
+ * (QrResignService) and removing the old one once the new codes are out.
+ *
+ * Version 2 payloads (the same layout without the key id byte, always signed with key 0) and
+ * the older Base64 JSON payloads with a salted SHA-256 hash are still accepted when scanned.
+ *
+ * Only the payload currently stored for a vehicle is accepted: a code replaced by a regeneration
+ * or a re-signing job still carries a valid MAC, so a scan that misses the cache also compares it
+ * with the stored payload.
+ *
+ * Stations scan the same vehicles again and again, so verified payloads are kept in a bounded
+ * LRU cache keyed by the raw payload (its String hash, confirmed by equality) together with the
+ * vehicle id they resolved to. Entries of a vehicle are dropped once a new payload for it has
+ * committed. Payloads that failed verification are remembered in a smaller, time-limited cache
+ * so repeated scans of a tampered or replaced code are rejected without re-checking.
+ *
+ * Issued payloads are stored in vehicle_qr_codes rather than on the vehicle row, so vehicle
+ * reads and the eager vehicle joins of quotas and transactions never carry them. QR images are
+ * drawn by QrCodeEncoder straight from the payload.
+ */
 @Service
 public class QRCodeService {
 
+    public static final int DEFAULT_KEY_ID = QrPayloadFormat.DEFAULT_KEY_ID;
+
+    // Light border around the symbol, in modules, as required by the QR specification
+    private static final int QUIET_ZONE_MODULES = 4;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private VehicleQrCodeRepository vehicleQrCodeRepository;
+
+    @Value("${qr.signing.key:}")
+    private String signingKey;
+
+    // Further keys as id:secret pairs, comma-separated
+    @Value("${qr.signing.keys:}")
+    private String additionalSigningKeys;
+
+    // Ed25519 key pairs as id:base64 pairs, PKCS#8 private keys and X.509 public keys, comma-separated
+    @Value("${qr.signing.private-keys:}")
+    private String privateSigningKeys;
+
+    @Value("${qr.signing.public-keys:}")
+    private String publicSigningKeys;
+
+    @Value("${qr.signing.active-key-id:0}")
+    private int activeKeyId;
+
+    @Value("${qr.cache.size:10000}")
+    private int cacheSize;
+
+    @Value("${qr.cache.negative-size:2000}")
+    private int negativeCacheSize;
+
+    @Value("${qr.cache.negative-ttl-seconds:600}")
+    private long negativeTtlSeconds;
+
+    @Value("${qr.image.cache-size:1000}")
+    private int imageCacheSize;
+
+    @Value("${qr.image.module-pixels:8}")
+    private int imageModulePixels;
+
+    private QrVerifier qrVerifier;
+
+    // Signing keys indexed by key id; each thread clones the prototypes it needs
+    private final Mac[] macPrototypes = new Mac[QrPayloadFormat.MAX_KEY_ID + 1];
+    private ThreadLocal<Mac[]> macs;
+    private final PrivateKey[] privateKeys = new PrivateKey[QrPayloadFormat.MAX_KEY_ID + 1];
+    private ThreadLocal<Signature[]> signers;
+
+    // Verified payload -> registration number and vehicle id, least recently used evicted first
+    private StripedLruCache<String, VerifiedQR> verifiedCodes;
+    // Payload that failed verification -> when that result stops being trusted
+    private StripedLruCache<String, Long> rejectedCodes;
+    // Vehicle id -> rendered PNG, valid while its ETag matches the vehicle
+    private StripedLruCache<Long, QRImage> vehicleImages;
+
+    // Bumped by every invalidation; a verification that overlapped one is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    public void init() throws GeneralSecurityException {
+        Map<Integer, String> keys = parseKeys("qr.signing.keys", additionalSigningKeys, DEFAULT_KEY_ID + 1);
+        if (!signingKey.isEmpty()) {
+            keys.put(DEFAULT_KEY_ID, signingKey);
+        }
+        Map<Integer, byte[]> macKeys = new HashMap<>();
+        for (Map.Entry<Integer, String> key : keys.entrySet()) {
+            macKeys.put(key.getKey(), key.getValue().getBytes(StandardCharsets.UTF_8));
+            macPrototypes[key.getKey()] = hmac(key.getValue());
+        }
+
+        Map<Integer, PublicKey> publicKeys = new HashMap<>();
+        for (Map.Entry<Integer, String> key : parseKeys("qr.signing.public-keys", publicSigningKeys, DEFAULT_KEY_ID).entrySet()) {
+            publicKeys.put(key.getKey(), QrVerifier.decodePublicKey(key.getValue()));
+        }
+        for (Map.Entry<Integer, String> key : parseKeys("qr.signing.private-keys", privateSigningKeys, DEFAULT_KEY_ID).entrySet()) {
+            int keyId = key.getKey();
+            PrivateKey privateKey = KeyFactory.getInstance(QrPayloadFormat.SIGNATURE_ALGORITHM)
+                    .generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(key.getValue())));
+            if (!publicKeys.containsKey(keyId) || !isKeyPair(privateKey, publicKeys.get(keyId))) {
+                throw new IllegalStateException("qr.signing.public-keys has no matching public key for QR private key " + keyId);
+            }
+            privateKeys[keyId] = privateKey;
+        }
+
+        try {
+            qrVerifier = new QrVerifier(macKeys, publicKeys);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        if (!hasSigningKey(activeKeyId)) {
+            throw new IllegalStateException("No QR signing key configured for qr.signing.active-key-id=" + activeKeyId);
+        }
+        if (privateKeys[activeKeyId] == null) {
+            System.out.println("QR codes are signed with HMAC key " + activeKeyId + ", which station terminals cannot verify offline;"
+                    + " configure an Ed25519 key pair in qr.signing.private-keys and qr.signing.public-keys and make it active");
+        }
+        macs = ThreadLocal.withInitial(() -> new Mac[QrPayloadFormat.MAX_KEY_ID + 1]);
+        signers = ThreadLocal.withInitial(() -> new Signature[QrPayloadFormat.MAX_KEY_ID + 1]);
+
+        verifiedCodes = new StripedLruCache<>(cacheSize);
+        rejectedCodes = new StripedLruCache<>(negativeCacheSize);
+        vehicleImages = new StripedLruCache<>(imageCacheSize);
+    }
+
 
     public String generateQRCode(Vehicle vehicle) {
+        return signQRCode(vehicle.getRegistrationNumber(), vehicle.getFuelType(), activeKeyId, System.currentTimeMillis());
+    }
+
+
+     //Build a signed payload without touching the scan caches; the bulk re-signing job calls this directly
+
+    public String signQRCode(String registrationNumber, String fuelType, int keyId, long issuedAtMillis) {
+        if (!hasSigningKey(keyId)) {
+            throw new IllegalArgumentException("No QR signing key configured with id " + keyId);
+        }
+
+        boolean ed25519 = privateKeys[keyId] != null;
+        int header = QrPayloadFormat.HEADER_LENGTH;
+        byte[] payload = new byte[ed25519 ? QrPayloadFormat.PAYLOAD_LENGTH_ED25519 : QrPayloadFormat.PAYLOAD_LENGTH];
+        payload[0] = ed25519 ? QrPayloadFormat.VERSION_ED25519 : QrPayloadFormat.VERSION;
+        payload[1] = (byte) keyId;
+        packRegistrationNumber(registrationNumber, payload, header);
+        payload[header + QrPayloadFormat.FUEL_TYPE_OFFSET] = fuelTypeCode(fuelType);
+
+        long issuedAtSeconds = issuedAtMillis / 1000;
+        int issuedAt = header + QrPayloadFormat.ISSUED_AT_OFFSET;
+        payload[issuedAt] = (byte) (issuedAtSeconds >>> 24);
+        payload[issuedAt + 1] = (byte) (issuedAtSeconds >>> 16);
+        payload[issuedAt + 2] = (byte) (issuedAtSeconds >>> 8);
+        payload[issuedAt + 3] = (byte) issuedAtSeconds;
+
+        int signedLength = header + QrPayloadFormat.BODY_LENGTH;
+        if (ed25519) {
+            byte[] signature = signEd25519(payload, keyId, signedLength);
+            System.arraycopy(signature, 0, payload, signedLength, QrPayloadFormat.SIGNATURE_LENGTH);
+        } else {
+            byte[] mac = sign(payload, keyId, signedLength);
+            System.arraycopy(mac, 0, payload, signedLength, QrPayloadFormat.MAC_LENGTH);
+        }
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(payload);
+    }
+
+
+    public int getActiveKeyId() {
+        return activeKeyId;
+    }
+
+
+    public boolean hasSigningKey(int keyId) {
+        return keyId >= 0 && keyId <= QrPayloadFormat.MAX_KEY_ID
+                && (macPrototypes[keyId] != null || privateKeys[keyId] != null);
+    }
+
+
+    /**
+     * Saves a new vehicle together with its signed QR payload in one transaction, so a failure
+     * storing the code rolls the vehicle back instead of leaving it registered without one.
+     */
+    @Transactional
+    public Vehicle registerVehicle(Vehicle vehicle) {
+        String payload = generateQRCode(vehicle);
+        Vehicle saved = vehicleRepository.save(vehicle);
+        storeQRCode(saved.getId(), payload);
+        return saved;
+    }
+
+
+    /**
+     * Stores the QR payload of a saved vehicle in vehicle_qr_codes, replacing any earlier one. The
+     * vehicle's updatedAt is bumped so the ETag of its QR image changes with the payload, and
+     * cached scans of the earlier code are dropped once the new one has committed.
+     */
+    @Transactional
+    public void storeQRCode(Long vehicleId, String payload) {
+        long now = System.currentTimeMillis();
+
+        VehicleQrCode qrCode = new VehicleQrCode();
+        qrCode.setVehicleId(vehicleId);
+        qrCode.setPayload(payload);
+        qrCode.setIssuedAt(now);
+        vehicleQrCodeRepository.save(qrCode);
+
+        vehicleRepository.touchUpdatedAt(vehicleId, now);
+        invalidateAfterCommit(Set.of(vehicleId));
+    }
+
+
+    /**
+     * Verifies a scanned payload and resolves the vehicle it was issued for, from the cache when
+     * the same code was scanned recently. Throws for invalid or tampered codes; a vehicle that is
+     * not registered comes back with an empty vehicle id and is not cached.
+     */
+    public VerifiedQR verifyQRCode(String qrCodeData) {
+        if (qrCodeData == null) {
+            throw new RuntimeException("Error decoding QR code: Missing QR code");
+        }
+        VerifiedQR cached = verifiedCodes.get(qrCodeData);
+        if (cached != null) {
+            return cached;
+        }
+
+        Long rejectedUntil = rejectedCodes.get(qrCodeData);
+        if (rejectedUntil != null) {
+            if (rejectedUntil > System.currentTimeMillis()) {
+                throw new RuntimeException("Error decoding QR code: Security validation failed");
+            }
+            rejectedCodes.remove(qrCodeData);
+        }
+
+        long invalidationsBefore = invalidations.get();
+        String registrationNumber;
         try {
-            // Create QR data object
-            Map<String, Object> qrData = new HashMap<>();
-            qrData.put("regNo", vehicle.getRegistrationNumber());
-            qrData.put("chassis", vehicle.getChassisNumber());
-            qrData.put("type", vehicle.getVehicleType());
-            qrData.put("fuel", vehicle.getFuelType());
-            qrData.put("engine", vehicle.getEngineCapacity());
-            qrData.put("timestamp", System.currentTimeMillis());
+            registrationNumber = decodeQRCode(qrCodeData);
+        } catch (RuntimeException e) {
+            rejectCode(qrCodeData);
+            throw e;
+        }
 
-            // Add security hash to prevent tampering
-            String dataString = objectMapper.writeValueAsString(qrData);
-            String hash = generateSecurityHash(dataString);
-            qrData.put("hash", hash);
+        Optional<Long> vehicleId = vehicleRepository.findIdByRegistrationNumber(registrationNumber);
+        VerifiedQR verified = new VerifiedQR(registrationNumber, vehicleId.orElse(null));
+        if (vehicleId.isPresent()) {
+            // A genuine but replaced code: the vehicle has been issued a newer one since
+            Optional<String> currentPayload = vehicleQrCodeRepository.findPayloadByVehicleId(vehicleId.get());
+            if (currentPayload.isEmpty() || !currentPayload.get().equals(qrCodeData)) {
+                rejectCode(qrCodeData);
+                throw new RuntimeException("Error decoding QR code: This QR code has been replaced. Please use the latest QR code of the vehicle");
+            }
+            if (invalidations.get() == invalidationsBefore) {
+                verifiedCodes.put(qrCodeData, verified);
+            }
+        }
+        return verified;
+    }
 
-            // Convert to JSON string
-            String qrCodeData = objectMapper.writeValueAsString(qrData);
 
-            // Encode to Base64 for storage
-            return Base64.getEncoder().encodeToString(qrCodeData.getBytes(StandardCharsets.UTF_8));
+     //Drop cached scan results for these vehicles, e.g. once new QR codes for them have been stored
 
-        } catch (Exception e) {
-            throw new RuntimeException("Error generating QR code: " + e.getMessage());
+    public void invalidateVehicles(Collection<Long> vehicleIds) {
+        if (vehicleIds.isEmpty()) {
+            return;
         }
+        invalidations.incrementAndGet();
+        verifiedCodes.removeValues(verified -> vehicleIds.contains(verified.vehicleId));
+    }
+
+
+     //Invalidate when the current transaction commits, so a scan cannot re-cache an old code in between
+
+    public void invalidateAfterCommit(Collection<Long> vehicleIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidateVehicles(vehicleIds);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidateVehicles(vehicleIds);
+            }
+        });
+    }
+
+    private void rejectCode(String qrCodeData) {
+        rejectedCodes.put(qrCodeData, System.currentTimeMillis() + negativeTtlSeconds * 1000);
     }
 
 
     public String decodeQRCode(String qrCodeData) {
+        if (QrPayloadFormat.isCompactPayload(qrCodeData)) {
+            return verifyCompactPayload(qrCodeData).getRegistrationNumber();
+        }
+        return decodeLegacyQRCode(qrCodeData);
+    }
+
+
+    public Map<String, Object> getVehicleInfoFromQR(String qrCodeData) {
+        if (QrPayloadFormat.isCompactPayload(qrCodeData)) {
+            VerifiedQrPayload payload = verifyCompactPayload(qrCodeData);
+            Map<String, Object> qrData = new HashMap<>();
+            qrData.put("regNo", payload.getRegistrationNumber());
+            qrData.put("fuel", payload.getFuelType());
+            qrData.put("timestamp", payload.getIssuedAtMillis());
+            qrData.put("keyId", payload.getKeyId());
+            return qrData;
+        }
+        return getLegacyVehicleInfo(qrCodeData);
+    }
+
+
+     //Version 1: Base64 JSON with a salted SHA-256 hash, issued before the compact format
+
+    private String decodeLegacyQRCode(String qrCodeData) {
         try {
             // Decode from Base64
             String decodedData = new String(Base64.getDecoder().decode(qrCodeData), StandardCharsets.UTF_8);
@@ -84,7 +402,7 @@ public class QRCodeService {
     }
 
 
-    public Map<String, Object> getVehicleInfoFromQR(String qrCodeData) {
+    private Map<String, Object> getLegacyVehicleInfo(String qrCodeData) {
         try {
             // Decode from Base64
             String decodedData = new String(Base64.getDecoder().decode(qrCodeData), StandardCharsets.UTF_8);
@@ -111,60 +429,38 @@ public class QRCodeService {
     }
 
 
-    public String generateQRCodeImage(String qrData, int width, int height) {
-        try {
-            // Create a simple visual representation
-            // In production, replace this with actual QR code generation using ZXing library
-            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-            Graphics2D g2d = image.createGraphics();
-
-            // Set background to white
-            g2d.setColor(Color.WHITE);
-            g2d.fillRect(0, 0, width, height);
-
-            // Create a pattern to represent QR code
-            g2d.setColor(Color.BLACK);
-
-            // Draw border
-            g2d.drawRect(10, 10, width - 20, height - 20);
-
-            // Draw some pattern squares to simulate QR code
-            int squareSize = 8;
-            for (int x = 20; x < width - 20; x += squareSize * 2) {
-                for (int y = 20; y < height - 20; y += squareSize * 2) {
-                    if ((x + y) % 32 == 0) {
-                        g2d.fillRect(x, y, squareSize, squareSize);
-                    }
-                }
-            }
-
-            // Add corner squares (typical QR code feature)
-            g2d.fillRect(15, 15, 30, 30);
-            g2d.fillRect(width - 45, 15, 30, 30);
-            g2d.fillRect(15, height - 45, 30, 30);
+     //Base64 PNG of the QR symbol for qrData, scaled to fit within width x height
 
-            // Add registration number text at bottom
-            g2d.setFont(new Font("Arial", Font.BOLD, 12));
-            FontMetrics fm = g2d.getFontMetrics();
-
-            Map<String, Object> vehicleInfo = getVehicleInfoFromQR(qrData);
-            String regNo = (String) vehicleInfo.get("regNo");
+    public String generateQRCodeImage(String qrData, int width, int height) {
+        QrCodeEncoder.BitMatrix symbol = QrCodeEncoder.encode(qrData, QrCodeEncoder.ErrorCorrection.M);
+        int modulePixels = Math.max(1, Math.min(width, height) / (symbol.getSize() + QUIET_ZONE_MODULES * 2));
+        return Base64.getEncoder().encodeToString(QrCodeEncoder.toPng(symbol, modulePixels, QUIET_ZONE_MODULES));
+    }
 
-            int textX = (width - fm.stringWidth(regNo)) / 2;
-            g2d.drawString(regNo, textX, height - 5);
 
-            g2d.dispose();
+    /**
+     * PNG of a vehicle's QR code with an ETag derived from Vehicle.updatedAt. Images are cached
+     * per vehicle and re-rendered only when the vehicle row has changed since, which also covers
+     * a regenerated QR code.
+     */
+    public QRImage getVehicleQRImage(Vehicle vehicle) {
+        String etag = vehicleImageETag(vehicle);
+        QRImage cached = vehicleImages.get(vehicle.getId());
+        if (cached != null && cached.etag.equals(etag)) {
+            return cached;
+        }
 
-            // Convert to Base64
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(image, "PNG", baos);
-            byte[] imageBytes = baos.toByteArray();
+        String payload = vehicleQrCodeRepository.findPayloadByVehicleId(vehicle.getId())
+                .orElseThrow(() -> new IllegalArgumentException("No QR code has been issued for this vehicle"));
+        QrCodeEncoder.BitMatrix symbol = QrCodeEncoder.encode(payload, QrCodeEncoder.ErrorCorrection.M);
+        QRImage image = new QRImage(etag, QrCodeEncoder.toPng(symbol, imageModulePixels, QUIET_ZONE_MODULES));
+        vehicleImages.put(vehicle.getId(), image);
+        return image;
+    }
 
-            return Base64.getEncoder().encodeToString(imageBytes);
 
-        } catch (IOException e) {
-            throw new RuntimeException("Error generating QR code image: " + e.getMessage());
-        }
+    public String vehicleImageETag(Vehicle vehicle) {
+        return "\"qr-" + vehicle.getId() + "-" + vehicle.getUpdatedAt() + "\"";
     }
 
 
@@ -201,4 +497,139 @@ public class QRCodeService {
             return true; // Consider expired if we can't determine
         }
     }
-}
\ No newline at end of file
+
+
+    private VerifiedQrPayload verifyCompactPayload(String qrCodeData) {
+        try {
+            return qrVerifier.verify(qrCodeData);
+        } catch (QrVerificationException e) {
+            throw new RuntimeException("Error decoding QR code: " + e.getMessage());
+        }
+    }
+
+    private byte[] sign(byte[] payload, int keyId, int signedLength) {
+        Mac[] threadMacs = macs.get();
+        Mac mac = threadMacs[keyId];
+        if (mac == null) {
+            try {
+                mac = (Mac) macPrototypes[keyId].clone();
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException("HMAC provider does not support cloning", e);
+            }
+            threadMacs[keyId] = mac;
+        }
+        mac.update(payload, 0, signedLength);
+        return mac.doFinal();
+    }
+
+    private byte[] signEd25519(byte[] payload, int keyId, int signedLength) {
+        Signature[] threadSigners = signers.get();
+        try {
+            Signature signer = threadSigners[keyId];
+            if (signer == null) {
+                signer = Signature.getInstance(QrPayloadFormat.SIGNATURE_ALGORITHM);
+                signer.initSign(privateKeys[keyId]);
+                threadSigners[keyId] = signer;
+            }
+            signer.update(payload, 0, signedLength);
+            return signer.sign();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign with QR key " + keyId, e);
+        }
+    }
+
+    private boolean isKeyPair(PrivateKey privateKey, PublicKey publicKey) throws GeneralSecurityException {
+        byte[] probe = "qr-key-pair-check".getBytes(StandardCharsets.UTF_8);
+        Signature signer = Signature.getInstance(QrPayloadFormat.SIGNATURE_ALGORITHM);
+        signer.initSign(privateKey);
+        signer.update(probe);
+        byte[] signature = signer.sign();
+
+        Signature verifier = Signature.getInstance(QrPayloadFormat.SIGNATURE_ALGORITHM);
+        verifier.initVerify(publicKey);
+        verifier.update(probe);
+        return verifier.verify(signature);
+    }
+
+    // id:key pairs, comma-separated, with ids from minKeyId to MAX_KEY_ID
+    private Map<Integer, String> parseKeys(String property, String value, int minKeyId) {
+        Map<Integer, String> keys = new HashMap<>();
+        for (String entry : value.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalStateException(property + " entries must be id:key");
+            }
+            int keyId = Integer.parseInt(entry.substring(0, separator).trim());
+            if (keyId < minKeyId || keyId > QrPayloadFormat.MAX_KEY_ID) {
+                throw new IllegalStateException("QR signing key ids in " + property + " must be between "
+                        + minKeyId + " and " + QrPayloadFormat.MAX_KEY_ID);
+            }
+            keys.put(keyId, entry.substring(separator + 1).trim());
+        }
+        return keys;
+    }
+
+    private Mac hmac(String key) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(QrPayloadFormat.MAC_ALGORITHM);
+        mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), QrPayloadFormat.MAC_ALGORITHM));
+        return mac;
+    }
+
+    private void packRegistrationNumber(String registrationNumber, byte[] payload, int offset) {
+        String regNo = QrPayloadFormat.normaliseRegistrationNumber(registrationNumber);
+        if (!regNo.matches(QrPayloadFormat.REG_NO_PATTERN)) {
+            throw new IllegalArgumentException("Registration number cannot be encoded in a QR code (at most "
+                    + QrPayloadFormat.REG_NO_CHARS + " letters, digits, hyphens and spaces): " + registrationNumber);
+        }
+
+        // 16 six-bit codes, written as four groups of 3 bytes
+        for (int group = 0; group < QrPayloadFormat.REG_NO_CHARS / 4; group++) {
+            int bits = 0;
+            for (int n = 0; n < 4; n++) {
+                int position = group * 4 + n;
+                int code = position < regNo.length() ? QrPayloadFormat.REG_NO_ALPHABET.indexOf(regNo.charAt(position)) : 0;
+                bits = (bits << 6) | code;
+            }
+            payload[offset + group * 3] = (byte) (bits >>> 16);
+            payload[offset + 1 + group * 3] = (byte) (bits >>> 8);
+            payload[offset + 2 + group * 3] = (byte) bits;
+        }
+    }
+
+    private byte fuelTypeCode(String fuelType) {
+        if ("Petrol".equalsIgnoreCase(fuelType)) return QrPayloadFormat.FUEL_PETROL;
+        if ("Diesel".equalsIgnoreCase(fuelType)) return QrPayloadFormat.FUEL_DIESEL;
+        return 0;
+    }
+
+    public static class VerifiedQR {
+        private final String registrationNumber;
+        private final Long vehicleId;
+
+        private VerifiedQR(String registrationNumber, Long vehicleId) {
+            this.registrationNumber = registrationNumber;
+            this.vehicleId = vehicleId;
+        }
+
+        // Getters
+        public String getRegistrationNumber() { return registrationNumber; }
+        public Long getVehicleId() { return vehicleId; }
+    }
+
+    public static class QRImage {
+        private final String etag;
+        private final byte[] png;
+
+        private QRImage(String etag, byte[] png) {
+            this.etag = etag;
+            this.png = png;
+        }
+
+        // Getters
+        public String getEtag() { return etag; }
+        public byte[] getPng() { return png; }
+    }
+}
@@ -0,0 +1,640 @@
+/*
+ * Based on the QR Code generator library by Project Nayuki
+ * https://www.nayuki.io/page/qr-code-generator-library
+ *
+ * Copyright (c) Project Nayuki. (MIT License)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * - The above copyright notice and this permission notice shall be included in
+ *   all copies or substantial portions of the Software.
+ * - The Software is provided "as is", without warranty of any kind, express or
+ *   implied, including but not limited to the warranties of merchantability,
+ *   fitness for a particular purpose and noninfringement. In no event shall the
+ *   authors or copyright holders be liable for any claim, damages or other
+ *   liability, whether in an action of contract, tort or otherwise, arising from,
+ *   out of or in connection with the Software or the use or other dealings in the
+ *   Software.
+ */
+
+package com.example.fuelQuotaManagementSystem.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * QR Code (Model 2) encoder for the vehicle QR payloads: byte mode, versions 1-40, Reed-Solomon
+ * error correction and penalty-based mask selection, following ISO/IEC 18004. Symbols are built
+ * in a packed bit matrix and written to a 1-bit grayscale PNG without going through Java2D.
+ *
+ * The tables, function pattern layout, codeword placement and mask penalty rules follow Project
+ * Nayuki's QR Code generator (MIT License, see the header above); the bit matrix and PNG writer
+ * are specific to this project.
+ */
+public final class QrCodeEncoder {
+
+    public enum ErrorCorrection {
+        // Order matters: the tables below are indexed by ordinal
+        L(1), M(0), Q(3), H(2);
+
+        private final int formatBits;
+
+        ErrorCorrection(int formatBits) {
+            this.formatBits = formatBits;
+        }
+    }
+
+    private static final int MIN_VERSION = 1;
+    private static final int MAX_VERSION = 40;
+
+    // Mask penalty weights
+    private static final int PENALTY_N1 = 3;
+    private static final int PENALTY_N2 = 3;
+    private static final int PENALTY_N3 = 40;
+    private static final int PENALTY_N4 = 10;
+
+    private static final byte[][] ECC_CODEWORDS_PER_BLOCK = {
+            // Version: (index 0 unused)
+            //0,  1,  2,  3,  4,  5,  6,  7,  8,  9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34, 35, 36, 37, 38, 39, 40
+            {-1,  7, 10, 15, 20, 26, 18, 20, 24, 30, 18, 20, 24, 26, 30, 22, 24, 28, 30, 28, 28, 28, 28, 30, 30, 26, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},  // L
+            {-1, 10, 16, 26, 18, 24, 16, 18, 22, 22, 26, 30, 22, 22, 24, 24, 28, 28, 26, 26, 26, 26, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28},  // M
+            {-1, 13, 22, 18, 26, 18, 24, 18, 22, 20, 24, 28, 26, 24, 20, 30, 24, 28, 28, 26, 30, 28, 30, 30, 30, 30, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},  // Q
+            {-1, 17, 28, 22, 16, 22, 28, 26, 26, 24, 28, 24, 28, 22, 24, 24, 30, 28, 28, 26, 28, 30, 24, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},  // H
+    };
+
+    private static final byte[][] NUM_ERROR_CORRECTION_BLOCKS = {
+            // Version: (index 0 unused)
+            //0, 1, 2, 3, 4, 5, 6, 7, 8, 9,10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34, 35, 36, 37, 38, 39, 40
+            {-1, 1, 1, 1, 1, 1, 2, 2, 2, 2, 4,  4,  4,  4,  4,  6,  6,  6,  6,  7,  8,  8,  9,  9, 10, 12, 12, 12, 13, 14, 15, 16, 17, 18, 19, 19, 20, 21, 22, 24, 25},  // L
+            {-1, 1, 1, 1, 2, 2, 4, 4, 4, 5, 5,  5,  8,  9,  9, 10, 10, 11, 13, 14, 16, 17, 17, 18, 20, 21, 23, 25, 26, 28, 29, 31, 33, 35, 37, 38, 40, 43, 45, 47, 49},  // M
+            {-1, 1, 1, 2, 2, 4, 4, 6, 6, 8, 8,  8, 10, 12, 16, 12, 17, 16, 18, 21, 20, 23, 23, 25, 27, 29, 34, 34, 35, 38, 40, 43, 45, 48, 51, 53, 56, 59, 62, 65, 68},  // Q
+            {-1, 1, 1, 2, 4, 4, 4, 5, 6, 8, 8, 11, 11, 16, 16, 18, 16, 19, 21, 25, 25, 25, 34, 30, 32, 35, 37, 40, 42, 45, 48, 51, 54, 57, 60, 63, 66, 70, 74, 77, 81},  // H
+    };
+
+    private QrCodeEncoder() {
+    }
+
+
+     //Encode text in byte mode at the smallest version that fits, raising the error correction level when that costs nothing
+
+    public static BitMatrix encode(String text, ErrorCorrection minErrorCorrection) {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+
+        int version = MIN_VERSION;
+        int usedBits;
+        while (true) {
+            usedBits = 4 + characterCountBits(version) + data.length * 8;
+            if (usedBits <= getNumDataCodewords(version, minErrorCorrection) * 8) {
+                break;
+            }
+            if (++version > MAX_VERSION) {
+                throw new IllegalArgumentException("Data too long for a QR code: " + data.length + " bytes");
+            }
+        }
+
+        ErrorCorrection errorCorrection = minErrorCorrection;
+        for (ErrorCorrection higher : new ErrorCorrection[]{ErrorCorrection.M, ErrorCorrection.Q, ErrorCorrection.H}) {
+            if (higher.ordinal() > errorCorrection.ordinal()
+                    && usedBits <= getNumDataCodewords(version, higher) * 8) {
+                errorCorrection = higher;
+            }
+        }
+
+        byte[] codewords = addEccAndInterleave(dataCodewords(data, version, errorCorrection), version, errorCorrection);
+        return new Symbol(version, errorCorrection).build(codewords);
+    }
+
+
+     //Write the symbol as a 1-bit grayscale PNG, scale pixels per module, with a light border of border modules
+
+    public static byte[] toPng(BitMatrix modules, int scale, int border) {
+        int imageSize = (modules.getSize() + border * 2) * scale;
+        int rowBytes = (imageSize + 7) / 8;
+
+        // Each module row becomes scale identical scanlines; a set bit in PNG grayscale is white
+        ByteArrayOutputStream raw = new ByteArrayOutputStream((rowBytes + 1) * imageSize);
+        byte[] scanline = new byte[rowBytes + 1];
+        for (int y = -border; y < modules.getSize() + border; y++) {
+            Arrays.fill(scanline, (byte) 0);
+            for (int px = 0; px < imageSize; px++) {
+                int x = px / scale - border;
+                boolean dark = y >= 0 && y < modules.getSize() && x >= 0 && x < modules.getSize() && modules.get(x, y);
+                if (!dark) {
+                    scanline[1 + (px >>> 3)] |= (byte) (0x80 >>> (px & 7));
+                }
+            }
+            for (int i = 0; i < scale; i++) {
+                raw.write(scanline, 0, scanline.length);
+            }
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(raw.toByteArray());
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream(compressed.size() + 64);
+        png.writeBytes(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'});
+
+        byte[] header = new byte[13];
+        writeInt(header, 0, imageSize);
+        writeInt(header, 4, imageSize);
+        header[8] = 1;   // bit depth
+        header[9] = 0;   // grayscale
+        writePngChunk(png, "IHDR", header);
+        writePngChunk(png, "IDAT", compressed.toByteArray());
+        writePngChunk(png, "IEND", new byte[0]);
+        return png.toByteArray();
+    }
+
+    private static byte[] dataCodewords(byte[] data, int version, ErrorCorrection errorCorrection) {
+        int capacityBits = getNumDataCodewords(version, errorCorrection) * 8;
+        BitBuffer bits = new BitBuffer(capacityBits);
+        bits.append(0x4, 4);  // byte mode
+        bits.append(data.length, characterCountBits(version));
+        for (byte b : data) {
+            bits.append(b & 0xff, 8);
+        }
+
+        // Terminator, then zero bits up to a byte boundary, then alternating pad bytes
+        bits.append(0, Math.min(4, capacityBits - bits.length()));
+        bits.append(0, (8 - bits.length() % 8) % 8);
+        for (int pad = 0xEC; bits.length() < capacityBits; pad ^= 0xEC ^ 0x11) {
+            bits.append(pad, 8);
+        }
+        return bits.toBytes();
+    }
+
+    // Split into blocks, append each block's error correction codewords and interleave them
+    private static byte[] addEccAndInterleave(byte[] data, int version, ErrorCorrection errorCorrection) {
+        int numBlocks = NUM_ERROR_CORRECTION_BLOCKS[errorCorrection.ordinal()][version];
+        int blockEccLength = ECC_CODEWORDS_PER_BLOCK[errorCorrection.ordinal()][version];
+        int rawCodewords = getNumRawDataModules(version) / 8;
+        int numShortBlocks = numBlocks - rawCodewords % numBlocks;
+        int shortBlockLength = rawCodewords / numBlocks;
+
+        byte[][] blocks = new byte[numBlocks][];
+        byte[] divisor = reedSolomonDivisor(blockEccLength);
+        for (int i = 0, k = 0; i < numBlocks; i++) {
+            int dataLength = shortBlockLength - blockEccLength + (i < numShortBlocks ? 0 : 1);
+            byte[] block = Arrays.copyOf(Arrays.copyOfRange(data, k, k + dataLength), shortBlockLength + 1);
+            byte[] ecc = reedSolomonRemainder(data, k, dataLength, divisor);
+            System.arraycopy(ecc, 0, block, block.length - blockEccLength, ecc.length);
+            blocks[i] = block;
+            k += dataLength;
+        }
+
+        byte[] result = new byte[rawCodewords];
+        for (int i = 0, k = 0; i < blocks[0].length; i++) {
+            for (int j = 0; j < blocks.length; j++) {
+                // Short blocks have no codeword at the padding position
+                if (i != shortBlockLength - blockEccLength || j >= numShortBlocks) {
+                    result[k++] = blocks[j][i];
+                }
+            }
+        }
+        return result;
+    }
+
+    private static byte[] reedSolomonDivisor(int degree) {
+        byte[] result = new byte[degree];
+        result[degree - 1] = 1;
+        int root = 1;
+        for (int i = 0; i < degree; i++) {
+            for (int j = 0; j < result.length; j++) {
+                result[j] = (byte) gfMultiply(result[j] & 0xff, root);
+                if (j + 1 < result.length) {
+                    result[j] ^= result[j + 1];
+                }
+            }
+            root = gfMultiply(root, 0x02);
+        }
+        return result;
+    }
+
+    private static byte[] reedSolomonRemainder(byte[] data, int offset, int length, byte[] divisor) {
+        byte[] result = new byte[divisor.length];
+        for (int n = offset; n < offset + length; n++) {
+            int factor = (data[n] ^ result[0]) & 0xff;
+            System.arraycopy(result, 1, result, 0, result.length - 1);
+            result[result.length - 1] = 0;
+            for (int i = 0; i < result.length; i++) {
+                result[i] ^= (byte) gfMultiply(divisor[i] & 0xff, factor);
+            }
+        }
+        return result;
+    }
+
+    // Multiplication in GF(2^8) modulo x^8 + x^4 + x^3 + x^2 + 1
+    private static int gfMultiply(int x, int y) {
+        int z = 0;
+        for (int i = 7; i >= 0; i--) {
+            z = (z << 1) ^ ((z >>> 7) * 0x11D);
+            z ^= ((y >>> i) & 1) * x;
+        }
+        return z;
+    }
+
+    private static int characterCountBits(int version) {
+        return version <= 9 ? 8 : 16;
+    }
+
+    private static int getNumDataCodewords(int version, ErrorCorrection errorCorrection) {
+        return getNumRawDataModules(version) / 8
+                - ECC_CODEWORDS_PER_BLOCK[errorCorrection.ordinal()][version]
+                * NUM_ERROR_CORRECTION_BLOCKS[errorCorrection.ordinal()][version];
+    }
+
+    // Modules left for data and error correction once function patterns and format/version bits are placed
+    private static int getNumRawDataModules(int version) {
+        int result = (16 * version + 128) * version + 64;
+        if (version >= 2) {
+            int numAlign = version / 7 + 2;
+            result -= (25 * numAlign - 10) * numAlign - 55;
+            if (version >= 7) {
+                result -= 36;
+            }
+        }
+        return result;
+    }
+
+    private static void writePngChunk(ByteArrayOutputStream png, String type, byte[] data) {
+        byte[] length = new byte[4];
+        writeInt(length, 0, data.length);
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        byte[] checksum = new byte[4];
+        writeInt(checksum, 0, (int) crc.getValue());
+
+        png.writeBytes(length);
+        png.writeBytes(typeBytes);
+        png.writeBytes(data);
+        png.writeBytes(checksum);
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Square matrix of modules, one bit each, packed into 64-bit words row by row.
+     */
+    public static final class BitMatrix {
+        private final int size;
+        private final int wordsPerRow;
+        private final long[] words;
+
+        BitMatrix(int size) {
+            this.size = size;
+            this.wordsPerRow = (size + 63) >>> 6;
+            this.words = new long[wordsPerRow * size];
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public boolean get(int x, int y) {
+            return (words[y * wordsPerRow + (x >>> 6)] & (1L << (x & 63))) != 0;
+        }
+
+        void set(int x, int y, boolean dark) {
+            int index = y * wordsPerRow + (x >>> 6);
+            if (dark) {
+                words[index] |= 1L << (x & 63);
+            } else {
+                words[index] &= ~(1L << (x & 63));
+            }
+        }
+
+        void flip(int x, int y) {
+            words[y * wordsPerRow + (x >>> 6)] ^= 1L << (x & 63);
+        }
+
+        int countDark() {
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+    }
+
+    // Lays out one symbol: function patterns, codewords, then the mask with the lowest penalty
+    private static final class Symbol {
+        private final int version;
+        private final int size;
+        private final ErrorCorrection errorCorrection;
+        private final BitMatrix modules;
+        private final BitMatrix isFunction;
+
+        private Symbol(int version, ErrorCorrection errorCorrection) {
+            this.version = version;
+            this.size = version * 4 + 17;
+            this.errorCorrection = errorCorrection;
+            this.modules = new BitMatrix(size);
+            this.isFunction = new BitMatrix(size);
+        }
+
+        private BitMatrix build(byte[] codewords) {
+            drawFunctionPatterns();
+            drawCodewords(codewords);
+
+            int bestMask = 0;
+            int minPenalty = Integer.MAX_VALUE;
+            for (int mask = 0; mask < 8; mask++) {
+                applyMask(mask);
+                drawFormatBits(mask);
+                int penalty = penaltyScore(modules);
+                if (penalty < minPenalty) {
+                    bestMask = mask;
+                    minPenalty = penalty;
+                }
+                applyMask(mask);  // XOR again to undo
+            }
+            applyMask(bestMask);
+            drawFormatBits(bestMask);
+            return modules;
+        }
+
+        private void setFunctionModule(int x, int y, boolean dark) {
+            modules.set(x, y, dark);
+            isFunction.set(x, y, true);
+        }
+
+        private void drawFunctionPatterns() {
+            for (int i = 0; i < size; i++) {
+                setFunctionModule(6, i, i % 2 == 0);
+                setFunctionModule(i, 6, i % 2 == 0);
+            }
+
+            drawFinderPattern(3, 3);
+            drawFinderPattern(size - 4, 3);
+            drawFinderPattern(3, size - 4);
+
+            int[] alignPositions = alignmentPatternPositions();
+            int last = alignPositions.length - 1;
+            for (int i = 0; i <= last; i++) {
+                for (int j = 0; j <= last; j++) {
+                    // Skip the three corners taken by finder patterns
+                    if (!(i == 0 && j == 0 || i == 0 && j == last || i == last && j == 0)) {
+                        drawAlignmentPattern(alignPositions[i], alignPositions[j]);
+                    }
+                }
+            }
+
+            // Reserve the format areas now; the real bits are drawn once the mask is chosen
+            drawFormatBits(0);
+            drawVersion();
+        }
+
+        private void drawFinderPattern(int x, int y) {
+            for (int dy = -4; dy <= 4; dy++) {
+                for (int dx = -4; dx <= 4; dx++) {
+                    int distance = Math.max(Math.abs(dx), Math.abs(dy));
+                    int xx = x + dx;
+                    int yy = y + dy;
+                    if (xx >= 0 && xx < size && yy >= 0 && yy < size) {
+                        setFunctionModule(xx, yy, distance != 2 && distance != 4);
+                    }
+                }
+            }
+        }
+
+        private void drawAlignmentPattern(int x, int y) {
+            for (int dy = -2; dy <= 2; dy++) {
+                for (int dx = -2; dx <= 2; dx++) {
+                    setFunctionModule(x + dx, y + dy, Math.max(Math.abs(dx), Math.abs(dy)) != 1);
+                }
+            }
+        }
+
+        private int[] alignmentPatternPositions() {
+            if (version == 1) {
+                return new int[0];
+            }
+            int numAlign = version / 7 + 2;
+            int step = version == 32 ? 26 : (version * 4 + numAlign * 2 + 1) / (numAlign * 2 - 2) * 2;
+            int[] result = new int[numAlign];
+            result[0] = 6;
+            for (int i = result.length - 1, position = size - 7; i >= 1; i--, position -= step) {
+                result[i] = position;
+            }
+            return result;
+        }
+
+        private void drawFormatBits(int mask) {
+            int data = errorCorrection.formatBits << 3 | mask;
+            int remainder = data;
+            for (int i = 0; i < 10; i++) {
+                remainder = (remainder << 1) ^ ((remainder >>> 9) * 0x537);
+            }
+            int bits = (data << 10 | remainder) ^ 0x5412;
+
+            // Copy next to the top-left finder
+            for (int i = 0; i <= 5; i++) {
+                setFunctionModule(8, i, bit(bits, i));
+            }
+            setFunctionModule(8, 7, bit(bits, 6));
+            setFunctionModule(8, 8, bit(bits, 7));
+            setFunctionModule(7, 8, bit(bits, 8));
+            for (int i = 9; i < 15; i++) {
+                setFunctionModule(14 - i, 8, bit(bits, i));
+            }
+
+            // Copy split between the other two finders
+            for (int i = 0; i < 8; i++) {
+                setFunctionModule(size - 1 - i, 8, bit(bits, i));
+            }
+            for (int i = 8; i < 15; i++) {
+                setFunctionModule(8, size - 15 + i, bit(bits, i));
+            }
+            setFunctionModule(8, size - 8, true);  // Always dark
+        }
+
+        private void drawVersion() {
+            if (version < 7) {
+                return;
+            }
+            int remainder = version;
+            for (int i = 0; i < 12; i++) {
+                remainder = (remainder << 1) ^ ((remainder >>> 11) * 0x1F25);
+            }
+            int bits = version << 12 | remainder;
+
+            for (int i = 0; i < 18; i++) {
+                boolean dark = bit(bits, i);
+                int a = size - 11 + i % 3;
+                int b = i / 3;
+                setFunctionModule(a, b, dark);
+                setFunctionModule(b, a, dark);
+            }
+        }
+
+        // Zigzag through column pairs from the bottom-right corner, skipping function modules
+        private void drawCodewords(byte[] codewords) {
+            int i = 0;
+            for (int right = size - 1; right >= 1; right -= 2) {
+                if (right == 6) {
+                    right = 5;
+                }
+                for (int vertical = 0; vertical < size; vertical++) {
+                    for (int j = 0; j < 2; j++) {
+                        int x = right - j;
+                        boolean upward = ((right + 1) & 2) == 0;
+                        int y = upward ? size - 1 - vertical : vertical;
+                        if (!isFunction.get(x, y) && i < codewords.length * 8) {
+                            modules.set(x, y, bit(codewords[i >>> 3], 7 - (i & 7)));
+                            i++;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void applyMask(int mask) {
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    boolean invert;
+                    switch (mask) {
+                        case 0:  invert = (x + y) % 2 == 0;                    break;
+                        case 1:  invert = y % 2 == 0;                          break;
+                        case 2:  invert = x % 3 == 0;                          break;
+                        case 3:  invert = (x + y) % 3 == 0;                    break;
+                        case 4:  invert = (x / 3 + y / 2) % 2 == 0;            break;
+                        case 5:  invert = x * y % 2 + x * y % 3 == 0;          break;
+                        case 6:  invert = (x * y % 2 + x * y % 3) % 2 == 0;    break;
+                        default: invert = ((x + y) % 2 + x * y % 3) % 2 == 0;  break;
+                    }
+                    if (invert && !isFunction.get(x, y)) {
+                        modules.flip(x, y);
+                    }
+                }
+            }
+        }
+
+        private static boolean bit(int value, int index) {
+            return ((value >>> index) & 1) != 0;
+        }
+    }
+
+    // Penalty of a masked symbol under the four rules of ISO/IEC 18004; the mask with the lowest is used
+    static int penaltyScore(BitMatrix modules) {
+        int size = modules.getSize();
+        int result = 0;
+
+        // Runs of same-colored modules and finder-like patterns, in rows then in columns
+        for (int pass = 0; pass < 2; pass++) {
+            for (int a = 0; a < size; a++) {
+                boolean runColor = false;
+                int runLength = 0;
+                int[] runHistory = new int[7];
+                for (int b = 0; b < size; b++) {
+                    boolean dark = pass == 0 ? modules.get(b, a) : modules.get(a, b);
+                    if (dark == runColor) {
+                        runLength++;
+                        if (runLength == 5) {
+                            result += PENALTY_N1;
+                        } else if (runLength > 5) {
+                            result++;
+                        }
+                    } else {
+                        addRunToHistory(runLength, runHistory, size);
+                        if (!runColor) {
+                            result += countFinderLikePatterns(runHistory) * PENALTY_N3;
+                        }
+                        runColor = dark;
+                        runLength = 1;
+                    }
+                }
+                result += terminateAndCountFinderLikePatterns(runColor, runLength, runHistory, size) * PENALTY_N3;
+            }
+        }
+
+        // 2x2 blocks of the same color
+        for (int y = 0; y < size - 1; y++) {
+            for (int x = 0; x < size - 1; x++) {
+                boolean color = modules.get(x, y);
+                if (color == modules.get(x + 1, y) && color == modules.get(x, y + 1) && color == modules.get(x + 1, y + 1)) {
+                    result += PENALTY_N2;
+                }
+            }
+        }
+
+        // Balance of dark and light modules
+        int dark = modules.countDark();
+        int total = size * size;
+        int k = (Math.abs(dark * 20 - total * 10) + total - 1) / total - 1;
+        result += k * PENALTY_N4;
+        return result;
+    }
+
+    private static int countFinderLikePatterns(int[] runHistory) {
+        int n = runHistory[1];
+        boolean core = n > 0 && runHistory[2] == n && runHistory[3] == n * 3 && runHistory[4] == n && runHistory[5] == n;
+        return (core && runHistory[0] >= n * 4 && runHistory[6] >= n ? 1 : 0)
+                + (core && runHistory[6] >= n * 4 && runHistory[0] >= n ? 1 : 0);
+    }
+
+    private static int terminateAndCountFinderLikePatterns(boolean runColor, int runLength, int[] runHistory, int size) {
+        if (runColor) {
+            addRunToHistory(runLength, runHistory, size);
+            runLength = 0;
+        }
+        runLength += size;  // Light border after the last run
+        addRunToHistory(runLength, runHistory, size);
+        return countFinderLikePatterns(runHistory);
+    }
+
+    private static void addRunToHistory(int runLength, int[] runHistory, int size) {
+        if (runHistory[0] == 0) {
+            runLength += size;  // Light border before the first run
+        }
+        System.arraycopy(runHistory, 0, runHistory, 1, runHistory.length - 1);
+        runHistory[0] = runLength;
+    }
+
+    private static final class BitBuffer {
+        private final byte[] bytes;
+        private int length;
+
+        private BitBuffer(int capacityBits) {
+            this.bytes = new byte[(capacityBits + 7) / 8];
+        }
+
+        private void append(int value, int count) {
+            for (int i = count - 1; i >= 0; i--) {
+                if (((value >>> i) & 1) != 0) {
+                    bytes[length >>> 3] |= (byte) (0x80 >>> (length & 7));
+                }
+                length++;
+            }
+        }
+
+        private int length() {
+            return length;
+        }
+
+        private byte[] toBytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admin-triggered job that re-issues every vehicle's QR code under one signing key, used when
+ * rotating qr.signing.keys. Vehicles are read in id order, chunk by chunk, and each chunk is signed
+ * and written on a small worker pool with two JDBC batches in its own short transaction. No
+ * long transaction or table lock is held, and scans never wait on the job. A vehicle's old code stops
+ * verifying at the server as soon as its chunk commits, since only the stored payload is accepted;
+ * terminals checking offline keep accepting it until the old key is removed from them.
+ */
+@Service
+public class QrResignService {
+
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Autowired
+    private QRCodeService qrCodeService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${qr.resign.workers:4}")
+    private int workers;
+
+    @Value("${qr.resign.chunk-size:1000}")
+    private int chunkSize;
+
+    private static final String SELECT_CHUNK_SQL =
+            "SELECT id, registration_number, fuel_type FROM vehicles WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String UPSERT_QR_CODE_SQL =
+            "INSERT INTO vehicle_qr_codes (vehicle_id, payload, issued_at) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE payload = VALUES(payload), issued_at = VALUES(issued_at)";
+
+    // Moves the QR image ETag along with the new payload
+    private static final String TOUCH_VEHICLE_SQL = "UPDATE vehicles SET updated_at = ? WHERE id = ?";
+
+    private volatile ResignJob currentJob;
+
+
+     //Start re-signing all vehicles in the background; only one job runs at a time
+
+    public synchronized ResignJob start(int keyId) {
+        if (currentJob != null && STATUS_RUNNING.equals(currentJob.status)) {
+            throw new IllegalStateException("A QR re-signing job is already running");
+        }
+        if (!qrCodeService.hasSigningKey(keyId)) {
+            throw new IllegalArgumentException("No QR signing key configured with id " + keyId);
+        }
+
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM vehicles", Long.class);
+        ResignJob job = new ResignJob(keyId, total != null ? total : 0);
+        currentJob = job;
+
+        Thread coordinator = new Thread(() -> run(job), "qr-resign");
+        coordinator.setDaemon(true);
+        coordinator.start();
+        return job;
+    }
+
+
+     //Current or last job, null if none was started since the backend came up
+
+    public ResignJob getCurrentJob() {
+        return currentJob;
+    }
+
+    private void run(ResignJob job) {
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        // Reads stay at most two chunks per worker ahead of the writes
+        Semaphore inFlight = new Semaphore(workers * 2);
+        List<Future<?>> chunks = new ArrayList<>();
+
+        try {
+            long lastId = 0;
+            while (true) {
+                List<VehicleRow> chunk = jdbcTemplate.query(SELECT_CHUNK_SQL,
+                        (rs, rowNum) -> new VehicleRow(rs.getLong(1), rs.getString(2), rs.getString(3)),
+                        lastId, chunkSize);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                lastId = chunk.get(chunk.size() - 1).id;
+
+                inFlight.acquire();
+                chunks.add(pool.submit(() -> {
+                    try {
+                        resignChunk(job, chunk);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+            job.finish(STATUS_COMPLETED, null);
+        } catch (Exception e) {
+            System.err.println("QR re-signing job failed: " + e.getMessage());
+            job.finish(STATUS_FAILED, e.getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void resignChunk(ResignJob job, List<VehicleRow> chunk) {
+        long now = System.currentTimeMillis();
+        List<Object[]> qrCodes = new ArrayList<>(chunk.size());
+        List<Object[]> touchedVehicles = new ArrayList<>(chunk.size());
+        Set<Long> resignedIds = new HashSet<>();
+        int unencodable = 0;
+
+        for (VehicleRow vehicle : chunk) {
+            try {
+                String payload = qrCodeService.signQRCode(vehicle.registrationNumber, vehicle.fuelType, job.keyId, now);
+                qrCodes.add(new Object[]{vehicle.id, payload, now});
+                touchedVehicles.add(new Object[]{now, vehicle.id});
+                resignedIds.add(vehicle.id);
+            } catch (IllegalArgumentException e) {
+                // Registration number with characters the compact format cannot carry
+                unencodable++;
+            }
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(UPSERT_QR_CODE_SQL, qrCodes);
+                jdbcTemplate.batchUpdate(TOUCH_VEHICLE_SQL, touchedVehicles);
+                // Scans of the codes just replaced must stop verifying from the cache
+                qrCodeService.invalidateAfterCommit(resignedIds);
+            });
+            job.reissued.addAndGet(qrCodes.size());
+            job.failed.addAndGet(unencodable);
+        } catch (Exception e) {
+            // Leave the chunk on its old codes and carry on; a later run picks it up again
+            System.err.println("Failed to re-sign QR codes for vehicles " + chunk.get(0).id + "-"
+                    + chunk.get(chunk.size() - 1).id + ": " + e.getMessage());
+            job.failed.addAndGet(chunk.size());
+        }
+    }
+
+    private record VehicleRow(long id, String registrationNumber, String fuelType) {
+    }
+
+    public static class ResignJob {
+        private final int keyId;
+        private final long totalVehicles;
+        private final long startedAt;
+        private final AtomicLong reissued = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile String status = STATUS_RUNNING;
+        private volatile Long finishedAt;
+        private volatile String error;
+
+        private ResignJob(int keyId, long totalVehicles) {
+            this.keyId = keyId;
+            this.totalVehicles = totalVehicles;
+            this.startedAt = System.currentTimeMillis();
+        }
+
+        private void finish(String status, String error) {
+            this.error = error;
+            this.finishedAt = System.currentTimeMillis();
+            this.status = status;
+        }
+
+        public double getPercentComplete() {
+            if (totalVehicles == 0) {
+                return STATUS_RUNNING.equals(status) ? 0 : 100;
+            }
+            return Math.min(100, Math.round((reissued.get() + failed.get()) * 1000.0 / totalVehicles) / 10.0);
+        }
+
+        // Getters
+        public int getKeyId() { return keyId; }
+        public long getTotalVehicles() { return totalVehicles; }
+        public long getStartedAt() { return startedAt; }
+        public long getReissued() { return reissued.get(); }
+        public long getFailed() { return failed.get(); }
+        public String getStatus() { return status; }
+        public Long getFinishedAt() { return finishedAt; }
+        public String getError() { return error; }
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.example.fuelQuotaManagementSystem.entity.FuelQuota;
+import com.example.fuelQuotaManagementSystem.repository.FuelTransactionRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * In-memory remaining balances for the active monthly quotas, keyed by vehicle id and fuel type.
+ * Deductions and reads take a striped lock and never touch the database; changed balances are
+ * written back to fuel_quotas in batches by a scheduled flush.
+ *
+ * Balances are (re)built on first access from the fuel_quotas row and the lowest
+ * quota_after_ml recorded since that row was created, so pumps whose balance was
+ * not flushed before a crash are still accounted for.
+ *
+ * Flushes are serialised and write the values snapshotted under the stripe locks, so an older
+ * snapshot is never written after a newer one. Each write is also fenced on the row's created_at,
+ * which a reset renews, so a flush racing a reset cannot put the old balance back.
+ *
+ * Only enable this when a single backend instance owns the fuel_quotas table.
+ */
+@Component
+public class QuotaLedger {
+
+    @Value("${quota.ledger.enabled:false}")
+    private boolean enabled;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FuelTransactionRepository fuelTransactionRepository;
+
+    @Autowired
+    private QuotaPeriodClock periodClock;
+
+    private static final int STRIPES = 64;
+
+    private static final String WRITE_BALANCE_SQL = "UPDATE fuel_quotas SET remaining_quota_ml = ?, updated_at = ? " +
+            "WHERE id = ? AND COALESCE(created_at, 0) = ?";
+
+    private final Object[] locks = new Object[STRIPES];
+    private final Map<LedgerKey, Balance> balances = new ConcurrentHashMap<>();
+    private final Set<LedgerKey> dirtyKeys = ConcurrentHashMap.newKeySet();
+    // Closing balances of periods that ended, written by the next flush
+    private final Queue<Balance> closingBalances = new ConcurrentLinkedQueue<>();
+    private final Object flushLock = new Object();
+
+    public QuotaLedger() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+     //Current balance, loading it through the given supplier on a miss or after the quota period ended
+
+    public Balance getBalance(Long vehicleId, String fuelType, Supplier<FuelQuota> loader) {
+        LedgerKey key = new LedgerKey(vehicleId, fuelType);
+        synchronized (lockFor(key)) {
+            return activeBalance(key, loader).copy();
+        }
+    }
+
+
+     //Deduct from the in-memory balance, leaving heldMl untouched; refunded if the surrounding transaction rolls back
+
+    public FuelQuotaService.QuotaDeduction deduct(Long vehicleId, String fuelType, long amountMl,
+                                                  long heldMl, Supplier<FuelQuota> loader) {
+        LedgerKey key = new LedgerKey(vehicleId, fuelType);
+        FuelQuotaService.QuotaDeduction deduction;
+        Long quotaId;
+
+        synchronized (lockFor(key)) {
+            Balance balance = activeBalance(key, loader);
+            if (balance.remainingQuotaMl - heldMl < amountMl) {
+                return FuelQuotaService.QuotaDeduction.rejected(balance.allocatedQuotaMl,
+                        Math.max(0, balance.remainingQuotaMl - heldMl));
+            }
+
+            long quotaBeforeMl = balance.remainingQuotaMl;
+            balance.remainingQuotaMl -= amountMl;
+            dirtyKeys.add(key);
+
+            quotaId = balance.quotaId;
+            deduction = FuelQuotaService.QuotaDeduction.applied(balance.allocatedQuotaMl, quotaBeforeMl, balance.remainingQuotaMl);
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        refund(key, quotaId, amountMl);
+                    }
+                }
+            });
+        }
+
+        return deduction;
+    }
+
+
+     //Drop a cached balance, e.g. after its quota row was replaced by a reset
+
+    public void evict(Long vehicleId, String fuelType) {
+        LedgerKey key = new LedgerKey(vehicleId, fuelType);
+        synchronized (lockFor(key)) {
+            balances.remove(key);
+            dirtyKeys.remove(key);
+        }
+    }
+
+
+     //Write changed balances back to fuel_quotas in one JDBC batch
+
+    @Scheduled(fixedDelayString = "${quota.ledger.flush-interval-ms:1000}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (flushLock) {
+            if (dirtyKeys.isEmpty() && closingBalances.isEmpty()) {
+                return;
+            }
+
+            List<Object[]> batch = new ArrayList<>();
+            List<LedgerKey> flushedKeys = new ArrayList<>();
+            long now = System.currentTimeMillis();
+
+            // Snapshot and clear each key under its stripe lock; a deduction after this marks it dirty again
+            for (LedgerKey key : dirtyKeys) {
+                synchronized (lockFor(key)) {
+                    if (!dirtyKeys.remove(key)) {
+                        continue;
+                    }
+                    Balance balance = balances.get(key);
+                    if (balance != null) {
+                        batch.add(writeArgs(balance, now));
+                        flushedKeys.add(key);
+                    }
+                }
+            }
+
+            // Taken after the snapshots, so a closing balance is written after any older value of its row
+            List<Balance> closed = new ArrayList<>();
+            Balance closing;
+            while ((closing = closingBalances.poll()) != null) {
+                batch.add(writeArgs(closing, now));
+                closed.add(closing);
+            }
+
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            try {
+                jdbcTemplate.batchUpdate(WRITE_BALANCE_SQL, batch);
+            } catch (Exception e) {
+                // Keep the balances dirty so the next flush retries them
+                dirtyKeys.addAll(flushedKeys);
+                closingBalances.addAll(closed);
+                System.err.println("Failed to flush quota ledger: " + e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private Balance activeBalance(LedgerKey key, Supplier<FuelQuota> loader) {
+        Balance balance = balances.get(key);
+        if (balance != null && balance.endDate >= periodClock.millis()) {
+            return balance;
+        }
+
+        if (balance != null && dirtyKeys.remove(key)) {
+            // Persist the closing balance of the period that just ended with the next flush
+            closingBalances.add(balance.copy());
+        }
+
+        balance = rebuild(loader.get());
+        balances.put(key, balance);
+        return balance;
+    }
+
+    private Balance rebuild(FuelQuota quota) {
+        long remainingMl = quota.getRemainingQuotaMl();
+
+        // Pumps recorded after the last flush carry the balance they left behind
+        long since = quota.getCreatedAt() != null ? quota.getCreatedAt() : quota.getStartDate();
+        Long lowestAfterPumpMl = fuelTransactionRepository.findLowestQuotaAfterMl(
+                quota.getVehicle().getId(), quota.getFuelType(), since, quota.getEndDate());
+        if (lowestAfterPumpMl != null && lowestAfterPumpMl < remainingMl) {
+            remainingMl = lowestAfterPumpMl;
+        }
+
+        return new Balance(quota.getId(), quota.getAllocatedQuotaMl(), remainingMl,
+                quota.getStartDate(), quota.getEndDate(), quota.getCreatedAt() != null ? quota.getCreatedAt() : 0L);
+    }
+
+    private Object[] writeArgs(Balance balance, long now) {
+        return new Object[]{balance.remainingQuotaMl, now, balance.quotaId, balance.createdAt};
+    }
+
+    private void refund(LedgerKey key, Long quotaId, long amountMl) {
+        synchronized (lockFor(key)) {
+            Balance balance = balances.get(key);
+            if (balance != null && balance.quotaId.equals(quotaId)) {
+                balance.remainingQuotaMl += amountMl;
+                dirtyKeys.add(key);
+            }
+        }
+    }
+
+    private Object lockFor(LedgerKey key) {
+        return locks[(key.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    private record LedgerKey(Long vehicleId, String fuelType) {
+        LedgerKey {
+            fuelType = fuelType.toUpperCase();
+        }
+    }
+
+    public static class Balance {
+        private final Long quotaId;
+        private final long allocatedQuotaMl;
+        private long remainingQuotaMl;
+        private final long startDate;
+        private final long endDate;
+        // created_at of the row the balance was loaded from; renewed when the quota is reset
+        private final long createdAt;
+
+        private Balance(Long quotaId, long allocatedQuotaMl, long remainingQuotaMl, long startDate, long endDate,
+                        long createdAt) {
+            this.quotaId = quotaId;
+            this.allocatedQuotaMl = allocatedQuotaMl;
+            this.remainingQuotaMl = remainingQuotaMl;
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.createdAt = createdAt;
+        }
+
+        private Balance copy() {
+            return new Balance(quotaId, allocatedQuotaMl, remainingQuotaMl, startDate, endDate, createdAt);
+        }
+
+        // Getters
+        public Long getQuotaId() { return quotaId; }
+        public long getAllocatedQuotaMl() { return allocatedQuotaMl; }
+        public long getRemainingQuotaMl() { return remainingQuotaMl; }
+        public long getStartDate() { return startDate; }
+        public long getEndDate() { return endDate; }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.*;
+import java.time.temporal.TemporalAdjusters;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Single source of the current day, week and month bounds for quotas and reports.
+ * The bounds are computed once per day and swapped in atomically when the clock passes
+ * midnight, so hot paths read precomputed epoch millis instead of doing time-zone math.
+ *
+ * Periods start at local midnight in the clock's zone and end one millisecond before the
+ * next period starts. Weeks start on Monday.
+ */
+@Component
+public class QuotaPeriodClock {
+
+    private final Clock clock;
+    private final ZoneId zone;
+    private final AtomicReference<Periods> current;
+
+    @Autowired
+    public QuotaPeriodClock(Clock clock) {
+        this.clock = clock;
+        this.zone = clock.getZone();
+        this.current = new AtomicReference<>(computePeriods(LocalDate.now(clock)));
+    }
+
+    public long millis() {
+        return clock.millis();
+    }
+
+    public ZoneId zone() {
+        return zone;
+    }
+
+    public LocalDate today() {
+        return periods().date;
+    }
+
+    public long startOfDay() {
+        return periods().dayStart;
+    }
+
+    public long endOfDay() {
+        return periods().dayEnd;
+    }
+
+    public long startOfWeek() {
+        return periods().weekStart;
+    }
+
+    public long endOfWeek() {
+        return periods().weekEnd;
+    }
+
+    public long startOfMonth() {
+        return periods().monthStart;
+    }
+
+    public long endOfMonth() {
+        return periods().monthEnd;
+    }
+
+    // Current allocation month as yyyymm, the fuel_quotas period_key
+    public int monthPeriodKey() {
+        return periods().monthKey;
+    }
+
+
+     //Bounds for arbitrary dates, e.g. report ranges picked by an admin
+
+    public long startOfDay(LocalDate date) {
+        if (date.equals(today())) {
+            return startOfDay();
+        }
+        return date.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    public long endOfDay(LocalDate date) {
+        if (date.equals(today())) {
+            return endOfDay();
+        }
+        return date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1;
+    }
+
+    public long startOfMonth(YearMonth month) {
+        return month.atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    public long endOfMonth(YearMonth month) {
+        return month.plusMonths(1).atDay(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1;
+    }
+
+    public LocalDate dateOf(long epochMillis) {
+        Periods periods = periods();
+        if (epochMillis >= periods.dayStart && epochMillis <= periods.dayEnd) {
+            return periods.date;
+        }
+        return Instant.ofEpochMilli(epochMillis).atZone(zone).toLocalDate();
+    }
+
+    private Periods periods() {
+        Periods periods = current.get();
+        long now = clock.millis();
+        if (now >= periods.dayStart && now <= periods.dayEnd) {
+            return periods;
+        }
+
+        // Crossed a day boundary (or the clock moved back); whichever thread gets here first installs it
+        Periods rolled = computePeriods(Instant.ofEpochMilli(now).atZone(zone).toLocalDate());
+        current.compareAndSet(periods, rolled);
+        return rolled;
+    }
+
+    private Periods computePeriods(LocalDate date) {
+        LocalDate weekStart = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        LocalDate monthStart = date.withDayOfMonth(1);
+
+        return new Periods(
+                date,
+                startOf(date), startOf(date.plusDays(1)) - 1,
+                startOf(weekStart), startOf(weekStart.plusWeeks(1)) - 1,
+                startOf(monthStart), startOf(monthStart.plusMonths(1)) - 1,
+                date.getYear() * 100 + date.getMonthValue()
+        );
+    }
+
+    private long startOf(LocalDate date) {
+        return date.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private record Periods(LocalDate date,
+                           long dayStart, long dayEnd,
+                           long weekStart, long weekEnd,
+                           long monthStart, long monthEnd,
+                           int monthKey) {
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.example.fuelQuotaManagementSystem.entity.FuelStation;
+import com.example.fuelQuotaManagementSystem.entity.Vehicle;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Short-lived holds on a vehicle's quota, placed when an operator scans the QR code and
+ * committed by the pump that follows. While a hold is active, pumps at other stations can only
+ * spend the balance not covered by it.
+ *
+ * A claimed hold keeps counting until its pump has committed (complete) or failed (restore), so
+ * the litres are covered either by the hold or by the committed deduction at every moment.
+ *
+ * Holds live in memory and expire through a hashed timing wheel, so there is no table to sweep.
+ * They are advisory: the conditional quota update at pump time stays the final guard, so the
+ * balance can never go negative even if a hold is lost on restart.
+ */
+@Service
+public class QuotaReservationService {
+
+    @Autowired
+    private FuelQuotaService fuelQuotaService;
+
+    @Autowired
+    private QuotaPeriodClock periodClock;
+
+    @Value("${quota.reservation.ttl-seconds:120}")
+    private long ttlSeconds;
+
+    @Value("${quota.reservation.tick-ms:100}")
+    private long tickMillis;
+
+    @Value("${quota.reservation.max-per-vehicle:3}")
+    private int maxPerVehicle;
+
+    private static final int STRIPES = 64;
+    private static final int WHEEL_SIZE = 512;
+
+    private final Object[] locks = new Object[STRIPES];
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+    private final Map<Long, Long> heldByVehicle = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> holdCountByVehicle = new ConcurrentHashMap<>();
+
+    private TimingWheel timingWheel;
+    private ScheduledExecutorService ticker;
+
+    public QuotaReservationService() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void startTicker() {
+        timingWheel = new TimingWheel(WHEEL_SIZE, tickMillis, periodClock.millis());
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "quota-reservation-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::expireDue, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopTicker() {
+        ticker.shutdownNow();
+    }
+
+
+     //Hold the requested millilitres for this vehicle at the given station
+
+    public Reservation reserve(Vehicle vehicle, FuelStation station, long amountMl) {
+        if (amountMl <= 0) {
+            throw new IllegalArgumentException("Invalid fuel amount!");
+        }
+        if (amountMl > FuelPumpService.MAX_ML_PER_TRANSACTION) {
+            throw new IllegalArgumentException("Maximum 100 liters allowed per transaction!");
+        }
+
+        // May hit the database, so it is read before taking the stripe lock. A pump committing in
+        // between only makes the hold optimistic; the pump's conditional update still guards the balance
+        long remainingMl = fuelQuotaService.getRemainingQuotaMl(vehicle, vehicle.getFuelType());
+
+        synchronized (lockFor(vehicle.getId())) {
+            if (holdCountByVehicle.getOrDefault(vehicle.getId(), 0) >= maxPerVehicle) {
+                throw new IllegalArgumentException("Too many active reservations for this vehicle!");
+            }
+            long availableMl = remainingMl - heldMl(vehicle.getId());
+            if (availableMl < amountMl) {
+                throw new IllegalArgumentException(String.format(
+                        "Insufficient quota! Available: %.1fL", FuelUnits.toLitres(Math.max(0, availableMl))));
+            }
+
+            Reservation reservation = new Reservation(UUID.randomUUID().toString(), vehicle, station,
+                    amountMl, periodClock.millis() + ttlSeconds * 1000);
+            hold(reservation);
+            return reservation;
+        }
+    }
+
+
+     //Take the hold for a pump. It stays counted in heldMl until complete or restore is called
+
+    public Reservation claim(String reservationId, Long vehicleId, Long stationId, long amountMl) {
+        Reservation reservation = reservations.get(reservationId);
+        if (reservation == null || reservation.isExpired(periodClock.millis())) {
+            throw new IllegalArgumentException("Reservation expired or not found! Please scan the QR code again.");
+        }
+        if (!reservation.vehicleId.equals(vehicleId) || !reservation.stationId.equals(stationId)) {
+            throw new IllegalArgumentException("Reservation does not match this vehicle and station!");
+        }
+        if (amountMl > reservation.amountMl) {
+            throw new IllegalArgumentException(String.format(
+                    "Amount exceeds reservation! Reserved: %.1fL", FuelUnits.toLitres(reservation.amountMl)));
+        }
+
+        synchronized (lockFor(vehicleId)) {
+            // Out of the map, so neither a second claim nor the expiry can release it
+            if (!reservations.remove(reservationId, reservation)) {
+                throw new IllegalArgumentException("Reservation expired or not found! Please scan the QR code again.");
+            }
+        }
+        return reservation;
+    }
+
+
+     //Release a claimed hold once its pump has committed
+
+    public void complete(Reservation reservation) {
+        synchronized (lockFor(reservation.vehicleId)) {
+            release(reservation);
+        }
+    }
+
+
+     //Put a claimed hold back when its pump did not commit, or release it if it expired meanwhile
+
+    public void restore(Reservation reservation) {
+        synchronized (lockFor(reservation.vehicleId)) {
+            if (reservation.isExpired(periodClock.millis())
+                    || reservations.putIfAbsent(reservation.id, reservation) != null) {
+                release(reservation);
+            } else {
+                // Its wheel entry may have fired while it was claimed
+                timingWheel.schedule(reservation);
+            }
+        }
+    }
+
+
+     //Drop a hold without pumping, e.g. for a pump replayed from an offline queue
+
+    public void cancel(String reservationId) {
+        Reservation reservation = reservations.get(reservationId);
+        if (reservation == null) {
+            return;
+        }
+        synchronized (lockFor(reservation.vehicleId)) {
+            if (reservations.remove(reservationId, reservation)) {
+                release(reservation);
+            }
+        }
+    }
+
+
+     //Millilitres currently held for this vehicle by unexpired reservations
+
+    public long heldMl(Long vehicleId) {
+        return heldByVehicle.getOrDefault(vehicleId, 0L);
+    }
+
+    private void hold(Reservation reservation) {
+        if (reservations.putIfAbsent(reservation.id, reservation) == null) {
+            heldByVehicle.merge(reservation.vehicleId, reservation.amountMl, Long::sum);
+            holdCountByVehicle.merge(reservation.vehicleId, 1, Integer::sum);
+            timingWheel.schedule(reservation);
+        }
+    }
+
+    private void release(Reservation reservation) {
+        heldByVehicle.computeIfPresent(reservation.vehicleId, (id, held) -> {
+            long left = held - reservation.amountMl;
+            return left > 0 ? left : null;
+        });
+        holdCountByVehicle.computeIfPresent(reservation.vehicleId, (id, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private void expireDue() {
+        try {
+            timingWheel.advance(periodClock.millis(), reservation -> {
+                synchronized (lockFor(reservation.vehicleId)) {
+                    if (reservations.remove(reservation.id, reservation)) {
+                        release(reservation);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            System.err.println("Failed to expire quota reservations: " + e.getMessage());
+        }
+    }
+
+    private Object lockFor(Long vehicleId) {
+        return locks[(vehicleId.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    public static class Reservation {
+        private final String id;
+        private final Long vehicleId;
+        private final Long stationId;
+        private final String fuelType;
+        private final long amountMl;
+        private final long expiresAt;
+        // As loaded at scan time, so committing the pump needs no second lookup
+        private final Vehicle vehicle;
+        private final FuelStation station;
+
+        private Reservation(String id, Vehicle vehicle, FuelStation station, long amountMl, long expiresAt) {
+            this.id = id;
+            this.vehicleId = vehicle.getId();
+            this.stationId = station.getId();
+            this.fuelType = vehicle.getFuelType();
+            this.amountMl = amountMl;
+            this.expiresAt = expiresAt;
+            this.vehicle = vehicle;
+            this.station = station;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+
+        // Getters
+        public String getId() { return id; }
+        public Long getVehicleId() { return vehicleId; }
+        public Long getStationId() { return stationId; }
+        public String getFuelType() { return fuelType; }
+        public long getAmountMl() { return amountMl; }
+        public long getExpiresAt() { return expiresAt; }
+        public Vehicle getVehicle() { return vehicle; }
+        public FuelStation getStation() { return station; }
+    }
+
+    /**
+     * Buckets of reservations by expiry tick. Each tick only looks at its own bucket; entries
+     * due in a later rotation are put back, and claimed reservations are simply skipped.
+     *
+     * A reservation goes in the bucket of the first tick at or after its expiry, so it is due when
+     * that bucket is visited. One whose tick has already been visited goes to the overdue queue,
+     * which every tick drains, instead of waiting a full rotation.
+     */
+    private static class TimingWheel {
+        private final Queue<Reservation>[] buckets;
+        private final Queue<Reservation> overdue = new ConcurrentLinkedQueue<>();
+        private final long tickMillis;
+        private final int mask;
+        private volatile long lastTick;
+
+        @SuppressWarnings("unchecked")
+        private TimingWheel(int size, long tickMillis, long now) {
+            this.buckets = new Queue[size];
+            for (int i = 0; i < size; i++) {
+                buckets[i] = new ConcurrentLinkedQueue<>();
+            }
+            this.tickMillis = tickMillis;
+            this.mask = size - 1;
+            this.lastTick = now / tickMillis;
+        }
+
+        private void schedule(Reservation reservation) {
+            long tick = (reservation.expiresAt + tickMillis - 1) / tickMillis;
+            buckets[(int) (tick & mask)].offer(reservation);
+
+            // The ticker may have visited that bucket before the offer; expiring twice is harmless
+            if (tick <= lastTick) {
+                overdue.offer(reservation);
+            }
+        }
+
+        // Called from the ticker thread only
+        private void advance(long now, Consumer<Reservation> onExpired) {
+            for (int n = overdue.size(); n > 0; n--) {
+                Reservation reservation = overdue.poll();
+                if (reservation == null) {
+                    break;
+                }
+                if (reservation.isExpired(now)) {
+                    onExpired.accept(reservation);
+                } else {
+                    overdue.offer(reservation);
+                }
+            }
+
+            long currentTick = now / tickMillis;
+            // After a long pause one full rotation covers every bucket
+            long fromTick = Math.max(lastTick + 1, currentTick - mask);
+
+            for (long tick = fromTick; tick <= currentTick; tick++) {
+                Queue<Reservation> bucket = buckets[(int) (tick & mask)];
+                for (int n = bucket.size(); n > 0; n--) {
+                    Reservation reservation = bucket.poll();
+                    if (reservation == null) {
+                        break;
+                    }
+                    if (reservation.isExpired(now)) {
+                        onExpired.accept(reservation);
+                    } else {
+                        bucket.offer(reservation);
+                    }
+                }
+            }
+            lastTick = currentTick;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.example.fuelQuotaManagementSystem.dto.FuelTransactionHistoryItem;
+import com.example.fuelQuotaManagementSystem.repository.FuelTransactionRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes whole transaction listings as NDJSON (one JSON object per line) or CSV for
+ * StreamingResponseBody endpoints.
+ *
+ * Rows are read in keyset chunks, each chunk one short query. No transaction or JDBC connection is
+ * held while rows are written to a slow client, so a long download does not pin a pooled connection.
+ * Rows are DTO projections, so heap use stays at one chunk whatever the size of the listing.
+ *
+ * At most max-concurrent listings are written at once. Beyond that the body methods throw
+ * RejectedExecutionException straight away, and callers should answer 503.
+ */
+@Service
+public class TransactionStreamService {
+
+    public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
+    // (timestamp, id) cursors placed before the first row of a listing
+    private static final long[] NEWEST_FIRST = {Long.MAX_VALUE, Long.MAX_VALUE};
+    private static final long[] OLDEST_FIRST = {Long.MIN_VALUE, Long.MIN_VALUE};
+
+    @Autowired
+    private FuelTransactionRepository fuelTransactionRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private QuotaPeriodClock periodClock;
+
+    @Value("${history.stream.max-concurrent:4}")
+    private int maxConcurrent;
+
+    // Rows per query; each chunk is flushed to the client before the next one is read
+    @Value("${history.stream.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${history.stream.retry-after-seconds:5}")
+    private int retryAfterSeconds;
+
+    private Semaphore streams;
+
+    @PostConstruct
+    public void createLimit() {
+        streams = new Semaphore(maxConcurrent);
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+
+     //Bodies for the listings; each throws RejectedExecutionException when max-concurrent listings are already running
+
+    public StreamingResponseBody vehicleHistory(Long vehicleId) {
+        return admit(out -> writeNdjson(NEWEST_FIRST, (after, limit) -> fuelTransactionRepository.findHistoryPageByVehicleId(
+                vehicleId, after[0], after[1], PageRequest.of(0, limit)), out));
+    }
+
+    public StreamingResponseBody stationHistory(Long stationId) {
+        return admit(out -> writeNdjson(NEWEST_FIRST, (after, limit) -> fuelTransactionRepository.findHistoryPageByStationId(
+                stationId, after[0], after[1], PageRequest.of(0, limit)), out));
+    }
+
+    public StreamingResponseBody transactionsBetween(LocalDate startDate, LocalDate endDate) {
+        return admit(out -> writeNdjson(OLDEST_FIRST, transactionsBetweenChunks(startDate, endDate), out));
+    }
+
+    public StreamingResponseBody transactionsBetweenAsCsv(LocalDate startDate, LocalDate endDate) {
+        return admit(out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write("Transaction ID,Vehicle Registration,Station Name,Fuel Type,Amount,Date,Time,Notification Sent\n");
+
+            forEachRow(OLDEST_FIRST, transactionsBetweenChunks(startDate, endDate), writer, (transaction, w) -> {
+                LocalDate date = periodClock.dateOf(transaction.getTimestampMillis());
+                w.write(String.format("%d,%s,%s,%s,%.2f,%s,%s,%s\n",
+                        transaction.getId(),
+                        transaction.getVehicleRegNo(),
+                        transaction.getStationName(),
+                        transaction.getFuelType(),
+                        transaction.getAmount(),
+                        date.toString(),
+                        date.atStartOfDay().format(DateTimeFormatter.ofPattern("HH:mm:ss")),
+                        transaction.getNotificationSent() ? "Yes" : "No"
+                ));
+            });
+            writer.flush();
+        });
+    }
+
+    private StreamingResponseBody admit(StreamingResponseBody body) {
+        if (!streams.tryAcquire()) {
+            throw new RejectedExecutionException("Too many transaction listings are being streamed");
+        }
+        return out -> {
+            try {
+                body.writeTo(out);
+            } finally {
+                streams.release();
+            }
+        };
+    }
+
+    // Oldest first, so the cursor is the last (timestamp, id) written
+    private ChunkReader transactionsBetweenChunks(LocalDate startDate, LocalDate endDate) {
+        long from = periodClock.startOfDay(startDate);
+        long until = periodClock.endOfDay(endDate);
+        return (after, limit) -> fuelTransactionRepository.findHistoryPageBetween(
+                from, until, after[0], after[1], PageRequest.of(0, limit));
+    }
+
+    private void writeNdjson(long[] start, ChunkReader chunks, OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        // Rows are separated by the newline written after each one, not by Jackson's default space
+        generator.setRootValueSeparator(null);
+
+        forEachRow(start, chunks, generator, (transaction, g) -> {
+            g.writeObject(transaction);
+            g.writeRaw('\n');
+        });
+        generator.flush();
+    }
+
+    private <T extends Flushable> void forEachRow(long[] start, ChunkReader chunks, T target,
+                                                  RowWriter<T> rowWriter) throws IOException {
+        long[] after = start;
+        while (true) {
+            List<FuelTransactionHistoryItem> chunk = chunks.read(after, chunkSize);
+            for (FuelTransactionHistoryItem transaction : chunk) {
+                rowWriter.write(transaction, target);
+            }
+            target.flush();
+
+            if (chunk.size() < chunkSize) {
+                return;
+            }
+            FuelTransactionHistoryItem last = chunk.get(chunk.size() - 1);
+            after = new long[]{last.getTimestampMillis(), last.getId()};
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkReader {
+        // Rows strictly after the (timestamp, id) cursor, in the listing's order
+        List<FuelTransactionHistoryItem> read(long[] after, int limit);
+    }
+
+    @FunctionalInterface
+    private interface RowWriter<T> {
+        void write(FuelTransactionHistoryItem transaction, T target) throws IOException;
+    }
+}
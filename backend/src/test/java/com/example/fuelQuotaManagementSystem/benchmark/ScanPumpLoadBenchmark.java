@@ -0,0 +1,269 @@
+package com.example.fuelQuotaManagementSystem.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Load driver for comparing platform-thread and virtual-thread request handling.
+ * Run it against a started backend (not part of the unit test run):
+ *
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.example.fuelQuotaManagementSystem.benchmark.ScanPumpLoadBenchmark \
+ *       -Dbench.vehicles=CAB-1234,CAB-1235 -Dbench.vehicleIds=1,2 -Dbench.stationId=1
+ *
+ * It signs in as an admin, resets the quota of every vehicle used, then runs a scan phase and a
+ * pump phase at the given concurrency and prints throughput and latency percentiles for each.
+ * Each pump takes 1 L, so a vehicle's quota is refilled (outside the timed calls) after every
+ * bench.pumpsPerRefill pumps; the default of 15 stays under the smallest monthly quota (20 L for a
+ * motorcycle), so the pump figures are for accepted pumps rather than quota rejections.
+ * Start the backend once with spring.threads.virtual.enabled=false and once with true (built
+ * with -Pjava21) and compare the two reports.
+ */
+public class ScanPumpLoadBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final String baseUrl = System.getProperty("bench.baseUrl", "http://localhost:8080");
+    private final String username = System.getProperty("bench.username", "admin");
+    private final String password = System.getProperty("bench.password", "password");
+    private final List<String> registrations = Arrays.asList(System.getProperty("bench.vehicles", "").split(","));
+    private final List<String> vehicleIds = Arrays.asList(System.getProperty("bench.vehicleIds", "").split(","));
+    private final String stationId = System.getProperty("bench.stationId", "1");
+    private final int concurrency = Integer.getInteger("bench.concurrency", 64);
+    private final int warmupSeconds = Integer.getInteger("bench.warmupSeconds", 10);
+    private final int durationSeconds = Integer.getInteger("bench.durationSeconds", 30);
+    private final int pumpsPerRefill = Integer.getInteger("bench.pumpsPerRefill", 15);
+
+    private String token;
+
+    public static void main(String[] args) throws Exception {
+        new ScanPumpLoadBenchmark().run();
+    }
+
+    private void run() throws Exception {
+        if (registrations.get(0).isEmpty() || vehicleIds.get(0).isEmpty()) {
+            throw new IllegalArgumentException("Set -Dbench.vehicles=<registration numbers> and -Dbench.vehicleIds=<ids>");
+        }
+
+        token = signIn();
+        System.out.printf("Target %s, concurrency %d, %ds per phase after %ds warm-up%n",
+                baseUrl, concurrency, durationSeconds, warmupSeconds);
+
+        resetQuotas();
+        runPhase("scan", warmupSeconds, n -> scan(registrations.get(n % registrations.size())), Gate.NONE);
+        Result scan = runPhase("scan", durationSeconds, n -> scan(registrations.get(n % registrations.size())), Gate.NONE);
+
+        // Quotas are refilled as the phase goes, so it measures accepted pumps
+        resetQuotas();
+        QuotaRefill refill = new QuotaRefill();
+        Result pump = runPhase("pump", durationSeconds, n -> pump(vehicleIds.get(n % vehicleIds.size())), refill);
+
+        scan.print();
+        pump.print();
+        System.out.printf("quota refills during the pump phase: %d%n", refill.refills.get());
+    }
+
+    private Result runPhase(String name, int seconds, Call call, Gate gate) throws Exception {
+        Result result = new Result(name, seconds);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        AtomicLong sequence = new AtomicLong();
+
+        ExecutorService drivers = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            drivers.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    int n = (int) sequence.getAndIncrement();
+                    try {
+                        gate.enter(n);
+                    } catch (Exception e) {
+                        result.record(-1, 0);
+                        continue;
+                    }
+                    long start = System.nanoTime();
+                    int status;
+                    try {
+                        status = call.send(n);
+                    } catch (Exception e) {
+                        status = -1;
+                    } finally {
+                        gate.exit(n);
+                    }
+                    result.record(status, System.nanoTime() - start);
+                }
+            });
+        }
+        drivers.shutdown();
+        drivers.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        return result;
+    }
+
+    private int scan(String registration) throws Exception {
+        HttpRequest request = authorized(baseUrl + "/api/fuel/quota/scan/" + registration).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private int pump(String vehicleId) throws Exception {
+        Map<String, Object> body = new HashMap<>();
+        body.put("vehicleId", Long.valueOf(vehicleId));
+        body.put("stationId", Long.valueOf(stationId));
+        body.put("fuelType", System.getProperty("bench.fuelType", "Petrol"));
+        body.put("amount", 1.0);
+        body.put("idempotencyKey", UUID.randomUUID().toString());
+
+        HttpRequest request = authorized(baseUrl + "/api/fuel/pump")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(MAPPER.writeValueAsString(body)))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private void resetQuotas() throws Exception {
+        for (String vehicleId : vehicleIds) {
+            resetQuota(vehicleId);
+        }
+    }
+
+    private void resetQuota(String vehicleId) throws Exception {
+        HttpRequest request = authorized(baseUrl + "/api/fuel/quota/reset/" + vehicleId)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != 200) {
+            throw new IllegalStateException("Quota reset failed for vehicle " + vehicleId + ": " + status);
+        }
+    }
+
+    private String signIn() throws Exception {
+        String body = MAPPER.writeValueAsString(Map.of("username", username, "password", password));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/signin"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Sign in failed: " + response.statusCode() + " " + response.body());
+        }
+        return MAPPER.readTree(response.body()).get("token").asText();
+    }
+
+    private HttpRequest.Builder authorized(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + token);
+    }
+
+    private interface Call {
+        int send(int n) throws Exception;
+    }
+
+    // Runs around each call, outside the measured time
+    private interface Gate {
+        Gate NONE = new Gate() {
+            public void enter(int n) { }
+            public void exit(int n) { }
+        };
+
+        void enter(int n) throws Exception;
+        void exit(int n);
+    }
+
+    /**
+     * Lets at most pumpsPerRefill pumps at a vehicle between two refills. Pumps hold the read lock
+     * of their vehicle; the refill takes the write lock, so it waits for in-flight pumps and no pump
+     * can start against a quota that is about to be replaced.
+     */
+    private class QuotaRefill implements Gate {
+        private final ReentrantReadWriteLock[] locks = new ReentrantReadWriteLock[vehicleIds.size()];
+        private final AtomicInteger[] pumpsSinceRefill = new AtomicInteger[vehicleIds.size()];
+        private final AtomicLong refills = new AtomicLong();
+
+        private QuotaRefill() {
+            for (int i = 0; i < locks.length; i++) {
+                locks[i] = new ReentrantReadWriteLock();
+                pumpsSinceRefill[i] = new AtomicInteger();
+            }
+        }
+
+        @Override
+        public void enter(int n) throws Exception {
+            int vehicle = n % locks.length;
+            while (true) {
+                locks[vehicle].readLock().lock();
+                if (pumpsSinceRefill[vehicle].incrementAndGet() <= pumpsPerRefill) {
+                    return;
+                }
+                pumpsSinceRefill[vehicle].decrementAndGet();
+                locks[vehicle].readLock().unlock();
+                refill(vehicle);
+            }
+        }
+
+        @Override
+        public void exit(int n) {
+            locks[n % locks.length].readLock().unlock();
+        }
+
+        private void refill(int vehicle) throws Exception {
+            locks[vehicle].writeLock().lock();
+            try {
+                if (pumpsSinceRefill[vehicle].get() >= pumpsPerRefill) {
+                    resetQuota(vehicleIds.get(vehicle));
+                    pumpsSinceRefill[vehicle].set(0);
+                    refills.incrementAndGet();
+                }
+            } finally {
+                locks[vehicle].writeLock().unlock();
+            }
+        }
+    }
+
+    private static class Result {
+        private final String name;
+        private final int seconds;
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final ConcurrentHashMap<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+
+        private Result(String name, int seconds) {
+            this.name = name;
+            this.seconds = seconds;
+        }
+
+        private void record(int status, long nanos) {
+            statuses.computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+            if (status >= 200 && status < 300) {
+                latencies.add(nanos);
+            }
+        }
+
+        private void print() {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            System.out.printf("%n== %s ==%n", name);
+            System.out.printf("successful: %d (%.1f req/s)%n", sorted.length, sorted.length / (double) seconds);
+            System.out.printf("status counts: %s%n", new TreeMap<>(statuses));
+            if (sorted.length > 0) {
+                System.out.printf("latency ms  p50 %.1f  p90 %.1f  p99 %.1f  max %.1f%n",
+                        percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+                        sorted[sorted.length - 1] / 1e6);
+            }
+        }
+
+        private double percentile(long[] sorted, double percentile) {
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
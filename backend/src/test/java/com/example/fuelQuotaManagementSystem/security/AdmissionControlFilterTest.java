@@ -0,0 +1,60 @@
+package com.example.fuelQuotaManagementSystem.security;
+
+import com.example.fuelQuotaManagementSystem.service.AdmissionControlService;
+import com.example.fuelQuotaManagementSystem.service.AdmissionControlService.EndpointClass;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlFilterTest {
+
+    @Test
+    void overloadedPumpIsShedWithRetryAfter() throws Exception {
+        AdmissionControlService service = new AdmissionControlService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "pumpMaxConcurrent", 1);
+        ReflectionTestUtils.setField(service, "scanMaxConcurrent", 1);
+        ReflectionTestUtils.setField(service, "maxQueueWaitMillis", 50L);
+        ReflectionTestUtils.setField(service, "maxQueuedPerStation", 10);
+        ReflectionTestUtils.setField(service, "retryAfterSeconds", 3);
+        ReflectionTestUtils.setField(service, "connectionPoolSize", 10);
+        ReflectionTestUtils.setField(service, "reservedConnections", 2);
+        service.createLimiters();
+
+        AdmissionControlFilter filter = new AdmissionControlFilter();
+        ReflectionTestUtils.setField(filter, "admissionControlService", service);
+
+        // The only pump slot is taken and the queue is empty
+        assertEquals(AdmissionControlService.Outcome.ADMITTED, service.admit(EndpointClass.PUMP, "user:1"));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(pumpRequest(), response, chain);
+
+        assertEquals(503, response.getStatus());
+        assertEquals("3", response.getHeader("Retry-After"));
+        assertTrue(response.getContentAsString().contains("System is busy"));
+        assertNull(chain.getRequest(), "rejected request must not reach the controller");
+
+        // Once the slot is free the request goes through and releases it afterwards
+        service.release(EndpointClass.PUMP);
+        MockHttpServletResponse admitted = new MockHttpServletResponse();
+        MockFilterChain admittedChain = new MockFilterChain();
+        filter.doFilter(pumpRequest(), admitted, admittedChain);
+        assertEquals(200, admitted.getStatus());
+        assertNotNull(admittedChain.getRequest());
+        assertEquals(0, ((Map<?, ?>) service.getStats().get("pump")).get("inFlight"));
+    }
+
+    private MockHttpServletRequest pumpRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/fuel/pump");
+        request.setServletPath("/api/fuel/pump");
+        return request;
+    }
+}
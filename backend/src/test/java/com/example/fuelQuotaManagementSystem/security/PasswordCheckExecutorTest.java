@@ -0,0 +1,88 @@
+package com.example.fuelQuotaManagementSystem.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Password checks on a pool of one thread with room for one queued check.
+ */
+class PasswordCheckExecutorTest {
+
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private PasswordCheckExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        unblock.countDown();
+        callers.shutdownNow();
+        executor.stop();
+    }
+
+    @Test
+    void saturatedPoolRejectsStraightAway() throws Exception {
+        executor = executor(5_000);
+        CountDownLatch running = new CountDownLatch(1);
+
+        Future<Boolean> first = callers.submit(() -> executor.run(() -> {
+            running.countDown();
+            return unblock.await(10, TimeUnit.SECONDS);
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        Future<Boolean> queued = callers.submit(() -> executor.run(() -> true));
+        awaitQueued();
+
+        long startedAt = System.nanoTime();
+        assertThrows(RejectedExecutionException.class, () -> executor.run(() -> true));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) < 1_000);
+
+        unblock.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void checkWaitingLongerThanTheLimitIsRejected() {
+        executor = executor(50);
+
+        RejectedExecutionException timedOut = assertThrows(RejectedExecutionException.class,
+                () -> executor.run(() -> unblock.await(10, TimeUnit.SECONDS)));
+        assertTrue(timedOut.getMessage().contains("timed out"));
+
+        // The cancelled check frees its thread for the next one
+        unblock.countDown();
+        assertEquals("ok", executor.run(() -> "ok"));
+    }
+
+    @Test
+    void exceptionsFromTheCheckAreRethrownAsTheyAre() {
+        executor = executor(5_000);
+
+        assertThrows(IllegalArgumentException.class, () -> executor.run(() -> {
+            throw new IllegalArgumentException("bad credentials");
+        }));
+    }
+
+    private void awaitQueued() throws InterruptedException {
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) ReflectionTestUtils.getField(executor, "pool");
+        for (int i = 0; i < 100 && pool.getQueue().isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, pool.getQueue().size());
+    }
+
+    private static PasswordCheckExecutor executor(long maxWaitMillis) {
+        PasswordCheckExecutor executor = new PasswordCheckExecutor();
+        ReflectionTestUtils.setField(executor, "threads", 1);
+        ReflectionTestUtils.setField(executor, "maxQueue", 1);
+        ReflectionTestUtils.setField(executor, "maxWaitMillis", maxWaitMillis);
+        ReflectionTestUtils.setField(executor, "retryAfterSeconds", 2);
+        executor.start();
+        return executor;
+    }
+}
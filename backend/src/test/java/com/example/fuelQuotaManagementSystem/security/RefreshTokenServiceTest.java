@@ -0,0 +1,110 @@
+package com.example.fuelQuotaManagementSystem.security;
+
+import com.example.fuelQuotaManagementSystem.entity.RefreshToken;
+import com.example.fuelQuotaManagementSystem.repository.RefreshTokenRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Refresh token rotation and reuse detection against the in-memory database.
+ */
+@SpringBootTest
+class RefreshTokenServiceTest {
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Test
+    void eachRotationHandsOutANewToken() {
+        String first = refreshTokenService.issue("rotating-user");
+
+        RefreshTokenService.Rotation second = refreshTokenService.rotate(first);
+        RefreshTokenService.Rotation third = refreshTokenService.rotate(second.getRefreshToken());
+
+        assertEquals("rotating-user", third.getUsername());
+        assertNotEquals(first, second.getRefreshToken());
+        assertNotEquals(second.getRefreshToken(), third.getRefreshToken());
+    }
+
+    @Test
+    void tokenPresentedTwiceWithinTheGraceWindowGetsTheSameSuccessor() {
+        String token = refreshTokenService.issue("two-tabs");
+
+        RefreshTokenService.Rotation firstTab = refreshTokenService.rotate(token);
+        RefreshTokenService.Rotation secondTab = refreshTokenService.rotate(token);
+
+        assertEquals(firstTab.getRefreshToken(), secondTab.getRefreshToken());
+        // The family was not revoked, so the shared successor still rotates
+        assertNotNull(refreshTokenService.rotate(firstTab.getRefreshToken()).getRefreshToken());
+    }
+
+    @Test
+    void concurrentRotationsOfOneTokenAllGetTheSameSuccessor() throws Exception {
+        String token = refreshTokenService.issue("racing-tabs");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<String>> rotations = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                rotations.add(executor.submit(() -> {
+                    start.await();
+                    return refreshTokenService.rotate(token).getRefreshToken();
+                }));
+            }
+            start.countDown();
+
+            String successor = rotations.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<String> rotation : rotations) {
+                assertEquals(successor, rotation.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void reuseAfterTheGraceWindowRevokesTheFamily() {
+        String token = refreshTokenService.issue("stolen-token");
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(token);
+
+        // As if the copy were replayed a minute after the owner rotated it
+        RefreshToken used = refreshTokenRepository.findAll().stream()
+                .filter(row -> row.getUsername().equals("stolen-token") && row.getUsedAt() != null)
+                .findFirst().orElseThrow();
+        used.setUsedAt(used.getUsedAt() - 60_000);
+        refreshTokenRepository.save(used);
+
+        assertThrows(BadCredentialsException.class, () -> refreshTokenService.rotate(token));
+        assertThrows(BadCredentialsException.class, () -> refreshTokenService.rotate(rotation.getRefreshToken()));
+    }
+
+    @Test
+    void revokedTokenIsNotRenewedWithinTheGraceWindow() {
+        String token = refreshTokenService.issue("signed-out");
+
+        refreshTokenService.revoke(token);
+
+        assertThrows(BadCredentialsException.class, () -> refreshTokenService.rotate(token));
+    }
+
+    @Test
+    void successorUsedAlreadyIsNotHandedOutAgain() {
+        String token = refreshTokenService.issue("moved-on");
+        RefreshTokenService.Rotation second = refreshTokenService.rotate(token);
+        refreshTokenService.rotate(second.getRefreshToken());
+
+        assertThrows(BadCredentialsException.class, () -> refreshTokenService.rotate(token));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.fuelQuotaManagementSystem.security;
+
+import com.example.fuelQuotaManagementSystem.controller.AdminController;
+import com.example.fuelQuotaManagementSystem.dto.admin.RevokeTokenRequest;
+import com.example.fuelQuotaManagementSystem.entity.User;
+import com.example.fuelQuotaManagementSystem.repository.RevokedTokenRepository;
+import com.example.fuelQuotaManagementSystem.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Revocation against the in-memory database.
+ */
+@SpringBootTest(properties = "auth.user-cache.change-check-seconds=0")
+class TokenRevocationStoreTest {
+
+    @Autowired
+    private TokenRevocationStore tokenRevocationStore;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AdminController adminController;
+
+    @Test
+    void sameTokenRevokedTwiceKeepsOneRow() {
+        long now = System.currentTimeMillis();
+        // As two instances signing out the same token at once would
+        revokedTokenRepository.insertIfAbsent("jti-twice", "someone", now + 60_000, now);
+        revokedTokenRepository.insertIfAbsent("jti-twice", "someone", now + 60_000, now);
+
+        assertEquals(1, revokedTokenRepository.findByExpiresAtGreaterThan(now).stream()
+                .filter(row -> row.getJti().equals("jti-twice")).count());
+
+        tokenRevocationStore.revoke("jti-twice", "someone", now + 60_000);
+        assertTrue(tokenRevocationStore.isRevoked("jti-twice"));
+    }
+
+    @Test
+    void revokingAUserRejectsItsEarlierAccessTokensAndItsRefreshTokens() {
+        User user = new User();
+        user.setUsername("revoke-all");
+        user.setPassword("not-used");
+        user.setEmail("revoke-all@example.com");
+        userRepository.save(user);
+        String refreshToken = refreshTokenService.issue(user.getUsername());
+        long issuedAt = System.currentTimeMillis();
+
+        ResponseEntity<?> response = asAdmin(() -> adminController.revokeToken(new RevokeTokenRequest(null, null, user.getUsername())));
+
+        assertEquals(200, response.getStatusCode().value());
+        assertTrue(userDetailsCache.revokedAfter(user.getUsername(), issuedAt));
+        assertFalse(userDetailsCache.revokedAfter(user.getUsername(), issuedAt + 2000));
+        assertThrows(BadCredentialsException.class, () -> refreshTokenService.rotate(refreshToken));
+
+        ResponseEntity<?> unknown = asAdmin(() -> adminController.revokeToken(new RevokeTokenRequest(null, null, "no-such-user")));
+        assertEquals(400, unknown.getStatusCode().value());
+    }
+
+    private ResponseEntity<?> asAdmin(Supplier<ResponseEntity<?>> call) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "admin", null, List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+        try {
+            return call.get();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.fuelQuotaManagementSystem.security;
+
+import com.example.fuelQuotaManagementSystem.entity.User;
+import com.example.fuelQuotaManagementSystem.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Role changes and revocations are read from the users row, so one made through another backend
+ * instance, which never touches this instance's cache, still applies to older tokens here.
+ */
+@SpringBootTest(properties = "auth.user-cache.change-check-seconds=0")
+class UserDetailsCacheTest {
+
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void roleChangePersistedElsewhereAppliesToTokensIssuedBeforeIt() {
+        User user = user("roles-elsewhere");
+        long issuedAt = System.currentTimeMillis() - 60_000;
+        assertFalse(userDetailsCache.changedSince(user.getUsername(), issuedAt));
+
+        // As another instance would: only the database row changes
+        long changedAt = System.currentTimeMillis();
+        user.setRolesChangedAt(changedAt);
+        userRepository.save(user);
+
+        assertTrue(userDetailsCache.changedSince(user.getUsername(), issuedAt));
+        assertFalse(userDetailsCache.changedSince(user.getUsername(), changedAt + 1000));
+    }
+
+    @Test
+    void tokensRevokedElsewhereAreRejected() {
+        User user = user("revoked-elsewhere");
+        long issuedAt = System.currentTimeMillis() - 60_000;
+        assertFalse(userDetailsCache.revokedAfter(user.getUsername(), issuedAt));
+
+        long notBefore = System.currentTimeMillis();
+        user.setTokensNotBefore(notBefore);
+        userRepository.save(user);
+
+        assertTrue(userDetailsCache.revokedAfter(user.getUsername(), issuedAt));
+        assertFalse(userDetailsCache.revokedAfter(user.getUsername(), notBefore));
+    }
+
+    @Test
+    void localInvalidationIsNotUndoneByAnOlderPersistedValue() {
+        User user = user("roles-local");
+        long issuedAt = System.currentTimeMillis() - 60_000;
+
+        userDetailsCache.invalidate(user.getUsername());
+
+        assertTrue(userDetailsCache.changedSince(user.getUsername(), issuedAt));
+    }
+
+    private User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("not-used");
+        user.setEmail(username + "@example.com");
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.example.fuelQuotaManagementSystem.service.AdmissionControlService.EndpointClass;
+import com.example.fuelQuotaManagementSystem.service.AdmissionControlService.Outcome;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlServiceTest {
+
+    @Test
+    void limitsAreScaledToTheConnectionPool() {
+        AdmissionControlService service = service(20, 30, 10, 2, 10, 50);
+
+        int pump = service.getMaxConcurrent(EndpointClass.PUMP);
+        int scan = service.getMaxConcurrent(EndpointClass.SCAN);
+        assertTrue(pump + scan <= 8, "pump=" + pump + ", scan=" + scan);
+        assertTrue(pump >= 1 && scan >= 1);
+    }
+
+    @Test
+    void limitsThatFitThePoolAreKept() {
+        AdmissionControlService service = service(4, 3, 10, 2, 10, 50);
+
+        assertEquals(4, service.getMaxConcurrent(EndpointClass.PUMP));
+        assertEquals(3, service.getMaxConcurrent(EndpointClass.SCAN));
+    }
+
+    @Test
+    void fullQueueIsRejectedImmediately() throws Exception {
+        AdmissionControlService service = service(1, 1, 10, 2, 0, 50);
+
+        assertEquals(Outcome.ADMITTED, service.admit(EndpointClass.PUMP, "user:1"));
+        assertEquals(Outcome.REJECTED_OVERLOADED, service.admit(EndpointClass.PUMP, "user:2"));
+
+        service.release(EndpointClass.PUMP);
+        assertEquals(Outcome.ADMITTED, service.admit(EndpointClass.PUMP, "user:2"));
+    }
+
+    @Test
+    void oneStationCannotFillTheQueue() throws Exception {
+        AdmissionControlService service = service(1, 1, 10, 2, 10, 2_000);
+        ReflectionTestUtils.setField(service, "maxQueuedPerStation", 1);
+        assertEquals(Outcome.ADMITTED, service.admit(EndpointClass.PUMP, "user:1"));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Outcome> queued = executor.submit(() -> service.admit(EndpointClass.PUMP, "user:1"));
+            awaitQueued(service, 1);
+
+            // The station already has a request waiting; another station still gets in line
+            assertEquals(Outcome.REJECTED_FAIR_SHARE, service.admit(EndpointClass.PUMP, "user:1"));
+
+            service.release(EndpointClass.PUMP);
+            assertEquals(Outcome.ADMITTED, queued.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void waitLongerThanTheLimitIsRejected() throws Exception {
+        AdmissionControlService service = service(1, 1, 10, 2, 10, 50);
+        assertEquals(Outcome.ADMITTED, service.admit(EndpointClass.SCAN, "user:1"));
+
+        assertEquals(Outcome.REJECTED_OVERLOADED, service.admit(EndpointClass.SCAN, "user:2"));
+        assertEquals(0, ((Map<?, ?>) service.getStats().get("scan")).get("queued"));
+    }
+
+    @Test
+    void interruptedWaiterLeavesTheQueueWithoutLeakingASlot() throws Exception {
+        AdmissionControlService service = service(1, 1, 10, 2, 10, 10_000);
+        assertEquals(Outcome.ADMITTED, service.admit(EndpointClass.PUMP, "user:1"));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> interrupted = executor.submit(() -> {
+                Thread.currentThread().interrupt();
+                Outcome outcome = service.admit(EndpointClass.PUMP, "user:2");
+                return outcome == Outcome.REJECTED_OVERLOADED && Thread.currentThread().isInterrupted();
+            });
+            assertTrue(interrupted.get(5, TimeUnit.SECONDS));
+            assertEquals(0, ((Map<?, ?>) service.getStats().get("pump")).get("queued"));
+
+            // The release frees the slot instead of handing it to the request that gave up
+            service.release(EndpointClass.PUMP);
+            assertEquals(0, ((Map<?, ?>) service.getStats().get("pump")).get("inFlight"));
+            assertEquals(Outcome.ADMITTED, service.admit(EndpointClass.PUMP, "user:3"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static AdmissionControlService service(int pumpMaxConcurrent, int scanMaxConcurrent, int poolSize,
+                                           int reservedConnections, int maxQueue, long maxQueueWaitMillis) {
+        AdmissionControlService service = new AdmissionControlService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "pumpMaxConcurrent", pumpMaxConcurrent);
+        ReflectionTestUtils.setField(service, "scanMaxConcurrent", scanMaxConcurrent);
+        ReflectionTestUtils.setField(service, "pumpMaxQueue", maxQueue);
+        ReflectionTestUtils.setField(service, "scanMaxQueue", maxQueue);
+        ReflectionTestUtils.setField(service, "maxQueuedPerStation", 10);
+        ReflectionTestUtils.setField(service, "maxQueueWaitMillis", maxQueueWaitMillis);
+        ReflectionTestUtils.setField(service, "retryAfterSeconds", 2);
+        ReflectionTestUtils.setField(service, "connectionPoolSize", poolSize);
+        ReflectionTestUtils.setField(service, "reservedConnections", reservedConnections);
+        service.createLimiters();
+        return service;
+    }
+
+    private void awaitQueued(AdmissionControlService service, int expected) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            if (((Map<?, ?>) service.getStats().get("pump")).get("queued").equals(expected)) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("request was not queued");
+    }
+}
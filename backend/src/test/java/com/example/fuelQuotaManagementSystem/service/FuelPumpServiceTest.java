@@ -0,0 +1,186 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.example.fuelQuotaManagementSystem.dto.FuelPumpBatchItemResult;
+import com.example.fuelQuotaManagementSystem.dto.FuelPumpRequest;
+import com.example.fuelQuotaManagementSystem.entity.FuelStation;
+import com.example.fuelQuotaManagementSystem.entity.FuelTransaction;
+import com.example.fuelQuotaManagementSystem.entity.Vehicle;
+import com.example.fuelQuotaManagementSystem.repository.FuelStationRepository;
+import com.example.fuelQuotaManagementSystem.repository.FuelTransactionRepository;
+import com.example.fuelQuotaManagementSystem.repository.UserRepository;
+import com.example.fuelQuotaManagementSystem.repository.VehicleRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+
+/**
+ * Pump recording against the in-memory database.
+ */
+@SpringBootTest
+class FuelPumpServiceTest {
+
+    @Autowired
+    private FuelPumpService fuelPumpService;
+
+    @Autowired
+    private FuelQuotaService fuelQuotaService;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private FuelStationRepository fuelStationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private QuotaReservationService reservationService;
+
+    @Autowired
+    private QuotaPeriodClock periodClock;
+
+    @SpyBean
+    private FuelTransactionRepository fuelTransactionRepository;
+
+    @Test
+    void idempotencyKeysAreScopedToTheStation() {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "PUMP-0001");
+        FuelStation first = TestVehicles.station(userRepository, fuelStationRepository, "ST-PUMP-1");
+        FuelStation second = TestVehicles.station(userRepository, fuelStationRepository, "ST-PUMP-2");
+
+        FuelPumpService.PumpResult original = fuelPumpService.recordPump(pump(vehicle, first, "device-key-1"));
+        FuelPumpService.PumpResult retry = fuelPumpService.recordPump(pump(vehicle, first, "device-key-1"));
+        FuelPumpService.PumpResult otherStation = fuelPumpService.recordPump(pump(vehicle, second, "device-key-1"));
+
+        assertFalse(original.isReplayed());
+        assertTrue(retry.isReplayed());
+        assertEquals(original.getTransactionId(), retry.getTransactionId());
+
+        // Same key from another station is a different pump
+        assertFalse(otherStation.isReplayed());
+        assertNotEquals(original.getTransactionId(), otherStation.getTransactionId());
+        assertEquals(50_000, fuelQuotaService.getRemainingQuotaMl(vehicle, "Petrol"));
+    }
+
+    @Test
+    void batchReplaysOnlyKeysOfTheSameStation() {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "PUMP-0002");
+        FuelStation first = TestVehicles.station(userRepository, fuelStationRepository, "ST-PUMP-3");
+        FuelStation second = TestVehicles.station(userRepository, fuelStationRepository, "ST-PUMP-4");
+
+        fuelPumpService.recordPump(pump(vehicle, first, "device-key-2"));
+        List<FuelPumpBatchItemResult> results = fuelPumpService.recordPumpBatch(List.of(
+                pump(vehicle, first, "device-key-2"),
+                pump(vehicle, second, "device-key-2"),
+                pump(vehicle, second, "device-key-2")));
+
+        assertTrue(results.get(0).getReplayed());
+        assertFalse(results.get(1).getReplayed());
+        assertTrue(results.get(2).getReplayed());
+        assertEquals(results.get(1).getTransactionId(), results.get(2).getTransactionId());
+        assertEquals(50_000, fuelQuotaService.getRemainingQuotaMl(vehicle, "Petrol"));
+    }
+
+    @Test
+    void reservedPumpReleasesItsHoldOnlyOnceCommitted() {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "PUMP-0003");
+        FuelStation station = TestVehicles.station(userRepository, fuelStationRepository, "ST-PUMP-5");
+
+        // 55 of the 60 L are held, so a pump at another station only gets the other 5 L
+        QuotaReservationService.Reservation hold = reservationService.reserve(vehicle, station, 55_000);
+        FuelStation other = TestVehicles.station(userRepository, fuelStationRepository, "ST-PUMP-6");
+        FuelPumpRequest elsewhere = pump(vehicle, other, null);
+        elsewhere.setAmount(6.0);
+        assertThrows(IllegalArgumentException.class, () -> fuelPumpService.recordPump(elsewhere));
+
+        FuelPumpRequest reserved = pump(vehicle, station, null);
+        reserved.setAmount(50.0);
+        reserved.setReservationId(hold.getId());
+        fuelPumpService.recordPump(reserved);
+
+        assertEquals(0, reservationService.heldMl(vehicle.getId()));
+        assertEquals(10_000, fuelQuotaService.getRemainingQuotaMl(vehicle, "Petrol"));
+    }
+
+    @Test
+    void failedReservedPumpPutsTheHoldBack() {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "PUMP-0004");
+        FuelStation station = TestVehicles.station(userRepository, fuelStationRepository, "ST-PUMP-7");
+        QuotaReservationService.Reservation hold = reservationService.reserve(vehicle, station, 20_000);
+
+        // Balance spent behind the hold's back, so the deduction fails inside the pump's transaction
+        fuelQuotaService.deductFuel(vehicle, "Petrol", 50_000, 0);
+        FuelPumpRequest reserved = pump(vehicle, station, null);
+        reserved.setReservationId(hold.getId());
+        reserved.setAmount(20.0);
+        assertThrows(IllegalArgumentException.class, () -> fuelPumpService.recordPump(reserved));
+
+        assertEquals(20_000, reservationService.heldMl(vehicle.getId()));
+        reservationService.cancel(hold.getId());
+    }
+
+    @Test
+    void batchItemCommittedConcurrentlyIsReplayedAndTheOthersStillCommit() {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "PUMP-0005");
+        FuelStation station = TestVehicles.station(userRepository, fuelStationRepository, "ST-PUMP-8");
+
+        // Committed by another instance after this batch looked its keys up
+        FuelTransaction concurrent = new FuelTransaction();
+        concurrent.setVehicle(vehicle);
+        concurrent.setStation(station);
+        concurrent.setFuelType("Petrol");
+        concurrent.setAmountMl(5_000);
+        concurrent.setQuotaBeforeMl(60_000);
+        concurrent.setQuotaAfterMl(55_000);
+        concurrent.setIdempotencyKey("device-key-3");
+        concurrent.setTimestamp(System.currentTimeMillis());
+        concurrent = fuelTransactionRepository.save(concurrent);
+        doReturn(List.of()).when(fuelTransactionRepository).findByStationIdAndIdempotencyKeyIn(any(), any());
+
+        List<FuelPumpBatchItemResult> results = fuelPumpService.recordPumpBatch(List.of(
+                pump(vehicle, station, "device-key-3"),
+                pump(vehicle, station, "device-key-4")));
+
+        assertTrue(results.get(0).getSuccess());
+        assertTrue(results.get(0).getReplayed());
+        assertEquals(concurrent.getId(), results.get(0).getTransactionId());
+        assertTrue(results.get(1).getSuccess());
+        assertFalse(results.get(1).getReplayed());
+        assertEquals(55_000, fuelQuotaService.getRemainingQuotaMl(vehicle, "Petrol"));
+    }
+
+    @Test
+    void queuedPumpFromAnEarlierPeriodIsRejected() {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "PUMP-0006");
+        FuelStation station = TestVehicles.station(userRepository, fuelStationRepository, "ST-PUMP-9");
+        FuelPumpRequest lastPeriod = pump(vehicle, station, null);
+        lastPeriod.setPumpedAt(periodClock.startOfMonth() - 1);
+        FuelPumpRequest thisPeriod = pump(vehicle, station, null);
+        thisPeriod.setPumpedAt(periodClock.startOfMonth());
+
+        List<FuelPumpBatchItemResult> results = fuelPumpService.recordPumpBatch(List.of(lastPeriod, thisPeriod));
+
+        assertFalse(results.get(0).getSuccess());
+        assertTrue(results.get(0).getMessage().contains("previous quota period"));
+        assertTrue(results.get(1).getSuccess());
+        assertEquals(55_000, fuelQuotaService.getRemainingQuotaMl(vehicle, "Petrol"));
+    }
+
+    private FuelPumpRequest pump(Vehicle vehicle, FuelStation station, String idempotencyKey) {
+        FuelPumpRequest request = new FuelPumpRequest();
+        request.setVehicleId(vehicle.getId());
+        request.setStationId(station.getId());
+        request.setFuelType("Petrol");
+        request.setAmount(5.0);
+        request.setIdempotencyKey(idempotencyKey);
+        return request;
+    }
+}
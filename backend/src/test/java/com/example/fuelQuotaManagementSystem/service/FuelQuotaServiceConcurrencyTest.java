@@ -0,0 +1,109 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.example.fuelQuotaManagementSystem.entity.FuelQuota;
+import com.example.fuelQuotaManagementSystem.entity.Vehicle;
+import com.example.fuelQuotaManagementSystem.repository.FuelQuotaRepository;
+import com.example.fuelQuotaManagementSystem.repository.UserRepository;
+import com.example.fuelQuotaManagementSystem.repository.VehicleRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrent pumps against one vehicle's quota, on the in-memory database. Every accepted
+ * deduction must be reflected in the stored balance and the balance must never go negative.
+ */
+@SpringBootTest
+class FuelQuotaServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final long PETROL_CAR_QUOTA_ML = 60_000;
+
+    @Autowired
+    private FuelQuotaService fuelQuotaService;
+
+    @Autowired
+    private FuelQuotaRepository fuelQuotaRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private QuotaPeriodClock periodClock;
+
+    @Test
+    void concurrentDeductionsNeverOverdrawTheQuota() throws Exception {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "CONC-0001");
+        fuelQuotaService.getCurrentQuota(vehicle, "Petrol");
+
+        // 80 pumps of 1 L against a 60 L quota: exactly 60 may succeed
+        List<Callable<FuelQuotaService.QuotaDeduction>> pumps = new ArrayList<>();
+        for (int i = 0; i < 80; i++) {
+            pumps.add(() -> fuelQuotaService.deductFuel(vehicle, "Petrol", 1_000, 0));
+        }
+        List<FuelQuotaService.QuotaDeduction> deductions = TestVehicles.runConcurrently(THREADS, pumps);
+
+        long accepted = deductions.stream().filter(FuelQuotaService.QuotaDeduction::isSuccess).count();
+        assertEquals(60, accepted);
+
+        // Each accepted pump saw a distinct balance, i.e. no two read the same row state
+        Set<Long> balancesAfter = new HashSet<>();
+        for (FuelQuotaService.QuotaDeduction deduction : deductions) {
+            if (deduction.isSuccess()) {
+                assertEquals(deduction.getQuotaBeforeMl() - 1_000, deduction.getQuotaAfterMl());
+                assertTrue(balancesAfter.add(deduction.getQuotaAfterMl()));
+            }
+        }
+
+        assertEquals(0, storedRemainingMl(vehicle));
+    }
+
+    @Test
+    void concurrentDeductionsRespectHeldLitres() throws Exception {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "CONC-0002");
+        fuelQuotaService.getCurrentQuota(vehicle, "Petrol");
+
+        // 10 L are held for another station, so only 50 of the 1 L pumps fit
+        List<Callable<FuelQuotaService.QuotaDeduction>> pumps = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            pumps.add(() -> fuelQuotaService.deductFuel(vehicle, "Petrol", 1_000, 10_000));
+        }
+        List<FuelQuotaService.QuotaDeduction> deductions = TestVehicles.runConcurrently(THREADS, pumps);
+
+        assertEquals(50, deductions.stream().filter(FuelQuotaService.QuotaDeduction::isSuccess).count());
+        assertEquals(10_000, storedRemainingMl(vehicle));
+    }
+
+    @Test
+    void concurrentFirstPumpsShareOneNewQuota() throws Exception {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "CONC-0003");
+
+        // No quota exists yet, so every pump races to create this month's row
+        List<Callable<FuelQuotaService.QuotaDeduction>> pumps = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            pumps.add(() -> fuelQuotaService.deductFuel(vehicle, "Petrol", 2_000, 0));
+        }
+        List<FuelQuotaService.QuotaDeduction> deductions = TestVehicles.runConcurrently(THREADS, pumps);
+
+        assertTrue(deductions.stream().allMatch(FuelQuotaService.QuotaDeduction::isSuccess));
+        assertEquals(PETROL_CAR_QUOTA_ML - THREADS * 2_000, storedRemainingMl(vehicle));
+        assertEquals(1, fuelQuotaRepository.findAll().stream()
+                .filter(q -> q.getVehicle().getId().equals(vehicle.getId()))
+                .count());
+    }
+
+    private long storedRemainingMl(Vehicle vehicle) {
+        FuelQuota quota = fuelQuotaRepository.findByPeriod(vehicle.getId(), "Petrol", periodClock.monthPeriodKey())
+                .orElseThrow();
+        assertEquals(PETROL_CAR_QUOTA_ML, quota.getAllocatedQuotaMl());
+        return quota.getRemainingQuotaMl();
+    }
+}
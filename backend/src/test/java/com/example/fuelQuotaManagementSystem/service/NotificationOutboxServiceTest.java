@@ -0,0 +1,135 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.example.fuelQuotaManagementSystem.dto.FuelPumpBatchItemResult;
+import com.example.fuelQuotaManagementSystem.dto.FuelPumpRequest;
+import com.example.fuelQuotaManagementSystem.entity.FuelStation;
+import com.example.fuelQuotaManagementSystem.entity.NotificationOutbox;
+import com.example.fuelQuotaManagementSystem.entity.User;
+import com.example.fuelQuotaManagementSystem.entity.Vehicle;
+import com.example.fuelQuotaManagementSystem.repository.FuelStationRepository;
+import com.example.fuelQuotaManagementSystem.repository.NotificationOutboxRepository;
+import com.example.fuelQuotaManagementSystem.repository.UserRepository;
+import com.example.fuelQuotaManagementSystem.repository.VehicleRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doReturn;
+
+/**
+ * Outbox rows queued with pumps, against the in-memory database. The dispatcher is kept idle so
+ * queued rows stay as they were written.
+ */
+@SpringBootTest(properties = {
+        "notification.sms.enabled=true",
+        "notification.outbox.poll-interval-ms=3600000"
+})
+class NotificationOutboxServiceTest {
+
+    @Autowired
+    private FuelPumpService fuelPumpService;
+
+    @Autowired
+    private FuelQuotaService fuelQuotaService;
+
+    @Autowired
+    private NotificationOutboxService notificationOutboxService;
+
+    @Autowired
+    private NotificationOutboxRepository notificationOutboxRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private FuelStationRepository fuelStationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @SpyBean
+    private NotificationService notificationService;
+
+    @Test
+    void longestPhoneNumberAndStationNameAreQueued() {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "OUTBOX-0001");
+        User owner = vehicle.getOwner();
+        owner.setPhoneNumber("+94" + "7".repeat(252));
+        userRepository.save(owner);
+        FuelStation station = TestVehicles.station(userRepository, fuelStationRepository, "ST-OUTBOX-1");
+        station.setName("S".repeat(255));
+        fuelStationRepository.save(station);
+
+        FuelPumpService.PumpResult result = fuelPumpService.recordPump(pump(vehicle, station));
+
+        NotificationOutbox queued = queuedFor(result.getTransactionId()).orElseThrow();
+        assertEquals(owner.getPhoneNumber(), queued.getPhoneNumber());
+        assertTrue(queued.getMessage().contains(station.getName()));
+    }
+
+    @Test
+    void pumpCommitsWhenItsNotificationCannotBeQueued() {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "OUTBOX-0002");
+        FuelStation station = TestVehicles.station(userRepository, fuelStationRepository, "ST-OUTBOX-2");
+        // A null message violates NOT NULL, so the outbox insert fails inside the pump's transaction
+        doReturn(null).when(notificationService).createFuelTransactionSMSMessage(
+                eq("OUTBOX-0002"), anyString(), anyDouble(), anyString(), anyDouble(), any());
+
+        FuelPumpService.PumpResult single = fuelPumpService.recordPump(pump(vehicle, station));
+        List<FuelPumpBatchItemResult> batch = fuelPumpService.recordPumpBatch(List.of(
+                pump(vehicle, station), pump(vehicle, station)));
+
+        assertNotNull(single.getTransactionId());
+        assertTrue(batch.get(0).getSuccess());
+        assertTrue(batch.get(1).getSuccess());
+        assertEquals(45_000, fuelQuotaService.getRemainingQuotaMl(vehicle, "Petrol"));
+        assertTrue(queuedFor(single.getTransactionId()).isEmpty());
+    }
+
+    @Test
+    void purgeDeletesOnlyFinishedMessagesOlderThanTheCutoff() {
+        long cutoff = System.currentTimeMillis() - 1_000_000;
+        NotificationOutbox oldSent = message(NotificationOutbox.STATUS_SENT, cutoff - 1);
+        NotificationOutbox oldFailed = message(NotificationOutbox.STATUS_FAILED, cutoff - 1);
+        NotificationOutbox oldPending = message(NotificationOutbox.STATUS_PENDING, cutoff - 1);
+        NotificationOutbox recentSent = message(NotificationOutbox.STATUS_SENT, cutoff + 1);
+
+        assertEquals(2, notificationOutboxService.purgeFinishedBefore(cutoff));
+
+        assertFalse(notificationOutboxRepository.existsById(oldSent.getId()));
+        assertFalse(notificationOutboxRepository.existsById(oldFailed.getId()));
+        assertTrue(notificationOutboxRepository.existsById(oldPending.getId()));
+        assertTrue(notificationOutboxRepository.existsById(recentSent.getId()));
+    }
+
+    private Optional<NotificationOutbox> queuedFor(Long transactionId) {
+        return notificationOutboxRepository.findAll().stream()
+                .filter(row -> transactionId.equals(row.getTransactionId()))
+                .findFirst();
+    }
+
+    private NotificationOutbox message(String status, long lastAttemptAt) {
+        NotificationOutbox message = new NotificationOutbox();
+        message.setPhoneNumber("+94770000000");
+        message.setMessage("purge test");
+        message.setStatus(status);
+        message.setNextAttemptAt(lastAttemptAt);
+        message.setCreatedAt(lastAttemptAt);
+        return notificationOutboxRepository.save(message);
+    }
+
+    private FuelPumpRequest pump(Vehicle vehicle, FuelStation station) {
+        FuelPumpRequest request = new FuelPumpRequest();
+        request.setVehicleId(vehicle.getId());
+        request.setStationId(station.getId());
+        request.setFuelType("Petrol");
+        request.setAmount(5.0);
+        return request;
+    }
+}
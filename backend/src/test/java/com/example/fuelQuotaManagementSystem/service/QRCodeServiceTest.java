@@ -0,0 +1,96 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.example.fuelQuotaManagementSystem.entity.User;
+import com.example.fuelQuotaManagementSystem.entity.Vehicle;
+import com.example.fuelQuotaManagementSystem.entity.VehicleQrCode;
+import com.example.fuelQuotaManagementSystem.repository.UserRepository;
+import com.example.fuelQuotaManagementSystem.repository.VehicleQrCodeRepository;
+import com.example.fuelQuotaManagementSystem.repository.VehicleRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * Scan verification against the in-memory database.
+ */
+@SpringBootTest
+class QRCodeServiceTest {
+
+    @Autowired
+    private QRCodeService qrCodeService;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @SpyBean
+    private VehicleQrCodeRepository vehicleQrCodeRepository;
+
+    @Test
+    void regeneratedCodeReplacesTheCachedOne() {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "QRSV-0001");
+        String first = qrCodeService.generateQRCode(vehicle);
+        qrCodeService.storeQRCode(vehicle.getId(), first);
+        assertEquals(vehicle.getId(), qrCodeService.verifyQRCode(first).getVehicleId());
+
+        // Issue times have second resolution, so sign the replacement a second later to get a different payload
+        String second = qrCodeService.signQRCode(vehicle.getRegistrationNumber(), vehicle.getFuelType(),
+                qrCodeService.getActiveKeyId(), System.currentTimeMillis() + 1000);
+        qrCodeService.storeQRCode(vehicle.getId(), second);
+
+        RuntimeException replaced = assertThrows(RuntimeException.class, () -> qrCodeService.verifyQRCode(first));
+        assertTrue(replaced.getMessage().contains("replaced"));
+        assertEquals(vehicle.getId(), qrCodeService.verifyQRCode(second).getVehicleId());
+    }
+
+    @Test
+    void genuineCodeThatWasNeverStoredIsRejected() {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "QRSV-0002");
+        String stored = qrCodeService.generateQRCode(vehicle);
+        qrCodeService.storeQRCode(vehicle.getId(), stored);
+
+        String other = qrCodeService.signQRCode(vehicle.getRegistrationNumber(), vehicle.getFuelType(),
+                qrCodeService.getActiveKeyId(), System.currentTimeMillis() - 60_000);
+        assertThrows(RuntimeException.class, () -> qrCodeService.verifyQRCode(other));
+        assertEquals(vehicle.getId(), qrCodeService.verifyQRCode(stored).getVehicleId());
+    }
+
+    @Test
+    void registeredVehicleCanBeScannedStraightAway() {
+        Vehicle saved = qrCodeService.registerVehicle(newVehicle("QRSV-0003"));
+
+        String payload = vehicleQrCodeRepository.findPayloadByVehicleId(saved.getId()).orElseThrow();
+        assertEquals(saved.getId(), qrCodeService.verifyQRCode(payload).getVehicleId());
+    }
+
+    @Test
+    void vehicleIsNotRegisteredWhenItsCodeCannotBeStored() {
+        doThrow(new IllegalStateException("disk full")).when(vehicleQrCodeRepository).save(any(VehicleQrCode.class));
+
+        assertThrows(IllegalStateException.class, () -> qrCodeService.registerVehicle(newVehicle("QRSV-0004")));
+        assertFalse(vehicleRepository.existsByRegistrationNumber("QRSV-0004"));
+    }
+
+    private Vehicle newVehicle(String registrationNumber) {
+        User owner = new User();
+        owner.setUsername("owner-" + registrationNumber);
+        owner.setPassword("not-used");
+        owner.setEmail(registrationNumber.toLowerCase() + "@example.com");
+
+        Vehicle vehicle = new Vehicle();
+        vehicle.setRegistrationNumber(registrationNumber);
+        vehicle.setChassisNumber("CH-" + registrationNumber);
+        vehicle.setVehicleType("Car");
+        vehicle.setFuelType("Petrol");
+        vehicle.setEngineCapacity(1500.0);
+        vehicle.setOwner(userRepository.save(owner));
+        return vehicle;
+    }
+}
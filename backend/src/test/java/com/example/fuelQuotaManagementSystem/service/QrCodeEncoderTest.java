@@ -0,0 +1,207 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * QrCodeEncoder symbols checked against ZXing: they must decode, and for the same version, level
+ * and mask they must match ZXing's encoder module for module.
+ */
+class QrCodeEncoderTest {
+
+    // Byte-mode capacity of each version at L, M, Q and H (ISO/IEC 18004, table 7)
+    private static final Map<Integer, int[]> CAPACITY = Map.of(
+            1, new int[]{17, 14, 11, 7},
+            2, new int[]{32, 26, 20, 14},
+            7, new int[]{154, 122, 86, 64},
+            10, new int[]{271, 213, 151, 119},
+            40, new int[]{2953, 2331, 1663, 1273});
+
+    private static final QrCodeEncoder.ErrorCorrection[] LEVELS = {
+            QrCodeEncoder.ErrorCorrection.L, QrCodeEncoder.ErrorCorrection.M,
+            QrCodeEncoder.ErrorCorrection.Q, QrCodeEncoder.ErrorCorrection.H};
+
+    @Test
+    void fullSymbolsMatchTheReferenceEncoderAndDecode() throws Exception {
+        for (Map.Entry<Integer, int[]> version : CAPACITY.entrySet()) {
+            for (int level = 0; level < LEVELS.length; level++) {
+                String text = text(version.getValue()[level]);
+                QrCodeEncoder.BitMatrix symbol = QrCodeEncoder.encode(text, LEVELS[level]);
+
+                String where = "version " + version.getKey() + " level " + LEVELS[level];
+                assertEquals(version.getKey() * 4 + 17, symbol.getSize(), where);
+                assertEquals(LEVELS[level].name(), formatLevel(symbol), where);
+                assertSameModules(reference(text, LEVELS[level], version.getKey(), formatMask(symbol)), symbol, where);
+
+                Result decoded = decode(symbol);
+                assertEquals(text, decoded.getText(), where);
+                assertEquals(LEVELS[level].name(), decoded.getResultMetadata().get(ResultMetadataType.ERROR_CORRECTION_LEVEL), where);
+            }
+        }
+    }
+
+    @Test
+    void oneByteOverCapacityMovesToTheNextVersion() {
+        assertEquals(21, QrCodeEncoder.encode(text(14), QrCodeEncoder.ErrorCorrection.M).getSize());
+        assertEquals(25, QrCodeEncoder.encode(text(15), QrCodeEncoder.ErrorCorrection.M).getSize());
+        assertThrows(IllegalArgumentException.class, () -> QrCodeEncoder.encode(text(2954), QrCodeEncoder.ErrorCorrection.L));
+    }
+
+    @Test
+    void errorCorrectionIsRaisedWhenItCostsNoVersion() throws Exception {
+        // 7 bytes fit version 1 at every level, so H comes for free
+        QrCodeEncoder.BitMatrix symbol = QrCodeEncoder.encode(text(7), QrCodeEncoder.ErrorCorrection.L);
+        assertEquals(21, symbol.getSize());
+        assertEquals("H", formatLevel(symbol));
+
+        // A vehicle payload (36 characters) needs version 3 at M, and Q only holds 32 bytes there
+        String payload = "AwkMEKVx158AAAAAAAABaVW5AIhAwlZnwof0";
+        QrCodeEncoder.BitMatrix vehicleSymbol = QrCodeEncoder.encode(payload, QrCodeEncoder.ErrorCorrection.M);
+        assertEquals(29, vehicleSymbol.getSize());
+        assertEquals("M", formatLevel(vehicleSymbol));
+        assertEquals(payload, decode(vehicleSymbol).getText());
+    }
+
+    @Test
+    void chosenMaskHasTheLowestPenaltyAndTiesGoToTheLowerMask() throws Exception {
+        for (String text : new String[]{"AwkMEKVx158AAAAAAAABaVW5AIhAwlZnwof0", text(26), text(100)}) {
+            QrCodeEncoder.BitMatrix symbol = QrCodeEncoder.encode(text, QrCodeEncoder.ErrorCorrection.M);
+            int version = (symbol.getSize() - 17) / 4;
+            QrCodeEncoder.ErrorCorrection level = QrCodeEncoder.ErrorCorrection.valueOf(formatLevel(symbol));
+            int chosen = formatMask(symbol);
+
+            int chosenPenalty = QrCodeEncoder.penaltyScore(symbol);
+            for (int mask = 0; mask < 8; mask++) {
+                int penalty = QrCodeEncoder.penaltyScore(toBitMatrix(reference(text, level, version, mask)));
+                if (mask < chosen) {
+                    assertTrue(penalty > chosenPenalty, "mask " + mask + " scores no worse than chosen mask " + chosen);
+                } else {
+                    assertTrue(penalty >= chosenPenalty, "mask " + mask + " scores better than chosen mask " + chosen);
+                }
+            }
+        }
+    }
+
+    @Test
+    void penaltyOfUniformAndCheckerboardMatrices() {
+        QrCodeEncoder.BitMatrix light = new QrCodeEncoder.BitMatrix(21);
+        // Rule 1: 21 rows and 21 columns of one 21-module run, 3 + 16 each; rule 2: 20 x 20 blocks of 3;
+        // rule 4: no dark modules is 50% off balance, 9 steps of 10
+        assertEquals(42 * 19 + 400 * 3 + 90, QrCodeEncoder.penaltyScore(light));
+
+        QrCodeEncoder.BitMatrix checkerboard = new QrCodeEncoder.BitMatrix(21);
+        for (int y = 0; y < 21; y++) {
+            for (int x = 0; x < 21; x++) {
+                checkerboard.set(x, y, (x + y) % 2 == 0);
+            }
+        }
+        assertEquals(0, QrCodeEncoder.penaltyScore(checkerboard));
+    }
+
+    @Test
+    void finderLikePatternWithLightOnBothSidesCountsTwice() {
+        // Dark 1:1:3:1:1 at the left edge of a row; the border before it and the 14 light modules after
+        // it are both at least 4 wide, so it matches as a pattern in each direction
+        QrCodeEncoder.BitMatrix withPattern = new QrCodeEncoder.BitMatrix(21);
+        boolean[] row = {true, false, true, true, true, false, true};
+        for (int x = 0; x < row.length; x++) {
+            withPattern.set(x, 10, row[x]);
+        }
+
+        // The same modules, but 1:1:2:1:2 so no finder-like pattern; rules 1, 2 and 4 score the same
+        QrCodeEncoder.BitMatrix withoutPattern = new QrCodeEncoder.BitMatrix(21);
+        boolean[] shifted = {true, false, true, true, false, true, true};
+        for (int x = 0; x < shifted.length; x++) {
+            withoutPattern.set(x, 10, shifted[x]);
+        }
+
+        assertEquals(2 * 40, QrCodeEncoder.penaltyScore(withPattern) - QrCodeEncoder.penaltyScore(withoutPattern));
+    }
+
+    // Printable, mostly lower case, so ZXing also picks byte mode
+    private static String text(int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append((char) ('a' + (i * 7) % 26));
+        }
+        return text.toString();
+    }
+
+    private static ByteMatrix reference(String text, QrCodeEncoder.ErrorCorrection level, int version, int mask) throws Exception {
+        return Encoder.encode(text, ErrorCorrectionLevel.valueOf(level.name()),
+                Map.of(EncodeHintType.QR_VERSION, version, EncodeHintType.QR_MASK_PATTERN, mask)).getMatrix();
+    }
+
+    private static void assertSameModules(ByteMatrix expected, QrCodeEncoder.BitMatrix actual, String where) {
+        assertEquals(expected.getWidth(), actual.getSize(), where);
+        for (int y = 0; y < actual.getSize(); y++) {
+            for (int x = 0; x < actual.getSize(); x++) {
+                assertEquals(expected.get(x, y) == 1, actual.get(x, y), where + " module " + x + "," + y);
+            }
+        }
+    }
+
+    private static QrCodeEncoder.BitMatrix toBitMatrix(ByteMatrix matrix) {
+        QrCodeEncoder.BitMatrix result = new QrCodeEncoder.BitMatrix(matrix.getWidth());
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                result.set(x, y, matrix.get(x, y) == 1);
+            }
+        }
+        return result;
+    }
+
+    private static Result decode(QrCodeEncoder.BitMatrix symbol) throws Exception {
+        int scale = 4;
+        int border = 4;
+        int imageSize = (symbol.getSize() + border * 2) * scale;
+        int[] pixels = new int[imageSize * imageSize];
+        for (int py = 0; py < imageSize; py++) {
+            for (int px = 0; px < imageSize; px++) {
+                int x = px / scale - border;
+                int y = py / scale - border;
+                boolean dark = x >= 0 && y >= 0 && x < symbol.getSize() && y < symbol.getSize() && symbol.get(x, y);
+                pixels[py * imageSize + px] = dark ? 0xFF000000 : 0xFFFFFFFF;
+            }
+        }
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(imageSize, imageSize, pixels)));
+        return new QRCodeReader().decode(bitmap, Map.of(DecodeHintType.PURE_BARCODE, Boolean.TRUE));
+    }
+
+    // Format information next to the top-left finder: 2 level bits and 3 mask bits, BCH-protected and masked
+    private static int formatData(QrCodeEncoder.BitMatrix symbol) {
+        int bits = 0;
+        for (int i = 0; i <= 5; i++) {
+            bits |= (symbol.get(8, i) ? 1 : 0) << i;
+        }
+        bits |= (symbol.get(8, 7) ? 1 : 0) << 6;
+        bits |= (symbol.get(8, 8) ? 1 : 0) << 7;
+        bits |= (symbol.get(7, 8) ? 1 : 0) << 8;
+        for (int i = 9; i < 15; i++) {
+            bits |= (symbol.get(14 - i, 8) ? 1 : 0) << i;
+        }
+        return (bits ^ 0x5412) >>> 10;
+    }
+
+    private static String formatLevel(QrCodeEncoder.BitMatrix symbol) {
+        return new String[]{"M", "L", "H", "Q"}[formatData(symbol) >>> 3];
+    }
+
+    private static int formatMask(QrCodeEncoder.BitMatrix symbol) {
+        return formatData(symbol) & 7;
+    }
+}
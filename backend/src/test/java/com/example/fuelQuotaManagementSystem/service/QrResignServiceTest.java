@@ -0,0 +1,104 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.example.fuelQuotaManagementSystem.entity.Vehicle;
+import com.example.fuelQuotaManagementSystem.qr.QrVerifier;
+import com.example.fuelQuotaManagementSystem.repository.UserRepository;
+import com.example.fuelQuotaManagementSystem.repository.VehicleQrCodeRepository;
+import com.example.fuelQuotaManagementSystem.repository.VehicleRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Re-signing every vehicle's code under a second key, against the in-memory database. Chunks of
+ * two put the unencodable vehicle in a chunk with an ordinary one.
+ */
+@SpringBootTest(properties = {
+        "qr.signing.private-keys=1:MC4CAQAwBQYDK2VwBCIEINVK0ykT13iveWgp3qiIybxk4fLep7Xeb0u8PB85YbSb,"
+                + "2:MC4CAQAwBQYDK2VwBCIEIOZmahAA6iIUdbdQkQhYLElzdB2EzfFeusl3GU9ykPFE",
+        "qr.signing.public-keys=1:MCowBQYDK2VwAyEAmCAlvMa1Jsg53g556MrJegd6Bl5iMkeUt+fVaNjI+EQ=,"
+                + "2:" + QrResignServiceTest.NEW_PUBLIC_KEY,
+        "qr.resign.chunk-size=2",
+        "qr.resign.workers=2"
+})
+class QrResignServiceTest {
+
+    static final String NEW_PUBLIC_KEY = "MCowBQYDK2VwAyEA1Od32mSptlQQJTMPypCbJqwv5SqwWdKMys/SChjJcUw=";
+    private static final int NEW_KEY_ID = 2;
+
+    @Autowired
+    private QrResignService qrResignService;
+
+    @Autowired
+    private QRCodeService qrCodeService;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private VehicleQrCodeRepository vehicleQrCodeRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void everyVehicleIsReissuedUnderTheNewKeyAndItsOldCodeIsRejected() throws Exception {
+        List<Vehicle> vehicles = new ArrayList<>();
+        List<String> oldCodes = new ArrayList<>();
+        Vehicle unencodable = null;
+        for (int i = 1; i <= 5; i++) {
+            if (i == 3) {
+                // A slash is outside the compact alphabet; such rows predate registration checks
+                unencodable = TestVehicles.petrolCar(userRepository, vehicleRepository, "RESIGN/0003");
+                continue;
+            }
+            Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "RESIGN-000" + i);
+            String code = qrCodeService.generateQRCode(vehicle);
+            qrCodeService.storeQRCode(vehicle.getId(), code);
+            // Scanned once, so the old code sits in the verification cache
+            assertEquals(vehicle.getId(), qrCodeService.verifyQRCode(code).getVehicleId());
+            vehicles.add(vehicle);
+            oldCodes.add(code);
+        }
+        long total = vehicleRepository.count();
+
+        QrResignService.ResignJob job = qrResignService.start(NEW_KEY_ID);
+        awaitFinished(job);
+
+        assertEquals(QrResignService.STATUS_COMPLETED, job.getStatus());
+        assertEquals(100.0, job.getPercentComplete());
+        assertEquals(total, job.getTotalVehicles());
+        assertEquals(1, job.getFailed());
+        assertEquals(total - 1, job.getReissued());
+        assertFalse(vehicleQrCodeRepository.findPayloadByVehicleId(unencodable.getId()).isPresent());
+
+        // A terminal that only knows the new public key accepts every reissued code
+        QrVerifier terminal = QrVerifier.fromPublicKeys(Map.of(NEW_KEY_ID, NEW_PUBLIC_KEY));
+        for (int n = 0; n < vehicles.size(); n++) {
+            Vehicle vehicle = vehicles.get(n);
+            String reissued = vehicleQrCodeRepository.findPayloadByVehicleId(vehicle.getId()).orElseThrow();
+            assertEquals(NEW_KEY_ID, terminal.verify(reissued).getKeyId());
+            assertEquals(vehicle.getId(), qrCodeService.verifyQRCode(reissued).getVehicleId());
+
+            String oldCode = oldCodes.get(n);
+            RuntimeException replaced = assertThrows(RuntimeException.class, () -> qrCodeService.verifyQRCode(oldCode));
+            assertTrue(replaced.getMessage().contains("replaced"));
+        }
+    }
+
+    private void awaitFinished(QrResignService.ResignJob job) throws InterruptedException {
+        for (int i = 0; i < 300; i++) {
+            if (!QrResignService.STATUS_RUNNING.equals(job.getStatus())) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        fail("re-signing job did not finish");
+    }
+}
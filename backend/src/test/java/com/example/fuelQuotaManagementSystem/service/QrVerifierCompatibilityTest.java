@@ -0,0 +1,121 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.example.fuelQuotaManagementSystem.qr.QrVerificationException;
+import com.example.fuelQuotaManagementSystem.qr.QrVerifier;
+import com.example.fuelQuotaManagementSystem.qr.VerifiedQrPayload;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Codes issued by QRCodeService must verify with the standalone QrVerifier that station
+ * terminals embed, and must keep matching the vectors pinned in qr-verifier's QrVerifierTest.
+ * Terminals hold only the Ed25519 public key; HMAC codes verify with the secrets, as on the backend.
+ */
+class QrVerifierCompatibilityTest {
+
+    private static final long ISSUED_AT = 1767225600000L;
+
+    // Key pair 1 of qr-verifier's QrVerifierTest
+    private static final String PRIVATE_KEY_1 = "MC4CAQAwBQYDK2VwBCIEINVK0ykT13iveWgp3qiIybxk4fLep7Xeb0u8PB85YbSb";
+    private static final String PUBLIC_KEY_1 = "MCowBQYDK2VwAyEAmCAlvMa1Jsg53g556MrJegd6Bl5iMkeUt+fVaNjI+EQ=";
+
+    private QRCodeService qrCodeService;
+    private QrVerifier terminalVerifier;
+    private QrVerifier macVerifier;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        qrCodeService = new QRCodeService();
+        ReflectionTestUtils.setField(qrCodeService, "signingKey", "station-test-key-0");
+        ReflectionTestUtils.setField(qrCodeService, "additionalSigningKeys", "9:station-test-key-9");
+        ReflectionTestUtils.setField(qrCodeService, "privateSigningKeys", "1:" + PRIVATE_KEY_1);
+        ReflectionTestUtils.setField(qrCodeService, "publicSigningKeys", "1:" + PUBLIC_KEY_1);
+        ReflectionTestUtils.setField(qrCodeService, "activeKeyId", 9);
+        ReflectionTestUtils.setField(qrCodeService, "cacheSize", 10);
+        ReflectionTestUtils.setField(qrCodeService, "negativeCacheSize", 10);
+        ReflectionTestUtils.setField(qrCodeService, "imageCacheSize", 10);
+        qrCodeService.init();
+
+        terminalVerifier = QrVerifier.fromPublicKeys(Map.of(1, PUBLIC_KEY_1));
+        macVerifier = QrVerifier.fromTextKeys(Map.of(0, "station-test-key-0", 9, "station-test-key-9"));
+    }
+
+    @Test
+    void serverIssuedCodesVerifyStandalone() {
+        String[] registrationNumbers = {"CAB-1234", "wp ka-4567", "A", "ABCDEFGHIJKLMNOP", "123 456 789"};
+        String[] fuelTypes = {"Petrol", "Diesel", "Kerosene"};
+
+        for (int keyId : new int[]{0, 1, 9}) {
+            QrVerifier verifier = keyId == 1 ? terminalVerifier : macVerifier;
+            for (String registrationNumber : registrationNumbers) {
+                for (String fuelType : fuelTypes) {
+                    String code = qrCodeService.signQRCode(registrationNumber, fuelType, keyId, ISSUED_AT);
+                    VerifiedQrPayload payload = verifier.verify(code);
+
+                    assertEquals(registrationNumber.trim().toUpperCase(), payload.getRegistrationNumber());
+                    assertEquals("Kerosene".equals(fuelType) ? null : fuelType, payload.getFuelType());
+                    assertEquals(keyId, payload.getKeyId());
+                    assertEquals(ISSUED_AT, payload.getIssuedAtMillis());
+                    assertEquals(payload.getRegistrationNumber(), qrCodeService.decodeQRCode(code));
+                }
+            }
+        }
+    }
+
+    @Test
+    void serverStillProducesPinnedVectors() {
+        assertEquals("AwkMEKVx158AAAAAAAABaVW5AIhAwlZnwof0", qrCodeService.signQRCode("CAB-1234", "Petrol", 9, ISSUED_AT));
+        assertEquals("AwBdCYsGZ-CGIAAAAAACaVW5AEK93tihsAaS", qrCodeService.signQRCode("WP KA 4567", "Diesel", 0, ISSUED_AT));
+        assertEquals("AwkEIMQUYcgkosw049AAaVW5AAQ_asB16awh", qrCodeService.signQRCode("ABCDEFGHIJKLMNOP", "Kerosene", 9, ISSUED_AT));
+        assertEquals("NC-9876", qrCodeService.decodeQRCode("Ajg5ZI4oQAAAAAAAAAJpVbkAb5Fu_Jo1BME"));
+        // Ed25519 signatures are deterministic, so version 4 codes can be pinned too
+        assertEquals("BAEMEKVx158AAAAAAAABaVW5AAQHBZITVKHJAHXV-bymIrHICPWfeWtvyaymb0BaSOomhgYYkrnsnPcnLneUYzW5Q_cXpqSSF8Mw9Rd24m3_1go", qrCodeService.signQRCode("CAB-1234", "Petrol", 1, ISSUED_AT));
+    }
+
+    @Test
+    void terminalWithPublicKeysOnlyCannotVerifyHmacCodes() {
+        String hmacCode = qrCodeService.signQRCode("CAB-1234", "Petrol", 9, ISSUED_AT);
+        assertThrows(QrVerificationException.class, () -> terminalVerifier.verify(hmacCode));
+        assertEquals("CAB-1234", qrCodeService.decodeQRCode(hmacCode));
+    }
+
+    @Test
+    void privateKeyWithoutItsPublicKeyIsRefusedAtStartup() {
+        QRCodeService misconfigured = new QRCodeService();
+        ReflectionTestUtils.setField(misconfigured, "signingKey", "");
+        ReflectionTestUtils.setField(misconfigured, "additionalSigningKeys", "");
+        ReflectionTestUtils.setField(misconfigured, "privateSigningKeys", "1:" + PRIVATE_KEY_1);
+        ReflectionTestUtils.setField(misconfigured, "publicSigningKeys", "1:MCowBQYDK2VwAyEA1Od32mSptlQQJTMPypCbJqwv5SqwWdKMys/SChjJcUw=");
+        ReflectionTestUtils.setField(misconfigured, "activeKeyId", 1);
+
+        assertThrows(IllegalStateException.class, misconfigured::init);
+    }
+
+    @Test
+    void registrationNumbersAreNormalisedOrRejectedWithAReason() {
+        String code = qrCodeService.signQRCode("  wp\tka   4567 ", "Petrol", 1, ISSUED_AT);
+        assertEquals("WP KA 4567", terminalVerifier.verify(code).getRegistrationNumber());
+
+        IllegalArgumentException tooLong = assertThrows(IllegalArgumentException.class,
+                () -> qrCodeService.signQRCode("ABCDEFGHIJKLMNOPQ", "Petrol", 9, ISSUED_AT));
+        assertTrue(tooLong.getMessage().contains("at most 16"));
+        assertThrows(IllegalArgumentException.class, () -> qrCodeService.signQRCode("CAB/1234", "Petrol", 9, ISSUED_AT));
+    }
+
+    @Test
+    void terminalRejectsCodesTheServerRejects() {
+        for (int keyId : new int[]{1, 9}) {
+            QrVerifier verifier = keyId == 1 ? terminalVerifier : macVerifier;
+            String code = qrCodeService.signQRCode("CAB-1234", "Petrol", keyId, ISSUED_AT);
+            String tampered = code.substring(0, 10) + (code.charAt(10) == 'A' ? 'B' : 'A') + code.substring(11);
+
+            assertThrows(QrVerificationException.class, () -> verifier.verify(tampered));
+            assertThrows(RuntimeException.class, () -> qrCodeService.decodeQRCode(tampered));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.example.fuelQuotaManagementSystem.entity.Vehicle;
+import com.example.fuelQuotaManagementSystem.repository.FuelQuotaRepository;
+import com.example.fuelQuotaManagementSystem.repository.UserRepository;
+import com.example.fuelQuotaManagementSystem.repository.VehicleRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * In-memory quota ledger against the in-memory database. The scheduled flush is pushed out of
+ * the way so the tests decide when balances are written.
+ */
+@SpringBootTest(properties = {"quota.ledger.enabled=true", "quota.ledger.flush-interval-ms=3600000"})
+class QuotaLedgerTest {
+
+    @Autowired
+    private QuotaLedger quotaLedger;
+
+    @Autowired
+    private FuelQuotaService fuelQuotaService;
+
+    @Autowired
+    private FuelQuotaRepository fuelQuotaRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private QuotaPeriodClock periodClock;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void flushesRacingDeductionsLoseNothing() throws Exception {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "LEDG-0001");
+
+        AtomicBoolean pumping = new AtomicBoolean(true);
+        Thread flusher = new Thread(() -> {
+            while (pumping.get()) {
+                quotaLedger.flush();
+            }
+        });
+        flusher.start();
+
+        // 200 pumps of 0.5 L against 60 L while balances are flushed continuously
+        List<Callable<FuelQuotaService.QuotaDeduction>> pumps = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            pumps.add(() -> fuelQuotaService.deductFuel(vehicle, "Petrol", 500, 0));
+        }
+        List<FuelQuotaService.QuotaDeduction> deductions;
+        try {
+            deductions = TestVehicles.runConcurrently(16, pumps);
+        } finally {
+            pumping.set(false);
+            flusher.join();
+        }
+        quotaLedger.flush();
+
+        assertEquals(120, deductions.stream().filter(FuelQuotaService.QuotaDeduction::isSuccess).count());
+        assertEquals(0, storedRemainingMl(vehicle));
+    }
+
+    @Test
+    void flushAfterResetKeepsTheNewAllocation() {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "LEDG-0002");
+        assertTrue(fuelQuotaService.deductFuel(vehicle, "Petrol", 10_000, 0).isSuccess());
+        quotaLedger.flush();
+        assertEquals(50_000, storedRemainingMl(vehicle));
+
+        // A further pump is still unflushed when the quota is reset
+        assertTrue(fuelQuotaService.deductFuel(vehicle, "Petrol", 5_000, 0).isSuccess());
+        long createdAt = fuelQuotaRepository.findByPeriod(vehicle.getId(), "Petrol", periodClock.monthPeriodKey())
+                .orElseThrow().getCreatedAt();
+        transactionTemplate.executeWithoutResult(status -> fuelQuotaRepository.upsertAllocation(
+                vehicle.getId(), "Petrol", periodClock.monthPeriodKey(), 60_000,
+                periodClock.startOfMonth(), periodClock.endOfMonth(), createdAt + 1));
+
+        // The flush that was already under way when the reset landed must not restore the old 45 L
+        quotaLedger.flush();
+        assertEquals(60_000, storedRemainingMl(vehicle));
+
+        quotaLedger.evict(vehicle.getId(), "Petrol");
+        assertEquals(60_000, fuelQuotaService.getRemainingQuotaMl(vehicle, "Petrol"));
+    }
+
+    @Test
+    void rolledBackDeductionIsRefundedBeforeFlush() {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "LEDG-0003");
+        fuelQuotaService.getCurrentQuota(vehicle, "Petrol");
+
+        transactionTemplate.executeWithoutResult(status -> {
+            assertTrue(fuelQuotaService.deductFuel(vehicle, "Petrol", 20_000, 0).isSuccess());
+            status.setRollbackOnly();
+        });
+        quotaLedger.flush();
+
+        assertEquals(60_000, fuelQuotaService.getRemainingQuotaMl(vehicle, "Petrol"));
+        assertEquals(60_000, storedRemainingMl(vehicle));
+    }
+
+    private long storedRemainingMl(Vehicle vehicle) {
+        return fuelQuotaRepository.findByPeriod(vehicle.getId(), "Petrol", periodClock.monthPeriodKey())
+                .orElseThrow().getRemainingQuotaMl();
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.example.fuelQuotaManagementSystem.entity.FuelStation;
+import com.example.fuelQuotaManagementSystem.entity.Vehicle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Quota holds with a hand-driven clock; the wheel's ticker thread runs for real.
+ */
+class QuotaReservationServiceTest {
+
+    // Not on a tick boundary, so a hold's expiry falls inside a tick
+    private static final long START = 1_767_225_600_050L;
+    private static final long TTL_MILLIS = 120_000;
+    private static final long TICK_MILLIS = 100;
+    private static final int MAX_PER_VEHICLE = 3;
+
+    private final AtomicLong now = new AtomicLong(START);
+    private final AtomicBoolean balanceReadUnderLock = new AtomicBoolean();
+    private QuotaReservationService reservationService;
+    private Vehicle vehicle;
+    private FuelStation station;
+
+    @BeforeEach
+    void setUp() {
+        reservationService = new QuotaReservationService();
+        Object[] locks = (Object[]) ReflectionTestUtils.getField(reservationService, "locks");
+
+        // The balance read may go to the database, so it must not run under a stripe lock
+        FuelQuotaService fuelQuotaService = mock(FuelQuotaService.class);
+        when(fuelQuotaService.getRemainingQuotaMl(any(), anyString())).thenAnswer(invocation -> {
+            if (Arrays.stream(locks).anyMatch(Thread::holdsLock)) {
+                balanceReadUnderLock.set(true);
+            }
+            return 60_000L;
+        });
+
+        ReflectionTestUtils.setField(reservationService, "fuelQuotaService", fuelQuotaService);
+        ReflectionTestUtils.setField(reservationService, "periodClock", new QuotaPeriodClock(new ManualClock(now)));
+        ReflectionTestUtils.setField(reservationService, "ttlSeconds", TTL_MILLIS / 1000);
+        ReflectionTestUtils.setField(reservationService, "tickMillis", TICK_MILLIS);
+        ReflectionTestUtils.setField(reservationService, "maxPerVehicle", MAX_PER_VEHICLE);
+        reservationService.startTicker();
+
+        vehicle = new Vehicle();
+        vehicle.setId(1L);
+        vehicle.setFuelType("Petrol");
+        station = new FuelStation();
+        station.setId(7L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reservationService.stopTicker();
+        assertFalse(balanceReadUnderLock.get(), "balance was read while holding a stripe lock");
+    }
+
+    @Test
+    void holdExpiresOnTheFirstTickAfterItsExpiry() throws Exception {
+        QuotaReservationService.Reservation hold = reservationService.reserve(vehicle, station, 10_000);
+        long expiresAt = hold.getExpiresAt();
+
+        // The wheel visits the tick that contains the expiry while the hold is still valid
+        now.set(expiresAt / TICK_MILLIS * TICK_MILLIS);
+        Thread.sleep(5 * TICK_MILLIS);
+        assertEquals(10_000, reservationService.heldMl(1L));
+
+        // On the next tick it is past its expiry and must go, not one wheel rotation later
+        now.set((expiresAt / TICK_MILLIS + 1) * TICK_MILLIS);
+        assertTrue(awaitHeld(0), "hold was not released on the tick after its expiry");
+    }
+
+    @Test
+    void claimedHoldCountsUntilThePumpCompletes() throws Exception {
+        QuotaReservationService.Reservation hold = reservationService.reserve(vehicle, station, 10_000);
+
+        QuotaReservationService.Reservation claimed = reservationService.claim(hold.getId(), 1L, 7L, 8_000);
+        assertSame(hold, claimed);
+        assertEquals(10_000, reservationService.heldMl(1L));
+
+        // A claimed hold cannot be claimed twice, and expiry does not release it under the pump
+        assertThrows(IllegalArgumentException.class, () -> reservationService.claim(hold.getId(), 1L, 7L, 8_000));
+        now.addAndGet(TTL_MILLIS + TICK_MILLIS);
+        Thread.sleep(5 * TICK_MILLIS);
+        assertEquals(10_000, reservationService.heldMl(1L));
+
+        reservationService.complete(claimed);
+        assertEquals(0, reservationService.heldMl(1L));
+    }
+
+    @Test
+    void restoredHoldCanBeClaimedAgainAndStillExpires() throws Exception {
+        QuotaReservationService.Reservation hold = reservationService.reserve(vehicle, station, 10_000);
+
+        // The pump failed: the hold is back and the next attempt can claim it
+        reservationService.restore(reservationService.claim(hold.getId(), 1L, 7L, 10_000));
+        assertEquals(10_000, reservationService.heldMl(1L));
+        reservationService.restore(reservationService.claim(hold.getId(), 1L, 7L, 10_000));
+        assertEquals(10_000, reservationService.heldMl(1L));
+
+        now.set(hold.getExpiresAt() + TICK_MILLIS);
+        assertTrue(awaitHeld(0), "restored hold did not expire");
+    }
+
+    @Test
+    void holdRestoredAfterItsExpiryIsReleased() {
+        QuotaReservationService.Reservation hold = reservationService.reserve(vehicle, station, 10_000);
+        QuotaReservationService.Reservation claimed = reservationService.claim(hold.getId(), 1L, 7L, 10_000);
+
+        now.set(hold.getExpiresAt());
+        reservationService.restore(claimed);
+
+        assertEquals(0, reservationService.heldMl(1L));
+        assertThrows(IllegalArgumentException.class, () -> reservationService.claim(hold.getId(), 1L, 7L, 10_000));
+    }
+
+    @Test
+    void claimChecksVehicleStationAndAmount() {
+        QuotaReservationService.Reservation hold = reservationService.reserve(vehicle, station, 10_000);
+
+        assertThrows(IllegalArgumentException.class, () -> reservationService.claim(hold.getId(), 2L, 7L, 5_000));
+        assertThrows(IllegalArgumentException.class, () -> reservationService.claim(hold.getId(), 1L, 8L, 5_000));
+        assertThrows(IllegalArgumentException.class, () -> reservationService.claim(hold.getId(), 1L, 7L, 10_001));
+        assertEquals(10_000, reservationService.heldMl(1L));
+    }
+
+    @Test
+    void holdsPerVehicleAreCapped() {
+        List<QuotaReservationService.Reservation> holds = new ArrayList<>();
+        for (int i = 0; i < MAX_PER_VEHICLE; i++) {
+            holds.add(reservationService.reserve(vehicle, station, 1_000));
+        }
+        assertThrows(IllegalArgumentException.class, () -> reservationService.reserve(vehicle, station, 1_000));
+
+        // A released hold frees its place
+        reservationService.cancel(holds.get(0).getId());
+        reservationService.reserve(vehicle, station, 1_000);
+        assertEquals(MAX_PER_VEHICLE * 1_000L, reservationService.heldMl(1L));
+    }
+
+    private boolean awaitHeld(long expectedMl) throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            if (reservationService.heldMl(1L) == expectedMl) {
+                return true;
+            }
+            Thread.sleep(TICK_MILLIS);
+        }
+        return false;
+    }
+
+    private static class ManualClock extends Clock {
+        private final AtomicLong millis;
+
+        private ManualClock(AtomicLong millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis.get());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.example.fuelQuotaManagementSystem.entity.FuelStation;
+import com.example.fuelQuotaManagementSystem.entity.User;
+import com.example.fuelQuotaManagementSystem.entity.Vehicle;
+import com.example.fuelQuotaManagementSystem.repository.FuelStationRepository;
+import com.example.fuelQuotaManagementSystem.repository.UserRepository;
+import com.example.fuelQuotaManagementSystem.repository.VehicleRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Fixtures shared by the tests that run against the in-memory database.
+ */
+final class TestVehicles {
+
+    private TestVehicles() {
+    }
+
+    // A 1500 cc petrol car, which gets a 60 L monthly quota
+    static Vehicle petrolCar(UserRepository userRepository, VehicleRepository vehicleRepository,
+                             String registrationNumber) {
+        User owner = new User();
+        owner.setUsername("owner-" + registrationNumber);
+        owner.setPassword("not-used");
+        owner.setEmail(registrationNumber.toLowerCase() + "@example.com");
+        owner.setPhoneNumber("+94770000000");
+        owner = userRepository.save(owner);
+
+        Vehicle vehicle = new Vehicle();
+        vehicle.setRegistrationNumber(registrationNumber);
+        vehicle.setChassisNumber("CH-" + registrationNumber);
+        vehicle.setVehicleType("Car");
+        vehicle.setFuelType("Petrol");
+        vehicle.setEngineCapacity(1500.0);
+        vehicle.setOwner(owner);
+        return vehicleRepository.save(vehicle);
+    }
+
+    // An active station selling petrol and diesel
+    static FuelStation station(UserRepository userRepository, FuelStationRepository fuelStationRepository,
+                               String registrationNumber) {
+        User owner = new User();
+        owner.setUsername("owner-" + registrationNumber);
+        owner.setPassword("not-used");
+        owner.setEmail(registrationNumber.toLowerCase() + "@example.com");
+        owner = userRepository.save(owner);
+
+        FuelStation station = new FuelStation();
+        station.setName("Station " + registrationNumber);
+        station.setRegistrationNumber(registrationNumber);
+        station.setOwner(owner);
+        station.setHasPetrol(true);
+        station.setHasDiesel(true);
+        station.setActive(true);
+        return fuelStationRepository.save(station);
+    }
+
+    // Runs the tasks on the given number of threads, all released at once, and returns their results in order
+    static <T> List<T> runConcurrently(int threads, List<Callable<T>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.fuelQuotaManagementSystem.service;
+
+import com.example.fuelQuotaManagementSystem.dto.FuelPumpRequest;
+import com.example.fuelQuotaManagementSystem.entity.FuelStation;
+import com.example.fuelQuotaManagementSystem.entity.Vehicle;
+import com.example.fuelQuotaManagementSystem.repository.FuelStationRepository;
+import com.example.fuelQuotaManagementSystem.repository.UserRepository;
+import com.example.fuelQuotaManagementSystem.repository.VehicleRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Chunked listings against the in-memory database, with chunks small enough that every listing
+ * spans several of them.
+ */
+@SpringBootTest(properties = {"history.stream.chunk-size=2", "history.stream.max-concurrent=1"})
+class TransactionStreamServiceTest {
+
+    @Autowired
+    private TransactionStreamService transactionStreamService;
+
+    @Autowired
+    private FuelPumpService fuelPumpService;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private FuelStationRepository fuelStationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private QuotaPeriodClock periodClock;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void historySpanningSeveralChunksListsEveryTransactionOnce() throws Exception {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "STRM-0001");
+        FuelStation station = TestVehicles.station(userRepository, fuelStationRepository, "ST-STRM-1");
+        List<Long> pumped = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            pumped.add(fuelPumpService.recordPump(pump(vehicle, station)).getTransactionId());
+        }
+
+        String[] lines = write(transactionStreamService.stationHistory(station.getId())).split("\n");
+
+        // Newest first, ties on the timestamp broken by id
+        List<Long> listed = new ArrayList<>();
+        for (String line : lines) {
+            listed.add(mapper.readTree(line).get("id").asLong());
+        }
+        Collections.reverse(pumped);
+        assertEquals(pumped, listed);
+    }
+
+    @Test
+    void exportListsTheRangeOldestFirstAsCsv() throws Exception {
+        Vehicle vehicle = TestVehicles.petrolCar(userRepository, vehicleRepository, "STRM-0002");
+        FuelStation station = TestVehicles.station(userRepository, fuelStationRepository, "ST-STRM-2");
+        List<Long> pumped = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            pumped.add(fuelPumpService.recordPump(pump(vehicle, station)).getTransactionId());
+        }
+
+        String csv = write(transactionStreamService.transactionsBetweenAsCsv(
+                periodClock.today(), periodClock.today()));
+
+        List<Long> listed = new ArrayList<>();
+        for (String line : csv.split("\n")) {
+            if (line.contains("STRM-0002")) {
+                listed.add(Long.parseLong(line.substring(0, line.indexOf(','))));
+            }
+        }
+        assertEquals(pumped, listed);
+    }
+
+    @Test
+    void listingsOverTheLimitAreRejectedUntilOneFinishes() throws Exception {
+        StreamingResponseBody first = transactionStreamService.vehicleHistory(-1L);
+        assertThrows(RejectedExecutionException.class, () -> transactionStreamService.vehicleHistory(-1L));
+
+        write(first);
+        write(transactionStreamService.vehicleHistory(-1L));
+    }
+
+    private String write(StreamingResponseBody body) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private FuelPumpRequest pump(Vehicle vehicle, FuelStation station) {
+        FuelPumpRequest request = new FuelPumpRequest();
+        request.setVehicleId(vehicle.getId());
+        request.setStationId(station.getId());
+        request.setFuelType("Petrol");
+        request.setAmount(1.0);
+        return request;
+    }
+}
@@ -70,8 +70,8 @@ const Navbar = () => {
       handleCloseUserMenu();
       setMobileOpen(false);
       
-      // Clear authentication
-      AuthService.logout();
+      // Revoke the session on the server, then clear it locally
+      await AuthService.signOut();
       
       // ✅ IMMEDIATELY UPDATE LOCAL STATE
       setCurrentUser(null);
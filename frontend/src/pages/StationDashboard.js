@@ -79,7 +79,7 @@ const StationDashboard = () => {
       const transactionPromises = stationsList.map(async (station) => {
         try {
           const transactionsResponse =
-            await FuelQuotaService.getStationTransactions(station.id);
+            await FuelQuotaService.getAllStationTransactions(station.id);
           return transactionsResponse.data;
         } catch (error) {
           console.error(
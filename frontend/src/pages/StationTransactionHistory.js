@@ -110,7 +110,7 @@ const StationTransactionHistory = () => {
       setStation(stationResponse.data);
 
       // Load transactions for this specific station
-      const transactionsResponse = await FuelQuotaService.getStationTransactions(stationId);
+      const transactionsResponse = await FuelQuotaService.getAllStationTransactions(stationId);
       const stationTransactions = transactionsResponse.data.sort((a, b) => 
         new Date(b.timestamp) - new Date(a.timestamp)
       );
@@ -109,7 +109,7 @@ const StationTransactions = () => {
       // Load transactions for all stations
       const transactionPromises = stationsResponse.data.map(async (station) => {
         try {
-          const transactionsResponse = await FuelQuotaService.getStationTransactions(station.id);
+          const transactionsResponse = await FuelQuotaService.getAllStationTransactions(station.id);
           return transactionsResponse.data.map(transaction => ({
             ...transaction,
             stationName: station.name,
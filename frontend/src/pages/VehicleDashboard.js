@@ -108,7 +108,7 @@ const VehicleDashboard = () => {
       try {
         const transactionPromises = vehiclesList.map(async (vehicle) => {
           try {
-            const transactionsResponse = await FuelQuotaService.getVehicleTransactions(vehicle.id);
+            const transactionsResponse = await FuelQuotaService.getAllVehicleTransactions(vehicle.id);
             return transactionsResponse.data.map(transaction => ({
               ...transaction,
               vehicleId: vehicle.id // Add vehicle ID for identification
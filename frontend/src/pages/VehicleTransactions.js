@@ -95,7 +95,7 @@ const VehicleTransactions = () => {
       if (vehicleId) {
         // SCENARIO 2: Load transactions for specific vehicle only
         console.log(`Loading transactions for vehicle ${vehicleId}`);
-        const response = await FuelQuotaService.getVehicleTransactions(vehicleId);
+        const response = await FuelQuotaService.getAllVehicleTransactions(vehicleId);
         allTransactions = response.data;
         console.log(`Found ${allTransactions.length} transactions for vehicle ${vehicleId}`);
       } else {
@@ -104,7 +104,7 @@ const VehicleTransactions = () => {
         
         const transactionPromises = vehiclesList.map(async (vehicle) => {
           try {
-            const response = await FuelQuotaService.getVehicleTransactions(vehicle.id);
+            const response = await FuelQuotaService.getAllVehicleTransactions(vehicle.id);
             return response.data.map(transaction => ({
               ...transaction,
               vehicleRegNo: vehicle.registrationNumber, // Ensure we have the registration number
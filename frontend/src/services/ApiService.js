@@ -1,6 +1,7 @@
 // src/services/ApiService.js
 import axios from 'axios';
 import authHeader from './authHeader';
+import AuthService from './AuthService';
 
 const API_URL = 'http://localhost:8080/api';
 
@@ -22,10 +23,21 @@ api.interceptors.request.use(
   (error) => Promise.reject(error)
 );
 
-// Handle response errors globally
+// Handle response errors globally; an expired access token is refreshed once before giving up.
+// Auth endpoints are never retried, so a failed refresh or sign-out cannot loop back into a refresh
 api.interceptors.response.use(
   (response) => response,
-  (error) => {
+  async (error) => {
+    const original = error.config;
+    if (error.response?.status === 401 && original && !original._retried && !original.url?.includes('/auth/')) {
+      original._retried = true;
+      try {
+        await AuthService.refreshAccessToken();
+        return api(original);
+      } catch (refreshError) {
+        // Refresh token missing, expired or revoked
+      }
+    }
     if (error.response?.status === 401) {
       // Token expired or invalid
       localStorage.removeItem('user');
@@ -91,6 +103,21 @@ export const UserProfileService = {
 };
 
 
+// Largest page the history endpoints serve
+const HISTORY_PAGE_SIZE = 200;
+
+// Collect every page of a cursor-paged history endpoint into one response-like { data } object
+const fetchAllPages = async (fetchPage) => {
+  const rows = [];
+  let cursor;
+  do {
+    const response = await fetchPage(cursor);
+    rows.push(...response.data);
+    cursor = response.headers['x-next-cursor'];
+  } while (cursor);
+  return { data: rows };
+};
+
 // ==================== FUEL QUOTA SERVICES ====================
 export const FuelQuotaService = {
   // Check quota by QR scan (for stations)
@@ -108,14 +135,24 @@ export const FuelQuotaService = {
     return api.post('/fuel/pump', pumpData);
   },
 
-  // Get vehicle transaction history
-  getVehicleTransactions: (vehicleId) => {
-    return api.get(`/fuel/transactions/vehicle/${vehicleId}`);
+  // Get vehicle transaction history (pass the X-Next-Cursor header of a page as cursor to get the next one)
+  getVehicleTransactions: (vehicleId, cursor, limit) => {
+    return api.get(`/fuel/transactions/vehicle/${vehicleId}`, { params: { cursor, limit } });
+  },
+
+  // Get station transaction history (pass the X-Next-Cursor header of a page as cursor to get the next one)
+  getStationTransactions: (stationId, cursor, limit) => {
+    return api.get(`/fuel/transactions/station/${stationId}`, { params: { cursor, limit } });
+  },
+
+  // Get the whole vehicle transaction history by following X-Next-Cursor across pages
+  getAllVehicleTransactions: (vehicleId) => {
+    return fetchAllPages((cursor) => FuelQuotaService.getVehicleTransactions(vehicleId, cursor, HISTORY_PAGE_SIZE));
   },
 
-  // Get station transaction history
-  getStationTransactions: (stationId) => {
-    return api.get(`/fuel/transactions/station/${stationId}`);
+  // Get the whole station transaction history by following X-Next-Cursor across pages
+  getAllStationTransactions: (stationId) => {
+    return fetchAllPages((cursor) => FuelQuotaService.getStationTransactions(stationId, cursor, HISTORY_PAGE_SIZE));
   },
 
   // Reset vehicle quota (admin only)
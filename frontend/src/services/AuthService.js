@@ -23,10 +23,21 @@ class AuthService {
       (error) => Promise.reject(error)
     );
 
-    // Response interceptor to handle token expiration
+    // Response interceptor to handle token expiration: refresh once and retry, else back to login
     axios.interceptors.response.use(
       (response) => response,
-      (error) => {
+      async (error) => {
+        const original = error.config;
+        if (error.response?.status === 401 && original && !original._retried && !original.url?.includes('/auth/')) {
+          original._retried = true;
+          try {
+            const token = await this.refreshAccessToken();
+            original.headers.Authorization = `Bearer ${token}`;
+            return axios(original);
+          } catch (refreshError) {
+            // Refresh token missing, expired or revoked
+          }
+        }
         if (error.response?.status === 401) {
           // Token expired or invalid
           this.logout();
@@ -67,7 +78,42 @@ class AuthService {
     }
   }
 
-  // Logout method
+  // Trade the refresh token for a new access token; concurrent callers in this tab share one
+  // request, since a refresh token only works once. Another tab refreshing the same token moments
+  // later gets the same successor from the server.
+  refreshAccessToken() {
+    if (!this.refreshing) {
+      const user = this.getCurrentUser();
+      if (!user?.refreshToken) {
+        return Promise.reject(new Error('No refresh token'));
+      }
+      this.refreshing = axios.post(API_URL + "refresh", { refreshToken: user.refreshToken })
+        .then((response) => {
+          localStorage.setItem(this.tokenKey, JSON.stringify(response.data));
+          return response.data.token;
+        })
+        .finally(() => {
+          this.refreshing = null;
+        });
+    }
+    return this.refreshing;
+  }
+
+  // Sign out on the server, revoking the access token and the refresh token's family, then locally;
+  // the local sign-out happens even if the server cannot be reached
+  async signOut() {
+    const user = this.getCurrentUser();
+    if (user) {
+      try {
+        await axios.post(API_URL + "signout", { refreshToken: user.refreshToken });
+      } catch (error) {
+        console.warn('Server sign-out failed:', error.message);
+      }
+    }
+    this.logout();
+  }
+
+  // Forget the session locally, e.g. once the server has rejected it
   logout() {
     localStorage.removeItem(this.tokenKey);
     delete axios.defaults.headers.common['Authorization'];
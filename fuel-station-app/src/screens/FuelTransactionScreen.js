@@ -62,6 +62,8 @@ const FuelTransactionScreen = ({ route, navigation }) => {
       fuelType: vehicleData.fuelType,
       remainingQuota: vehicleData.remainingQuota - liters,
       timestamp: new Date().toISOString(),
+      // Reused if the operator retries, so the backend never records this pump twice
+      idempotencyKey: `${vehicleData.vehicleId}-${Date.now()}-${Math.random().toString(36).slice(2, 10)}`,
     });
 
     setShowConfirmModal(true);
@@ -83,7 +85,8 @@ const FuelTransactionScreen = ({ route, navigation }) => {
         vehicleId: vehicleData.vehicleId,
         stationId: parseInt(stationId),
         fuelType: vehicleData.fuelType,
-        amount: transactionData.liters
+        amount: transactionData.liters,
+        idempotencyKey: transactionData.idempotencyKey
       };
 
       // Process the transaction using backend API
@@ -10,9 +10,9 @@ import {
 } from 'react-native';
 import { LinearGradient } from 'expo-linear-gradient';
 import { MaterialIcons } from '@expo/vector-icons';
-import AsyncStorage from '@react-native-async-storage/async-storage';
 import { Colors } from '../constants/Colors';
 import ApiService from '../services/ApiService';
+import AuthService from '../services/AuthService';
 import StationService from '../services/StationService';
 
 const HomeScreen = ({ navigation }) => {
@@ -114,7 +114,7 @@ const HomeScreen = ({ navigation }) => {
         {
           text: 'Logout', style: 'destructive',
           onPress: async () => {
-            await AsyncStorage.multiRemove(['authToken', 'userRole', 'stationId']);
+            await AuthService.logout();
             navigation.replace('Login');
           },
         },
@@ -31,13 +31,47 @@ apiClient.interceptors.request.use(
   }
 );
 
-// Response interceptor for error handling
+// Shared by concurrent 401s, since a refresh token only works once
+let refreshing = null;
+
+const refreshAccessToken = () => {
+  if (!refreshing) {
+    refreshing = (async () => {
+      const refreshToken = await AsyncStorage.getItem('refreshToken');
+      if (!refreshToken) {
+        throw new Error('No refresh token');
+      }
+      const response = await axios.post(`${API_BASE_URL}/auth/refresh`, { refreshToken });
+      await AsyncStorage.multiSet([
+        ['authToken', response.data.token],
+        ['refreshToken', response.data.refreshToken],
+      ]);
+      return response.data.token;
+    })().finally(() => {
+      refreshing = null;
+    });
+  }
+  return refreshing;
+};
+
+// Response interceptor for error handling; an expired access token is refreshed once and the request retried
 apiClient.interceptors.response.use(
   (response) => response,
-  (error) => {
+  async (error) => {
+    const original = error.config;
+    if (error.response?.status === 401 && original && !original._retried && !original.url?.startsWith('/auth/')) {
+      original._retried = true;
+      try {
+        const token = await refreshAccessToken();
+        original.headers.Authorization = `Bearer ${token}`;
+        return apiClient(original);
+      } catch (refreshError) {
+        console.warn('Token refresh failed:', refreshError.message);
+      }
+    }
     if (error.response?.status === 401) {
       // Token expired or invalid
-      AsyncStorage.removeItem('authToken');
+      AsyncStorage.multiRemove(['authToken', 'refreshToken']);
     }
     return Promise.reject(error);
   }
@@ -53,6 +87,12 @@ const ApiService = {
     });
     return response.data;
   },
+
+  // Revoke the access token and the refresh token's family on the server
+  signout: async (refreshToken) => {
+    const response = await apiClient.post('/auth/signout', { refreshToken });
+    return response.data;
+  },
   
   // Vehicle quota endpoints
   checkQuotaByQR: async (qrData) => {
@@ -66,10 +106,16 @@ const ApiService = {
     return response.data;
   },
 
-  // Get transaction history for a station ✅
+  // Get transaction history for a station, following X-Next-Cursor across pages ✅
   getStationTransactions: async (stationId) => {
-    const response = await apiClient.get(`/fuel/transactions/station/${stationId}`);
-    return response.data;
+    const transactions = [];
+    let cursor;
+    do {
+      const response = await apiClient.get(`/fuel/transactions/station/${stationId}`, { params: { cursor, limit: 200 } });
+      transactions.push(...response.data);
+      cursor = response.headers['x-next-cursor'];
+    } while (cursor);
+    return transactions;
   },
   
   // Station endpoints
@@ -18,6 +18,9 @@ const AuthService = {
       if (response.token) {
         // Store basic auth info
         await AsyncStorage.setItem('authToken', response.token);
+        if (response.refreshToken) {
+          await AsyncStorage.setItem('refreshToken', response.refreshToken);
+        }
         await AsyncStorage.setItem('userRole', response.roles[0]); // Get first role
         
         // If user is a station owner, get their station ID
@@ -62,8 +65,16 @@ const AuthService = {
   },
 
   logout: async () => {
+    // Revoke the tokens first, so a copy of them stops working too; sign out locally even if this fails
+    try {
+      const refreshToken = await AsyncStorage.getItem('refreshToken');
+      await ApiService.signout(refreshToken);
+    } catch (error) {
+      console.warn('Server sign-out failed:', error.message);
+    }
+
     try {
-      await AsyncStorage.multiRemove(['authToken', 'userRole', 'stationId']);
+      await AsyncStorage.multiRemove(['authToken', 'refreshToken', 'userRole', 'stationId']);
       return { success: true };
     } catch (error) {
       console.error('Logout error:', error);
@@ -13,6 +13,8 @@ CREATE TABLE users (
   phone_number varchar(255) DEFAULT NULL,
   updated_at bigint DEFAULT NULL,
   username varchar(255) NOT NULL,
+  roles_changed_at bigint DEFAULT NULL,
+  tokens_not_before bigint DEFAULT NULL,
   PRIMARY KEY (id),
   UNIQUE KEY UK_email (email),
   UNIQUE KEY UK_username (username)
@@ -35,7 +37,6 @@ CREATE TABLE vehicles (
   created_at bigint DEFAULT NULL,
   engine_capacity double DEFAULT NULL,
   fuel_type varchar(255) NOT NULL,
-  qr_code text,
   registration_number varchar(255) NOT NULL,
   updated_at bigint DEFAULT NULL,
   vehicle_type varchar(255) NOT NULL,
@@ -46,6 +47,16 @@ CREATE TABLE vehicles (
   CONSTRAINT FK_vehicles_owner_id FOREIGN KEY (owner_id) REFERENCES users (id)
 );
 
+-- Create vehicle_qr_codes table
+DROP TABLE IF EXISTS vehicle_qr_codes;
+CREATE TABLE vehicle_qr_codes (
+  vehicle_id bigint NOT NULL,
+  payload text NOT NULL,
+  issued_at bigint DEFAULT NULL,
+  PRIMARY KEY (vehicle_id),
+  CONSTRAINT FK_vehicle_qr_codes_vehicle_id FOREIGN KEY (vehicle_id) REFERENCES vehicles (id)
+);
+
 -- Create fuel_stations table
 DROP TABLE IF EXISTS fuel_stations;
 CREATE TABLE fuel_stations (
@@ -70,17 +81,20 @@ CREATE TABLE fuel_stations (
 DROP TABLE IF EXISTS fuel_quotas;
 CREATE TABLE fuel_quotas (
   id bigint NOT NULL AUTO_INCREMENT,
-  allocated_quota double NOT NULL,
+  allocated_quota_ml bigint NOT NULL,
   allocation_period varchar(255) DEFAULT NULL,
   created_at bigint DEFAULT NULL,
   end_date bigint DEFAULT NULL,
   fuel_type varchar(255) NOT NULL,
-  remaining_quota double NOT NULL,
+  period_key int DEFAULT NULL,
+  remaining_quota_ml bigint NOT NULL,
   start_date bigint DEFAULT NULL,
   updated_at bigint DEFAULT NULL,
   vehicle_id bigint NOT NULL,
   PRIMARY KEY (id),
+  UNIQUE KEY UK_fuel_quotas_period (vehicle_id, fuel_type, period_key),
   KEY FK_fuel_quotas_vehicle_id (vehicle_id),
+  KEY IDX_fuel_quotas_period_key (period_key),
   CONSTRAINT FK_fuel_quotas_vehicle_id FOREIGN KEY (vehicle_id) REFERENCES vehicles (id)
 );
 
@@ -88,17 +102,68 @@ CREATE TABLE fuel_quotas (
 DROP TABLE IF EXISTS fuel_transactions;
 CREATE TABLE fuel_transactions (
   id bigint NOT NULL AUTO_INCREMENT,
-  amount double NOT NULL,
+  amount_ml bigint NOT NULL,
   fuel_type varchar(255) NOT NULL,
   notification_sent bit(1) NOT NULL,
-  quota_after_transaction double NOT NULL,
-  quota_before_transaction double NOT NULL,
+  idempotency_key varchar(64) DEFAULT NULL,
+  quota_after_ml bigint NOT NULL,
+  quota_before_ml bigint NOT NULL,
   timestamp bigint DEFAULT NULL,
   station_id bigint NOT NULL,
   vehicle_id bigint NOT NULL,
   PRIMARY KEY (id),
+  UNIQUE KEY UK_fuel_transactions_station_idempotency_key (station_id, idempotency_key),
   KEY FK_fuel_transactions_station_id (station_id),
   KEY FK_fuel_transactions_vehicle_id (vehicle_id),
+  KEY IDX_fuel_transactions_station_history (station_id, timestamp, id),
+  KEY IDX_fuel_transactions_vehicle_history (vehicle_id, timestamp, id),
+  KEY IDX_fuel_transactions_timestamp (timestamp, fuel_type, amount_ml, notification_sent),
   CONSTRAINT FK_fuel_transactions_station_id FOREIGN KEY (station_id) REFERENCES fuel_stations (id),
   CONSTRAINT FK_fuel_transactions_vehicle_id FOREIGN KEY (vehicle_id) REFERENCES vehicles (id)
-);
\ No newline at end of file
+);
+
+-- Create revoked_tokens table
+DROP TABLE IF EXISTS revoked_tokens;
+CREATE TABLE revoked_tokens (
+  id bigint NOT NULL AUTO_INCREMENT,
+  jti varchar(64) NOT NULL,
+  username varchar(255) DEFAULT NULL,
+  expires_at bigint NOT NULL,
+  revoked_at bigint DEFAULT NULL,
+  PRIMARY KEY (id),
+  UNIQUE KEY UK_revoked_tokens_jti (jti),
+  KEY IDX_revoked_tokens_expires_at (expires_at)
+);
+
+-- Create refresh_tokens table
+DROP TABLE IF EXISTS refresh_tokens;
+CREATE TABLE refresh_tokens (
+  id bigint NOT NULL AUTO_INCREMENT,
+  token_hash varchar(64) NOT NULL,
+  username varchar(255) NOT NULL,
+  family_id varchar(36) NOT NULL,
+  expires_at bigint NOT NULL,
+  used_at bigint DEFAULT NULL,
+  created_at bigint DEFAULT NULL,
+  PRIMARY KEY (id),
+  UNIQUE KEY UK_refresh_tokens_token_hash (token_hash),
+  KEY IDX_refresh_tokens_family_id (family_id),
+  KEY IDX_refresh_tokens_username (username)
+);
+
+-- Create notification_outbox table
+DROP TABLE IF EXISTS notification_outbox;
+CREATE TABLE notification_outbox (
+  id bigint NOT NULL AUTO_INCREMENT,
+  transaction_id bigint DEFAULT NULL,
+  phone_number varchar(255) NOT NULL,
+  message text NOT NULL,
+  status varchar(10) NOT NULL,
+  attempts int NOT NULL,
+  next_attempt_at bigint NOT NULL,
+  last_error varchar(500) DEFAULT NULL,
+  created_at bigint DEFAULT NULL,
+  sent_at bigint DEFAULT NULL,
+  PRIMARY KEY (id),
+  KEY IDX_notification_outbox_due (status, next_attempt_at)
+);
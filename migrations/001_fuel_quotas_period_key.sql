@@ -0,0 +1,21 @@
+-- Key fuel quotas by allocation month and make (vehicle_id, fuel_type, period_key) unique.
+-- Run once against an existing database before starting the new backend version.
+-- The session time zone must match the backend's (it computes months in its system default zone).
+
+ALTER TABLE fuel_quotas ADD COLUMN period_key int DEFAULT NULL;
+
+UPDATE fuel_quotas
+SET period_key = CAST(DATE_FORMAT(FROM_UNIXTIME(start_date / 1000), '%Y%m') AS UNSIGNED)
+WHERE start_date IS NOT NULL;
+
+-- Concurrent lazy creation left duplicate rows for some months; keep the one with the least
+-- quota left, since pumps may have been deducted from any of them
+DELETE q FROM fuel_quotas q
+JOIN fuel_quotas keep
+  ON keep.vehicle_id = q.vehicle_id
+ AND keep.fuel_type = q.fuel_type
+ AND keep.period_key = q.period_key
+ AND (keep.remaining_quota < q.remaining_quota
+      OR (keep.remaining_quota = q.remaining_quota AND keep.id < q.id));
+
+ALTER TABLE fuel_quotas ADD UNIQUE KEY UK_fuel_quotas_period (vehicle_id, fuel_type, period_key);
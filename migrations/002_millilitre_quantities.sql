@@ -0,0 +1,34 @@
+-- Store fuel quantities as whole millilitres instead of floating-point litres.
+-- Run once against an existing database, with the backend stopped, before starting the new version.
+
+ALTER TABLE fuel_quotas
+  ADD COLUMN allocated_quota_ml bigint NOT NULL DEFAULT 0,
+  ADD COLUMN remaining_quota_ml bigint NOT NULL DEFAULT 0;
+
+UPDATE fuel_quotas
+SET allocated_quota_ml = ROUND(allocated_quota * 1000),
+    remaining_quota_ml = ROUND(remaining_quota * 1000);
+
+ALTER TABLE fuel_quotas
+  ALTER COLUMN allocated_quota_ml DROP DEFAULT,
+  ALTER COLUMN remaining_quota_ml DROP DEFAULT,
+  DROP COLUMN allocated_quota,
+  DROP COLUMN remaining_quota;
+
+ALTER TABLE fuel_transactions
+  ADD COLUMN amount_ml bigint NOT NULL DEFAULT 0,
+  ADD COLUMN quota_before_ml bigint NOT NULL DEFAULT 0,
+  ADD COLUMN quota_after_ml bigint NOT NULL DEFAULT 0;
+
+UPDATE fuel_transactions
+SET amount_ml = ROUND(amount * 1000),
+    quota_before_ml = ROUND(quota_before_transaction * 1000),
+    quota_after_ml = ROUND(quota_after_transaction * 1000);
+
+ALTER TABLE fuel_transactions
+  ALTER COLUMN amount_ml DROP DEFAULT,
+  ALTER COLUMN quota_before_ml DROP DEFAULT,
+  ALTER COLUMN quota_after_ml DROP DEFAULT,
+  DROP COLUMN amount,
+  DROP COLUMN quota_before_transaction,
+  DROP COLUMN quota_after_transaction;
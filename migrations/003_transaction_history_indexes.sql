@@ -0,0 +1,6 @@
+-- Composite indexes for keyset pagination of station and vehicle transaction history
+-- (WHERE station_id/vehicle_id = ? AND (timestamp, id) < cursor ORDER BY timestamp DESC, id DESC).
+
+ALTER TABLE fuel_transactions
+  ADD KEY IDX_fuel_transactions_station_history (station_id, timestamp, id),
+  ADD KEY IDX_fuel_transactions_vehicle_history (vehicle_id, timestamp, id);
@@ -0,0 +1,19 @@
+-- Move QR payloads out of the vehicles row into their own table, so vehicle reads and the
+-- eager vehicle joins from fuel_quotas and fuel_transactions no longer load a TEXT column.
+-- Run once against an existing database, with the backend stopped, before starting the new version.
+
+CREATE TABLE vehicle_qr_codes (
+  vehicle_id bigint NOT NULL,
+  payload text NOT NULL,
+  issued_at bigint DEFAULT NULL,
+  PRIMARY KEY (vehicle_id),
+  CONSTRAINT FK_vehicle_qr_codes_vehicle_id FOREIGN KEY (vehicle_id) REFERENCES vehicles (id)
+);
+
+INSERT INTO vehicle_qr_codes (vehicle_id, payload, issued_at)
+SELECT id, qr_code, updated_at
+FROM vehicles
+WHERE qr_code IS NOT NULL;
+
+ALTER TABLE vehicles
+  DROP COLUMN qr_code;
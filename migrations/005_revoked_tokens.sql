@@ -0,0 +1,14 @@
+-- Denylist of JWTs revoked before their expiry (sign-out, admin revocation). The backend keeps it
+-- in memory, syncs new rows every few seconds and deletes rows once their token has expired.
+-- Tokens issued before this version carry no jti and cannot be revoked individually.
+
+CREATE TABLE revoked_tokens (
+  id bigint NOT NULL AUTO_INCREMENT,
+  jti varchar(64) NOT NULL,
+  username varchar(255) DEFAULT NULL,
+  expires_at bigint NOT NULL,
+  revoked_at bigint DEFAULT NULL,
+  PRIMARY KEY (id),
+  UNIQUE KEY UK_revoked_tokens_jti (jti),
+  KEY IDX_revoked_tokens_expires_at (expires_at)
+);
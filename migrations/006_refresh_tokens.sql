@@ -0,0 +1,17 @@
+-- Rotating refresh tokens. Only SHA-256 hashes are stored; each token is single use, and a reused
+-- token revokes its whole family (every token descended from the same sign-in).
+-- Expired rows are deleted by the backend every hour.
+
+CREATE TABLE refresh_tokens (
+  id bigint NOT NULL AUTO_INCREMENT,
+  token_hash varchar(64) NOT NULL,
+  username varchar(255) NOT NULL,
+  family_id varchar(36) NOT NULL,
+  expires_at bigint NOT NULL,
+  used_at bigint DEFAULT NULL,
+  created_at bigint DEFAULT NULL,
+  PRIMARY KEY (id),
+  UNIQUE KEY UK_refresh_tokens_token_hash (token_hash),
+  KEY IDX_refresh_tokens_family_id (family_id),
+  KEY IDX_refresh_tokens_username (username)
+);
@@ -0,0 +1,9 @@
+-- Indexes for the admin dashboard's aggregate queries.
+-- IDX_fuel_transactions_timestamp covers today's per-fuel-type totals (a range on timestamp) and is the
+-- narrowest index for the all-time totals; IDX_fuel_quotas_period_key serves the current month's quota sums.
+
+ALTER TABLE fuel_transactions
+  ADD KEY IDX_fuel_transactions_timestamp (timestamp, fuel_type, amount_ml, notification_sent);
+
+ALTER TABLE fuel_quotas
+  ADD KEY IDX_fuel_quotas_period_key (period_key);
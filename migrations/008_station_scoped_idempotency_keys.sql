@@ -0,0 +1,41 @@
+-- Pump idempotency keys (fuel_transactions.idempotency_key) are generated by each station's
+-- devices, so two stations may use the same key. The key is unique per station instead of
+-- globally.
+--
+-- How the database got here depends on its history: built from an older fuel_quota_db.sql
+-- without the column, from a fuel_quota_db.sql with a global UK_idempotency_key, or by
+-- ddl-auto=update, which created the column with a global unique key under a name Hibernate
+-- generated. Every step below looks at information_schema first, so the script is safe on any
+-- of them and safe to run twice. Run it with the backend stopped.
+
+-- 1. The column itself, for databases that never had it
+SET @missing_column = (SELECT COUNT(*) = 0 FROM information_schema.columns
+  WHERE table_schema = DATABASE() AND table_name = 'fuel_transactions' AND column_name = 'idempotency_key');
+SET @ddl = IF(@missing_column,
+  'ALTER TABLE fuel_transactions ADD COLUMN idempotency_key varchar(64) DEFAULT NULL',
+  'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 2. Every global unique key on the column alone, whatever it is called
+SET @drops = (SELECT GROUP_CONCAT(CONCAT('DROP KEY `', index_name, '`') SEPARATOR ', ')
+  FROM (SELECT index_name FROM information_schema.statistics
+        WHERE table_schema = DATABASE() AND table_name = 'fuel_transactions' AND non_unique = 0
+        GROUP BY index_name
+        HAVING COUNT(*) = 1 AND MAX(column_name) = 'idempotency_key') global_keys);
+SET @ddl = IF(@drops IS NULL, 'DO 0', CONCAT('ALTER TABLE fuel_transactions ', @drops));
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 3. The per-station key, unless ddl-auto=update already added it
+SET @missing_key = (SELECT COUNT(*) = 0 FROM information_schema.statistics
+  WHERE table_schema = DATABASE() AND table_name = 'fuel_transactions'
+    AND index_name = 'UK_fuel_transactions_station_idempotency_key');
+SET @ddl = IF(@missing_key,
+  'ALTER TABLE fuel_transactions ADD UNIQUE KEY UK_fuel_transactions_station_idempotency_key (station_id, idempotency_key)',
+  'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -0,0 +1,6 @@
+-- When a user's roles last changed. Access tokens carry the user's roles; the backend ignores
+-- those claims for tokens issued before this time and loads the current roles instead, on every
+-- instance. NULL means the roles have not changed since the user was created.
+
+ALTER TABLE users
+  ADD COLUMN roles_changed_at bigint DEFAULT NULL;
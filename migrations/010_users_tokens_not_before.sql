@@ -0,0 +1,5 @@
+-- Access tokens of the user issued before this time are rejected. Set when an admin revokes all
+-- of a user's tokens, which also covers tokens without a jti. NULL means nothing was revoked this way.
+
+ALTER TABLE users
+  ADD COLUMN tokens_not_before bigint DEFAULT NULL;
@@ -0,0 +1,8 @@
+-- Outbox rows copy the owner's phone number from users.phone_number (varchar(255)), and the SMS
+-- text includes the station name and registration number, up to 255 characters each. The
+-- original columns were too small for either, and a row that did not fit failed the pump it was
+-- queued with.
+
+ALTER TABLE notification_outbox
+  MODIFY COLUMN phone_number varchar(255) NOT NULL,
+  MODIFY COLUMN message text NOT NULL;
@@ -0,0 +1,81 @@
+package com.example.fuelQuotaManagementSystem.qr;
+
+import java.util.Locale;
+
+/**
+ * Layout of the compact vehicle QR payloads, base64url-encoded without padding:
+ *
+ *   Version 3 (27 bytes, 36 characters)
+ *   byte  0      version (3)
+ *   byte  1      signing key id
+ *   bytes 2-13   registration number, 16 characters of 6 bits each from REG_NO_ALPHABET, zero-padded
+ *   byte  14     fuel type (FUEL_PETROL, FUEL_DIESEL or 0 for other)
+ *   bytes 15-18  issue time, seconds since the epoch, unsigned big-endian
+ *   bytes 19-26  HMAC-SHA256 of bytes 0-18 under the key with that id, truncated to 8 bytes
+ *
+ *   Version 4 (83 bytes, 111 characters) is version 3 with an Ed25519 signature of bytes 0-18 in
+ *   bytes 19-82 instead of the MAC, so it verifies with the public key alone.
+ *
+ *   Version 2 (26 bytes, 35 characters) is the same as version 3 without the key id byte, signed
+ *   with key 0.
+ *
+ * A key id names either an HMAC key or an Ed25519 key pair, never both.
+ *
+ * Shared by the server encoder and QrVerifier so both always agree on it.
+ */
+public final class QrPayloadFormat {
+
+    public static final byte VERSION = 3;
+    public static final byte VERSION_WITHOUT_KEY_ID = 2;
+    public static final byte VERSION_ED25519 = 4;
+
+    public static final int REG_NO_CHARS = 16;
+    public static final int MAC_LENGTH = 8;
+    public static final int SIGNATURE_LENGTH = 64;
+    // Registration number, fuel type and issue time, between the header and the MAC
+    public static final int BODY_LENGTH = 17;
+    public static final int HEADER_LENGTH = 2;
+    public static final int HEADER_LENGTH_WITHOUT_KEY_ID = 1;
+    public static final int PAYLOAD_LENGTH = HEADER_LENGTH + BODY_LENGTH + MAC_LENGTH;
+    public static final int PAYLOAD_LENGTH_WITHOUT_KEY_ID = HEADER_LENGTH_WITHOUT_KEY_ID + BODY_LENGTH + MAC_LENGTH;
+    public static final int PAYLOAD_LENGTH_ED25519 = HEADER_LENGTH + BODY_LENGTH + SIGNATURE_LENGTH;
+    public static final int ENCODED_LENGTH = (PAYLOAD_LENGTH * 8 + 5) / 6;
+    public static final int ENCODED_LENGTH_WITHOUT_KEY_ID = (PAYLOAD_LENGTH_WITHOUT_KEY_ID * 8 + 5) / 6;
+    public static final int ENCODED_LENGTH_ED25519 = (PAYLOAD_LENGTH_ED25519 * 8 + 5) / 6;
+
+    // Offsets within the body
+    public static final int FUEL_TYPE_OFFSET = 12;
+    public static final int ISSUED_AT_OFFSET = 13;
+
+    // 6-bit registration number alphabet; code 0 marks the padding after the last character
+    public static final String REG_NO_ALPHABET = "\0ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789- ";
+    // Registration numbers that fit the payload, once normalised
+    public static final String REG_NO_PATTERN = "[A-Z0-9 -]{1," + REG_NO_CHARS + "}";
+
+    public static final byte FUEL_PETROL = 1;
+    public static final byte FUEL_DIESEL = 2;
+
+    public static final int DEFAULT_KEY_ID = 0;
+    public static final int MAX_KEY_ID = 255;
+
+    public static final String MAC_ALGORITHM = "HmacSHA256";
+    public static final String SIGNATURE_ALGORITHM = "Ed25519";
+
+    private QrPayloadFormat() {
+    }
+
+
+     //True when the code has the length of a compact payload; anything else is a legacy JSON code
+
+    public static boolean isCompactPayload(String code) {
+        return code != null && (code.length() == ENCODED_LENGTH || code.length() == ENCODED_LENGTH_WITHOUT_KEY_ID
+                || code.length() == ENCODED_LENGTH_ED25519);
+    }
+
+
+     //Trimmed, upper case, with whitespace runs as one space: the form that is encoded and checked against REG_NO_PATTERN
+
+    public static String normaliseRegistrationNumber(String registrationNumber) {
+        return registrationNumber.trim().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
+    }
+}
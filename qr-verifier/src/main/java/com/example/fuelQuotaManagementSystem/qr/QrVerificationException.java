@@ -0,0 +1,9 @@
+package com.example.fuelQuotaManagementSystem.qr;
+
+// Thrown for QR payloads that are malformed, signed with an unknown key or fail the signature check
+public class QrVerificationException extends RuntimeException {
+
+    public QrVerificationException(String message) {
+        super(message);
+    }
+}
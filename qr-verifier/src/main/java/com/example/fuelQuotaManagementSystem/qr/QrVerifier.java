@@ -0,0 +1,294 @@
+package com.example.fuelQuotaManagementSystem.qr;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.interfaces.EdECKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Verifies compact vehicle QR payloads (see QrPayloadFormat) locally, with nothing but the JDK,
+ * so a station terminal can check a scanned code without reaching the backend.
+ *
+ * Terminals are given Ed25519 public keys only (fromPublicKeys) and verify version 4 codes; HMAC
+ * keys are secrets that can also sign, so only the backend holds them, to verify version 2 and 3
+ * codes still in circulation.
+ *
+ * Build one instance with every key that should verify, keyed by key id, and share it: it is
+ * thread-safe, and each thread keeps its own HMAC or signature instance per key plus scratch
+ * buffers, so an HMAC verification allocates only the returned result.
+ */
+public final class QrVerifier {
+
+    private static final String BASE64URL = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+    private static final byte[] BASE64URL_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(BASE64URL_VALUES, (byte) -1);
+        for (int i = 0; i < BASE64URL.length(); i++) {
+            BASE64URL_VALUES[BASE64URL.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final Mac[] macPrototypes = new Mac[QrPayloadFormat.MAX_KEY_ID + 1];
+    private final PublicKey[] publicKeys = new PublicKey[QrPayloadFormat.MAX_KEY_ID + 1];
+    private final ThreadLocal<ThreadState> threadState = ThreadLocal.withInitial(ThreadState::new);
+
+    public QrVerifier(Map<Integer, byte[]> keys) {
+        this(keys, Map.of());
+    }
+
+
+     //HMAC keys and Ed25519 public keys by key id; an id may appear in only one of them
+
+    public QrVerifier(Map<Integer, byte[]> macKeys, Map<Integer, PublicKey> publicKeys) {
+        for (Map.Entry<Integer, PublicKey> key : publicKeys.entrySet()) {
+            int keyId = checkKeyId(key.getKey());
+            if (!(key.getValue() instanceof EdECKey)
+                    || !QrPayloadFormat.SIGNATURE_ALGORITHM.equals(((EdECKey) key.getValue()).getParams().getName())) {
+                throw new IllegalArgumentException("QR public key " + keyId + " is not an Ed25519 key");
+            }
+            this.publicKeys[keyId] = key.getValue();
+        }
+        for (Map.Entry<Integer, byte[]> key : macKeys.entrySet()) {
+            int keyId = checkKeyId(key.getKey());
+            if (this.publicKeys[keyId] != null) {
+                throw new IllegalArgumentException("QR key id " + keyId + " has both an HMAC key and a public key");
+            }
+            try {
+                Mac mac = Mac.getInstance(QrPayloadFormat.MAC_ALGORITHM);
+                mac.init(new SecretKeySpec(key.getValue(), QrPayloadFormat.MAC_ALGORITHM));
+                macPrototypes[keyId] = mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot initialise QR signing key " + keyId, e);
+            }
+        }
+    }
+
+
+     //Convenience for keys configured as text, as the backend does
+
+    public static QrVerifier fromTextKeys(Map<Integer, String> keys) {
+        Map<Integer, byte[]> rawKeys = new HashMap<>();
+        keys.forEach((keyId, secret) -> rawKeys.put(keyId, secret.getBytes(StandardCharsets.UTF_8)));
+        return new QrVerifier(rawKeys);
+    }
+
+
+     //What a terminal uses: Ed25519 public keys as base64 X.509 (SubjectPublicKeyInfo) encodings, as the backend's qr.signing.public-keys
+
+    public static QrVerifier fromPublicKeys(Map<Integer, String> keys) {
+        Map<Integer, PublicKey> publicKeys = new HashMap<>();
+        keys.forEach((keyId, encoded) -> publicKeys.put(keyId, decodePublicKey(encoded)));
+        return new QrVerifier(Map.of(), publicKeys);
+    }
+
+
+    public static PublicKey decodePublicKey(String encoded) {
+        try {
+            return KeyFactory.getInstance(QrPayloadFormat.SIGNATURE_ALGORITHM)
+                    .generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(encoded.trim())));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Not a base64 X.509 Ed25519 public key", e);
+        }
+    }
+
+
+    public boolean hasKey(int keyId) {
+        return keyId >= 0 && keyId <= QrPayloadFormat.MAX_KEY_ID
+                && (macPrototypes[keyId] != null || publicKeys[keyId] != null);
+    }
+
+
+     //Verify the signature and unpack the payload; throws QrVerificationException if it does not check out
+
+    public VerifiedQrPayload verify(String code) {
+        if (!QrPayloadFormat.isCompactPayload(code)) {
+            throw new QrVerificationException("Not a compact QR payload");
+        }
+
+        ThreadState state = threadState.get();
+        if (code.length() == QrPayloadFormat.ENCODED_LENGTH_ED25519) {
+            return verifySigned(code, state);
+        }
+        boolean withKeyId = code.length() == QrPayloadFormat.ENCODED_LENGTH;
+        byte[] payload = withKeyId ? state.payload : state.payloadWithoutKeyId;
+        decodeBase64Url(code, payload);
+
+        int expectedVersion = withKeyId ? QrPayloadFormat.VERSION : QrPayloadFormat.VERSION_WITHOUT_KEY_ID;
+        if (payload[0] != expectedVersion) {
+            throw new QrVerificationException("Unsupported version " + payload[0]);
+        }
+
+        int keyId = withKeyId ? payload[1] & 0xff : QrPayloadFormat.DEFAULT_KEY_ID;
+        if (macPrototypes[keyId] == null) {
+            throw new QrVerificationException("Unknown signing key " + keyId);
+        }
+
+        int signedLength = payload.length - QrPayloadFormat.MAC_LENGTH;
+        Mac mac = state.mac(keyId);
+        mac.update(payload, 0, signedLength);
+        try {
+            mac.doFinal(state.digest, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+
+        // Constant time, so the comparison does not reveal how many MAC bytes were right
+        int difference = 0;
+        for (int i = 0; i < QrPayloadFormat.MAC_LENGTH; i++) {
+            difference |= state.digest[i] ^ payload[signedLength + i];
+        }
+        if (difference != 0) {
+            throw new QrVerificationException("Security validation failed");
+        }
+
+        int header = withKeyId ? QrPayloadFormat.HEADER_LENGTH : QrPayloadFormat.HEADER_LENGTH_WITHOUT_KEY_ID;
+        return unpack(payload, keyId, header, state);
+    }
+
+    private VerifiedQrPayload verifySigned(String code, ThreadState state) {
+        byte[] payload = state.signedPayload;
+        decodeBase64Url(code, payload);
+        if (payload[0] != QrPayloadFormat.VERSION_ED25519) {
+            throw new QrVerificationException("Unsupported version " + payload[0]);
+        }
+
+        int keyId = payload[1] & 0xff;
+        if (publicKeys[keyId] == null) {
+            throw new QrVerificationException("Unknown signing key " + keyId);
+        }
+
+        int signedLength = QrPayloadFormat.HEADER_LENGTH + QrPayloadFormat.BODY_LENGTH;
+        Signature signature = state.signature(keyId);
+        boolean valid;
+        try {
+            signature.update(payload, 0, signedLength);
+            valid = signature.verify(payload, signedLength, QrPayloadFormat.SIGNATURE_LENGTH);
+        } catch (SignatureException e) {
+            valid = false;
+        }
+        if (!valid) {
+            throw new QrVerificationException("Security validation failed");
+        }
+        return unpack(payload, keyId, QrPayloadFormat.HEADER_LENGTH, state);
+    }
+
+    private static VerifiedQrPayload unpack(byte[] payload, int keyId, int header, ThreadState state) {
+        return new VerifiedQrPayload(payload[0], keyId,
+                unpackRegistrationNumber(payload, header, state.chars),
+                fuelTypeName(payload[header + QrPayloadFormat.FUEL_TYPE_OFFSET]),
+                issuedAtMillis(payload, header + QrPayloadFormat.ISSUED_AT_OFFSET));
+    }
+
+    private static int checkKeyId(int keyId) {
+        if (keyId < 0 || keyId > QrPayloadFormat.MAX_KEY_ID) {
+            throw new IllegalArgumentException("QR signing key ids must be between 0 and " + QrPayloadFormat.MAX_KEY_ID);
+        }
+        return keyId;
+    }
+
+    private static void decodeBase64Url(String encoded, byte[] payload) {
+        int buffer = 0;
+        int bits = 0;
+        int index = 0;
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            int value = c < 128 ? BASE64URL_VALUES[c] : -1;
+            if (value < 0) {
+                throw new QrVerificationException("Invalid character");
+            }
+            buffer = (buffer << 6) | value;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                payload[index++] = (byte) (buffer >> bits);
+            }
+        }
+    }
+
+    private static String unpackRegistrationNumber(byte[] payload, int offset, char[] chars) {
+        int length = 0;
+        for (int group = 0; group < QrPayloadFormat.REG_NO_CHARS / 4; group++) {
+            int bits = ((payload[offset + group * 3] & 0xff) << 16)
+                    | ((payload[offset + 1 + group * 3] & 0xff) << 8)
+                    | (payload[offset + 2 + group * 3] & 0xff);
+            for (int n = 3; n >= 0; n--) {
+                int code = (bits >>> (n * 6)) & 0x3f;
+                if (code == 0) {
+                    return new String(chars, 0, length);
+                }
+                if (code >= QrPayloadFormat.REG_NO_ALPHABET.length()) {
+                    throw new QrVerificationException("Invalid registration number");
+                }
+                chars[length++] = QrPayloadFormat.REG_NO_ALPHABET.charAt(code);
+            }
+        }
+        return new String(chars, 0, length);
+    }
+
+    private static long issuedAtMillis(byte[] payload, int offset) {
+        long seconds = ((payload[offset] & 0xffL) << 24)
+                | ((payload[offset + 1] & 0xffL) << 16)
+                | ((payload[offset + 2] & 0xffL) << 8)
+                | (payload[offset + 3] & 0xffL);
+        return seconds * 1000;
+    }
+
+    private static String fuelTypeName(byte code) {
+        switch (code) {
+            case QrPayloadFormat.FUEL_PETROL: return "Petrol";
+            case QrPayloadFormat.FUEL_DIESEL: return "Diesel";
+            default: return null;
+        }
+    }
+
+    // Per-thread HMAC clones, signature verifiers and scratch buffers
+    private final class ThreadState {
+        private final Mac[] macs = new Mac[QrPayloadFormat.MAX_KEY_ID + 1];
+        private final Signature[] signatures = new Signature[QrPayloadFormat.MAX_KEY_ID + 1];
+        private final byte[] payload = new byte[QrPayloadFormat.PAYLOAD_LENGTH];
+        private final byte[] payloadWithoutKeyId = new byte[QrPayloadFormat.PAYLOAD_LENGTH_WITHOUT_KEY_ID];
+        private final byte[] signedPayload = new byte[QrPayloadFormat.PAYLOAD_LENGTH_ED25519];
+        private final byte[] digest = new byte[32];
+        private final char[] chars = new char[QrPayloadFormat.REG_NO_CHARS];
+
+        private Mac mac(int keyId) {
+            Mac mac = macs[keyId];
+            if (mac == null) {
+                try {
+                    mac = (Mac) macPrototypes[keyId].clone();
+                } catch (CloneNotSupportedException e) {
+                    throw new IllegalStateException("HMAC provider does not support cloning", e);
+                }
+                macs[keyId] = mac;
+            }
+            return mac;
+        }
+
+        // Stays initialised for its key after each verify, so it is set up once per thread
+        private Signature signature(int keyId) {
+            Signature signature = signatures[keyId];
+            if (signature == null) {
+                try {
+                    signature = Signature.getInstance(QrPayloadFormat.SIGNATURE_ALGORITHM);
+                    signature.initVerify(publicKeys[keyId]);
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException("Cannot initialise QR public key " + keyId, e);
+                }
+                signatures[keyId] = signature;
+            }
+            return signature;
+        }
+    }
+}
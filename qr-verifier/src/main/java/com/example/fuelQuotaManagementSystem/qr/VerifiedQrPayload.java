@@ -0,0 +1,28 @@
+package com.example.fuelQuotaManagementSystem.qr;
+
+/**
+ * Contents of a QR payload whose signature checked out.
+ */
+public final class VerifiedQrPayload {
+    private final int version;
+    private final int keyId;
+    private final String registrationNumber;
+    private final String fuelType;
+    private final long issuedAtMillis;
+
+    VerifiedQrPayload(int version, int keyId, String registrationNumber, String fuelType, long issuedAtMillis) {
+        this.version = version;
+        this.keyId = keyId;
+        this.registrationNumber = registrationNumber;
+        this.fuelType = fuelType;
+        this.issuedAtMillis = issuedAtMillis;
+    }
+
+    // Getters
+    public int getVersion() { return version; }
+    public int getKeyId() { return keyId; }
+    public String getRegistrationNumber() { return registrationNumber; }
+    // "Petrol", "Diesel" or null
+    public String getFuelType() { return fuelType; }
+    public long getIssuedAtMillis() { return issuedAtMillis; }
+}
@@ -0,0 +1,122 @@
+package com.example.fuelQuotaManagementSystem.qr;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Codes below were issued by the backend's QRCodeService with the keys below at
+ * 2026-01-01T00:00:00Z; the backend's QrVerifierCompatibilityTest checks it still produces them.
+ * The Ed25519 key pairs were made for these tests only.
+ */
+class QrVerifierTest {
+
+    static final Map<Integer, String> KEYS = Map.of(
+            0, "station-test-key-0",
+            9, "station-test-key-9");
+    // Public halves of the test key pairs; the backend signs with PKCS#8 private key 1
+    static final String PUBLIC_KEY_1 = "MCowBQYDK2VwAyEAmCAlvMa1Jsg53g556MrJegd6Bl5iMkeUt+fVaNjI+EQ=";
+    static final String OTHER_PUBLIC_KEY = "MCowBQYDK2VwAyEA1Od32mSptlQQJTMPypCbJqwv5SqwWdKMys/SChjJcUw=";
+    static final long ISSUED_AT = 1767225600000L;
+
+    static final String PETROL_KEY_9 = "AwkMEKVx158AAAAAAAABaVW5AIhAwlZnwof0";
+    static final String DIESEL_KEY_0 = "AwBdCYsGZ-CGIAAAAAACaVW5AEK93tihsAaS";
+    static final String NO_FUEL_FULL_LENGTH_KEY_9 = "AwkEIMQUYcgkosw049AAaVW5AAQ_asB16awh";
+    static final String VERSION_2_DIESEL = "Ajg5ZI4oQAAAAAAAAAJpVbkAb5Fu_Jo1BME";
+    static final String ED25519_PETROL_KEY_1 = "BAEMEKVx158AAAAAAAABaVW5AAQHBZITVKHJAHXV-bymIrHICPWfeWtvyaymb0BaSOomhgYYkrnsnPcnLneUYzW5Q_cXpqSSF8Mw9Rd24m3_1go";
+
+    private final QrVerifier verifier = QrVerifier.fromTextKeys(KEYS);
+    private final QrVerifier terminal = QrVerifier.fromPublicKeys(Map.of(1, PUBLIC_KEY_1));
+
+    @Test
+    void verifiesCodesIssuedByServer() {
+        VerifiedQrPayload petrol = verifier.verify(PETROL_KEY_9);
+        assertEquals(3, petrol.getVersion());
+        assertEquals(9, petrol.getKeyId());
+        assertEquals("CAB-1234", petrol.getRegistrationNumber());
+        assertEquals("Petrol", petrol.getFuelType());
+        assertEquals(ISSUED_AT, petrol.getIssuedAtMillis());
+
+        VerifiedQrPayload diesel = verifier.verify(DIESEL_KEY_0);
+        assertEquals(0, diesel.getKeyId());
+        assertEquals("WP KA 4567", diesel.getRegistrationNumber());
+        assertEquals("Diesel", diesel.getFuelType());
+
+        VerifiedQrPayload fullLength = verifier.verify(NO_FUEL_FULL_LENGTH_KEY_9);
+        assertEquals("ABCDEFGHIJKLMNOP", fullLength.getRegistrationNumber());
+        assertNull(fullLength.getFuelType());
+    }
+
+    @Test
+    void verifiesVersion2CodesWithKey0() {
+        VerifiedQrPayload payload = verifier.verify(VERSION_2_DIESEL);
+        assertEquals(2, payload.getVersion());
+        assertEquals(0, payload.getKeyId());
+        assertEquals("NC-9876", payload.getRegistrationNumber());
+        assertEquals("Diesel", payload.getFuelType());
+        assertEquals(ISSUED_AT, payload.getIssuedAtMillis());
+    }
+
+    @Test
+    void verifiesEd25519CodesWithThePublicKeyAlone() {
+        VerifiedQrPayload payload = terminal.verify(ED25519_PETROL_KEY_1);
+        assertEquals(4, payload.getVersion());
+        assertEquals(1, payload.getKeyId());
+        assertEquals("CAB-1234", payload.getRegistrationNumber());
+        assertEquals("Petrol", payload.getFuelType());
+        assertEquals(ISSUED_AT, payload.getIssuedAtMillis());
+
+        // A terminal without the HMAC secrets cannot check the older codes
+        assertThrows(QrVerificationException.class, () -> terminal.verify(PETROL_KEY_9));
+    }
+
+    @Test
+    void rejectsTamperedOrWronglyKeyedEd25519Codes() {
+        String tamperedBody = ED25519_PETROL_KEY_1.substring(0, 4) + "F" + ED25519_PETROL_KEY_1.substring(5);
+        String tamperedSignature = ED25519_PETROL_KEY_1.substring(0, 60) + (ED25519_PETROL_KEY_1.charAt(60) == 'A' ? "B" : "A")
+                + ED25519_PETROL_KEY_1.substring(61);
+
+        assertThrows(QrVerificationException.class, () -> terminal.verify(tamperedBody));
+        assertThrows(QrVerificationException.class, () -> terminal.verify(tamperedSignature));
+        assertThrows(QrVerificationException.class, () -> QrVerifier.fromPublicKeys(Map.of(1, OTHER_PUBLIC_KEY)).verify(ED25519_PETROL_KEY_1));
+        // Key 1 as an HMAC key does not verify a code that claims an Ed25519 signature from it
+        assertThrows(QrVerificationException.class, () -> QrVerifier.fromTextKeys(Map.of(1, "station-test-key-1")).verify(ED25519_PETROL_KEY_1));
+    }
+
+    @Test
+    void keyIdCannotBeBothHmacAndEd25519() {
+        assertThrows(IllegalArgumentException.class, () -> new QrVerifier(
+                Map.of(1, "secret".getBytes()), Map.of(1, QrVerifier.decodePublicKey(PUBLIC_KEY_1))));
+        assertThrows(IllegalArgumentException.class, () -> QrVerifier.fromPublicKeys(Map.of(1, "bm90IGEga2V5")));
+    }
+
+    @Test
+    void rejectsTamperedCodes() {
+        // Flip one registration number character and one MAC character
+        String tamperedBody = PETROL_KEY_9.substring(0, 4) + "F" + PETROL_KEY_9.substring(5);
+        String tamperedMac = PETROL_KEY_9.substring(0, 35) + (PETROL_KEY_9.charAt(35) == 'A' ? "B" : "A");
+
+        assertThrows(QrVerificationException.class, () -> verifier.verify(tamperedBody));
+        assertThrows(QrVerificationException.class, () -> verifier.verify(tamperedMac));
+    }
+
+    @Test
+    void rejectsCodesSignedWithUnknownOrRetiredKeys() {
+        QrVerifier withoutKey9 = QrVerifier.fromTextKeys(Map.of(0, KEYS.get(0)));
+        QrVerifier wrongKey9 = QrVerifier.fromTextKeys(Map.of(9, "some-other-key"));
+
+        assertThrows(QrVerificationException.class, () -> withoutKey9.verify(PETROL_KEY_9));
+        assertThrows(QrVerificationException.class, () -> wrongKey9.verify(PETROL_KEY_9));
+        assertEquals("WP KA 4567", withoutKey9.verify(DIESEL_KEY_0).getRegistrationNumber());
+    }
+
+    @Test
+    void rejectsMalformedCodes() {
+        assertThrows(QrVerificationException.class, () -> verifier.verify(null));
+        assertThrows(QrVerificationException.class, () -> verifier.verify("too-short"));
+        assertThrows(QrVerificationException.class, () -> verifier.verify(PETROL_KEY_9.replace('A', '+')));
+        assertFalse(QrPayloadFormat.isCompactPayload("eyJyZWdObyI6IkNBQi0xMjM0In0="));
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.fuelQuotaManagementSystem.qr.benchmark;
+
+import com.example.fuelQuotaManagementSystem.qr.QrVerifier;
+import com.example.fuelQuotaManagementSystem.qr.VerifiedQrPayload;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of verifying one scanned QR code, with a terminal's public key or the backend's HMAC keys. Run
+ * from qr-verifier with
+ *
+ *   mvn test-compile exec:exec
+ *
+ * or pass JMH options, e.g. -Dbench.args="QrVerifierBenchmark -t 4 -f 1".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QrVerifierBenchmark {
+
+    // Issued by the backend with key 9 = "station-test-key-9"; see QrVerifierTest
+    private static final String CODE = "AwkMEKVx158AAAAAAAABaVW5AIhAwlZnwof0";
+    private static final String TAMPERED_CODE = "AwkMFKVx158AAAAAAAABaVW5AIhAwlZnwof0";
+    // Signed with Ed25519 key pair 1 of QrVerifierTest, as terminals verify it
+    private static final String ED25519_CODE = "BAEMEKVx158AAAAAAAABaVW5AAQHBZITVKHJAHXV-bymIrHICPWfeWtvyaymb0BaSOomhgYYkrnsnPcnLneUYzW5Q_cXpqSSF8Mw9Rd24m3_1go";
+
+    private QrVerifier verifier;
+    private QrVerifier terminal;
+
+    @Setup
+    public void setUp() {
+        verifier = QrVerifier.fromTextKeys(Map.of(0, "station-test-key-0", 9, "station-test-key-9"));
+        terminal = QrVerifier.fromPublicKeys(Map.of(1, "MCowBQYDK2VwAyEAmCAlvMa1Jsg53g556MrJegd6Bl5iMkeUt+fVaNjI+EQ="));
+    }
+
+    @Benchmark
+    public VerifiedQrPayload verifyValidCode() {
+        return verifier.verify(CODE);
+    }
+
+    @Benchmark
+    public VerifiedQrPayload verifyEd25519Code() {
+        return terminal.verify(ED25519_CODE);
+    }
+
+    @Benchmark
+    public boolean rejectTamperedCode() {
+        try {
+            verifier.verify(TAMPERED_CODE);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}